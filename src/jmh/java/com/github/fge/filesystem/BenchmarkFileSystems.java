@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.memory.MemoryFileSystemProvider;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.util.Collections;
+
+/**
+ * Factory for the filesystems used by benchmarks
+ *
+ * <p>Filesystems returned by this class are memory filesystems, which go
+ * through the full provider stack (provider, repository, options and
+ * attributes factories).</p>
+ */
+@ParametersAreNonnullByDefault
+public final class BenchmarkFileSystems
+{
+    private static final URI FS_URI = URI.create("memory://bench/");
+
+    private BenchmarkFileSystems()
+    {
+    }
+
+    /**
+     * Create a new filesystem
+     *
+     * @return a new filesystem
+     * @throws IOException failed to create the filesystem
+     */
+    @Nonnull
+    public static FileSystem newFileSystem()
+        throws IOException
+    {
+        return new MemoryFileSystemProvider().newFileSystem(FS_URI,
+            Collections.<String, Object>emptyMap());
+    }
+}
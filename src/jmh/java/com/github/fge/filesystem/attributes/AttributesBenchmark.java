@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.attributes;
+
+import com.github.fge.filesystem.attributes.provider.BasicFileAttributesProvider;
+import com.github.fge.filesystem.attributes.provider.FileAttributesProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Attribute reads through a {@link FileAttributesFactory}
+ *
+ * <p>Each benchmark generates a provider from metadata, as drivers do for
+ * each attribute read, and reads from it.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class AttributesBenchmark
+{
+    private final FileAttributesFactory factory = new FileAttributesFactory()
+    {
+        {
+            setMetadataClass(Metadata.class);
+            addImplementation("basic", BasicProvider.class);
+            freeze();
+        }
+    };
+
+    private final Metadata metadata = new Metadata(4096L, 1420070400000L);
+
+    @Benchmark
+    public long readAttributesByClass()
+        throws IOException
+    {
+        final BasicFileAttributes attributes
+            = factory.getFileAttributes(BasicFileAttributes.class, metadata);
+        //noinspection ConstantConditions
+        return attributes.size();
+    }
+
+    @Benchmark
+    public BasicFileAttributes readAttributesByView()
+        throws IOException
+    {
+        final BasicFileAttributeView view = factory.getFileAttributeView(
+            BasicFileAttributeView.class, metadata);
+        //noinspection ConstantConditions
+        return view.readAttributes();
+    }
+
+    @Benchmark
+    public Object readAttributeByName()
+        throws IOException
+    {
+        final FileAttributesProvider provider
+            = factory.getProvider("basic", metadata);
+        //noinspection ConstantConditions
+        return provider.getAttributeByName("lastModifiedTime");
+    }
+
+    @Benchmark
+    public Map<String, Object> readAllAttributes()
+        throws IOException
+    {
+        final FileAttributesProvider provider
+            = factory.getProvider("basic", metadata);
+        //noinspection ConstantConditions
+        return provider.getAllAttributes();
+    }
+
+    public static final class Metadata
+    {
+        private final long size;
+        private final FileTime lastModified;
+
+        private Metadata(final long size, final long lastModified)
+        {
+            this.size = size;
+            this.lastModified = FileTime.fromMillis(lastModified);
+        }
+    }
+
+    public static final class BasicProvider
+        extends BasicFileAttributesProvider
+    {
+        private final Metadata metadata;
+
+        public BasicProvider(final Metadata metadata)
+            throws IOException
+        {
+            this.metadata = metadata;
+        }
+
+        @Override
+        public FileTime lastModifiedTime()
+        {
+            return metadata.lastModified;
+        }
+
+        @Override
+        public boolean isRegularFile()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean isDirectory()
+        {
+            return false;
+        }
+
+        @Override
+        public long size()
+        {
+            return metadata.size;
+        }
+    }
+}
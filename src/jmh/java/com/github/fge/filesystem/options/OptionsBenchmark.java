@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.options;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.file.CopyOption;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Option compilation by a {@link FileSystemOptionsFactory}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class OptionsBenchmark
+{
+    private static final OpenOption[] NO_OPEN_OPTIONS = new OpenOption[0];
+    private static final OpenOption[] WRITE_OPTIONS = {
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE
+    };
+    private static final Set<OpenOption> CHANNEL_OPTIONS
+        = new HashSet<OpenOption>(Arrays.asList(StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.CREATE));
+    private static final CopyOption[] COPY_OPTIONS = {
+        StandardCopyOption.REPLACE_EXISTING
+    };
+
+    private final FileSystemOptionsFactory factory
+        = new FileSystemOptionsFactory();
+
+    @Benchmark
+    public Set<OpenOption> defaultReadOptions()
+    {
+        return factory.compileReadOptions(NO_OPEN_OPTIONS);
+    }
+
+    @Benchmark
+    public Set<OpenOption> writeOptions()
+    {
+        return factory.compileWriteOptions(WRITE_OPTIONS);
+    }
+
+    @Benchmark
+    public Set<OpenOption> channelOptions()
+    {
+        return factory.compileChannelOptions(CHANNEL_OPTIONS);
+    }
+
+    @Benchmark
+    public Set<CopyOption> copyOptions()
+    {
+        return factory.compileCopyOptions(COPY_OPTIONS);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.path;
+
+import com.github.fge.filesystem.BenchmarkFileSystems;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link GenericPath} algebra: resolution, relativization and normalization
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class PathAlgebraBenchmark
+{
+    private FileSystem fs;
+
+    private Path base;
+    private Path relative;
+    private Path other;
+    private Path denormalized;
+
+    @Setup
+    public void setup()
+        throws IOException
+    {
+        fs = BenchmarkFileSystems.newFileSystem();
+        base = fs.getPath("/home/user/projects/foo");
+        relative = fs.getPath("src/main/java/Foo.java");
+        other = fs.getPath("/home/user/documents/bar/baz.txt");
+        denormalized = fs.getPath("/home/./user/../user/projects/./foo/..");
+    }
+
+    @TearDown
+    public void tearDown()
+        throws IOException
+    {
+        fs.close();
+    }
+
+    @Benchmark
+    public Path resolve()
+    {
+        return base.resolve(relative);
+    }
+
+    @Benchmark
+    public Path resolveString()
+    {
+        return base.resolve("src/main/java/Foo.java");
+    }
+
+    @Benchmark
+    public Path relativize()
+    {
+        return base.relativize(other);
+    }
+
+    @Benchmark
+    public Path normalize()
+    {
+        return denormalized.normalize();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.path.matchers;
+
+import com.github.fge.filesystem.BenchmarkFileSystems;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link GlobPathMatcher} and {@link RegexPathMatcher}
+ *
+ * <p>Each invocation matches the same pattern against a matching and a non
+ * matching path.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class PathMatcherBenchmark
+{
+    private FileSystem fs;
+
+    private PathMatcher glob;
+    private PathMatcher regex;
+    private Path matching;
+    private Path nonMatching;
+
+    @Setup
+    public void setup()
+        throws IOException
+    {
+        fs = BenchmarkFileSystems.newFileSystem();
+        glob = new GlobPathMatcher("/src/**/{foo,bar}*.java");
+        regex = new RegexPathMatcher("/src/.*/(foo|bar)[^/]*\\.java");
+        matching = fs.getPath("/src/main/java/com/example/fooBar.java");
+        nonMatching = fs.getPath("/src/main/java/com/example/Baz.java");
+    }
+
+    @TearDown
+    public void tearDown()
+        throws IOException
+    {
+        fs.close();
+    }
+
+    @Benchmark
+    public boolean glob()
+    {
+        return glob.matches(matching) & glob.matches(nonMatching);
+    }
+
+    @Benchmark
+    public boolean regex()
+    {
+        return regex.matches(matching) & regex.matches(nonMatching);
+    }
+}
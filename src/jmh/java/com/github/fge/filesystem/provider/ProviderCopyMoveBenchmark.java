@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.provider;
+
+import com.github.fge.filesystem.BenchmarkFileSystems;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies and moves through {@link FileSystemProviderBase}
+ *
+ * <p>Copies within a filesystem are delegated to the driver; copies across
+ * filesystems go through streams. Filesystems are memory filesystems, so the
+ * results measure the cost of the provider stack plus a memory copy of the
+ * file contents.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ProviderCopyMoveBenchmark
+{
+    @Param({ "1024", "1048576" })
+    public int size;
+
+    private FileSystem fs;
+    private FileSystem otherFs;
+
+    private Path source;
+    private Path target;
+    private Path otherTarget;
+
+    @Setup
+    public void setup()
+        throws IOException
+    {
+        fs = BenchmarkFileSystems.newFileSystem();
+        otherFs = BenchmarkFileSystems.newFileSystem();
+
+        source = fs.getPath("/source");
+        target = fs.getPath("/target");
+        otherTarget = otherFs.getPath("/target");
+
+        try (
+            final OutputStream out = Files.newOutputStream(source);
+        ) {
+            out.write(new byte[size]);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+        throws IOException
+    {
+        fs.close();
+        otherFs.close();
+    }
+
+    @Benchmark
+    public Path copy()
+        throws IOException
+    {
+        return Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Benchmark
+    public Path copyAcrossFileSystems()
+        throws IOException
+    {
+        return Files.copy(source, otherTarget,
+            StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Benchmark
+    public Path move()
+        throws IOException
+    {
+        Files.move(source, target);
+        return Files.move(target, source);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.watch;
+
+import com.github.fge.filesystem.BenchmarkFileSystems;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.Control;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Event throughput and delivery latency of a {@link PushWatchService}
+ *
+ * <p>{@link #publishAndPoll(Blackhole)} measures the single threaded cost of
+ * publishing a batch of events and draining it (group {@code single}).</p>
+ *
+ * <p>In group {@code concurrent}, four threads publish at a fixed total rate
+ * (the {@code rate} parameter, in events per second) while another one drains
+ * the service. Keys are large enough to hold several batches of every
+ * producer, so the {@code events} counter is the rate at which events are
+ * actually delivered; {@code lost} counts events reported as {@link
+ * StandardWatchEventKinds#OVERFLOW} instead, and should stay at zero.</p>
+ *
+ * <p>In group {@code latency}, {@link #publish(Control)} publishes one event
+ * and waits for {@link #acknowledge(Blackhole)} to poll it; its sampled time
+ * is therefore the publish to poll latency of a single event.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Group)
+public class PushWatchServiceBenchmark
+{
+    private static final int BATCH = 256;
+    private static final int PRODUCERS = 4;
+    private static final int MAX_EVENTS = 64 * PRODUCERS * BATCH;
+    private static final long POLL_TIMEOUT = 10L;
+
+    private FileSystem fs;
+    private LocalWatchEventSource source;
+    private PushWatchService service;
+    private Path[] paths;
+
+    // Group latency only
+    private final AtomicLong acknowledged = new AtomicLong();
+    private long published = 0L;
+
+    @Setup
+    public void setup()
+        throws IOException
+    {
+        fs = BenchmarkFileSystems.newFileSystem();
+        source = new LocalWatchEventSource();
+        service = new PushWatchService(source, MAX_EVENTS);
+
+        fs.getPath("/dir").register(service,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+
+        paths = new Path[BATCH];
+        for (int i = 0; i < BATCH; i++)
+            paths[i] = fs.getPath("/dir/file" + i);
+    }
+
+    @TearDown
+    public void tearDown()
+        throws IOException
+    {
+        service.close();
+        fs.close();
+    }
+
+    @Benchmark
+    @Group("single")
+    @OperationsPerInvocation(BATCH)
+    public void publishAndPoll(final Blackhole blackhole)
+    {
+        for (final Path path: paths)
+            source.publish(StandardWatchEventKinds.ENTRY_MODIFY, path);
+        drain(blackhole);
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(PRODUCERS)
+    @OperationsPerInvocation(BATCH)
+    public void producer(final Pacer pacer, final Control control)
+    {
+        for (final Path path: paths)
+            source.publish(StandardWatchEventKinds.ENTRY_CREATE, path);
+        pacer.await(control);
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    public void consumer(final Delivered delivered, final Blackhole blackhole)
+        throws InterruptedException
+    {
+        final WatchKey key = service.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        if (key != null)
+            drain(key, delivered, blackhole);
+    }
+
+    @Benchmark
+    @Group("latency")
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void publish(final Control control)
+    {
+        final long ticket = ++published;
+
+        source.publish(StandardWatchEventKinds.ENTRY_MODIFY,
+            paths[(int) (ticket % BATCH)]);
+
+        while (acknowledged.get() < ticket && !control.stopMeasurement)
+            Thread.yield();
+    }
+
+    @Benchmark
+    @Group("latency")
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void acknowledge(final Blackhole blackhole)
+        throws InterruptedException
+    {
+        final WatchKey key = service.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        if (key == null)
+            return;
+
+        long count = 0L;
+
+        for (final WatchEvent<?> event: key.pollEvents()) {
+            blackhole.consume(event.context());
+            count += event.count();
+        }
+
+        key.reset();
+        acknowledged.addAndGet(count);
+    }
+
+    private void drain(final Blackhole blackhole)
+    {
+        final WatchKey key = service.poll();
+
+        if (key != null) {
+            for (final WatchEvent<?> event: key.pollEvents())
+                blackhole.consume(event.context());
+            key.reset();
+        }
+    }
+
+    private static void drain(final WatchKey key, final Delivered delivered,
+        final Blackhole blackhole)
+    {
+        for (final WatchEvent<?> event: key.pollEvents()) {
+            blackhole.consume(event.context());
+            // Repeated events are coalesced; lost events are not delivered
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                delivered.lost += event.count();
+            else
+                delivered.events += event.count();
+        }
+
+        key.reset();
+    }
+
+    /**
+     * Paces the producers of group {@code concurrent}
+     *
+     * <p>Each producer waits after each batch so that the total rate of all
+     * producers is {@code rate} events per second; a producer which falls
+     * behind does not try to catch up.</p>
+     */
+    @State(Scope.Thread)
+    public static class Pacer
+    {
+        @Param({ "100000", "1000000" })
+        public int rate;
+
+        private long interval;
+        private long next;
+
+        @Setup(Level.Iteration)
+        public void setup()
+        {
+            interval = TimeUnit.SECONDS.toNanos(1L) * PRODUCERS * BATCH / rate;
+            next = System.nanoTime();
+        }
+
+        void await(final Control control)
+        {
+            next += interval;
+
+            long now;
+
+            while ((now = System.nanoTime()) < next && !control.stopMeasurement)
+                Thread.yield();
+
+            if (now - next > interval)
+                next = now;
+        }
+    }
+
+    /**
+     * Events delivered to, and lost by, the consumer of group {@code
+     * concurrent}
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Delivered
+    {
+        public long events;
+        public long lost;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            events = 0L;
+            lost = 0L;
+        }
+    }
+}
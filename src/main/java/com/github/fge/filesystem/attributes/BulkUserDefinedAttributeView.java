@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.attributes;
+
+import com.github.fge.filesystem.attributes.provider.UserDefinedFileAttributesProvider;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.Map;
+
+/**
+ * A {@link UserDefinedFileAttributeView} with bulk access methods
+ *
+ * <p>Views of the {@code "user"} attributes returned by this package
+ * implement this interface when the driver's provider does, which is the
+ * case of all providers extending {@link UserDefinedFileAttributesProvider}:
+ * </p>
+ *
+ * <pre>
+ *     final UserDefinedFileAttributeView view = Files.getFileAttributeView(
+ *         path, UserDefinedFileAttributeView.class);
+ *
+ *     if (view instanceof BulkUserDefinedAttributeView) {
+ *         final BulkUserDefinedAttributeView bulk
+ *             = (BulkUserDefinedAttributeView) view;
+ *         final Map&lt;String, Integer&gt; sizes = bulk.sizes();
+ *         // [...]
+ *     }
+ * </pre>
+ *
+ * @see Files#getFileAttributeView(java.nio.file.Path, Class,
+ * java.nio.file.LinkOption...)
+ */
+public interface BulkUserDefinedAttributeView
+    extends UserDefinedFileAttributeView
+{
+    /**
+     * Return the size of an attribute, or {@code -1} if it does not exist
+     *
+     * @param name the name of the attribute
+     * @return the size of the attribute value, or -1 if it is not defined
+     * @throws IOException failed to read the attribute list or size
+     */
+    int sizeIfPresent(String name)
+        throws IOException;
+
+    /**
+     * Return the sizes of all attributes
+     *
+     * <p>The iteration order of the returned map is the order used by {@link
+     * #readAll(ByteBuffer)}.</p>
+     *
+     * @return an unmodifiable map of attribute names to value sizes
+     * @throws IOException failed to read the attribute list or sizes
+     */
+    @Nonnull
+    Map<String, Integer> sizes()
+        throws IOException;
+
+    /**
+     * Read all attributes into a caller supplied buffer
+     *
+     * <p>Values are read one after the other, starting from the buffer's
+     * current position, in the iteration order of {@link #sizes()}. The
+     * returned map associates each attribute name with a read only slice of
+     * {@code dst} containing its value; on return, the position of {@code
+     * dst} is just after the last value read.</p>
+     *
+     * @param dst the destination buffer
+     * @return an unmodifiable map of attribute names to values
+     * @throws BufferOverflowException not enough room in {@code dst}; in this
+     * case, nothing is read and the buffer is left untouched
+     * @throws IOException failed to read attributes
+     */
+    @Nonnull
+    Map<String, ByteBuffer> readAll(ByteBuffer dst)
+        throws IOException;
+}
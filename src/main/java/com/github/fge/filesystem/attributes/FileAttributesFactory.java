@@ -24,6 +24,7 @@ import com.github.fge.filesystem.attributes.provider.BasicFileAttributesProvider
 import com.github.fge.filesystem.attributes.provider.FileAttributesProvider;
 import com.github.fge.filesystem.driver.FileSystemDriverBase;
 import com.github.fge.filesystem.exceptions.InvalidAttributeProviderException;
+import com.github.fge.filesystem.provider.FileSystemFactoryProvider;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -33,6 +34,7 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.Modifier;
+import java.nio.file.FileSystem;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributeView;
@@ -41,9 +43,13 @@ import java.nio.file.attribute.DosFileAttributeView;
 import java.nio.file.attribute.DosFileAttributes;
 import java.nio.file.attribute.FileAttributeView;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * File attributes factory
@@ -67,6 +73,12 @@ import java.util.Objects;
  * href="http://java7fs.wikia.com/wiki/Implementing_file_attributes">this
  * page</a>for a sample use.</p>
  *
+ * <p>Registration is only possible until the factory is {@link #freeze()
+ * frozen}, which {@link FileSystemFactoryProvider#validate()} does. All
+ * lookups are performed against immutable tables compiled at registration
+ * time, which makes them safe to use from any thread once the factory is
+ * published.</p>
+ *
  * <p>Unless otherwise noted, all methods of this class will throw a {@link
  * NullPointerException} if a null argument is passed.</p>
  *
@@ -78,16 +90,19 @@ public class FileAttributesFactory
     private static final MethodHandles.Lookup LOOKUP
         = MethodHandles.publicLookup();
 
+    /*
+     * Registration state; only ever accessed by registration methods, which
+     * recompile the lookup tables each time.
+     */
     private final Map<String, AttributesDescriptor> descriptors
-        = new HashMap<>();
-
-    private final Map<String, Class<?>> viewMap = new HashMap<>();
-    private final Map<String, Class<?>> attrMap = new HashMap<>();
-
-    private final Map<String, MethodHandle> providers = new HashMap<>();
+        = new LinkedHashMap<>();
+    private final Map<String, MethodHandle> providers = new LinkedHashMap<>();
 
     private Class<?> metadataClass = null;
 
+    private volatile Tables tables;
+    private volatile boolean frozen = false;
+
     /**
      * Constructor to extend
      */
@@ -103,15 +118,88 @@ public class FileAttributesFactory
     )
     {
         Objects.requireNonNull(viewClass);
-        return getHandle(viewClass, viewMap) != null;
+        final Tables t = tables;
+        return bestFit(viewClass, t.viewClasses, t.viewBestFits, t.providers,
+            t.viewCache) != -1;
     }
 
     public final boolean supportsFileAttributeView(final String name)
     {
-        final AttributesDescriptor descriptor
-            = descriptors.get(Objects.requireNonNull(name));
-        return descriptor != null
-            && getHandle(descriptor.getViewClass(), viewMap) != null;
+        final Tables t = tables;
+        final int index = indexOf(t.names, Objects.requireNonNull(name));
+        return index != -1 && t.viewBestFits[index] != -1;
+    }
+
+    /**
+     * Return the name of the attribute view which would be used to serve a
+     * given view class
+     *
+     * <p>This is the name of the view whose provider would be returned by
+     * {@link #getFileAttributeView(Class, Object)} for this class.</p>
+     *
+     * @param viewClass the view class
+     * @return the view name, or {@code null} if this view class is not
+     * supported
+     */
+    @Nullable
+    public final String getViewName(
+        final Class<? extends FileAttributeView> viewClass
+    )
+    {
+        Objects.requireNonNull(viewClass);
+        final Tables t = tables;
+        final int index = bestFit(viewClass, t.viewClasses, t.viewBestFits,
+            t.providers, t.viewCache);
+        return index == -1 ? null : t.names[index];
+    }
+
+    /**
+     * Return the class of the provider which would be used to serve a given
+     * view class
+     *
+     * @param viewClass the view class
+     * @return the provider class, or {@code null} if this view class is not
+     * supported
+     *
+     * @see #getViewName(Class)
+     */
+    @Nullable
+    public final Class<?> getProviderClass(
+        final Class<? extends FileAttributeView> viewClass
+    )
+    {
+        Objects.requireNonNull(viewClass);
+        final Tables t = tables;
+        final int index = bestFit(viewClass, t.viewClasses, t.viewBestFits,
+            t.providers, t.viewCache);
+        return index == -1 ? null : t.providers[index].type().returnType();
+    }
+
+    /**
+     * Return the class of the metadata used to build attribute providers
+     *
+     * @return the metadata class, or {@code null} if it has not been set yet
+     *
+     * @see #setMetadataClass(Class)
+     */
+    @Nullable
+    public final Class<?> getMetadataClass()
+    {
+        return metadataClass;
+    }
+
+    /**
+     * Return the names of all attribute views supported by this factory
+     *
+     * @return an immutable set of view names
+     *
+     * @see #supportsFileAttributeView(String)
+     * @see FileSystem#supportedFileAttributeViews()
+     */
+    @Nonnull
+    public final Set<String> getSupportedViews()
+    {
+        return tables.supportedViews;
     }
 
     /**
@@ -123,7 +211,7 @@ public class FileAttributesFactory
     @Nonnull
     public final Map<String, AttributesDescriptor> getDescriptors()
     {
-        return Collections.unmodifiableMap(descriptors);
+        return tables.descriptorMap;
     }
 
     /**
@@ -145,18 +233,13 @@ public class FileAttributesFactory
         final Object metadata)
         throws IOException
     {
-        final MethodHandle handle = providers.get(Objects.requireNonNull(name));
+        final Tables t = tables;
+        final int index = indexOf(t.names, Objects.requireNonNull(name));
 
-        if (handle == null)
+        if (index == -1)
             return null;
 
-        try {
-            return (FileAttributesProvider) handle.invoke(metadata);
-        } catch (Error | RuntimeException | IOException e) {
-            throw e;
-        } catch (Throwable throwable) {
-            throw new InvalidAttributeProviderException(throwable);
-        }
+        return invoke(t.providers[index], metadata);
     }
 
     /**
@@ -185,7 +268,11 @@ public class FileAttributesFactory
     )
         throws IOException
     {
-        return getProviderInstance(targetClass, viewMap, metadata);
+        final Tables t = tables;
+        final int index = bestFit(targetClass, t.viewClasses, t.viewBestFits,
+            t.providers, t.viewCache);
+        return index == -1 ? null : this.<V>invoke(t.providers[index],
+            metadata);
     }
 
     /**
@@ -212,7 +299,36 @@ public class FileAttributesFactory
     )
         throws IOException
     {
-        return getProviderInstance(targetClass, attrMap, metadata);
+        final Tables t = tables;
+        final int index = bestFit(targetClass, t.attrClasses, t.attrBestFits,
+            t.providers, t.attrCache);
+        return index == -1 ? null : this.<A>invoke(t.providers[index],
+            metadata);
+    }
+
+    /**
+     * Freeze this factory
+     *
+     * <p>Once this method has been called, any attempt to register a
+     * descriptor or an implementation, or to set the metadata class, will
+     * fail with an {@link IllegalStateException}. Calling this method more
+     * than once has no effect.</p>
+     *
+     * @see FileSystemFactoryProvider#validate()
+     */
+    public final void freeze()
+    {
+        frozen = true;
+    }
+
+    /**
+     * Tell whether this factory is frozen
+     *
+     * @return true if {@link #freeze()} has been called
+     */
+    public final boolean isFrozen()
+    {
+        return frozen;
     }
 
     /**
@@ -224,11 +340,13 @@ public class FileAttributesFactory
      *
      * @param metadataClass the class
      * @throws IllegalArgumentException a metadata class has already been set
+     * @throws IllegalStateException this factory is frozen
      *
      * @see FileSystemDriverBase#getPathMetadata(Path)
      */
     protected final void setMetadataClass(final Class<?> metadataClass)
     {
+        checkNotFrozen();
         //noinspection VariableNotUsedInsideIf
         if (this.metadataClass != null)
             throw new IllegalArgumentException("metadata class has already "
@@ -242,11 +360,13 @@ public class FileAttributesFactory
      * @param descriptor the descriptor to add
      * @throws IllegalArgumentException a descriptor by that name is already
      * registered
+     * @throws IllegalStateException this factory is frozen
      *
      * @see AttributesDescriptor#getName()
      */
     protected final void addDescriptor(final AttributesDescriptor descriptor)
     {
+        checkNotFrozen();
         Objects.requireNonNull(descriptor);
         final String name = descriptor.getName();
 
@@ -254,9 +374,7 @@ public class FileAttributesFactory
             throw new IllegalArgumentException("a descriptor already exists "
                 + "for view " + name);
         descriptors.put(name, descriptor);
-        viewMap.put(name, descriptor.getViewClass());
-        if (descriptor.getAttributeClass() != null)
-            attrMap.put(name, descriptor.getAttributeClass());
+        tables = compile();
     }
 
     /**
@@ -266,6 +384,7 @@ public class FileAttributesFactory
      * @param providerClass the attribute provider class
      * @throws IllegalArgumentException no metadata class has been set, or no
      * descriptor associated with that view
+     * @throws IllegalStateException this factory is frozen
      * @throws InvalidAttributeProviderException provided class is not a
      * concrete class; or no suitable constructor has been found; or it is not a
      * subclass of the associated view class and (if any) attribute class
@@ -276,6 +395,7 @@ public class FileAttributesFactory
     protected final void addImplementation(final String name,
         final Class<? extends FileAttributesProvider> providerClass)
     {
+        checkNotFrozen();
         Objects.requireNonNull(name);
         Objects.requireNonNull(providerClass);
         if (metadataClass == null)
@@ -291,15 +411,58 @@ public class FileAttributesFactory
 
         checkCasts(providerClass, descriptor);
         providers.put(name, getConstructor(providerClass));
+        tables = compile();
+    }
+
+    private void checkNotFrozen()
+    {
+        if (frozen)
+            throw new IllegalStateException("attributes factory is frozen");
+    }
+
+    @Nonnull
+    private Tables compile()
+    {
+        final int size = descriptors.size();
+        final String[] names = new String[size];
+        final MethodHandle[] handles = new MethodHandle[size];
+        final Class<?>[] viewClasses = new Class<?>[size];
+        final Class<?>[] attrClasses = new Class<?>[size];
+
+        int index = 0;
+
+        for (final AttributesDescriptor descriptor: descriptors.values()) {
+            names[index] = descriptor.getName();
+            handles[index] = providers.get(names[index]);
+            viewClasses[index] = descriptor.getViewClass();
+            attrClasses[index] = descriptor.getAttributeClass();
+            index++;
+        }
+
+        final int[] viewBestFits = new int[size];
+        final int[] attrBestFits = new int[size];
+        final Set<String> supported = new HashSet<>();
+
+        for (index = 0; index < size; index++) {
+            viewBestFits[index] = findBestFit(viewClasses[index], viewClasses,
+                handles);
+            if (viewBestFits[index] != -1)
+                supported.add(names[index]);
+            attrBestFits[index] = attrClasses[index] == null ? -1
+                : findBestFit(attrClasses[index], attrClasses, handles);
+        }
+
+        return new Tables(names, handles, viewClasses, viewBestFits,
+            attrClasses, attrBestFits,
+            Collections.unmodifiableMap(new LinkedHashMap<>(descriptors)),
+            Collections.unmodifiableSet(supported));
     }
 
     @Nullable
-    private <C> C getProviderInstance(final Class<C> targetClass,
-        final Map<String, Class<?>> map, final Object metadata)
+    private <C> C invoke(@Nullable final MethodHandle handle,
+        final Object metadata)
         throws IOException
     {
-        final MethodHandle handle = getHandle(targetClass, map);
-
         if (handle == null)
             return null;
 
@@ -313,22 +476,52 @@ public class FileAttributesFactory
         }
     }
 
-    @Nullable
-    private MethodHandle getHandle(final Class<?> c,
-        final Map<String, Class<?>> map)
+    /*
+     * Get the index of the best fit implementation for a requested class, or
+     * -1 if there is none.
+     *
+     * Registered view/attribute classes are looked up by identity in the
+     * precomputed tables; the best fit for other classes (superinterfaces of
+     * registered classes, typically) is computed on the first request only.
+     */
+    private static int bestFit(final Class<?> c, final Class<?>[] classes,
+        final int[] bestFits, final MethodHandle[] handles,
+        final ConcurrentMap<Class<?>, Integer> cache)
     {
-        MethodHandle ret = null;
+        final int len = classes.length;
+
+        for (int i = 0; i < len; i++)
+            //noinspection ObjectEquality
+            if (classes[i] == c)
+                return bestFits[i];
+
+        Integer ret = cache.get(c);
+
+        if (ret == null) {
+            ret = findBestFit(c, classes, handles);
+            cache.putIfAbsent(c, ret);
+        }
+
+        return ret;
+    }
+
+    private static int findBestFit(final Class<?> c, final Class<?>[] classes,
+        final MethodHandle[] handles)
+    {
+        int ret = -1;
         Class<?> candidate, bestFit = null;
-        String name;
 
-        for (final Map.Entry<String, Class<?>> entry: map.entrySet()) {
-            name = entry.getKey();
-            candidate = entry.getValue();
+        final int len = classes.length;
+
+        for (int i = 0; i < len; i++) {
+            candidate = classes[i];
             /*
              * Test if the candidate is a subclass of the requested class;
-             * if not, no luck, try next.
+             * if not, no luck, try next. Also skip candidates with no
+             * registered implementation.
              */
-            if (!c.isAssignableFrom(candidate))
+            if (candidate == null || handles[i] == null
+                || !c.isAssignableFrom(candidate))
                 continue;
             /*
              * OK, it is a subclass. Test this against the best candidate we
@@ -336,16 +529,25 @@ public class FileAttributesFactory
              * of our current best, it is our new current best.
              */
             if (bestFit == null || candidate.isAssignableFrom(bestFit)) {
-                if (!providers.containsKey(name))
-                    continue;
                 bestFit = candidate;
-                ret = providers.get(name);
+                ret = i;
             }
         }
 
         return ret;
     }
 
+    private static int indexOf(final String[] names, final String name)
+    {
+        final int len = names.length;
+
+        for (int i = 0; i < len; i++)
+            if (names[i].equals(name))
+                return i;
+
+        return -1;
+    }
+
     private static void checkCasts(
         final Class<? extends FileAttributesProvider> providerClass,
         final AttributesDescriptor descriptor)
@@ -392,4 +594,46 @@ public class FileAttributesFactory
         final MethodType type = handle.type().changeReturnType(providerClass);
         return handle.asType(type);
     }
+
+    /*
+     * Immutable lookup tables; all arrays are indexed the same way, in
+     * descriptor registration order.
+     */
+    private static final class Tables
+    {
+        private final String[] names;
+        // registered implementation for names[i], if any
+        private final MethodHandle[] providers;
+        private final Class<?>[] viewClasses;
+        // index of the best fit implementation for viewClasses[i], or -1
+        private final int[] viewBestFits;
+        // attrClasses[i] may be null
+        private final Class<?>[] attrClasses;
+        private final int[] attrBestFits;
+        private final Map<String, AttributesDescriptor> descriptorMap;
+        private final Set<String> supportedViews;
+
+        // best fit implementations for unregistered classes
+        private final ConcurrentMap<Class<?>, Integer> viewCache
+            = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Class<?>, Integer> attrCache
+            = new ConcurrentHashMap<>();
+
+        @SuppressWarnings("MethodCanBeVariableArityMethod")
+        private Tables(final String[] names, final MethodHandle[] providers,
+            final Class<?>[] viewClasses, final int[] viewBestFits,
+            final Class<?>[] attrClasses, final int[] attrBestFits,
+            final Map<String, AttributesDescriptor> descriptorMap,
+            final Set<String> supportedViews)
+        {
+            this.names = names;
+            this.providers = providers;
+            this.viewClasses = viewClasses;
+            this.viewBestFits = viewBestFits;
+            this.attrClasses = attrClasses;
+            this.attrBestFits = attrBestFits;
+            this.descriptorMap = descriptorMap;
+            this.supportedViews = supportedViews;
+        }
+    }
 }
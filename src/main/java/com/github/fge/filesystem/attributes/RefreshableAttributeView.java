@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.attributes;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttributeView;
+
+/**
+ * Interface implemented by lazily loaded attribute views
+ *
+ * <p>Standard attribute views returned by {@link
+ * FileSystemDriver#getFileAttributeView(Path, Class, LinkOption...)} only
+ * fetch the metadata of their path on the first read accessor call, and then
+ * keep it; they also discard it after each modification. This interface
+ * allows to force a new fetch on the next read accessor call:</p>
+ *
+ * <pre>
+ *     final PosixFileAttributeView view = Files.getFileAttributeView(path,
+ *         PosixFileAttributeView.class);
+ *
+ *     // [...]
+ *
+ *     ((RefreshableAttributeView) view).refresh();
+ * </pre>
+ *
+ * @see FileAttributeView
+ */
+public interface RefreshableAttributeView
+{
+    /**
+     * Discard any metadata fetched by this view
+     *
+     * <p>The next read accessor call will fetch the metadata again.</p>
+     */
+    void refresh();
+}
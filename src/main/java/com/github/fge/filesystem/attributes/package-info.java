@@ -19,18 +19,17 @@
 /**
  * File attributes and attribute views
  *
- * <h2>Warning: attribute loading</h2>
+ * <h2>Attribute loading</h2>
  *
- * <p>Right now, there is a bug with the way classes in this package implement
- * attribute views; they are supposedly only loaded when you need them ({@link
+ * <p>Standard attribute views are loaded lazily: {@link
  * java.nio.file.Files#getFileAttributeView(java.nio.file.Path, java.lang.Class,
- * java.nio.file.LinkOption...)} does not throw an exception), however this
- * package loads them eagerly. At this moment, if attributes fail to load, an
- * {@link com.github.fge.filesystem.exceptions.UncaughtIOException}
- * (unchecked)
- * is thrown.</p>
- *
- * <p>This will be fixed in a future release.</p>
+ * java.nio.file.LinkOption...)} performs no I/O, and metadata is only fetched
+ * when a read method of the view is first called. Views can be cast to {@link
+ * com.github.fge.filesystem.attributes.RefreshableAttributeView} in order to
+ * discard fetched metadata. Views of other classes are built when requested;
+ * if fetching the metadata fails then, an {@link
+ * com.github.fge.filesystem.exceptions.UncaughtIOException} (unchecked) is
+ * thrown.</p>
  *
  * <h2>What this package does</h2>
  *
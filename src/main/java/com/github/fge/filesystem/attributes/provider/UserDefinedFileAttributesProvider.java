@@ -18,29 +18,60 @@
 
 package com.github.fge.filesystem.attributes.provider;
 
+import com.github.fge.filesystem.attributes.BulkUserDefinedAttributeView;
 import com.github.fge.filesystem.exceptions.ReadOnlyAttributeException;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 
 /**
  * Provider for the {@code "user"} file attribute view
  *
+ * <p>Apart from the methods of {@link UserDefinedFileAttributeView}, which
+ * you need to implement, this class offers bulk access methods for drivers
+ * which store large, or many, user attributes:</p>
+ *
+ * <ul>
+ *     <li>{@link #sizeIfPresent(String)} checks for the existence of an
+ *     attribute and returns its size in one operation;</li>
+ *     <li>{@link #sizes()} prefetches the sizes of all attributes;</li>
+ *     <li>{@link #readAll(ByteBuffer)} reads all attributes into a single
+ *     caller supplied buffer, which may be a direct buffer.</li>
+ * </ul>
+ *
+ * <p>The default implementation of {@link #sizeIfPresent(String)} relies on
+ * {@link #size(String)} throwing a {@link NoSuchFileException} when the
+ * attribute does not exist; the other two rely on {@link #list()} and {@link
+ * #size(String)}. If your backend can do better (for instance, list
+ * attributes along with their sizes in one request), override them.</p>
+ *
+ * <p>Attribute views of drivers using this class implement {@link
+ * BulkUserDefinedAttributeView}, so these methods are also available to
+ * users of the filesystem.</p>
+ *
+ * <p>Note that {@link #read(String, ByteBuffer)} already reads into the
+ * caller's buffer; no intermediate copy is made by this class when using
+ * either it or {@link #readAll(ByteBuffer)}.</p>
+ *
  * @see UserDefinedFileAttributeView
  */
 @SuppressWarnings("DesignForExtension")
 @ParametersAreNonnullByDefault
 public abstract class UserDefinedFileAttributesProvider
     extends FileAttributesProvider
-    implements UserDefinedFileAttributeView
+    implements BulkUserDefinedAttributeView
 {
     protected UserDefinedFileAttributesProvider()
         throws IOException
@@ -52,6 +83,109 @@ public abstract class UserDefinedFileAttributesProvider
      * read
      */
 
+    /**
+     * Return the size of an attribute, or {@code -1} if it does not exist
+     *
+     * <p>The default implementation calls {@link #size(String)} and returns
+     * -1 if it throws a {@link NoSuchFileException}; the attribute list is
+     * not read.</p>
+     *
+     * @param name the name of the attribute
+     * @return the size of the attribute value, or -1 if it is not defined
+     * @throws IOException failed to read the attribute size
+     */
+    @Override
+    public int sizeIfPresent(final String name)
+        throws IOException
+    {
+        Objects.requireNonNull(name);
+        try {
+            return size(name);
+        } catch (NoSuchFileException ignored) {
+            return -1;
+        }
+    }
+
+    /**
+     * Return the sizes of all attributes
+     *
+     * <p>The iteration order of the returned map is the order of {@link
+     * #list()}; this is also the order used by {@link #readAll(ByteBuffer)}.
+     * </p>
+     *
+     * @return an unmodifiable map of attribute names to value sizes
+     * @throws IOException failed to read the attribute list or sizes
+     */
+    @Nonnull
+    @Override
+    public Map<String, Integer> sizes()
+        throws IOException
+    {
+        final Map<String, Integer> map = new LinkedHashMap<>();
+
+        for (final String name: list())
+            map.put(name, size(name));
+
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Read all attributes into a caller supplied buffer
+     *
+     * <p>Values are read one after the other, starting from the buffer's
+     * current position, in the iteration order of {@link #sizes()}. The
+     * returned map associates each attribute name with a read only slice of
+     * {@code dst} containing its value; on return, the position of {@code
+     * dst} is just after the last value read.</p>
+     *
+     * <p>Use {@link #sizes()} beforehand if you need to size the buffer.</p>
+     *
+     * @param dst the destination buffer
+     * @return an unmodifiable map of attribute names to values
+     * @throws BufferOverflowException not enough room in {@code dst}; in this
+     * case, nothing is read and the buffer is left untouched
+     * @throws IOException failed to read attributes
+     */
+    @Nonnull
+    @Override
+    public Map<String, ByteBuffer> readAll(final ByteBuffer dst)
+        throws IOException
+    {
+        Objects.requireNonNull(dst);
+        if (dst.isReadOnly())
+            throw new IllegalArgumentException("read only buffer");
+
+        final Map<String, Integer> sizes = sizes();
+
+        long total = 0L;
+        for (final int size: sizes.values())
+            total += size;
+        if (total > dst.remaining())
+            throw new BufferOverflowException();
+
+        final Map<String, ByteBuffer> map = new LinkedHashMap<>();
+        final int limit = dst.limit();
+
+        int start;
+        ByteBuffer value;
+
+        try {
+            for (final Map.Entry<String, Integer> entry: sizes.entrySet()) {
+                start = dst.position();
+                dst.limit(start + entry.getValue());
+                read(entry.getKey(), dst);
+                value = dst.duplicate();
+                value.limit(dst.position());
+                value.position(start);
+                map.put(entry.getKey(), value.slice().asReadOnlyBuffer());
+            }
+        } finally {
+            dst.limit(limit);
+        }
+
+        return Collections.unmodifiableMap(map);
+    }
+
     /*
      * write
      */
@@ -100,12 +234,12 @@ public abstract class UserDefinedFileAttributesProvider
     public final Object getAttributeByName(final String name)
         throws IOException
     {
-        if (!list().contains(Objects.requireNonNull(name)))
+        final int size = sizeIfPresent(Objects.requireNonNull(name));
+
+        if (size == -1)
             throw new IllegalArgumentException(name + " is undefined");
 
-        final ByteBuffer buf = ByteBuffer.allocate(size(name));
-        read(name, buf);
-        return buf.array();
+        return readValue(name, size);
     }
 
     @Nonnull
@@ -115,14 +249,18 @@ public abstract class UserDefinedFileAttributesProvider
     {
         final Map<String, Object> map = new HashMap<>();
 
-        ByteBuffer buf;
-
-        for (final String name: list()) {
-            buf = ByteBuffer.allocate(size(name));
-            write(name, buf);
-            map.put(name, buf.array());
-        }
+        for (final Map.Entry<String, Integer> entry: sizes().entrySet())
+            map.put(entry.getKey(), readValue(entry.getKey(),
+                entry.getValue()));
 
         return Collections.unmodifiableMap(map);
     }
+
+    private byte[] readValue(final String name, final int size)
+        throws IOException
+    {
+        final byte[] value = new byte[size];
+        final int nr = read(name, ByteBuffer.wrap(value));
+        return nr == size ? value : Arrays.copyOf(value, Math.max(nr, 0));
+    }
 }
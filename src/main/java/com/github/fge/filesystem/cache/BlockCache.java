@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.cache;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+
+/**
+ * A cache of file blocks
+ *
+ * <p>Implementations must be thread safe.</p>
+ *
+ * @see CachingFileSystemDriver
+ */
+public interface BlockCache
+{
+    /**
+     * Look up a block
+     *
+     * @param key the key
+     * @return a read only buffer with the contents of the block, or {@code
+     * null} if the block is not cached
+     */
+    @Nullable
+    ByteBuffer get(BlockKey key);
+
+    /**
+     * Store a block
+     *
+     * <p>The contents of the buffer, from its position to its limit, are
+     * copied; the buffer itself is left untouched.</p>
+     *
+     * @param key the key
+     * @param data the contents of the block
+     */
+    void put(BlockKey key, ByteBuffer data);
+
+    /**
+     * Discard all blocks of a file, whatever their version
+     *
+     * <p>If the path is a directory, blocks of all files under it are
+     * discarded as well.</p>
+     *
+     * @param path the path of the file, as a string
+     */
+    void invalidate(String path);
+
+    /**
+     * Return the statistics of this cache
+     *
+     * @return a snapshot of the statistics
+     */
+    @Nonnull
+    BlockCacheStats getStats();
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.cache;
+
+/**
+ * A snapshot of the statistics of a {@link BlockCache}
+ */
+public final class BlockCacheStats
+{
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long blockCount;
+    private final long byteCount;
+
+    public BlockCacheStats(final long hitCount, final long missCount,
+        final long evictionCount, final long blockCount, final long byteCount)
+    {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.blockCount = blockCount;
+        this.byteCount = byteCount;
+    }
+
+    public long getHitCount()
+    {
+        return hitCount;
+    }
+
+    public long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * Return the ratio of lookups which were hits
+     *
+     * @return the hit ratio, or 0 if there were no lookups
+     */
+    public double getHitRatio()
+    {
+        final long lookups = hitCount + missCount;
+        return lookups == 0L ? 0.0 : (double) hitCount / lookups;
+    }
+
+    public long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    public long getBlockCount()
+    {
+        return blockCount;
+    }
+
+    public long getByteCount()
+    {
+        return byteCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "hits: " + hitCount + ", misses: " + missCount
+            + ", evictions: " + evictionCount + ", blocks: " + blockCount
+            + ", bytes: " + byteCount;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.cache;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Block fetches in progress for a {@link CachingFileSystemDriver}
+ *
+ * <p>When a block is missing from the cache, the first reader asking for it
+ * fetches it; readers asking for the same block in the meantime wait for
+ * this fetch instead of starting their own. If the fetch fails, waiting
+ * readers fail as well.</p>
+ */
+@ParametersAreNonnullByDefault
+final class BlockFetches
+{
+    interface Fetcher
+    {
+        /**
+         * Read a block from the underlying driver and store it in the cache
+         *
+         * @return a read only buffer with the contents of the block
+         * @throws IOException failed to read the block
+         */
+        @Nonnull
+        ByteBuffer fetch()
+            throws IOException;
+    }
+
+    private final ConcurrentMap<BlockKey, Fetch> fetches
+        = new ConcurrentHashMap<>();
+
+    /**
+     * Fetch a block, or wait for a fetch of the same block in progress
+     *
+     * @param key the key of the block
+     * @param fetcher the fetcher to use if no fetch is in progress
+     * @return a read only buffer with the contents of the block
+     * @throws InterruptedIOException interrupted while waiting for a fetch
+     * @throws IOException the fetch failed
+     */
+    @Nonnull
+    ByteBuffer fetch(final BlockKey key, final Fetcher fetcher)
+        throws IOException
+    {
+        final Fetch fetch = new Fetch();
+        final Fetch running = fetches.putIfAbsent(key, fetch);
+
+        if (running != null)
+            return running.await();
+
+        ByteBuffer ret = null;
+        IOException failure = null;
+
+        try {
+            ret = fetcher.fetch();
+            return ret;
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        } finally {
+            fetches.remove(key, fetch);
+            fetch.complete(ret, failure);
+        }
+    }
+
+    private static final class Fetch
+    {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile ByteBuffer block = null;
+        private volatile IOException failure = null;
+
+        private void complete(@Nullable final ByteBuffer block,
+            @Nullable final IOException failure)
+        {
+            this.block = block;
+            this.failure = failure;
+            done.countDown();
+        }
+
+        private ByteBuffer await()
+            throws IOException
+        {
+            try {
+                done.await();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+
+            final ByteBuffer ret = block;
+
+            if (ret == null)
+                throw new IOException("failed to fetch block", failure);
+
+            return ret.duplicate();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.cache;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Bookkeeping shared by {@link BlockCache} implementations
+ *
+ * <p>This keeps track of cached blocks in least recently used order, along
+ * with their weight (usually their size in bytes), and indexes them by path so
+ * that all blocks of a file (or directory) can be discarded at once.</p>
+ *
+ * <p>This class is not thread safe.</p>
+ *
+ * @param <V> the type of values associated with blocks
+ */
+@ParametersAreNonnullByDefault
+final class BlockIndex<V>
+{
+    private final LinkedHashMap<BlockKey, Entry<V>> entries
+        = new LinkedHashMap<>(16, 0.75f, true);
+    private final NavigableMap<String, Set<BlockKey>> keysByPath
+        = new TreeMap<>();
+
+    private long weight = 0L;
+
+    @Nullable
+    V get(final BlockKey key)
+    {
+        final Entry<V> entry = entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Add a block
+     *
+     * <p>Blocks of other versions of the same file are removed.</p>
+     *
+     * @param key the key
+     * @param value the value
+     * @param valueWeight the weight of the value
+     * @return the values removed by this operation
+     */
+    List<V> put(final BlockKey key, final V value, final long valueWeight)
+    {
+        final List<V> removed = new ArrayList<>();
+        Set<BlockKey> keys = keysByPath.get(key.getPath());
+
+        if (keys == null) {
+            keys = new HashSet<>();
+            keysByPath.put(key.getPath(), keys);
+        }
+
+        final Iterator<BlockKey> iterator = keys.iterator();
+        BlockKey other;
+
+        while (iterator.hasNext()) {
+            other = iterator.next();
+            if (other.getLastModified() == key.getLastModified()
+                && other.getSize() == key.getSize())
+                continue;
+            removed.add(removeEntry(other));
+            iterator.remove();
+        }
+
+        keys.add(key);
+
+        final Entry<V> old = entries.put(key, new Entry<>(value, valueWeight));
+
+        if (old != null) {
+            weight -= old.weight;
+            removed.add(old.value);
+        }
+
+        weight += valueWeight;
+        return removed;
+    }
+
+    /**
+     * Remove a block, if it is still associated with the given value
+     *
+     * @param key the key
+     * @param value the value
+     * @return true if the block was removed
+     */
+    boolean remove(final BlockKey key, final V value)
+    {
+        final Entry<V> entry = entries.get(key);
+
+        if (entry == null || entry.value != value)
+            return false;
+
+        removeEntry(key);
+
+        final Set<BlockKey> keys = keysByPath.get(key.getPath());
+        keys.remove(key);
+        if (keys.isEmpty())
+            keysByPath.remove(key.getPath());
+        return true;
+    }
+
+    /**
+     * Remove least recently used blocks until the total weight is at most the
+     * given maximum
+     *
+     * @param maxWeight the maximum weight
+     * @return the evicted values
+     */
+    List<V> evict(final long maxWeight)
+    {
+        if (weight <= maxWeight)
+            return Collections.emptyList();
+
+        final List<V> evicted = new ArrayList<>();
+        final Iterator<Map.Entry<BlockKey, Entry<V>>> iterator
+            = entries.entrySet().iterator();
+        Map.Entry<BlockKey, Entry<V>> entry;
+        Set<BlockKey> keys;
+
+        while (weight > maxWeight && iterator.hasNext()) {
+            entry = iterator.next();
+            iterator.remove();
+            weight -= entry.getValue().weight;
+            evicted.add(entry.getValue().value);
+            keys = keysByPath.get(entry.getKey().getPath());
+            keys.remove(entry.getKey());
+            if (keys.isEmpty())
+                keysByPath.remove(entry.getKey().getPath());
+        }
+
+        return evicted;
+    }
+
+    /**
+     * Remove all blocks of a path and of paths under it
+     *
+     * @param path the path
+     * @return the removed values
+     */
+    List<V> invalidate(final String path)
+    {
+        final List<V> removed = new ArrayList<>();
+        final String prefix = path.endsWith("/") ? path : path + '/';
+
+        removeAll(keysByPath.remove(path), removed);
+
+        final Iterator<Map.Entry<String, Set<BlockKey>>> iterator
+            = keysByPath.tailMap(prefix, true).entrySet().iterator();
+        Map.Entry<String, Set<BlockKey>> entry;
+
+        while (iterator.hasNext()) {
+            entry = iterator.next();
+            if (!entry.getKey().startsWith(prefix))
+                break;
+            removeAll(entry.getValue(), removed);
+            iterator.remove();
+        }
+
+        return removed;
+    }
+
+    /**
+     * Return a snapshot of all blocks, from least to most recently used
+     *
+     * @return a map of keys to values
+     */
+    Map<BlockKey, V> snapshot()
+    {
+        final Map<BlockKey, V> ret = new LinkedHashMap<>(entries.size());
+
+        for (final Map.Entry<BlockKey, Entry<V>> entry: entries.entrySet())
+            ret.put(entry.getKey(), entry.getValue().value);
+
+        return ret;
+    }
+
+    int size()
+    {
+        return entries.size();
+    }
+
+    long weight()
+    {
+        return weight;
+    }
+
+    private V removeEntry(final BlockKey key)
+    {
+        final Entry<V> entry = entries.remove(key);
+        weight -= entry.weight;
+        return entry.value;
+    }
+
+    private void removeAll(@Nullable final Set<BlockKey> keys,
+        final List<V> removed)
+    {
+        if (keys == null)
+            return;
+        for (final BlockKey key: keys)
+            removed.add(removeEntry(key));
+    }
+
+    private static final class Entry<V>
+    {
+        private final V value;
+        private final long weight;
+
+        private Entry(final V value, final long weight)
+        {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.cache;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Objects;
+
+/**
+ * The key of a block in a {@link BlockCache}
+ *
+ * <p>A block is identified by the path of its file, the version of this file
+ * (its last modification time and size) and its index in the file. A file
+ * which is modified therefore no longer matches blocks cached for its previous
+ * version, even if these were not {@link BlockCache#invalidate(String)
+ * invalidated}.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class BlockKey
+{
+    private final String path;
+    private final long lastModified;
+    private final long size;
+    private final long index;
+
+    /**
+     * Constructor
+     *
+     * @param path the path of the file, as a string
+     * @param lastModified the last modification time of the file, in
+     * milliseconds since the epoch
+     * @param size the size of the file
+     * @param index the index of the block in the file
+     */
+    public BlockKey(final String path, final long lastModified,
+        final long size, final long index)
+    {
+        this.path = Objects.requireNonNull(path);
+        this.lastModified = lastModified;
+        this.size = size;
+        this.index = index;
+    }
+
+    public String getPath()
+    {
+        return path;
+    }
+
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    public long getIndex()
+    {
+        return index;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(path, lastModified, size, index);
+    }
+
+    @Override
+    public boolean equals(final Object obj)
+    {
+        if (obj == null)
+            return false;
+        if (this == obj)
+            return true;
+        if (getClass() != obj.getClass())
+            return false;
+        final BlockKey other = (BlockKey) obj;
+        return path.equals(other.path) && lastModified == other.lastModified
+            && size == other.size && index == other.index;
+    }
+
+    @Override
+    public String toString()
+    {
+        return path + '@' + lastModified + '/' + size + '#' + index;
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.cache;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import com.github.fge.filesystem.driver.ForwardingFileSystemDriver;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A {@link FileSystemDriver} decorator serving reads from a {@link BlockCache}
+ *
+ * <p>Input streams and read only channels read the contents of files block by
+ * block, through the cache; all streams and channels of a filesystem share
+ * the same cache, and a reader missing a block which another reader is
+ * already fetching waits for this fetch, so that concurrent readers of the
+ * same file only fetch each block once.</p>
+ *
+ * <p>Blocks are keyed by file version as well as path, so that a file modified
+ * behind the back of this driver is never served stale content; in addition,
+ * blocks of a file are invalidated when it is opened for writing, written,
+ * deleted, copied or moved over, or {@link #invalidate(Path) invalidated}.</p>
+ *
+ * <p>Drivers can be wrapped when they are created by the repository, for
+ * instance:</p>
+ *
+ * <pre>
+ *     return new CachingFileSystemDriver(new MyDriver(...), cache, 65536);
+ * </pre>
+ */
+@ParametersAreNonnullByDefault
+public final class CachingFileSystemDriver
+    extends ForwardingFileSystemDriver
+{
+    private final BlockCache cache;
+    private final BlockFetches fetches = new BlockFetches();
+    private final int blockSize;
+
+    /**
+     * Constructor
+     *
+     * @param delegate the driver to wrap
+     * @param cache the block cache
+     * @param blockSize the size of a block
+     * @throws IllegalArgumentException block size is not strictly positive
+     */
+    public CachingFileSystemDriver(final FileSystemDriver delegate,
+        final BlockCache cache, final int blockSize)
+    {
+        super(delegate);
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("block size must be strictly"
+                + " positive");
+        this.cache = Objects.requireNonNull(cache);
+        this.blockSize = blockSize;
+    }
+
+    @Nonnull
+    public final BlockCache getCache()
+    {
+        return cache;
+    }
+
+    @Override
+    @Nonnull
+    public InputStream newInputStream(final Path path,
+        final Set<OpenOption> options)
+        throws IOException
+    {
+        return new CachingInputStream(new CachingSeekableByteChannel(delegate,
+            path, options, cache, fetches, blockSize));
+    }
+
+    @Nonnull
+    @Override
+    public OutputStream newOutputStream(final Path path,
+        final Set<OpenOption> options)
+        throws IOException
+    {
+        invalidate(path);
+        return new InvalidatingOutputStream(
+            delegate.newOutputStream(path, options), path);
+    }
+
+    @Nonnull
+    @Override
+    public SeekableByteChannel newByteChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        if (isWrite(options)) {
+            invalidate(path);
+            return delegate.newByteChannel(path, options, attrs);
+        }
+
+        return new CachingSeekableByteChannel(delegate, path, options, cache,
+            fetches, blockSize);
+    }
+
+    @Nonnull
+    @Override
+    public AsynchronousFileChannel newAsynchronousFileChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        @Nullable final ExecutorService executor,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        if (isWrite(options))
+            invalidate(path);
+        return delegate.newAsynchronousFileChannel(path, options, executor,
+            attrs);
+    }
+
+    @Nonnull
+    @Override
+    public FileChannel newFileChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        if (isWrite(options))
+            invalidate(path);
+        return delegate.newFileChannel(path, options, attrs);
+    }
+
+    @Override
+    public void delete(final Path path)
+        throws IOException
+    {
+        try {
+            delegate.delete(path);
+        } finally {
+            invalidate(path);
+        }
+    }
+
+    @Override
+    public void copy(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        try {
+            delegate.copy(source, target, options);
+        } finally {
+            invalidate(target);
+        }
+    }
+
+    @Override
+    public void move(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        try {
+            delegate.move(source, target, options);
+        } finally {
+            invalidate(source);
+            invalidate(target);
+        }
+    }
+
+    @Override
+    public boolean deleteTree(final Path path)
+        throws IOException
+    {
+        try {
+            return delegate.deleteTree(path);
+        } finally {
+            invalidate(path);
+        }
+    }
+
+    @Override
+    public boolean copyTree(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        try {
+            return delegate.copyTree(source, target, options);
+        } finally {
+            invalidate(target);
+        }
+    }
+
+    @Override
+    public void batchDelete(final Collection<Path> paths)
+        throws IOException
+    {
+        try {
+            delegate.batchDelete(paths);
+        } finally {
+            for (final Path path: paths)
+                invalidate(path);
+        }
+    }
+
+    @Override
+    public boolean rename(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        try {
+            return delegate.rename(source, target, options);
+        } finally {
+            invalidate(source);
+            invalidate(target);
+        }
+    }
+
+    @Override
+    public void invalidate(final Path path)
+    {
+        cache.invalidate(pathKey(path));
+        delegate.invalidate(path);
+    }
+
+    static String pathKey(final Path path)
+    {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    private static boolean isWrite(final Set<? extends OpenOption> options)
+    {
+        return options.contains(StandardOpenOption.WRITE)
+            || options.contains(StandardOpenOption.APPEND);
+    }
+
+    /*
+     * Unlike the stream returned by Channels.newInputStream(), this does not
+     * hold a monitor while reading, which may call the delegate or wait for
+     * another reader's fetch; skipping only moves the channel position.
+     */
+    private static final class CachingInputStream
+        extends InputStream
+    {
+        private final SeekableByteChannel channel;
+        private final byte[] single = new byte[1];
+
+        private CachingInputStream(final SeekableByteChannel channel)
+        {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+            throws IOException
+        {
+            if (off < 0 || len < 0 || len > b.length - off)
+                throw new IndexOutOfBoundsException();
+            if (len == 0)
+                return 0;
+            return channel.read(ByteBuffer.wrap(b, off, len));
+        }
+
+        @Override
+        public long skip(final long n)
+            throws IOException
+        {
+            if (n <= 0L)
+                return 0L;
+
+            final long position = channel.position();
+            final long skipped
+                = Math.max(0L, Math.min(n, channel.size() - position));
+
+            channel.position(position + skipped);
+            return skipped;
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            channel.close();
+        }
+    }
+
+    private final class InvalidatingOutputStream
+        extends FilterOutputStream
+    {
+        private final Path path;
+
+        private InvalidatingOutputStream(final OutputStream out,
+            final Path path)
+        {
+            super(out);
+            this.path = path;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+            throws IOException
+        {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            try {
+                out.close();
+            } finally {
+                invalidate(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.cache;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+
+/**
+ * A read only {@link SeekableByteChannel} served from a {@link BlockCache}
+ *
+ * <p>The version of the file (its last modification time and size) is read
+ * when the channel is created. Reads are then served block by block from the
+ * cache; on a miss, the block is read from a channel opened (lazily) from the
+ * underlying driver, and stored in the cache, unless another reader is
+ * already fetching it (see {@link BlockFetches}). If the file turns out to be
+ * shorter than its version says, reading fails and its blocks are discarded.
+ * </p>
+ */
+@ParametersAreNonnullByDefault
+final class CachingSeekableByteChannel
+    implements SeekableByteChannel
+{
+    private final FileSystemDriver driver;
+    private final Path path;
+    private final Set<? extends OpenOption> options;
+    private final BlockCache cache;
+    private final BlockFetches fetches;
+    private final int blockSize;
+
+    private final String pathKey;
+    private final long lastModified;
+    private final long size;
+
+    private SeekableByteChannel channel = null;
+    private ByteBuffer block = null;
+    private long blockIndex = -1L;
+    private long position = 0L;
+    private boolean open = true;
+
+    CachingSeekableByteChannel(final FileSystemDriver driver, final Path path,
+        final Set<? extends OpenOption> options, final BlockCache cache,
+        final BlockFetches fetches, final int blockSize)
+        throws IOException
+    {
+        this.driver = driver;
+        this.path = path;
+        this.options = options;
+        this.cache = cache;
+        this.fetches = fetches;
+        this.blockSize = blockSize;
+
+        final BasicFileAttributes attributes
+            = driver.readAttributes(path, BasicFileAttributes.class);
+
+        pathKey = CachingFileSystemDriver.pathKey(path);
+        lastModified = attributes.lastModifiedTime().toMillis();
+        size = attributes.size();
+    }
+
+    @Override
+    public int read(final ByteBuffer dst)
+        throws IOException
+    {
+        checkOpen();
+
+        if (position >= size)
+            return -1;
+
+        final long index = position / blockSize;
+
+        if (index != blockIndex) {
+            block = getBlock(index);
+            blockIndex = index;
+        }
+
+        final int offset = (int) (position % blockSize);
+
+        if (offset >= block.limit())
+            return -1;
+
+        final ByteBuffer src = block.duplicate();
+        final int count = Math.min(dst.remaining(), src.limit() - offset);
+
+        src.position(offset).limit(offset + count);
+        dst.put(src);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int write(final ByteBuffer src)
+        throws IOException
+    {
+        checkOpen();
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position()
+        throws IOException
+    {
+        checkOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(final long newPosition)
+        throws IOException
+    {
+        if (newPosition < 0L)
+            throw new IllegalArgumentException("negative position");
+        checkOpen();
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size()
+        throws IOException
+    {
+        checkOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(final long size)
+        throws IOException
+    {
+        checkOpen();
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return open;
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if (!open)
+            return;
+        open = false;
+        block = null;
+        if (channel != null)
+            channel.close();
+    }
+
+    private ByteBuffer getBlock(final long index)
+        throws IOException
+    {
+        final BlockKey key = new BlockKey(pathKey, lastModified, size, index);
+        final ByteBuffer cached = cache.get(key);
+
+        if (cached != null)
+            return cached;
+
+        return fetches.fetch(key, new BlockFetches.Fetcher()
+        {
+            @Override
+            public ByteBuffer fetch()
+                throws IOException
+            {
+                return readBlock(key);
+            }
+        });
+    }
+
+    private ByteBuffer readBlock(final BlockKey key)
+        throws IOException
+    {
+        final long start = key.getIndex() * blockSize;
+        final ByteBuffer buf
+            = ByteBuffer.allocate((int) Math.min(blockSize, size - start));
+
+        if (channel == null)
+            channel = driver.newByteChannel(path, options);
+
+        channel.position(start);
+        while (buf.hasRemaining())
+            if (channel.read(buf) == -1)
+                break;
+        buf.flip();
+
+        /*
+         * The file shrank since its version was read: never cache a short
+         * block under that version, or later readers would see truncated
+         * contents
+         */
+        if (buf.limit() != buf.capacity()) {
+            cache.invalidate(pathKey);
+            throw new IOException("file " + path + " changed while reading");
+        }
+
+        cache.put(key, buf);
+        return buf.asReadOnlyBuffer();
+    }
+
+    private void checkOpen()
+        throws ClosedChannelException
+    {
+        if (!open)
+            throw new ClosedChannelException();
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.cache;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link BlockCache} storing blocks in a local directory
+ *
+ * <p>Each block is stored in its own file; the list of cached blocks, with
+ * their keys, is kept in an index file written by {@link #sync()} and {@link
+ * #close()}, and read back when the cache is {@link #open(Path, long) opened}.
+ * Blocks therefore survive a restart of the process; since keys include the
+ * version of files (their last modification time and size), blocks of files
+ * modified in the meantime are never served, and are discarded as soon as a
+ * block of the new version is stored.</p>
+ *
+ * <p>On opening, entries of the index whose block file is missing or has the
+ * wrong size are dropped, and block files which are not in the index (for
+ * instance, because the process died before writing the index) are deleted.
+ * The time taken to do so is available from {@link
+ * #getWarmStartTime(TimeUnit)}.</p>
+ *
+ * <p>Blocks are evicted in least recently used order once their total size
+ * exceeds the configured maximum. I/O errors when storing a block are ignored:
+ * the block is simply not cached; likewise, a block file whose size no longer
+ * matches the index when it is read counts as a miss, and is dropped.</p>
+ *
+ * <p>The directory must not be shared with another instance.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class DiskBlockCache
+    implements BlockCache, Closeable
+{
+    private static final String INDEX_FILE = "index";
+    private static final String BLOCK_SUFFIX = ".blk";
+    private static final int MAGIC = 0x46534243;
+    private static final int FORMAT = 1;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    private final Object lock = new Object();
+    private final BlockIndex<StoredBlock> index = new BlockIndex<>();
+
+    private long nextId = 0L;
+    private long hitCount = 0L;
+    private long missCount = 0L;
+    private long evictionCount = 0L;
+    private long warmStartNanos = 0L;
+    private int loadedBlocks = 0;
+
+    /**
+     * Open a disk cache
+     *
+     * <p>The directory is created if it does not exist.</p>
+     *
+     * @param directory the directory
+     * @param maxBytes the maximum total size of cached blocks
+     * @return a new cache
+     * @throws IllegalArgumentException maximum size is not strictly positive
+     * @throws IOException cannot create or list the directory
+     */
+    @Nonnull
+    public static DiskBlockCache open(final Path directory,
+        final long maxBytes)
+        throws IOException
+    {
+        final DiskBlockCache cache = new DiskBlockCache(directory, maxBytes);
+        cache.load();
+        return cache;
+    }
+
+    private DiskBlockCache(final Path directory, final long maxBytes)
+    {
+        if (maxBytes <= 0L)
+            throw new IllegalArgumentException("maximum size must be strictly"
+                + " positive");
+        this.directory = Objects.requireNonNull(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    @Nullable
+    @Override
+    public ByteBuffer get(final BlockKey key)
+    {
+        Objects.requireNonNull(key);
+
+        final StoredBlock block;
+
+        synchronized (lock) {
+            block = index.get(key);
+        }
+
+        byte[] data = null;
+
+        if (block != null)
+            try {
+                data = Files.readAllBytes(blockFile(block.id));
+            } catch (IOException ignored) {
+                // evicted in the meantime, or unreadable
+            }
+
+        // A block file which has been truncated or tampered with is no better
+        // than a missing one: drop it rather than serve a short block
+        final boolean corrupt = data != null && data.length != block.length;
+        boolean dropped = false;
+
+        synchronized (lock) {
+            if (data == null || corrupt) {
+                missCount++;
+                if (corrupt)
+                    dropped = index.remove(key, block);
+            } else
+                hitCount++;
+        }
+
+        if (dropped)
+            deleteBlocks(Collections.singletonList(block));
+        if (corrupt)
+            return null;
+
+        return data == null ? null : ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    @Override
+    public void put(final BlockKey key, final ByteBuffer data)
+    {
+        Objects.requireNonNull(key);
+
+        final int size = data.remaining();
+
+        if (size > maxBytes)
+            return;
+
+        final long id;
+
+        synchronized (lock) {
+            id = nextId++;
+        }
+
+        final Path file = blockFile(id);
+
+        try (
+            final FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ) {
+            final ByteBuffer src = data.duplicate();
+            while (src.hasRemaining())
+                channel.write(src);
+        } catch (IOException ignored) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored2) {
+                // will be cleaned up on next load
+            }
+            return;
+        }
+
+        final List<StoredBlock> removed;
+        final List<StoredBlock> evicted;
+
+        synchronized (lock) {
+            removed = index.put(key, new StoredBlock(id, size), size);
+            evicted = index.evict(maxBytes);
+            evictionCount += evicted.size();
+        }
+
+        deleteBlocks(removed);
+        deleteBlocks(evicted);
+    }
+
+    @Override
+    public void invalidate(final String path)
+    {
+        Objects.requireNonNull(path);
+
+        final List<StoredBlock> removed;
+
+        synchronized (lock) {
+            removed = index.invalidate(path);
+        }
+
+        deleteBlocks(removed);
+    }
+
+    @Nonnull
+    @Override
+    public BlockCacheStats getStats()
+    {
+        synchronized (lock) {
+            return new BlockCacheStats(hitCount, missCount, evictionCount,
+                index.size(), index.weight());
+        }
+    }
+
+    /**
+     * Return the time it took to load the index when opening this cache
+     *
+     * @param unit the time unit
+     * @return the warm start time
+     */
+    public long getWarmStartTime(final TimeUnit unit)
+    {
+        return unit.convert(warmStartNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Return the number of blocks recovered from the index when opening this
+     * cache
+     *
+     * @return the number of blocks
+     */
+    public int getLoadedBlockCount()
+    {
+        return loadedBlocks;
+    }
+
+    /**
+     * Write the index to disk
+     *
+     * @throws IOException failure to write the index
+     */
+    public void sync()
+        throws IOException
+    {
+        final Path tmp = directory.resolve(INDEX_FILE + ".tmp");
+        final Map<BlockKey, StoredBlock> entries;
+        final long id;
+
+        synchronized (lock) {
+            entries = index.snapshot();
+            id = nextId;
+        }
+
+        try (
+            final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp)));
+        ) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(id);
+            out.writeInt(entries.size());
+            for (final Map.Entry<BlockKey, StoredBlock> entry:
+                entries.entrySet()) {
+                final BlockKey key = entry.getKey();
+                out.writeUTF(key.getPath());
+                out.writeLong(key.getLastModified());
+                out.writeLong(key.getSize());
+                out.writeLong(key.getIndex());
+                out.writeLong(entry.getValue().id);
+                out.writeInt(entry.getValue().length);
+            }
+        }
+
+        final Path target = directory.resolve(INDEX_FILE);
+
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ignored) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Close this cache
+     *
+     * <p>This writes the index to disk; cached blocks are kept.</p>
+     *
+     * @throws IOException failure to write the index
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        sync();
+    }
+
+    private void load()
+        throws IOException
+    {
+        final long start = System.nanoTime();
+
+        Files.createDirectories(directory);
+
+        Map<BlockKey, StoredBlock> entries;
+
+        try {
+            entries = readIndex();
+        } catch (IOException ignored) {
+            // corrupt index: start from scratch
+            entries = Collections.emptyMap();
+        }
+
+        final Set<Long> known = new HashSet<>();
+        StoredBlock block;
+
+        synchronized (lock) {
+            for (final Map.Entry<BlockKey, StoredBlock> entry:
+                entries.entrySet()) {
+                block = entry.getValue();
+                if (!isValid(block))
+                    continue;
+                index.put(entry.getKey(), block, block.length);
+                known.add(block.id);
+            }
+            for (final StoredBlock evicted: index.evict(maxBytes))
+                known.remove(evicted.id);
+            loadedBlocks = index.size();
+        }
+
+        try (
+            final DirectoryStream<Path> stream
+                = Files.newDirectoryStream(directory, "*" + BLOCK_SUFFIX);
+        ) {
+            for (final Path file: stream)
+                if (!known.contains(blockId(file)))
+                    Files.deleteIfExists(file);
+        }
+
+        warmStartNanos = System.nanoTime() - start;
+    }
+
+    private Map<BlockKey, StoredBlock> readIndex()
+        throws IOException
+    {
+        final Path file = directory.resolve(INDEX_FILE);
+
+        if (!Files.exists(file))
+            return Collections.emptyMap();
+
+        try (
+            final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)));
+        ) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT)
+                throw new IOException("unrecognized index file");
+
+            final long id = in.readLong();
+            final int count = in.readInt();
+            final Map<BlockKey, StoredBlock> ret = new LinkedHashMap<>();
+            BlockKey key;
+
+            for (int i = 0; i < count; i++) {
+                key = new BlockKey(in.readUTF(), in.readLong(), in.readLong(),
+                    in.readLong());
+                ret.put(key, new StoredBlock(in.readLong(), in.readInt()));
+            }
+
+            synchronized (lock) {
+                nextId = id;
+            }
+            return ret;
+        }
+    }
+
+    private boolean isValid(final StoredBlock block)
+    {
+        try {
+            return Files.size(blockFile(block.id)) == block.length;
+        } catch (IOException ignored) {
+            return false;
+        }
+    }
+
+    private Path blockFile(final long id)
+    {
+        return directory.resolve(Long.toHexString(id) + BLOCK_SUFFIX);
+    }
+
+    private static long blockId(final Path file)
+    {
+        final String name = file.getFileName().toString();
+
+        try {
+            return Long.parseLong(name.substring(0,
+                name.length() - BLOCK_SUFFIX.length()), 16);
+        } catch (NumberFormatException ignored) {
+            return -1L;
+        }
+    }
+
+    private void deleteBlocks(final List<StoredBlock> blocks)
+    {
+        for (final StoredBlock block: blocks)
+            try {
+                Files.deleteIfExists(blockFile(block.id));
+            } catch (IOException ignored) {
+                // will be cleaned up on next load
+            }
+    }
+
+    private static final class StoredBlock
+    {
+        private final long id;
+        private final int length;
+
+        private StoredBlock(final long id, final int length)
+        {
+            this.id = id;
+            this.length = length;
+        }
+    }
+}
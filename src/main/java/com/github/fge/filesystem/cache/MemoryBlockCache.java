@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.cache;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * A size bounded, in memory {@link BlockCache}
+ *
+ * <p>Blocks are evicted in least recently used order once the total size of
+ * cached blocks exceeds the configured maximum. Blocks can be stored either on
+ * the heap or in direct (off heap) buffers; the latter keeps large caches out
+ * of the way of the garbage collector.</p>
+ *
+ * <p>Storing a block of a new version of a file discards all blocks of its
+ * previous versions.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class MemoryBlockCache
+    implements BlockCache
+{
+    private final long maxBytes;
+    private final boolean offHeap;
+
+    private final Object lock = new Object();
+    private final BlockIndex<ByteBuffer> index = new BlockIndex<>();
+
+    private long hitCount = 0L;
+    private long missCount = 0L;
+    private long evictionCount = 0L;
+
+    /**
+     * Constructor
+     *
+     * @param maxBytes the maximum total size of cached blocks
+     * @param offHeap whether to store blocks in direct buffers
+     * @throws IllegalArgumentException maximum size is not strictly positive
+     */
+    public MemoryBlockCache(final long maxBytes, final boolean offHeap)
+    {
+        if (maxBytes <= 0L)
+            throw new IllegalArgumentException("maximum size must be strictly"
+                + " positive");
+        this.maxBytes = maxBytes;
+        this.offHeap = offHeap;
+    }
+
+    @Nullable
+    @Override
+    public ByteBuffer get(final BlockKey key)
+    {
+        Objects.requireNonNull(key);
+
+        final ByteBuffer buf;
+
+        synchronized (lock) {
+            buf = index.get(key);
+            if (buf == null) {
+                missCount++;
+                return null;
+            }
+            hitCount++;
+        }
+
+        return buf.asReadOnlyBuffer();
+    }
+
+    @Override
+    public void put(final BlockKey key, final ByteBuffer data)
+    {
+        Objects.requireNonNull(key);
+
+        final int size = data.remaining();
+
+        if (size > maxBytes)
+            return;
+
+        final ByteBuffer copy = offHeap ? ByteBuffer.allocateDirect(size)
+            : ByteBuffer.allocate(size);
+
+        copy.put(data.duplicate()).flip();
+
+        synchronized (lock) {
+            index.put(key, copy, size);
+            evictionCount += index.evict(maxBytes).size();
+        }
+    }
+
+    @Override
+    public void invalidate(final String path)
+    {
+        Objects.requireNonNull(path);
+
+        synchronized (lock) {
+            index.invalidate(path);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public BlockCacheStats getStats()
+    {
+        synchronized (lock) {
+            return new BlockCacheStats(hitCount, missCount, evictionCount,
+                index.size(), index.weight());
+        }
+    }
+}
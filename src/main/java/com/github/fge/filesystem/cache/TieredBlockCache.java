@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.cache;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link BlockCache} made of two tiers
+ *
+ * <p>Lookups try the first tier (typically a {@link MemoryBlockCache}), then
+ * the second (typically a {@link DiskBlockCache}); blocks found in the second
+ * tier are copied into the first. New blocks are stored in both tiers.</p>
+ *
+ * <p>Hits and misses are those of the combined cache; evictions, block and
+ * byte counts are the sums of those of both tiers. Statistics of each tier
+ * remain available from the tiers themselves.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class TieredBlockCache
+    implements BlockCache
+{
+    private final BlockCache first;
+    private final BlockCache second;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public TieredBlockCache(final BlockCache first, final BlockCache second)
+    {
+        this.first = Objects.requireNonNull(first);
+        this.second = Objects.requireNonNull(second);
+    }
+
+    @Nullable
+    @Override
+    public ByteBuffer get(final BlockKey key)
+    {
+        ByteBuffer buf = first.get(key);
+
+        if (buf == null) {
+            buf = second.get(key);
+            if (buf != null)
+                first.put(key, buf);
+        }
+
+        (buf == null ? missCount : hitCount).incrementAndGet();
+        return buf;
+    }
+
+    @Override
+    public void put(final BlockKey key, final ByteBuffer data)
+    {
+        first.put(key, data);
+        second.put(key, data);
+    }
+
+    @Override
+    public void invalidate(final String path)
+    {
+        first.invalidate(path);
+        second.invalidate(path);
+    }
+
+    @Nonnull
+    @Override
+    public BlockCacheStats getStats()
+    {
+        final BlockCacheStats stats1 = first.getStats();
+        final BlockCacheStats stats2 = second.getStats();
+
+        return new BlockCacheStats(hitCount.get(), missCount.get(),
+            stats1.getEvictionCount() + stats2.getEvictionCount(),
+            stats1.getBlockCount() + stats2.getBlockCount(),
+            stats1.getByteCount() + stats2.getByteCount());
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+/**
+ * Content caching
+ *
+ * <p>{@link com.github.fge.filesystem.cache.CachingFileSystemDriver} wraps a
+ * driver so that reads are served from a {@link
+ * com.github.fge.filesystem.cache.BlockCache} shared by all streams and
+ * channels of a filesystem.</p>
+ *
+ * <p>Two implementations are provided: {@link
+ * com.github.fge.filesystem.cache.MemoryBlockCache} keeps blocks in memory,
+ * and {@link com.github.fge.filesystem.cache.DiskBlockCache} keeps them in a
+ * local directory so that they survive a restart. They can be combined using
+ * a {@link com.github.fge.filesystem.cache.TieredBlockCache}.</p>
+ */
+package com.github.fge.filesystem.cache;
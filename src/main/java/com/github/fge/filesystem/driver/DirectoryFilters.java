@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.driver;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+
+/**
+ * Directory stream filters
+ *
+ * @see FileSystemDriver#newDirectoryStream(Path, DirectoryStream.Filter)
+ */
+public final class DirectoryFilters
+{
+    /**
+     * A filter accepting all entries
+     */
+    public static final DirectoryStream.Filter<Path> ACCEPT_ALL
+        = new DirectoryStream.Filter<Path>()
+    {
+        @Override
+        public boolean accept(final Path entry)
+        {
+            return true;
+        }
+    };
+
+    private DirectoryFilters()
+    {
+    }
+}
@@ -18,6 +18,8 @@
 
 package com.github.fge.filesystem.driver;
 
+import com.github.fge.filesystem.attributes.RefreshableAttributeView;
+import com.github.fge.filesystem.exceptions.BatchOperationException;
 import com.github.fge.filesystem.filestore.FileStoreBase;
 import com.github.fge.filesystem.fs.GenericFileSystem;
 import com.github.fge.filesystem.provider.FileSystemProviderBase;
@@ -30,6 +32,8 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.AccessMode;
 import java.nio.file.CopyOption;
@@ -38,16 +42,20 @@ import java.nio.file.FileStore;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
+import java.nio.file.NotLinkException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.FileAttributeView;
 import java.nio.file.attribute.UserPrincipalLookupService;
 import java.nio.file.spi.FileSystemProvider;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 /**
  * The core filesystem class
@@ -152,6 +160,51 @@ public interface FileSystemDriver
         Set<? extends OpenOption> options, FileAttribute<?>... attrs)
         throws IOException;
 
+    /**
+     * Obtain a new {@link AsynchronousFileChannel} from a path for this
+     * filesystem
+     *
+     * @param path the path
+     * @param options the set of open options
+     * @param executor the executor to run I/O operations on, or {@code null}
+     * to use a default executor
+     * @param attrs the attributes to create the file with (if it does not
+     * exist)
+     * @return a channel
+     * @throws IOException filesystem level error, or a plain I/O error
+     *
+     * @see FileSystemProvider#newAsynchronousFileChannel(Path, Set,
+     * ExecutorService, FileAttribute[])
+     */
+    @Nonnull
+    AsynchronousFileChannel newAsynchronousFileChannel(Path path,
+        Set<? extends OpenOption> options, @Nullable ExecutorService executor,
+        FileAttribute<?>... attrs)
+        throws IOException;
+
+    /**
+     * Obtain a new {@link FileChannel} from a path for this filesystem
+     *
+     * <p>This is an optional capability, meant for drivers which have (some
+     * of) their content available as local files; it allows for zero copy
+     * reads and memory mapping.</p>
+     *
+     * @param path the path
+     * @param options the set of open options
+     * @param attrs the attributes to create the file with (if it does not
+     * exist)
+     * @return a channel
+     * @throws UnsupportedOperationException no file channel can be provided
+     * for this path with these options
+     * @throws IOException filesystem level error, or a plain I/O error
+     *
+     * @see FileSystemProvider#newFileChannel(Path, Set, FileAttribute[])
+     */
+    @Nonnull
+    FileChannel newFileChannel(Path path, Set<? extends OpenOption> options,
+        FileAttribute<?>... attrs)
+        throws IOException;
+
     /**
      * Create a new directory stream from a path for this filesystem
      *
@@ -218,6 +271,111 @@ public interface FileSystemDriver
     void move(Path source, Path target, Set<CopyOption> options)
         throws IOException;
 
+    /**
+     * Rename a file or directory on this filesystem, if this can be done as a
+     * constant time, metadata only operation
+     *
+     * <p>Backends which can rename paths without touching their contents (for
+     * instance, by relinking a node or updating an index) should implement
+     * this method; {@link FileSystemProviderBase} prefers it over {@link
+     * #move(Path, Path, Set)}, which may copy the contents.</p>
+     *
+     * <p>A successful rename MUST be atomic; {@link
+     * StandardCopyOption#ATOMIC_MOVE} is only honoured by the provider if this
+     * method returns true. {@link StandardCopyOption#REPLACE_EXISTING} has the
+     * same meaning as for {@link #move(Path, Path, Set)}.</p>
+     *
+     * @param source the source path
+     * @param target the target path
+     * @param options the copy options
+     * @return true if the path was renamed, false if it could not be renamed
+     * this way (nothing has been done in this case)
+     * @throws IOException filesystem level error, or a plain I/O error
+     */
+    boolean rename(Path source, Path target, Set<CopyOption> options)
+        throws IOException;
+
+    /**
+     * Delete a path and, if it is a directory, all of its contents, if this
+     * can be done in bulk
+     *
+     * <p>Backends which can delete a whole subtree with a single request, or
+     * in batches, should implement this method; otherwise, {@link
+     * FileSystemProviderBase#deleteTree(Path)} deletes entries one by one.</p>
+     *
+     * <p>The deletion does not need to be atomic; if it fails, part of the
+     * subtree may have been deleted. Symbolic links are deleted, not
+     * followed.</p>
+     *
+     * @param path the root of the subtree to delete
+     * @return true if the subtree was deleted, false if this driver cannot
+     * delete subtrees in bulk (nothing has been done in this case)
+     * @throws IOException filesystem level error, or a plain I/O error
+     */
+    boolean deleteTree(Path path)
+        throws IOException;
+
+    /**
+     * Copy a path and, if it is a directory, all of its contents to another
+     * path of this filesystem, if this can be done in bulk
+     *
+     * <p>Backends which can copy a whole subtree on the server side should
+     * implement this method; otherwise, {@link
+     * FileSystemProviderBase#copyTree(Path, Path, CopyOption...)} copies
+     * entries one by one.</p>
+     *
+     * <p>Copy options apply to every entry of the subtree, except for {@link
+     * StandardCopyOption#REPLACE_EXISTING} which only applies to the target
+     * path itself. The target is never below the source.</p>
+     *
+     * @param source the root of the subtree to copy
+     * @param target the target path
+     * @param options the copy options
+     * @return true if the subtree was copied, false if this driver cannot
+     * copy subtrees in bulk (nothing has been done in this case)
+     * @throws IOException filesystem level error, or a plain I/O error
+     */
+    boolean copyTree(Path source, Path target, Set<CopyOption> options)
+        throws IOException;
+
+    /**
+     * Create several directories on this filesystem
+     *
+     * <p>Directories are created in the iteration order of the collection,
+     * and failures do not stop the batch: a directory may be created in a
+     * parent created earlier in the same batch. Backends which can create
+     * several entries with a single request should implement this method.
+     * </p>
+     *
+     * @param dirs the directories to create
+     * @param attrs the attributes with which the directories should be
+     * created
+     * @throws BatchOperationException some directories could not be created
+     * @throws IOException filesystem level error, or a plain I/O error
+     *
+     * @see #createDirectory(Path, FileAttribute[])
+     */
+    void batchCreateDirectory(Collection<Path> dirs, FileAttribute<?>... attrs)
+        throws IOException;
+
+    /**
+     * Delete several files, or empty directories, on this filesystem
+     *
+     * <p>Paths are deleted in the iteration order of the collection, and
+     * failures do not stop the batch: a directory may be emptied earlier in
+     * the same batch. Backends which can delete several entries with a
+     * single request (object stores typically accept up to thousands of keys
+     * per request) should implement this method.</p>
+     *
+     * @param paths the victims
+     * @throws BatchOperationException some paths could not be deleted
+     * @throws IOException filesystem level error, or a plain I/O error
+     *
+     * @see #delete(Path)
+     */
+    void batchDelete(Collection<Path> paths)
+        throws IOException;
+
     /**
      * Tell whether two paths actually refer to the same resource on this
      * filesystem
@@ -241,6 +399,36 @@ public interface FileSystemDriver
     boolean isSameFile(Path path, Path path2)
         throws IOException;
 
+    /**
+     * Read the target of a symbolic link on this filesystem
+     *
+     * @param link the link
+     * @return the target of the link
+     * @throws NotLinkException the path is not a symbolic link
+     * @throws IOException filesystem level error, or a plain I/O error
+     *
+     * @see FileSystemProvider#readSymbolicLink(Path)
+     */
+    @Nonnull
+    Path readSymbolicLink(Path link)
+        throws IOException;
+
+    /**
+     * Return the real path of a path on this filesystem
+     *
+     * @param path the path
+     * @param options the link options
+     * @return the absolute path, with all symbolic links resolved (unless
+     * {@link LinkOption#NOFOLLOW_LINKS} is specified) and redundant name
+     * elements removed
+     * @throws IOException filesystem level error, or a plain I/O error
+     *
+     * @see Path#toRealPath(LinkOption...)
+     */
+    @Nonnull
+    Path toRealPath(Path path, LinkOption... options)
+        throws IOException;
+
     /**
      * Tell whether a path is to be considered hidden by this filesystem
      *
@@ -274,6 +462,9 @@ public interface FileSystemDriver
     /**
      * Read an attribute view for a given path on this filesystem
      *
+     * <p>This method should not perform any I/O; the returned view should
+     * only fetch the metadata it needs when one of its methods is called.</p>
+     *
      * @param path the path to read attributes from
      * @param type the class of attribute view to return
      * @param options the link options
@@ -281,8 +472,8 @@ public interface FileSystemDriver
      * @return the attributes view; {@code null} if this view is not supported
      *
      * @see FileSystemProvider#getFileAttributeView(Path, Class, LinkOption...)
+     * @see RefreshableAttributeView
      */
-    // TODO: attribute view should be lazy loaded
     @Nullable
     <V extends FileAttributeView> V getFileAttributeView(Path path,
         Class<V> type, LinkOption... options);
@@ -346,7 +537,72 @@ public interface FileSystemDriver
         LinkOption... options)
         throws IOException;
 
+    /**
+     * Set several attributes of a path on this filesystem at once
+     *
+     * <p>Attribute names have the same format as for {@link #setAttribute(Path,
+     * String, Object, LinkOption...)}, and may belong to different views.
+     * Attributes are set in the iteration order of the map; the path metadata
+     * is only fetched once, and if this fails, no attribute is set.</p>
+     *
+     * @param path the victim
+     * @param attributes a map of attribute names to values
+     * @param options the link options
+     * @throws IOException filesystem level error, or a plain I/O error
+     * @throws IllegalArgumentException malformed attribute, or one of the
+     * attributes does not exist
+     * @throws UnsupportedOperationException one of the attributes is not
+     * supported by this filesystem
+     * @throws ClassCastException attribute value is of the wrong class for its
+     * attribute
+     *
+     * @see #setAttribute(Path, String, Object, LinkOption...)
+     */
+    void setAttributes(Path path, Map<String, Object> attributes,
+        LinkOption... options)
+        throws IOException;
+
+    /**
+     * Set the same attribute for several paths on this filesystem
+     *
+     * <p>Failures of individual paths do not stop the batch; errors which
+     * do not depend on the path (an unknown or unsupported attribute, a
+     * value of the wrong class) are thrown immediately.</p>
+     *
+     * @param paths the victims
+     * @param attribute the name of the attribute to set
+     * @param value the value to set
+     * @param options the link options
+     * @throws BatchOperationException the attribute could not be set for
+     * some paths
+     * @throws IOException filesystem level error, or a plain I/O error
+     * @throws IllegalArgumentException malformed attribute, or the specified
+     * attribute does not exist
+     * @throws UnsupportedOperationException the attribute to set is not
+     * supported by this filesystem
+     * @throws ClassCastException attribute value is of the wrong class for the
+     * specified attribute
+     *
+     * @see #setAttribute(Path, String, Object, LinkOption...)
+     */
+    void batchSetAttribute(Collection<Path> paths, String attribute,
+        Object value, LinkOption... options)
+        throws IOException;
+
     @Nonnull
     Object getPathMetadata(Path path)
         throws IOException;
+
+    /**
+     * Notify this driver that a path, and possibly the paths below it, have
+     * been modified
+     *
+     * <p>This is called by {@link FileSystemProviderBase} after a path has
+     * been deleted, moved or replaced, so that the driver can discard any
+     * information it may have cached about it (such as the resolution of
+     * symbolic links).</p>
+     *
+     * @param path the modified path
+     */
+    void invalidate(Path path);
 }
@@ -18,31 +18,53 @@
 
 package com.github.fge.filesystem.driver;
 
+import com.github.fge.filesystem.attributes.BulkUserDefinedAttributeView;
 import com.github.fge.filesystem.attributes.FileAttributesFactory;
+import com.github.fge.filesystem.attributes.RefreshableAttributeView;
 import com.github.fge.filesystem.attributes.provider.FileAttributesProvider;
 import com.github.fge.filesystem.options.FileSystemOptionsFactory;
 import com.github.fge.filesystem.provider.FileSystemFactoryProvider;
+import com.github.fge.filesystem.provider.FileSystemProviderBase;
+import com.github.fge.filesystem.exceptions.BatchOperationException;
 import com.github.fge.filesystem.exceptions.UncaughtIOException;
+import com.github.fge.filesystem.exceptions.UnsupportedOptionException;
+import com.github.fge.filesystem.io.ExecutorAsynchronousFileChannel;
+import com.github.fge.filesystem.io.SpillingSeekableByteChannel;
+import com.github.fge.filesystem.io.StreamBackedSeekableByteChannel;
+import com.github.fge.filesystem.watch.PollingWatchService;
+import com.github.fge.filesystem.watch.PushWatchService;
+import com.github.fge.filesystem.watch.WatchEventSource;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.file.CopyOption;
 import java.nio.file.FileStore;
+import java.nio.file.FileSystemException;
 import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotLinkException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.FileAttributeView;
 import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Pattern;
 
 /**
@@ -51,12 +73,21 @@ import java.util.regex.Pattern;
  * <p>The (overridable) defaults are:</p>
  *
  * <ul>
- *     <li>no support for {@link UserPrincipalLookupService}s or {@link
- *     WatchService}s (both relevant methods throw an {@link
- *     UnsupportedOperationException});</li>
- *     <li>no support for {@link SeekableByteChannel}s;</li>
+ *     <li>no support for {@link UserPrincipalLookupService}s (the relevant
+ *     method throws an {@link UnsupportedOperationException});</li>
+ *     <li>{@link WatchService}s are {@link PollingWatchService}s, unless
+ *     {@link #getWatchEventSource()} is overridden;</li>
+ *     <li>{@link SeekableByteChannel}s are built on top of streams (see
+ *     {@link #newByteChannel(Path, Set, FileAttribute[])});</li>
+ *     <li>{@link AsynchronousFileChannel}s run {@link
+ *     #newByteChannel(Path, Set, FileAttribute[]) blocking channels} on an
+ *     executor;</li>
+ *     <li>{@link FileChannel}s are only available, read only, for paths which
+ *     have a {@link #getLocalFile(Path) local file};</li>
  *     <li>{@link #isSameFile(Path, Path)} returns true if and only if both
- *     their absolute versions are {@link Object#equals(Object) equal}.</li>
+ *     their absolute versions are {@link Object#equals(Object) equal};</li>
+ *     <li>no support for symbolic links (see {@link #hasSymbolicLinks()}).
+ *     </li>
  * </ul>
  *
  * @see UnixLikeFileSystemDriverBase
@@ -68,8 +99,12 @@ public abstract class FileSystemDriverBase
 {
     private static final Pattern COMMA = Pattern.compile(",");
 
+    private static final int LINK_CACHE_SIZE = 1024;
+
     private final FileStore fileStore;
     private final FileAttributesFactory attributesFactory;
+    private final SymbolicLinkResolver linkResolver
+        = new SymbolicLinkResolver(this, LINK_CACHE_SIZE);
 
     // Needed to translate copy options into read/write open options
     protected final FileSystemOptionsFactory optionsFactory;
@@ -102,9 +137,31 @@ public abstract class FileSystemDriverBase
     @Override
     public WatchService newWatchService()
     {
-        throw new UnsupportedOperationException();
+        final WatchEventSource source = getWatchEventSource();
+
+        return source == null ? new PollingWatchService(this)
+            : new PushWatchService(source);
     }
 
+    /**
+     * Obtain a new {@link SeekableByteChannel} from a path
+     *
+     * <p>By default, channels opened only for reading are {@link
+     * StreamBackedSeekableByteChannel}s, and channels opened for writing are
+     * {@link SpillingSeekableByteChannel}s. Both are built using {@link
+     * #newInputStream(Path, Set)} and {@link #newOutputStream(Path, Set)}.
+     * Override this method if your backend supports random access.</p>
+     *
+     * <p>File attributes are not supported by the default implementation.</p>
+     *
+     * @param path the path
+     * @param options the set of open options
+     * @param attrs the attributes to create the file with (if it does not
+     * exist)
+     * @return a channel
+     * @throws UnsupportedOperationException file attributes were specified
+     * @throws IOException filesystem level error, or a plain I/O error
+     */
     @SuppressWarnings("DesignForExtension")
     @Nonnull
     @Override
@@ -113,7 +170,109 @@ public abstract class FileSystemDriverBase
         final FileAttribute<?>... attrs)
         throws IOException
     {
-        throw new UnsupportedOperationException();
+        if (attrs.length != 0)
+            throw new UnsupportedOperationException("file attributes are not"
+                + " supported");
+
+        if (options.contains(StandardOpenOption.WRITE))
+            return SpillingSeekableByteChannel.open(this, path, options);
+
+        return new StreamBackedSeekableByteChannel(this, path,
+            new HashSet<OpenOption>(options));
+    }
+
+    /**
+     * Obtain a new {@link AsynchronousFileChannel} from a path
+     *
+     * <p>By default, this wraps the channel returned by {@link
+     * #newByteChannel(Path, Set, FileAttribute[])} in an {@link
+     * ExecutorAsynchronousFileChannel}; if no executor is specified, the one
+     * returned by {@link #getAsynchronousExecutor()} is used. Override this
+     * method if your backend supports non blocking I/O.</p>
+     *
+     * <p>As with the default provider, {@link StandardOpenOption#APPEND} is
+     * not supported.</p>
+     *
+     * @param path the path
+     * @param options the set of open options
+     * @param executor the executor to run I/O operations on, or {@code null}
+     * @param attrs the attributes to create the file with (if it does not
+     * exist)
+     * @return a channel
+     * @throws UnsupportedOptionException the options contain {@link
+     * StandardOpenOption#APPEND}
+     * @throws IOException filesystem level error, or a plain I/O error
+     */
+    @SuppressWarnings("DesignForExtension")
+    @Nonnull
+    @Override
+    public AsynchronousFileChannel newAsynchronousFileChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        @Nullable final ExecutorService executor,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        if (options.contains(StandardOpenOption.APPEND))
+            throw new UnsupportedOptionException(
+                StandardOpenOption.APPEND.toString());
+
+        final boolean writable = options.contains(StandardOpenOption.WRITE);
+        final boolean readable = options.contains(StandardOpenOption.READ)
+            || !writable;
+
+        return new ExecutorAsynchronousFileChannel(
+            newByteChannel(path, options, attrs),
+            executor == null ? getAsynchronousExecutor() : executor,
+            readable, writable);
+    }
+
+    /**
+     * Obtain a {@link FileChannel} to a path for this filesystem
+     *
+     * <p>The default implementation opens a channel to the file returned by
+     * {@link #getLocalFile(Path)}, and throws an {@link
+     * UnsupportedOperationException} if there is no such file. Since the local
+     * file may only be a copy of the remote content, only read only channels
+     * are supported: the only options accepted are {@link
+     * StandardOpenOption#READ} and {@link LinkOption}s, so that the local file
+     * is never created, written or deleted behind the back of the driver.
+     * Override this method if writes to the local file are visible through
+     * this filesystem.</p>
+     *
+     * @param path the path
+     * @param options the set of open options
+     * @param attrs the attributes to create the file with (if it does not
+     * exist); must be empty, since files are never created
+     * @return a channel
+     * @throws UnsupportedOperationException no local file, or attributes were
+     * specified
+     * @throws UnsupportedOptionException an option other than {@link
+     * StandardOpenOption#READ} or a {@link LinkOption} was specified
+     * @throws IOException filesystem level error, or a plain I/O error
+     */
+    @SuppressWarnings("DesignForExtension")
+    @Nonnull
+    @Override
+    public FileChannel newFileChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        for (final OpenOption option: options)
+            if (option != StandardOpenOption.READ
+                && !(option instanceof LinkOption))
+                throw new UnsupportedOptionException(option.toString());
+        if (attrs.length != 0)
+            throw new UnsupportedOperationException("file attributes are not"
+                + " supported");
+
+        final Path localFile = getLocalFile(path);
+
+        if (localFile == null)
+            throw new UnsupportedOperationException(
+                "no local file for path " + path);
+
+        return FileChannel.open(localFile, options, attrs);
     }
 
     @SuppressWarnings("DesignForExtension")
@@ -124,6 +283,211 @@ public abstract class FileSystemDriverBase
         return path.toAbsolutePath().equals(path2.toAbsolutePath());
     }
 
+    /**
+     * Rename a path in constant time, if possible
+     *
+     * <p>This returns false by default, so that {@link FileSystemProviderBase}
+     * falls back to {@link #move(Path, Path, Set)}. Override it if your
+     * backend can rename paths atomically without copying their contents.</p>
+     *
+     * @param source the source path
+     * @param target the target path
+     * @param options the copy options
+     * @return false
+     * @throws IOException filesystem level error, or plain I/O error
+     */
+    @SuppressWarnings("DesignForExtension")
+    @Override
+    public boolean rename(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        return false;
+    }
+
+    /**
+     * Delete a subtree in bulk, if possible
+     *
+     * <p>This returns false by default, so that {@link FileSystemProviderBase}
+     * deletes the entries of the subtree one by one. Override it if your
+     * backend can delete subtrees with one request, or in batches.</p>
+     *
+     * @param path the root of the subtree
+     * @return false
+     * @throws IOException filesystem level error, or plain I/O error
+     */
+    @SuppressWarnings("DesignForExtension")
+    @Override
+    public boolean deleteTree(final Path path)
+        throws IOException
+    {
+        return false;
+    }
+
+    /**
+     * Copy a subtree in bulk, if possible
+     *
+     * <p>This returns false by default, so that {@link FileSystemProviderBase}
+     * copies the entries of the subtree one by one. Override it if your
+     * backend can copy subtrees on the server side.</p>
+     *
+     * @param source the root of the subtree
+     * @param target the target path
+     * @param options the copy options
+     * @return false
+     * @throws IOException filesystem level error, or plain I/O error
+     */
+    @SuppressWarnings("DesignForExtension")
+    @Override
+    public boolean copyTree(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        return false;
+    }
+
+    /**
+     * Create several directories
+     *
+     * <p>By default, this calls {@link #createDirectory(Path,
+     * FileAttribute[])} for each directory in turn, and collects the
+     * failures. Override it if your backend supports batch requests.</p>
+     *
+     * @param dirs the directories to create
+     * @param attrs the attributes of the directories
+     * @throws BatchOperationException some directories could not be created
+     * @throws IOException filesystem level error, or plain I/O error
+     */
+    @SuppressWarnings("DesignForExtension")
+    @Override
+    public void batchCreateDirectory(final Collection<Path> dirs,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        final Map<Path, IOException> failures = new LinkedHashMap<>();
+
+        for (final Path dir: dirs)
+            try {
+                createDirectory(dir, attrs);
+            } catch (IOException e) {
+                failures.put(dir, e);
+            }
+
+        if (!failures.isEmpty())
+            throw new BatchOperationException(failures, dirs.size());
+    }
+
+    /**
+     * Delete several paths
+     *
+     * <p>By default, this calls {@link #delete(Path)} for each path in turn,
+     * and collects the failures. Override it if your backend supports batch
+     * requests.</p>
+     *
+     * @param paths the victims
+     * @throws BatchOperationException some paths could not be deleted
+     * @throws IOException filesystem level error, or plain I/O error
+     */
+    @SuppressWarnings("DesignForExtension")
+    @Override
+    public void batchDelete(final Collection<Path> paths)
+        throws IOException
+    {
+        final Map<Path, IOException> failures = new LinkedHashMap<>();
+
+        for (final Path path: paths)
+            try {
+                delete(path);
+            } catch (IOException e) {
+                failures.put(path, e);
+            }
+
+        if (!failures.isEmpty())
+            throw new BatchOperationException(failures, paths.size());
+    }
+
+    /**
+     * Read the target of a symbolic link
+     *
+     * <p>If {@link #hasSymbolicLinks()} returns false, this method only checks
+     * that the path exists and throws {@link NotLinkException}. Otherwise, the
+     * parent of the link is resolved and {@link #getLinkTarget(Path)} is
+     * called.</p>
+     *
+     * @param link the link
+     * @return the target of the link
+     * @throws NotLinkException path is not a symbolic link
+     * @throws IOException filesystem level error, or plain I/O error
+     */
+    @Nonnull
+    @Override
+    public final Path readSymbolicLink(final Path link)
+        throws IOException
+    {
+        final Path absolute = link.toAbsolutePath();
+        final Path parent = absolute.getParent();
+        Path target = null;
+
+        if (hasSymbolicLinks() && parent != null)
+            target = getLinkTarget(linkResolver.resolve(parent)
+                .resolve(absolute.getFileName()));
+
+        if (target != null)
+            return target;
+
+        checkAccess(link);
+        throw new NotLinkException(link.toString());
+    }
+
+    /**
+     * Return the real path of a path
+     *
+     * <p>If {@link #hasSymbolicLinks()} returns false, or {@link
+     * LinkOption#NOFOLLOW_LINKS} is specified, this method returns the
+     * normalized absolute path, without performing any I/O.</p>
+     *
+     * <p>Otherwise, links are resolved using {@link #getLinkTarget(Path)}. The
+     * result of each resolution is kept in a bounded cache, so that the same
+     * prefix is not resolved more than once until {@link #invalidate(Path)
+     * invalidated}.</p>
+     *
+     * @param path the path
+     * @param options the link options
+     * @return the real path
+     * @throws FileSystemException too many levels of symbolic links
+     * @throws IOException filesystem level error, or plain I/O error
+     */
+    @Nonnull
+    @Override
+    public final Path toRealPath(final Path path, final LinkOption... options)
+        throws IOException
+    {
+        if (!hasSymbolicLinks())
+            return path.toAbsolutePath().normalize();
+
+        for (final LinkOption option: options)
+            if (option == LinkOption.NOFOLLOW_LINKS)
+                return path.toAbsolutePath().normalize();
+
+        return linkResolver.resolve(path);
+    }
+
+    /**
+     * Discard cached information about a path, and all paths below it
+     *
+     * <p>If you override this method, you must call this implementation as
+     * well.</p>
+     *
+     * @param path the path
+     */
+    @SuppressWarnings("DesignForExtension")
+    @Override
+    public void invalidate(final Path path)
+    {
+        if (hasSymbolicLinks())
+            linkResolver.invalidate(path);
+    }
+
     @Override
     public final void setAttribute(final Path path, final String attribute,
         final Object value, final LinkOption... options)
@@ -141,7 +505,8 @@ public abstract class FileSystemDriverBase
             name = attribute.substring(index + 1);
         }
 
-        final Object metadata = getPathMetadata(path);
+        final Object metadata
+            = getPathMetadataForUpdate(path.toRealPath(options));
 
         final FileAttributesProvider provider
             = attributesFactory.getProvider(type, metadata);
@@ -152,6 +517,88 @@ public abstract class FileSystemDriverBase
         provider.setAttributeByName(name, value);
     }
 
+    /**
+     * Set several attributes of a path at once
+     *
+     * <p>The metadata of the path is fetched once using {@link
+     * #getPathMetadataForUpdate(Path)}, and one attribute provider is built
+     * per view; all views are checked before any attribute is set.</p>
+     *
+     * @param path the victim
+     * @param attributes a map of attribute names to values
+     * @param options the link options
+     * @throws IOException filesystem level error, or plain I/O error
+     */
+    @Override
+    public final void setAttributes(final Path path,
+        final Map<String, Object> attributes, final LinkOption... options)
+        throws IOException
+    {
+        if (attributes.isEmpty())
+            return;
+
+        final Object metadata
+            = getPathMetadataForUpdate(path.toRealPath(options));
+        final Map<String, FileAttributesProvider> providers = new HashMap<>();
+
+        String type;
+        FileAttributesProvider provider;
+
+        for (final String attribute: attributes.keySet()) {
+            type = getViewName(attribute);
+            if (providers.containsKey(type))
+                continue;
+            provider = attributesFactory.getProvider(type, metadata);
+            if (provider == null)
+                throw new UnsupportedOperationException();
+            providers.put(type, provider);
+        }
+
+        String attribute;
+
+        for (final Map.Entry<String, Object> entry: attributes.entrySet()) {
+            attribute = entry.getKey();
+            provider = providers.get(getViewName(attribute));
+            provider.setAttributeByName(
+                attribute.substring(attribute.indexOf(':') + 1),
+                entry.getValue());
+        }
+    }
+
+    /**
+     * Set the same attribute for several paths
+     *
+     * <p>By default, this calls {@link #setAttribute(Path, String, Object,
+     * LinkOption...)} for each path in turn, and collects the I/O failures.
+     * Override it if your backend supports batch requests.</p>
+     *
+     * @param paths the victims
+     * @param attribute the name of the attribute
+     * @param value the value of the attribute
+     * @param options the link options
+     * @throws BatchOperationException the attribute could not be set for
+     * some paths
+     * @throws IOException filesystem level error, or plain I/O error
+     */
+    @SuppressWarnings("DesignForExtension")
+    @Override
+    public void batchSetAttribute(final Collection<Path> paths,
+        final String attribute, final Object value, final LinkOption... options)
+        throws IOException
+    {
+        final Map<Path, IOException> failures = new LinkedHashMap<>();
+
+        for (final Path path: paths)
+            try {
+                setAttribute(path, attribute, value, options);
+            } catch (IOException e) {
+                failures.put(path, e);
+            }
+
+        if (!failures.isEmpty())
+            throw new BatchOperationException(failures, paths.size());
+    }
+
     @Override
     public final Map<String, Object> readAttributes(final Path path,
         final String attributes, final LinkOption... options)
@@ -199,17 +646,176 @@ public abstract class FileSystemDriverBase
         return attributesFactory.getFileAttributes(type, metadata);
     }
 
+    /**
+     * Get a lazily loaded attribute view for a path
+     *
+     * <p>No I/O is performed by this method; the returned view fetches the
+     * path metadata on the first call of one of its read accessors, and then
+     * only after a modification or if {@link RefreshableAttributeView#refresh()
+     * refreshed}. Modifications performed before any read accessor call do
+     * not fetch metadata; see {@link #getPathMetadataForUpdate(Path)}.</p>
+     *
+     * <p>This only applies to the standard attribute views of the JDK (and
+     * to {@link BulkUserDefinedAttributeView}); the provider of any other
+     * view class is built by this method, and returned as is. If fetching the
+     * metadata fails then, an {@link UncaughtIOException} is thrown.</p>
+     *
+     * @param path the path
+     * @param type the class of attribute view to return
+     * @param options the link options
+     * @param <V> type parameter of the attribute view class
+     * @return the attributes view; {@code null} if this view is not supported
+     */
     @Nullable
     @Override
     public final <V extends FileAttributeView> V getFileAttributeView(
         final Path path, final Class<V> type, final LinkOption... options)
     {
-        final Object metadata;
-        try {
-            metadata = getPathMetadata(path.toRealPath(options));
-            return attributesFactory.getFileAttributeView(type, metadata);
-        } catch (IOException e) {
-            throw new UncaughtIOException("Unhandled I/O exception", e);
-        }
+        final String name = attributesFactory.getViewName(type);
+
+        if (name == null)
+            return null;
+
+        return LazyAttributeView.newInstance(this, attributesFactory, path,
+            type, name, options);
+    }
+
+    /**
+     * Get the metadata used to build attribute providers when only modifying
+     * attributes
+     *
+     * <p>This method is used by {@link #setAttribute(Path, String, Object,
+     * LinkOption...)}, and by attribute views which have not yet fetched
+     * metadata when a modification is requested.</p>
+     *
+     * <p>By default, if the metadata class of the attributes factory is a
+     * {@link Path} class, and the path is an instance of it, the path itself
+     * is returned and no I/O is performed; otherwise, this method returns
+     * {@link #getPathMetadata(Path)}. Override it if your attribute providers
+     * can perform modifications without the metadata of the path (for
+     * instance, if an instance of your metadata class can be built from the
+     * path only); this will save a round trip to the backend for each
+     * modification.</p>
+     *
+     * @param path the path
+     * @return the metadata
+     * @throws IOException filesystem level error, or plain I/O error
+     */
+    @SuppressWarnings("DesignForExtension")
+    @Nonnull
+    protected Object getPathMetadataForUpdate(final Path path)
+        throws IOException
+    {
+        final Class<?> metadataClass = attributesFactory.getMetadataClass();
+
+        if (metadataClass != null && Path.class.isAssignableFrom(metadataClass)
+            && metadataClass.isInstance(path))
+            return path;
+
+        return getPathMetadata(path);
+    }
+
+    private static String getViewName(final String attribute)
+    {
+        final int index = attribute.indexOf(':');
+        return index == -1 ? "basic" : attribute.substring(0, index);
+    }
+
+    /**
+     * Tell whether this filesystem supports symbolic links
+     *
+     * <p>This returns false by default, in which case {@link #toRealPath(Path,
+     * LinkOption...)} never performs any I/O. If you override it to return
+     * true, you must also override {@link #getLinkTarget(Path)}.</p>
+     *
+     * @return true if this filesystem may contain symbolic links
+     */
+    @SuppressWarnings("DesignForExtension")
+    protected boolean hasSymbolicLinks()
+    {
+        return false;
+    }
+
+    /**
+     * Read the target of a path if it is a symbolic link
+     *
+     * <p>This method is only called if {@link #hasSymbolicLinks()} returns
+     * true. The path given as an argument is absolute and its parent contains
+     * no symbolic links.</p>
+     *
+     * @param path the path
+     * @return the target of the link (which may be relative), or {@code null}
+     * if the path is not a symbolic link
+     * @throws NoSuchFileException the path does not exist
+     * @throws IOException filesystem level error, or plain I/O error
+     */
+    @SuppressWarnings("DesignForExtension")
+    @Nullable
+    protected Path getLinkTarget(final Path path)
+        throws IOException
+    {
+        return null;
+    }
+
+    /**
+     * Return the source of change events for this filesystem, if any
+     *
+     * <p>If your backend can push changes, override this method; {@link
+     * #newWatchService()} will then return {@link PushWatchService}s fed by
+     * this source instead of {@link PollingWatchService}s. This returns {@code
+     * null} by default.</p>
+     *
+     * @return the event source, or {@code null}
+     */
+    @SuppressWarnings("DesignForExtension")
+    @Nullable
+    protected WatchEventSource getWatchEventSource()
+    {
+        return null;
+    }
+
+    /**
+     * Return the local file backing a path, if any
+     *
+     * <p>Drivers which keep the content of (some) files on the default
+     * filesystem, for instance as a cache of remote content, can override this
+     * method so that {@link #newFileChannel(Path, Set, FileAttribute[])} can
+     * serve these files directly; this allows for zero copy reads and memory
+     * mapping (see {@link FileChannel#map(FileChannel.MapMode, long, long)}).
+     * </p>
+     *
+     * <p>This method returns {@code null} by default.</p>
+     *
+     * @param path the path (of this filesystem)
+     * @return the local file, or {@code null} if no such file is available
+     * @throws IOException filesystem level error, or plain I/O error
+     */
+    @SuppressWarnings("DesignForExtension")
+    @Nullable
+    protected Path getLocalFile(final Path path)
+        throws IOException
+    {
+        return null;
+    }
+
+    /**
+     * Return the executor used by asynchronous channels when none is specified
+     *
+     * <p>This returns {@link
+     * ExecutorAsynchronousFileChannel#getDefaultExecutor()} by default; this
+     * executor has a bounded number of threads, shared by all filesystems.
+     * Override this method to give channels of this filesystem their own
+     * executor; callers can also supply one when opening a channel.</p>
+     *
+     * @return an executor
+     *
+     * @see #newAsynchronousFileChannel(Path, Set, ExecutorService,
+     * FileAttribute[])
+     */
+    @SuppressWarnings("DesignForExtension")
+    @Nonnull
+    protected ExecutorService getAsynchronousExecutor()
+    {
+        return ExecutorAsynchronousFileChannel.getDefaultExecutor();
     }
 }
@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.driver;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A {@link FileSystemDriver} forwarding all of its methods to another driver
+ *
+ * <p>This is the base class for driver decorators: extend it and override the
+ * methods you want to alter.</p>
+ *
+ * @see ReadOnlyFileSystemDriver
+ */
+@SuppressWarnings({ "OverloadedVarargsMethod", "DesignForExtension" })
+@ParametersAreNonnullByDefault
+public abstract class ForwardingFileSystemDriver
+    implements FileSystemDriver
+{
+    protected final FileSystemDriver delegate;
+
+    protected ForwardingFileSystemDriver(final FileSystemDriver delegate)
+    {
+        this.delegate = Objects.requireNonNull(delegate);
+    }
+
+    @Override
+    @Nonnull
+    public FileStore getFileStore()
+    {
+        return delegate.getFileStore();
+    }
+
+    @Override
+    @Nonnull
+    public UserPrincipalLookupService getUserPrincipalLookupService()
+    {
+        return delegate.getUserPrincipalLookupService();
+    }
+
+    @Override
+    @Nonnull
+    public WatchService newWatchService()
+    {
+        return delegate.newWatchService();
+    }
+
+    @Override
+    @Nonnull
+    public InputStream newInputStream(final Path path,
+        final Set<OpenOption> options)
+        throws IOException
+    {
+        return delegate.newInputStream(path, options);
+    }
+
+    @Nonnull
+    @Override
+    public OutputStream newOutputStream(final Path path,
+        final Set<OpenOption> options)
+        throws IOException
+    {
+        return delegate.newOutputStream(path, options);
+    }
+
+    @Nonnull
+    @Override
+    public SeekableByteChannel newByteChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        return delegate.newByteChannel(path, options, attrs);
+    }
+
+    @Nonnull
+    @Override
+    public AsynchronousFileChannel newAsynchronousFileChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        @Nullable final ExecutorService executor,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        return delegate.newAsynchronousFileChannel(path, options, executor,
+            attrs);
+    }
+
+    @Nonnull
+    @Override
+    public FileChannel newFileChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        return delegate.newFileChannel(path, options, attrs);
+    }
+
+    @Override
+    @Nonnull
+    public DirectoryStream<Path> newDirectoryStream(final Path dir,
+        final DirectoryStream.Filter<? super Path> filter)
+        throws IOException
+    {
+        return delegate.newDirectoryStream(dir, filter);
+    }
+
+    @Override
+    public void createDirectory(final Path dir, final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        delegate.createDirectory(dir, attrs);
+    }
+
+    @Override
+    public void delete(final Path path)
+        throws IOException
+    {
+        delegate.delete(path);
+    }
+
+    @Override
+    public void copy(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        delegate.copy(source, target, options);
+    }
+
+    @Override
+    public void move(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        delegate.move(source, target, options);
+    }
+
+    @Override
+    public boolean rename(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        return delegate.rename(source, target, options);
+    }
+
+    @Override
+    public boolean deleteTree(final Path path)
+        throws IOException
+    {
+        return delegate.deleteTree(path);
+    }
+
+    @Override
+    public boolean copyTree(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        return delegate.copyTree(source, target, options);
+    }
+
+    @Override
+    public void batchCreateDirectory(final Collection<Path> dirs,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        delegate.batchCreateDirectory(dirs, attrs);
+    }
+
+    @Override
+    public void batchDelete(final Collection<Path> paths)
+        throws IOException
+    {
+        delegate.batchDelete(paths);
+    }
+
+    @Override
+    public boolean isSameFile(final Path path, final Path path2)
+        throws IOException
+    {
+        return delegate.isSameFile(path, path2);
+    }
+
+    @Nonnull
+    @Override
+    public Path readSymbolicLink(final Path link)
+        throws IOException
+    {
+        return delegate.readSymbolicLink(link);
+    }
+
+    @Nonnull
+    @Override
+    public Path toRealPath(final Path path, final LinkOption... options)
+        throws IOException
+    {
+        return delegate.toRealPath(path, options);
+    }
+
+    @Override
+    public boolean isHidden(final Path path)
+        throws IOException
+    {
+        return delegate.isHidden(path);
+    }
+
+    @Override
+    public void checkAccess(final Path path, final AccessMode... modes)
+        throws IOException
+    {
+        delegate.checkAccess(path, modes);
+    }
+
+    @Override
+    @Nullable
+    public <V extends FileAttributeView> V getFileAttributeView(final Path path,
+        final Class<V> type, final LinkOption... options)
+    {
+        return delegate.getFileAttributeView(path, type, options);
+    }
+
+    @Override
+    public <A extends BasicFileAttributes> A readAttributes(final Path path,
+        final Class<A> type, final LinkOption... options)
+        throws IOException
+    {
+        return delegate.readAttributes(path, type, options);
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(final Path path,
+        final String attributes, final LinkOption... options)
+        throws IOException
+    {
+        return delegate.readAttributes(path, attributes, options);
+    }
+
+    @Override
+    public void setAttribute(final Path path, final String attribute,
+        final Object value, final LinkOption... options)
+        throws IOException
+    {
+        delegate.setAttribute(path, attribute, value, options);
+    }
+
+    @Override
+    public void setAttributes(final Path path,
+        final Map<String, Object> attributes, final LinkOption... options)
+        throws IOException
+    {
+        delegate.setAttributes(path, attributes, options);
+    }
+
+    @Override
+    public void batchSetAttribute(final Collection<Path> paths,
+        final String attribute, final Object value, final LinkOption... options)
+        throws IOException
+    {
+        delegate.batchSetAttribute(paths, attribute, value, options);
+    }
+
+    @Nonnull
+    @Override
+    public Object getPathMetadata(final Path path)
+        throws IOException
+    {
+        return delegate.getPathMetadata(path);
+    }
+
+    @Override
+    public void invalidate(final Path path)
+    {
+        delegate.invalidate(path);
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        delegate.close();
+    }
+}
@@ -0,0 +1,575 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.driver;
+
+import com.github.fge.filesystem.attributes.BulkUserDefinedAttributeView;
+import com.github.fge.filesystem.attributes.FileAttributesFactory;
+import com.github.fge.filesystem.attributes.RefreshableAttributeView;
+import com.github.fge.filesystem.exceptions.UncaughtIOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileOwnerAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A lazily loaded {@link FileAttributeView}
+ *
+ * <p>There is one concrete subclass of this class per standard attribute view
+ * interface; calls are dispatched to attribute providers built by the
+ * driver's {@link FileAttributesFactory}:</p>
+ *
+ * <ul>
+ *     <li>{@link FileAttributeView#name()} is answered without any I/O;</li>
+ *     <li>modifications are dispatched to a provider built from {@link
+ *     FileSystemDriverBase#getPathMetadataForUpdate(Path)}, unless metadata
+ *     has already been fetched; any fetched metadata is then discarded;</li>
+ *     <li>the first call to a read accessor fetches the path metadata, which
+ *     is kept until the next modification or {@link #refresh()}.</li>
+ * </ul>
+ *
+ * <p>Views of {@link UserDefinedFileAttributeView} also implement {@link
+ * BulkUserDefinedAttributeView} if the provider of the view does.</p>
+ *
+ * <p>Other view classes cannot be wrapped: for these, the provider is built
+ * when the view is requested and returned as is.</p>
+ *
+ * @param <V> the type of the attribute view
+ */
+@ParametersAreNonnullByDefault
+abstract class LazyAttributeView<V extends FileAttributeView>
+    implements FileAttributeView, RefreshableAttributeView
+{
+    private final FileSystemDriverBase driver;
+    private final FileAttributesFactory factory;
+    private final Path path;
+    private final Class<V> type;
+    private final String name;
+    private final LinkOption[] options;
+
+    private volatile V provider = null;
+
+    @Nonnull
+    static <V extends FileAttributeView> V newInstance(
+        final FileSystemDriverBase driver, final FileAttributesFactory factory,
+        final Path path, final Class<V> type, final String name,
+        final LinkOption... options)
+    {
+        final FileAttributeView view;
+
+        if (type == BasicFileAttributeView.class)
+            view = new Basic(driver, factory, path, name, options);
+        else if (type == PosixFileAttributeView.class)
+            view = new Posix(driver, factory, path, name, options);
+        else if (type == DosFileAttributeView.class)
+            view = new Dos(driver, factory, path, name, options);
+        else if (type == FileOwnerAttributeView.class)
+            view = new Owner(driver, factory, path, name, options);
+        else if (type == AclFileAttributeView.class)
+            view = new Acl(driver, factory, path, name, options);
+        else if (type == UserDefinedFileAttributeView.class
+            || type == BulkUserDefinedAttributeView.class)
+            view = BulkUserDefinedAttributeView.class.isAssignableFrom(
+                factory.getProviderClass(type))
+                ? new BulkUser(driver, factory, path, name, options)
+                : new User(driver, factory, path, name, options);
+        else
+            return resolve(driver, factory, path, type, options);
+
+        return type.cast(view);
+    }
+
+    private LazyAttributeView(final FileSystemDriverBase driver,
+        final FileAttributesFactory factory, final Path path,
+        final Class<V> type, final String name, final LinkOption... options)
+    {
+        this.driver = Objects.requireNonNull(driver);
+        this.factory = Objects.requireNonNull(factory);
+        this.path = Objects.requireNonNull(path);
+        this.type = Objects.requireNonNull(type);
+        this.name = Objects.requireNonNull(name);
+        this.options = options.clone();
+    }
+
+    @Override
+    public final String name()
+    {
+        return name;
+    }
+
+    @Override
+    public final void refresh()
+    {
+        provider = null;
+    }
+
+    @Override
+    public final String toString()
+    {
+        return "lazy \"" + name + "\" attribute view for " + path;
+    }
+
+    /*
+     * The provider to use for read accessors
+     */
+    @Nonnull
+    final V get()
+        throws IOException
+    {
+        V ret = provider;
+
+        if (ret == null) {
+            ret = load(factory, type,
+                driver.getPathMetadata(path.toRealPath(options)));
+            provider = ret;
+        }
+
+        return ret;
+    }
+
+    /*
+     * The provider to use for a modification; call updated() when done
+     */
+    @Nonnull
+    final V getForUpdate()
+        throws IOException
+    {
+        final V ret = provider;
+
+        return ret != null ? ret : load(factory, type,
+            driver.getPathMetadataForUpdate(path.toRealPath(options)));
+    }
+
+    final void updated()
+    {
+        provider = null;
+    }
+
+    @Nonnull
+    private static <V extends FileAttributeView> V resolve(
+        final FileSystemDriverBase driver, final FileAttributesFactory factory,
+        final Path path, final Class<V> type, final LinkOption... options)
+    {
+        try {
+            return load(factory, type,
+                driver.getPathMetadata(path.toRealPath(options)));
+        } catch (IOException e) {
+            throw new UncaughtIOException("Unhandled I/O exception", e);
+        }
+    }
+
+    @Nonnull
+    private static <V extends FileAttributeView> V load(
+        final FileAttributesFactory factory, final Class<V> type,
+        final Object metadata)
+        throws IOException
+    {
+        final V ret = factory.getFileAttributeView(type, metadata);
+
+        // Cannot happen: the view is checked for support before creation
+        if (ret == null)
+            throw new IllegalStateException("view " + type.getName()
+                + " is no longer supported");
+
+        return ret;
+    }
+
+    private static final class Basic
+        extends LazyAttributeView<BasicFileAttributeView>
+        implements BasicFileAttributeView
+    {
+        private Basic(final FileSystemDriverBase driver,
+            final FileAttributesFactory factory, final Path path,
+            final String name, final LinkOption... options)
+        {
+            super(driver, factory, path, BasicFileAttributeView.class, name,
+                options);
+        }
+
+        @Override
+        public BasicFileAttributes readAttributes()
+            throws IOException
+        {
+            return get().readAttributes();
+        }
+
+        @Override
+        public void setTimes(@Nullable final FileTime lastModifiedTime,
+            @Nullable final FileTime lastAccessTime,
+            @Nullable final FileTime createTime)
+            throws IOException
+        {
+            try {
+                getForUpdate().setTimes(lastModifiedTime, lastAccessTime,
+                    createTime);
+            } finally {
+                updated();
+            }
+        }
+    }
+
+    private static final class Posix
+        extends LazyAttributeView<PosixFileAttributeView>
+        implements PosixFileAttributeView
+    {
+        private Posix(final FileSystemDriverBase driver,
+            final FileAttributesFactory factory, final Path path,
+            final String name, final LinkOption... options)
+        {
+            super(driver, factory, path, PosixFileAttributeView.class, name,
+                options);
+        }
+
+        @Override
+        public PosixFileAttributes readAttributes()
+            throws IOException
+        {
+            return get().readAttributes();
+        }
+
+        @Override
+        public UserPrincipal getOwner()
+            throws IOException
+        {
+            return get().getOwner();
+        }
+
+        @Override
+        public void setTimes(@Nullable final FileTime lastModifiedTime,
+            @Nullable final FileTime lastAccessTime,
+            @Nullable final FileTime createTime)
+            throws IOException
+        {
+            try {
+                getForUpdate().setTimes(lastModifiedTime, lastAccessTime,
+                    createTime);
+            } finally {
+                updated();
+            }
+        }
+
+        @Override
+        public void setOwner(final UserPrincipal owner)
+            throws IOException
+        {
+            try {
+                getForUpdate().setOwner(owner);
+            } finally {
+                updated();
+            }
+        }
+
+        @Override
+        public void setPermissions(final Set<PosixFilePermission> perms)
+            throws IOException
+        {
+            try {
+                getForUpdate().setPermissions(perms);
+            } finally {
+                updated();
+            }
+        }
+
+        @Override
+        public void setGroup(final GroupPrincipal group)
+            throws IOException
+        {
+            try {
+                getForUpdate().setGroup(group);
+            } finally {
+                updated();
+            }
+        }
+    }
+
+    private static final class Dos
+        extends LazyAttributeView<DosFileAttributeView>
+        implements DosFileAttributeView
+    {
+        private Dos(final FileSystemDriverBase driver,
+            final FileAttributesFactory factory, final Path path,
+            final String name, final LinkOption... options)
+        {
+            super(driver, factory, path, DosFileAttributeView.class, name,
+                options);
+        }
+
+        @Override
+        public DosFileAttributes readAttributes()
+            throws IOException
+        {
+            return get().readAttributes();
+        }
+
+        @Override
+        public void setTimes(@Nullable final FileTime lastModifiedTime,
+            @Nullable final FileTime lastAccessTime,
+            @Nullable final FileTime createTime)
+            throws IOException
+        {
+            try {
+                getForUpdate().setTimes(lastModifiedTime, lastAccessTime,
+                    createTime);
+            } finally {
+                updated();
+            }
+        }
+
+        @Override
+        public void setReadOnly(final boolean value)
+            throws IOException
+        {
+            try {
+                getForUpdate().setReadOnly(value);
+            } finally {
+                updated();
+            }
+        }
+
+        @Override
+        public void setHidden(final boolean value)
+            throws IOException
+        {
+            try {
+                getForUpdate().setHidden(value);
+            } finally {
+                updated();
+            }
+        }
+
+        @Override
+        public void setSystem(final boolean value)
+            throws IOException
+        {
+            try {
+                getForUpdate().setSystem(value);
+            } finally {
+                updated();
+            }
+        }
+
+        @Override
+        public void setArchive(final boolean value)
+            throws IOException
+        {
+            try {
+                getForUpdate().setArchive(value);
+            } finally {
+                updated();
+            }
+        }
+    }
+
+    private static final class Owner
+        extends LazyAttributeView<FileOwnerAttributeView>
+        implements FileOwnerAttributeView
+    {
+        private Owner(final FileSystemDriverBase driver,
+            final FileAttributesFactory factory, final Path path,
+            final String name, final LinkOption... options)
+        {
+            super(driver, factory, path, FileOwnerAttributeView.class, name,
+                options);
+        }
+
+        @Override
+        public UserPrincipal getOwner()
+            throws IOException
+        {
+            return get().getOwner();
+        }
+
+        @Override
+        public void setOwner(final UserPrincipal owner)
+            throws IOException
+        {
+            try {
+                getForUpdate().setOwner(owner);
+            } finally {
+                updated();
+            }
+        }
+    }
+
+    private static final class Acl
+        extends LazyAttributeView<AclFileAttributeView>
+        implements AclFileAttributeView
+    {
+        private Acl(final FileSystemDriverBase driver,
+            final FileAttributesFactory factory, final Path path,
+            final String name, final LinkOption... options)
+        {
+            super(driver, factory, path, AclFileAttributeView.class, name,
+                options);
+        }
+
+        @Override
+        public UserPrincipal getOwner()
+            throws IOException
+        {
+            return get().getOwner();
+        }
+
+        @Override
+        public List<AclEntry> getAcl()
+            throws IOException
+        {
+            return get().getAcl();
+        }
+
+        @Override
+        public void setOwner(final UserPrincipal owner)
+            throws IOException
+        {
+            try {
+                getForUpdate().setOwner(owner);
+            } finally {
+                updated();
+            }
+        }
+
+        @Override
+        public void setAcl(final List<AclEntry> acl)
+            throws IOException
+        {
+            try {
+                getForUpdate().setAcl(acl);
+            } finally {
+                updated();
+            }
+        }
+    }
+
+    private static class User
+        extends LazyAttributeView<UserDefinedFileAttributeView>
+        implements UserDefinedFileAttributeView
+    {
+        private User(final FileSystemDriverBase driver,
+            final FileAttributesFactory factory, final Path path,
+            final String name, final LinkOption... options)
+        {
+            super(driver, factory, path, UserDefinedFileAttributeView.class,
+                name, options);
+        }
+
+        @Override
+        public final List<String> list()
+            throws IOException
+        {
+            return get().list();
+        }
+
+        @Override
+        public final int size(final String name)
+            throws IOException
+        {
+            return get().size(name);
+        }
+
+        @Override
+        public final int read(final String name, final ByteBuffer dst)
+            throws IOException
+        {
+            return get().read(name, dst);
+        }
+
+        @Override
+        public final int write(final String name, final ByteBuffer src)
+            throws IOException
+        {
+            try {
+                return getForUpdate().write(name, src);
+            } finally {
+                updated();
+            }
+        }
+
+        @Override
+        public final void delete(final String name)
+            throws IOException
+        {
+            try {
+                getForUpdate().delete(name);
+            } finally {
+                updated();
+            }
+        }
+    }
+
+    private static final class BulkUser
+        extends User
+        implements BulkUserDefinedAttributeView
+    {
+        private BulkUser(final FileSystemDriverBase driver,
+            final FileAttributesFactory factory, final Path path,
+            final String name, final LinkOption... options)
+        {
+            super(driver, factory, path, name, options);
+        }
+
+        @Override
+        public int sizeIfPresent(final String name)
+            throws IOException
+        {
+            return bulk().sizeIfPresent(name);
+        }
+
+        @Override
+        public Map<String, Integer> sizes()
+            throws IOException
+        {
+            return bulk().sizes();
+        }
+
+        @Override
+        public Map<String, ByteBuffer> readAll(final ByteBuffer dst)
+            throws IOException
+        {
+            return bulk().readAll(dst);
+        }
+
+        private BulkUserDefinedAttributeView bulk()
+            throws IOException
+        {
+            return (BulkUserDefinedAttributeView) get();
+        }
+    }
+}
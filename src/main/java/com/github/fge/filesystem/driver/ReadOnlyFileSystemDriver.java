@@ -22,28 +22,24 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
-import java.nio.file.AccessMode;
 import java.nio.file.CopyOption;
-import java.nio.file.DirectoryStream;
-import java.nio.file.FileStore;
 import java.nio.file.LinkOption;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.ReadOnlyFileSystemException;
 import java.nio.file.StandardOpenOption;
-import java.nio.file.WatchService;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
-import java.nio.file.attribute.FileAttributeView;
-import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 /**
  * A {@link FileSystemDriver} composition implementation over another driver
@@ -57,7 +53,7 @@ import java.util.Set;
 @SuppressWarnings("OverloadedVarargsMethod")
 @ParametersAreNonnullByDefault
 public final class ReadOnlyFileSystemDriver
-    implements FileSystemDriver
+    extends ForwardingFileSystemDriver
 {
     private static final Set<OpenOption> WRITE_OPTIONS;
 
@@ -74,9 +70,6 @@ public final class ReadOnlyFileSystemDriver
         WRITE_OPTIONS = Collections.unmodifiableSet(set);
     }
 
-
-    private final FileSystemDriver delegate;
-
     @Nonnull
     public static FileSystemDriver wrap(@Nonnull final FileSystemDriver driver)
     {
@@ -87,7 +80,7 @@ public final class ReadOnlyFileSystemDriver
 
     private ReadOnlyFileSystemDriver(final FileSystemDriver delegate)
     {
-        this.delegate = Objects.requireNonNull(delegate);
+        super(delegate);
     }
 
     @Nonnull
@@ -106,147 +99,131 @@ public final class ReadOnlyFileSystemDriver
         final FileAttribute<?>... attrs)
         throws IOException
     {
-        final Set<? extends OpenOption> set = new HashSet<>(WRITE_OPTIONS);
-        set.retainAll(options);
-        if (!set.isEmpty())
-            throw new ReadOnlyFileSystemException();
+        checkReadOnly(options);
         return delegate.newByteChannel(path, options, attrs);
     }
 
+    @Nonnull
     @Override
-    public void createDirectory(final Path dir, final FileAttribute<?>... attrs)
+    public AsynchronousFileChannel newAsynchronousFileChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        @Nullable final ExecutorService executor,
+        final FileAttribute<?>... attrs)
         throws IOException
     {
-        throw new ReadOnlyFileSystemException();
+        checkReadOnly(options);
+        return delegate.newAsynchronousFileChannel(path, options, executor,
+            attrs);
     }
 
+    @Nonnull
     @Override
-    public void delete(final Path path)
+    public FileChannel newFileChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        final FileAttribute<?>... attrs)
         throws IOException
     {
-        throw new ReadOnlyFileSystemException();
+        checkReadOnly(options);
+        return delegate.newFileChannel(path, options, attrs);
     }
 
     @Override
-    public void copy(final Path source, final Path target,
-        final Set<CopyOption> options)
+    public void createDirectory(final Path dir, final FileAttribute<?>... attrs)
         throws IOException
     {
         throw new ReadOnlyFileSystemException();
     }
 
     @Override
-    public void move(final Path source, final Path target,
-        final Set<CopyOption> options)
+    public void delete(final Path path)
         throws IOException
     {
         throw new ReadOnlyFileSystemException();
     }
 
     @Override
-    public void setAttribute(final Path path, final String attribute,
-        final Object value, final LinkOption... options)
+    public void copy(final Path source, final Path target,
+        final Set<CopyOption> options)
         throws IOException
     {
         throw new ReadOnlyFileSystemException();
     }
 
     @Override
-    @Nonnull
-    public FileStore getFileStore()
-    {
-        return delegate.getFileStore();
-    }
-
-    @Override
-    @Nonnull
-    public UserPrincipalLookupService getUserPrincipalLookupService()
-    {
-        return delegate.getUserPrincipalLookupService();
-    }
-
-    @Override
-    @Nonnull
-    public WatchService newWatchService()
-    {
-        return delegate.newWatchService();
-    }
-
-    @Override
-    @Nonnull
-    public InputStream newInputStream(final Path path,
-        final Set<OpenOption> options)
+    public void move(final Path source, final Path target,
+        final Set<CopyOption> options)
         throws IOException
     {
-        return delegate.newInputStream(path, options);
+        throw new ReadOnlyFileSystemException();
     }
 
     @Override
-    @Nonnull
-    public DirectoryStream<Path> newDirectoryStream(final Path dir,
-        final DirectoryStream.Filter<? super Path> filter)
+    public boolean rename(final Path source, final Path target,
+        final Set<CopyOption> options)
         throws IOException
     {
-        return delegate.newDirectoryStream(dir, filter);
+        throw new ReadOnlyFileSystemException();
     }
 
     @Override
-    public boolean isSameFile(final Path path, final Path path2)
+    public boolean deleteTree(final Path path)
         throws IOException
     {
-        return delegate.isSameFile(path, path2);
+        throw new ReadOnlyFileSystemException();
     }
 
     @Override
-    public boolean isHidden(final Path path)
+    public boolean copyTree(final Path source, final Path target,
+        final Set<CopyOption> options)
         throws IOException
     {
-        return delegate.isHidden(path);
+        throw new ReadOnlyFileSystemException();
     }
 
     @Override
-    public void checkAccess(final Path path, final AccessMode... modes)
+    public void batchCreateDirectory(final Collection<Path> dirs,
+        final FileAttribute<?>... attrs)
         throws IOException
     {
-        delegate.checkAccess(path, modes);
+        throw new ReadOnlyFileSystemException();
     }
 
     @Override
-    @Nullable
-    public <V extends FileAttributeView> V getFileAttributeView(final Path path,
-        final Class<V> type, final LinkOption... options)
+    public void batchDelete(final Collection<Path> paths)
+        throws IOException
     {
-        return delegate.getFileAttributeView(path, type, options);
+        throw new ReadOnlyFileSystemException();
     }
 
     @Override
-    public <A extends BasicFileAttributes> A readAttributes(final Path path,
-        final Class<A> type, final LinkOption... options)
+    public void setAttribute(final Path path, final String attribute,
+        final Object value, final LinkOption... options)
         throws IOException
     {
-        return delegate.readAttributes(path, type, options);
+        throw new ReadOnlyFileSystemException();
     }
 
     @Override
-    public Map<String, Object> readAttributes(final Path path,
-        final String attributes, final LinkOption... options)
+    public void setAttributes(final Path path,
+        final Map<String, Object> attributes, final LinkOption... options)
         throws IOException
     {
-        return delegate.readAttributes(path, attributes, options);
+        throw new ReadOnlyFileSystemException();
     }
 
-    @Nonnull
     @Override
-    public Object getPathMetadata(final Path path)
+    public void batchSetAttribute(final Collection<Path> paths,
+        final String attribute, final Object value, final LinkOption... options)
         throws IOException
     {
-        return delegate.getPathMetadata(path);
+        throw new ReadOnlyFileSystemException();
     }
 
-    @Override
-    public void close()
-        throws IOException
+    private static void checkReadOnly(final Set<? extends OpenOption> options)
     {
-        delegate.close();
+        final Set<? extends OpenOption> set = new HashSet<>(WRITE_OPTIONS);
+        set.retainAll(options);
+        if (!set.isEmpty())
+            throw new ReadOnlyFileSystemException();
     }
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.driver;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Symbolic link resolution for {@link FileSystemDriverBase}
+ *
+ * <p>Paths are resolved one name element at a time, from the root; each
+ * element is resolved against the real path of its parent, then looked up in
+ * a bounded, least recently used cache. Only on a cache miss is {@link
+ * FileSystemDriverBase#getLinkTarget(Path)} called. The cache stores both
+ * links (mapped to their fully resolved targets) and non links (mapped to
+ * themselves), so that resolving a path whose prefixes have already been seen
+ * requires no I/O at all.</p>
+ *
+ * <p>Each cached link also records the paths its resolution went through
+ * (including through other links); invalidating any of these paths, or a
+ * path above them, also drops the link, so that retargeting an intermediate
+ * link is seen by all the links resolved through it.</p>
+ *
+ * <p>Resolution fails with a {@link FileSystemException} if more than {@link
+ * #MAX_HOPS} links have to be followed, which is how loops are detected.</p>
+ */
+@ParametersAreNonnullByDefault
+final class SymbolicLinkResolver
+{
+    static final int MAX_HOPS = 40;
+
+    private final FileSystemDriverBase driver;
+    // Guarded by itself
+    private final Map<Path, CachedPath> cache;
+
+    SymbolicLinkResolver(final FileSystemDriverBase driver,
+        final int maxEntries)
+    {
+        this.driver = driver;
+        cache = new LinkedHashMap<Path, CachedPath>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(
+                final Map.Entry<Path, CachedPath> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Resolve all symbolic links in a path
+     *
+     * @param path the path
+     * @return the real path
+     * @throws FileSystemException too many levels of symbolic links
+     * @throws IOException failed to read a link
+     */
+    @Nonnull
+    Path resolve(final Path path)
+        throws IOException
+    {
+        return resolve(path.toAbsolutePath(), path, new int[1], null);
+    }
+
+    /**
+     * Forget everything known about a path and the paths below it
+     *
+     * <p>Links resolved through the path, or through a path below it, are
+     * forgotten as well.</p>
+     *
+     * @param path the path
+     */
+    void invalidate(final Path path)
+    {
+        final Path absolute = path.toAbsolutePath();
+        final Path normalized = absolute.normalize();
+
+        synchronized (cache) {
+            final Path real = resolveCached(absolute);
+            final Iterator<Map.Entry<Path, CachedPath>> iterator
+                = cache.entrySet().iterator();
+
+            Map.Entry<Path, CachedPath> entry;
+
+            while (iterator.hasNext()) {
+                entry = iterator.next();
+                if (isBelow(entry.getKey(), normalized, real)
+                    || entry.getValue().dependsOn(normalized, real))
+                    iterator.remove();
+            }
+        }
+    }
+
+    /*
+     * If deps is not null, all paths looked up during the resolution,
+     * including when resolving links, are added to it.
+     */
+    private Path resolve(final Path absolute, final Path orig,
+        final int[] hops, @Nullable final List<Path> deps)
+        throws IOException
+    {
+        Path current = absolute.getRoot();
+        Path candidate;
+        CachedPath entry;
+        Path target;
+        List<Path> linkDeps;
+
+        for (final Path element: absolute) {
+            if (isDot(element))
+                continue;
+            if (isDotDot(element)) {
+                current = parentOf(current);
+                continue;
+            }
+            candidate = current.resolve(element);
+            synchronized (cache) {
+                entry = cache.get(candidate);
+            }
+            if (entry == null) {
+                target = driver.getLinkTarget(candidate);
+                if (target == null) {
+                    entry = new CachedPath(candidate, null);
+                } else {
+                    if (++hops[0] > MAX_HOPS)
+                        throw new FileSystemException(orig.toString(), null,
+                            "too many levels of symbolic links");
+                    linkDeps = new ArrayList<>();
+                    entry = new CachedPath(resolve(current.resolve(target),
+                        orig, hops, linkDeps), linkDeps);
+                }
+                synchronized (cache) {
+                    cache.put(candidate, entry);
+                }
+            }
+            if (deps != null) {
+                deps.add(candidate);
+                if (entry.deps != null)
+                    deps.addAll(entry.deps);
+            }
+            current = entry.real;
+        }
+
+        return current;
+    }
+
+    // Must be called with the cache lock held
+    @Nullable
+    private Path resolveCached(final Path absolute)
+    {
+        Path current = absolute.getRoot();
+        CachedPath entry;
+
+        for (final Path element: absolute) {
+            if (isDot(element))
+                continue;
+            if (isDotDot(element)) {
+                current = parentOf(current);
+                continue;
+            }
+            entry = cache.get(current.resolve(element));
+            if (entry == null)
+                return null;
+            current = entry.real;
+        }
+
+        return current;
+    }
+
+    private static boolean isBelow(final Path path, final Path normalized,
+        @Nullable final Path real)
+    {
+        return path.startsWith(normalized)
+            || real != null && path.startsWith(real);
+    }
+
+    private static Path parentOf(final Path path)
+    {
+        final Path parent = path.getParent();
+        return parent == null ? path : parent;
+    }
+
+    private static boolean isDot(final Path element)
+    {
+        return ".".equals(element.toString());
+    }
+
+    private static boolean isDotDot(final Path element)
+    {
+        return "..".equals(element.toString());
+    }
+
+    /*
+     * The real path of a cache key; for links, also the paths looked up
+     * while resolving the link target
+     */
+    private static final class CachedPath
+    {
+        private final Path real;
+        @Nullable
+        private final List<Path> deps;
+
+        private CachedPath(final Path real, @Nullable final List<Path> deps)
+        {
+            this.real = real;
+            this.deps = deps;
+        }
+
+        private boolean dependsOn(final Path normalized,
+            @Nullable final Path real)
+        {
+            if (deps == null)
+                return false;
+            for (final Path dep: deps)
+                if (isBelow(dep, normalized, real))
+                    return true;
+            return false;
+        }
+    }
+}
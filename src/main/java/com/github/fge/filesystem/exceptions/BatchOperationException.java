@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.exceptions;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exception thrown when some of the operations of a batch failed
+ *
+ * <p>Batch operations are not atomic: the operations on paths which are not
+ * reported by {@link #getFailures()} have succeeded. Each failure is also
+ * recorded as a {@link #getSuppressed() suppressed exception}.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class BatchOperationException
+    extends IOException
+{
+    private final Map<Path, IOException> failures;
+    private final int total;
+
+    /**
+     * Constructor
+     *
+     * @param failures the failures, indexed by path
+     * @param total the total number of operations in the batch
+     */
+    public BatchOperationException(
+        final Map<Path, ? extends IOException> failures, final int total)
+    {
+        super(failures.size() + " of " + total + " operations failed");
+        this.failures = Collections.unmodifiableMap(
+            new LinkedHashMap<Path, IOException>(failures));
+        this.total = total;
+        for (final IOException failure: failures.values())
+            addSuppressed(failure);
+    }
+
+    /**
+     * Return the failed operations
+     *
+     * @return an unmodifiable map of paths to the exceptions of their
+     * respective operations, in the order of the batch
+     */
+    public Map<Path, IOException> getFailures()
+    {
+        return failures;
+    }
+
+    /**
+     * Return the total number of operations in the batch
+     *
+     * @return the number of operations, including the failed ones
+     */
+    public int getTotal()
+    {
+        return total;
+    }
+}
@@ -23,10 +23,12 @@ import java.nio.file.Path;
 import java.nio.file.spi.FileSystemProvider;
 
 /**
- * TODO! Due to a design fault, see description
+ * Unchecked wrapper for an {@link java.io.IOException}
  *
- * <p>The problem here is that for the moment, attribute view loading is
- * <strong>eager</strong> whereas it should be lazy.</p>
+ * <p>Attribute views of classes other than the standard ones are built when
+ * requested, from a method which does not declare {@code IOException}; should
+ * fetching the metadata of the path fail then, this exception is thrown
+ * instead.</p>
  *
  * @see FileSystemProvider#getFileAttributeView(Path, Class, LinkOption...)
  */
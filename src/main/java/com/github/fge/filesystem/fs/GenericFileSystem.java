@@ -26,6 +26,7 @@ import com.github.fge.filesystem.path.PathElements;
 import com.github.fge.filesystem.path.PathElementsFactory;
 import com.github.fge.filesystem.path.matchers.PathMatcherFactory;
 import com.github.fge.filesystem.provider.FileSystemRepository;
+import com.github.fge.filesystem.watch.WatchServiceBase;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
@@ -38,7 +39,6 @@ import java.nio.file.WatchService;
 import java.nio.file.attribute.UserPrincipalLookupService;
 import java.nio.file.spi.FileSystemProvider;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -173,13 +173,7 @@ public final class GenericFileSystem
     @Override
     public Set<String> supportedFileAttributeViews()
     {
-        final Set<String> set = new HashSet<>();
-
-        for (final String name: attributesFactory.getDescriptors().keySet())
-            if (attributesFactory.supportsFileAttributeView(name))
-                set.add(name);
-
-        return Collections.unmodifiableSet(set);
+        return attributesFactory.getSupportedViews();
     }
 
     @SuppressWarnings("OverloadedVarargsMethod")
@@ -229,6 +223,11 @@ public final class GenericFileSystem
     public WatchService newWatchService()
         throws IOException
     {
-        return driver.newWatchService();
+        final WatchService service = driver.newWatchService();
+
+        if (service instanceof WatchServiceBase)
+            ((WatchServiceBase) service).attach(this);
+
+        return service;
     }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors running on daemon threads
+ *
+ * <p>These are used for the default executors of this package and of the
+ * rest of this library (asynchronous channels, tree operations, polling watch
+ * services); since their threads are daemon threads, they do not prevent the
+ * JVM from exiting and need not be shut down.</p>
+ *
+ * <p>Threads are named after the given prefix, followed by a dash and a
+ * sequence number.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class DaemonExecutors
+{
+    private static final long KEEPALIVE_SECONDS = 60L;
+
+    private DaemonExecutors()
+    {
+    }
+
+    /**
+     * Create a thread pool with a fixed maximum number of threads
+     *
+     * <p>Threads idle for a minute are stopped; when all threads are busy,
+     * further tasks are queued.</p>
+     *
+     * @param prefix the prefix of thread names
+     * @param threads the maximum number of threads
+     * @return a new thread pool
+     */
+    @Nonnull
+    public static ThreadPoolExecutor newThreadPool(final String prefix,
+        final int threads)
+    {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+            threads, KEEPALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), threadFactory(prefix));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Create a scheduled thread pool
+     *
+     * <p>Cancelled tasks are removed from the queue immediately.</p>
+     *
+     * @param prefix the prefix of thread names
+     * @param threads the number of threads
+     * @return a new scheduled thread pool
+     */
+    @Nonnull
+    public static ScheduledThreadPoolExecutor newScheduledThreadPool(
+        final String prefix, final int threads)
+    {
+        final ScheduledThreadPoolExecutor executor
+            = new ScheduledThreadPoolExecutor(threads, threadFactory(prefix));
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    private static ThreadFactory threadFactory(final String prefix)
+    {
+        final AtomicInteger count = new AtomicInteger();
+
+        return new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(final Runnable r)
+            {
+                final Thread thread = new Thread(r,
+                    prefix + '-' + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A bounded pool of direct byte buffers of a fixed size
+ *
+ * <p>The number of buffers handed out at any given time is capped; released
+ * buffers are kept for reuse, since direct buffers are expensive to allocate.
+ * </p>
+ */
+@ParametersAreNonnullByDefault
+final class DirectBufferPool
+{
+    private final int bufferSize;
+    private final Semaphore permits;
+    private final Queue<ByteBuffer> buffers
+        = new ConcurrentLinkedQueue<>();
+
+    DirectBufferPool(final int bufferSize, final int maxBuffers)
+    {
+        this.bufferSize = bufferSize;
+        permits = new Semaphore(maxBuffers);
+    }
+
+    int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    /**
+     * Obtain a buffer, if the cap allows it
+     *
+     * @return a cleared buffer, or {@code null} if the maximum number of
+     * buffers is already in use
+     */
+    @Nullable
+    ByteBuffer tryAcquire()
+    {
+        if (!permits.tryAcquire())
+            return null;
+
+        final ByteBuffer buf = buffers.poll();
+
+        return buf != null ? buf : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    void release(final ByteBuffer buf)
+    {
+        buf.clear();
+        buffers.offer(buf);
+        permits.release();
+    }
+
+    int available()
+    {
+        return permits.availablePermits();
+    }
+}
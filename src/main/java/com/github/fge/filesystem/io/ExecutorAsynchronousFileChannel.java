@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@link AsynchronousFileChannel} running operations of a blocking {@link
+ * SeekableByteChannel} on an {@link ExecutorService}
+ *
+ * <p>Each read or write is submitted as a task to the executor; since the
+ * underlying channel has a single position, positional operations are
+ * serialized on the channel.</p>
+ *
+ * <p>File locks are not supported: all lock methods throw {@link
+ * UnsupportedOperationException}.</p>
+ *
+ * <p>Closing this channel does not shut down the executor.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class ExecutorAsynchronousFileChannel
+    extends AsynchronousFileChannel
+{
+    private final SeekableByteChannel channel;
+    private final ExecutorService executor;
+    private final boolean readable;
+    private final boolean writable;
+
+    /*
+     * Guards the position of the channel; not a monitor, so that blocking
+     * I/O on the channel does not pin the carrier of a virtual thread
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Return the executor used when none is specified
+     *
+     * <p>This executor uses at most twice as many daemon threads as there are
+     * available processors; threads idle for a minute are stopped, and further
+     * tasks are queued. Since operations block on the underlying channel,
+     * supply your own executor if many channels do I/O at the same time.</p>
+     *
+     * @return the default executor
+     */
+    @Nonnull
+    public static ExecutorService getDefaultExecutor()
+    {
+        return DefaultExecutor.INSTANCE;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param channel the underlying channel
+     * @param executor the executor to run operations on
+     * @param readable whether the channel was opened for reading
+     * @param writable whether the channel was opened for writing
+     */
+    public ExecutorAsynchronousFileChannel(final SeekableByteChannel channel,
+        final ExecutorService executor, final boolean readable,
+        final boolean writable)
+    {
+        this.channel = Objects.requireNonNull(channel);
+        this.executor = Objects.requireNonNull(executor);
+        this.readable = readable;
+        this.writable = writable;
+    }
+
+    @Override
+    public long size()
+        throws IOException
+    {
+        lock.lock();
+        try {
+            return channel.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public AsynchronousFileChannel truncate(final long size)
+        throws IOException
+    {
+        if (size < 0L)
+            throw new IllegalArgumentException("negative size");
+        if (!writable)
+            throw new NonWritableChannelException();
+        lock.lock();
+        try {
+            channel.truncate(size);
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    @Override
+    public void force(final boolean metaData)
+        throws IOException
+    {
+        if (!channel.isOpen())
+            throw new ClosedChannelException();
+        if (channel instanceof FileChannel)
+            ((FileChannel) channel).force(metaData);
+    }
+
+    @Override
+    public <A> void lock(final long position, final long size,
+        final boolean shared, final A attachment,
+        final CompletionHandler<FileLock, ? super A> handler)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Future<FileLock> lock(final long position, final long size,
+        final boolean shared)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FileLock tryLock(final long position, final long size,
+        final boolean shared)
+        throws IOException
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <A> void read(final ByteBuffer dst, final long position,
+        final A attachment,
+        final CompletionHandler<Integer, ? super A> handler)
+    {
+        Objects.requireNonNull(handler);
+        submit(readTask(dst, position), attachment, handler);
+    }
+
+    @Override
+    public Future<Integer> read(final ByteBuffer dst, final long position)
+    {
+        return executor.submit(readTask(dst, position));
+    }
+
+    @Override
+    public <A> void write(final ByteBuffer src, final long position,
+        final A attachment,
+        final CompletionHandler<Integer, ? super A> handler)
+    {
+        Objects.requireNonNull(handler);
+        submit(writeTask(src, position), attachment, handler);
+    }
+
+    @Override
+    public Future<Integer> write(final ByteBuffer src, final long position)
+    {
+        return executor.submit(writeTask(src, position));
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        channel.close();
+    }
+
+    private Callable<Integer> readTask(final ByteBuffer dst,
+        final long position)
+    {
+        Objects.requireNonNull(dst);
+        if (position < 0L)
+            throw new IllegalArgumentException("negative position");
+        if (dst.isReadOnly())
+            throw new IllegalArgumentException("read only buffer");
+        if (!readable)
+            throw new NonReadableChannelException();
+
+        return new Callable<Integer>()
+        {
+            @Override
+            public Integer call()
+                throws IOException
+            {
+                lock.lock();
+                try {
+                    channel.position(position);
+                    return channel.read(dst);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+    }
+
+    private Callable<Integer> writeTask(final ByteBuffer src,
+        final long position)
+    {
+        Objects.requireNonNull(src);
+        if (position < 0L)
+            throw new IllegalArgumentException("negative position");
+        if (!writable)
+            throw new NonWritableChannelException();
+
+        return new Callable<Integer>()
+        {
+            @Override
+            public Integer call()
+                throws IOException
+            {
+                lock.lock();
+                try {
+                    channel.position(position);
+                    return channel.write(src);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+    }
+
+    private <V, A> void submit(final Callable<V> task, final A attachment,
+        final CompletionHandler<V, ? super A> handler)
+    {
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final V result;
+
+                try {
+                    result = task.call();
+                } catch (Exception e) {
+                    handler.failed(e, attachment);
+                    return;
+                }
+
+                handler.completed(result, attachment);
+            }
+        });
+    }
+
+    private static final class DefaultExecutor
+    {
+        private static final ExecutorService INSTANCE
+            = DaemonExecutors.newThreadPool("async-channel",
+                2 * Runtime.getRuntime().availableProcessors());
+
+        private DefaultExecutor()
+        {
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The backend side of a {@link WriteBehindOutputStream}
+ *
+ * <p>This interface matches the usual multipart upload model of object
+ * stores: parts are uploaded independently, possibly concurrently and out of
+ * order, and the upload is then either completed or aborted.</p>
+ *
+ * <p>Implementations must be thread safe: {@link #uploadPart(int, ByteBuffer)}
+ * is called from executor threads.</p>
+ */
+public interface PartUploader
+{
+    /**
+     * Upload a part
+     *
+     * @param partNumber the part number, starting from 1
+     * @param data the contents of the part; this buffer is not reused by the
+     * caller
+     * @throws IOException upload failure
+     */
+    void uploadPart(int partNumber, ByteBuffer data)
+        throws IOException;
+
+    /**
+     * Complete the upload
+     *
+     * <p>This is called once all parts have been successfully uploaded. The
+     * part count may be 0 if nothing was written.</p>
+     *
+     * @param partCount the number of uploaded parts
+     * @throws IOException failure to complete the upload
+     */
+    void complete(int partCount)
+        throws IOException;
+
+    /**
+     * Abort the upload
+     *
+     * <p>This is called, after all running uploads are done, if a part failed
+     * to upload.</p>
+     *
+     * @throws IOException failure to abort the upload
+     */
+    void abort()
+        throws IOException;
+}
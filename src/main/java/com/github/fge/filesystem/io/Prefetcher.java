@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fetches blocks from a channel ahead of its reader
+ *
+ * <p>Once {@link #start() started}, a single task reads consecutive blocks
+ * from the channel into pooled buffers until {@code depth} blocks are ready,
+ * the end of the channel is reached or no more buffers are available from the
+ * pool; it is rescheduled as blocks are consumed.</p>
+ *
+ * <p>While a fetch is running, the channel must not be used by anyone else;
+ * when {@link #next()} returns {@code null}, no fetch is running and the
+ * caller may read the channel directly.</p>
+ */
+@ParametersAreNonnullByDefault
+final class Prefetcher
+    implements Runnable
+{
+    /**
+     * Returned by {@link #next()} when the end of the channel is reached
+     */
+    static final ByteBuffer EOF = ByteBuffer.allocate(0);
+
+    private final ReadableByteChannel channel;
+    private final DirectBufferPool pool;
+    private final Executor executor;
+    private final int depth;
+
+    /*
+     * Not a monitor: threads waiting for a fetch must not pin their carrier,
+     * and fetches are never scheduled with the lock held, so that a direct
+     * executor does not read the channel under the lock.
+     */
+    private final Lock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // All guarded by lock
+    private final Deque<ByteBuffer> ready = new ArrayDeque<>();
+    private boolean started = false;
+    private boolean running = false;
+    private boolean eof = false;
+    private Exception failure = null;
+
+    Prefetcher(final ReadableByteChannel channel, final DirectBufferPool pool,
+        final Executor executor, final int depth)
+    {
+        this.channel = channel;
+        this.pool = pool;
+        this.executor = executor;
+        this.depth = depth;
+    }
+
+    void start()
+    {
+        final boolean schedule;
+
+        lock.lock();
+        try {
+            started = true;
+            schedule = schedule();
+        } finally {
+            lock.unlock();
+        }
+
+        if (schedule)
+            execute();
+    }
+
+    /**
+     * Return the next block
+     *
+     * <p>This waits for the running fetch, if any. The returned buffer must be
+     * {@link #release(ByteBuffer) released} once consumed.</p>
+     *
+     * @return the next block, {@link #EOF}, or {@code null} if no block is
+     * available and none is being fetched
+     * @throws IOException the fetch failed
+     * @throws RuntimeException the fetch failed with an unchecked exception
+     */
+    @Nullable
+    ByteBuffer next()
+        throws IOException
+    {
+        final ByteBuffer buf;
+        final boolean schedule;
+
+        lock.lock();
+        try {
+            while (ready.isEmpty() && running)
+                await();
+
+            buf = ready.poll();
+
+            if (buf == null) {
+                if (failure != null) {
+                    final Exception e = failure;
+                    failure = null;
+                    if (e instanceof IOException)
+                        throw (IOException) e;
+                    throw (RuntimeException) e;
+                }
+                return eof ? EOF : null;
+            }
+
+            schedule = schedule();
+        } finally {
+            lock.unlock();
+        }
+
+        if (schedule)
+            execute();
+
+        return buf;
+    }
+
+    void release(final ByteBuffer buf)
+    {
+        if (buf != EOF)
+            pool.release(buf);
+    }
+
+    /**
+     * Stop fetching and discard all fetched blocks
+     *
+     * <p>This waits for the running fetch, if any; the prefetcher can be
+     * {@link #start() started} again afterwards.</p>
+     *
+     * @throws IOException interrupted while waiting for the running fetch
+     */
+    void stop()
+        throws IOException
+    {
+        lock.lock();
+        try {
+            started = false;
+            while (running)
+                await();
+            ByteBuffer buf;
+            while ((buf = ready.poll()) != null)
+                pool.release(buf);
+            eof = false;
+            failure = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        while (true) {
+            final ByteBuffer buf = pool.tryAcquire();
+
+            if (buf == null) {
+                finish(null);
+                return;
+            }
+
+            final boolean more;
+
+            try {
+                more = fill(buf);
+            } catch (IOException | RuntimeException e) {
+                pool.release(buf);
+                finish(e);
+                return;
+            }
+
+            lock.lock();
+            try {
+                buf.flip();
+                if (buf.hasRemaining())
+                    ready.add(buf);
+                else
+                    pool.release(buf);
+                eof = !more;
+                changed.signalAll();
+                if (!(started && more && ready.size() < depth)) {
+                    running = false;
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /*
+     * Must be called with the lock held; if this returns true, the caller
+     * must call execute() once the lock is released.
+     */
+    private boolean schedule()
+    {
+        if (!started || running || eof || failure != null
+            || ready.size() >= depth)
+            return false;
+        running = true;
+        return true;
+    }
+
+    private void execute()
+    {
+        try {
+            executor.execute(this);
+        } catch (RuntimeException e) {
+            finish(null);
+            throw e;
+        }
+    }
+
+    private void finish(@Nullable final Exception e)
+    {
+        lock.lock();
+        try {
+            if (e != null)
+                failure = e;
+            running = false;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean fill(final ByteBuffer buf)
+        throws IOException
+    {
+        while (buf.hasRemaining())
+            if (channel.read(buf) == -1)
+                return false;
+        return true;
+    }
+
+    // Must be called with the lock held
+    private void await()
+        throws InterruptedIOException
+    {
+        try {
+            changed.await();
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+}
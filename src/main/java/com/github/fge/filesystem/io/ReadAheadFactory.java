@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import com.github.fge.filesystem.provider.FileSystemFactoryProvider;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * Wraps driver streams and channels so that reads are performed ahead of
+ * their consumers
+ *
+ * <p>With remote drivers, each refill of a stream usually costs a network
+ * round trip; a read ahead stream fetches the next blocks in the background
+ * while the consumer processes the current one, so that sequential reads are
+ * limited by bandwidth rather than latency.</p>
+ *
+ * <p>Blocks are read into direct buffers taken from a pool shared by all
+ * streams and channels created by this factory; the total size of this pool
+ * caps the memory used for read ahead. When the pool is exhausted, reads go
+ * directly to the driver.</p>
+ *
+ * <p>Seekable channels only read ahead once their reads have been sequential
+ * for a while (see {@link #wrap(SeekableByteChannel)}).</p>
+ *
+ * <p>Read ahead is disabled by default; enable it for a filesystem with
+ * {@link FileSystemFactoryProvider#setReadAheadFactory(ReadAheadFactory)}.
+ * </p>
+ */
+@ParametersAreNonnullByDefault
+public final class ReadAheadFactory
+{
+    /**
+     * A factory which does not wrap anything
+     */
+    public static final ReadAheadFactory DISABLED = new ReadAheadFactory();
+
+    private final DirectBufferPool pool;
+    private final Executor executor;
+    private final int depth;
+
+    /**
+     * Constructor
+     *
+     * @param blockSize the size of a block, in bytes
+     * @param depth the maximum number of blocks to read ahead of a consumer
+     * @param maxMemory the maximum number of bytes to use for all blocks of
+     * all streams and channels
+     * @param executor the executor to run reads on
+     * @throws IllegalArgumentException block size or depth are not strictly
+     * positive, or the memory cap is smaller than a block
+     */
+    public ReadAheadFactory(final int blockSize, final int depth,
+        final long maxMemory, final Executor executor)
+    {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("block size must be strictly"
+                + " positive");
+        if (depth <= 0)
+            throw new IllegalArgumentException("depth must be strictly"
+                + " positive");
+        if (maxMemory < blockSize)
+            throw new IllegalArgumentException("memory cap must be at least"
+                + " one block");
+        pool = new DirectBufferPool(blockSize,
+            (int) Math.min(maxMemory / blockSize, Integer.MAX_VALUE));
+        this.executor = Objects.requireNonNull(executor);
+        this.depth = depth;
+    }
+
+    /**
+     * Constructor
+     *
+     * <p>Reads are run on {@link
+     * ExecutorAsynchronousFileChannel#getDefaultExecutor()}.</p>
+     *
+     * @param blockSize the size of a block, in bytes
+     * @param depth the maximum number of blocks to read ahead of a consumer
+     * @param maxMemory the maximum number of bytes to use for all blocks of
+     * all streams and channels
+     */
+    public ReadAheadFactory(final int blockSize, final int depth,
+        final long maxMemory)
+    {
+        this(blockSize, depth, maxMemory,
+            ExecutorAsynchronousFileChannel.getDefaultExecutor());
+    }
+
+    private ReadAheadFactory()
+    {
+        pool = null;
+        executor = null;
+        depth = 0;
+    }
+
+    /**
+     * Tell whether this factory wraps streams and channels
+     *
+     * @return false if this factory is {@link #DISABLED}
+     */
+    public boolean isEnabled()
+    {
+        return pool != null;
+    }
+
+    /**
+     * Wrap an input stream
+     *
+     * <p>The stream starts reading ahead on the first read.</p>
+     *
+     * @param in the stream
+     * @return a read ahead stream, or the stream itself if this factory is
+     * {@link #DISABLED}
+     */
+    @Nonnull
+    public InputStream wrap(final InputStream in)
+    {
+        Objects.requireNonNull(in);
+        return isEnabled() ? new ReadAheadInputStream(in, this) : in;
+    }
+
+    /**
+     * Wrap a read only seekable channel
+     *
+     * <p>The channel starts reading ahead after two consecutive sequential
+     * reads, and stops as soon as its position is changed.</p>
+     *
+     * @param channel the channel
+     * @return a read ahead channel, or the channel itself if this factory is
+     * {@link #DISABLED}
+     * @throws IOException cannot read the position of the channel
+     */
+    @Nonnull
+    public SeekableByteChannel wrap(final SeekableByteChannel channel)
+        throws IOException
+    {
+        Objects.requireNonNull(channel);
+        return isEnabled() ? new ReadAheadSeekableByteChannel(channel, this)
+            : channel;
+    }
+
+    Prefetcher newPrefetcher(final ReadableByteChannel channel)
+    {
+        return new Prefetcher(channel, pool, executor, depth);
+    }
+
+    int availableBlocks()
+    {
+        return pool.available();
+    }
+}
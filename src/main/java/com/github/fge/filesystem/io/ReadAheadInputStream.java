@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link InputStream} reading ahead of its consumer
+ *
+ * <p>Prefetching starts on the first read. If no buffer is available from the
+ * pool, reads go directly to the underlying stream.</p>
+ *
+ * @see ReadAheadFactory#wrap(InputStream)
+ */
+@ParametersAreNonnullByDefault
+final class ReadAheadInputStream
+    extends InputStream
+{
+    private final InputStream in;
+    private final Prefetcher prefetcher;
+    private final byte[] single = new byte[1];
+
+    private ByteBuffer current = null;
+    private boolean started = false;
+    private boolean closed = false;
+
+    ReadAheadInputStream(final InputStream in, final ReadAheadFactory factory)
+    {
+        this.in = in;
+        prefetcher = factory.newPrefetcher(StreamAdapters.newChannel(in));
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+        if (closed)
+            throw new IOException("stream closed");
+        if (off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+        if (len == 0)
+            return 0;
+
+        if (!started) {
+            started = true;
+            prefetcher.start();
+        }
+
+        if (current == null || !current.hasRemaining()) {
+            if (current != null)
+                prefetcher.release(current);
+            current = prefetcher.next();
+        }
+
+        if (current == Prefetcher.EOF)
+            return -1;
+
+        if (current == null) {
+            final int ret = in.read(b, off, len);
+            prefetcher.start();
+            return ret;
+        }
+
+        final int count = Math.min(len, current.remaining());
+
+        current.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public int available()
+        throws IOException
+    {
+        return current == null ? 0 : current.remaining();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            prefetcher.stop();
+        } finally {
+            if (current != null)
+                prefetcher.release(current);
+            current = null;
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A read only {@link SeekableByteChannel} reading ahead of its consumer
+ *
+ * <p>Reads go directly to the underlying channel until a number of
+ * consecutive reads have been sequential; prefetching then starts, and stops
+ * again as soon as the position is changed to anything other than the end of
+ * the last read.</p>
+ *
+ * @see ReadAheadFactory#wrap(SeekableByteChannel)
+ */
+@ParametersAreNonnullByDefault
+final class ReadAheadSeekableByteChannel
+    implements SeekableByteChannel
+{
+    /**
+     * Number of consecutive sequential reads before prefetching starts
+     */
+    static final int SEQUENTIAL_THRESHOLD = 2;
+
+    private final SeekableByteChannel channel;
+    private final Prefetcher prefetcher;
+
+    private ByteBuffer current = null;
+    private long position;
+    private long expected;
+    private int sequentialReads = 0;
+    private boolean prefetching = false;
+
+    ReadAheadSeekableByteChannel(final SeekableByteChannel channel,
+        final ReadAheadFactory factory)
+        throws IOException
+    {
+        this.channel = channel;
+        prefetcher = factory.newPrefetcher(channel);
+        position = expected = channel.position();
+    }
+
+    @Override
+    public int read(final ByteBuffer dst)
+        throws IOException
+    {
+        checkOpen();
+
+        if (position != expected) {
+            stopPrefetching();
+            channel.position(position);
+            sequentialReads = 0;
+        }
+
+        final int ret = prefetching ? readAhead(dst) : channel.read(dst);
+
+        if (ret > 0)
+            position += ret;
+        expected = position;
+
+        if (!prefetching && ++sequentialReads >= SEQUENTIAL_THRESHOLD) {
+            prefetching = true;
+            prefetcher.start();
+        }
+
+        return ret;
+    }
+
+    @Override
+    public int write(final ByteBuffer src)
+        throws IOException
+    {
+        checkOpen();
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position()
+        throws IOException
+    {
+        checkOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(final long newPosition)
+        throws IOException
+    {
+        if (newPosition < 0L)
+            throw new IllegalArgumentException("negative position");
+        checkOpen();
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size()
+        throws IOException
+    {
+        checkOpen();
+        return channel.size();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(final long size)
+        throws IOException
+    {
+        checkOpen();
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if (!channel.isOpen())
+            return;
+        try {
+            stopPrefetching();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private int readAhead(final ByteBuffer dst)
+        throws IOException
+    {
+        if (current == null || !current.hasRemaining()) {
+            if (current != null)
+                prefetcher.release(current);
+            current = prefetcher.next();
+        }
+
+        if (current == Prefetcher.EOF)
+            return -1;
+
+        if (current == null) {
+            final int ret = channel.read(dst);
+            prefetcher.start();
+            return ret;
+        }
+
+        final int count = Math.min(dst.remaining(), current.remaining());
+        final ByteBuffer slice = current.duplicate();
+
+        slice.limit(slice.position() + count);
+        dst.put(slice);
+        current.position(current.position() + count);
+        return count;
+    }
+
+    private void stopPrefetching()
+        throws IOException
+    {
+        prefetching = false;
+        try {
+            prefetcher.stop();
+        } finally {
+            if (current != null)
+                prefetcher.release(current);
+            current = null;
+        }
+    }
+
+    private void checkOpen()
+        throws ClosedChannelException
+    {
+        if (!channel.isOpen())
+            throw new ClosedChannelException();
+    }
+}
@@ -0,0 +1,548 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A writable {@link SeekableByteChannel} buffering its contents locally
+ *
+ * <p>When the channel is opened, the path is created or truncated if the
+ * options say so, and checked for existence otherwise; errors such as {@link
+ * FileAlreadyExistsException} are therefore reported by {@link #open(
+ * FileSystemDriver, Path, Set) open()}, and the path exists for as long as the
+ * channel is open. The current contents of the path (if it is not truncated)
+ * are then read using {@link FileSystemDriver#newInputStream(Path, Set)}; all
+ * reads and writes are performed on this local copy. When the channel is
+ * closed, if it has been modified, its contents are written back using {@link
+ * FileSystemDriver#newOutputStream(Path, Set)}.</p>
+ *
+ * <p>The local copy is kept on the heap as long as it is no larger than the
+ * spill threshold; beyond that, it is moved to a temporary file, which is
+ * deleted when the channel is closed.</p>
+ *
+ * <p>{@link #isOpen()} never blocks; {@link #close()} makes further operations
+ * fail immediately, and only waits for an operation already in progress,
+ * which only ever accesses the local copy, before writing the contents
+ * back.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class SpillingSeekableByteChannel
+    implements SeekableByteChannel
+{
+    /**
+     * The default spill threshold (1 MiB)
+     */
+    public static final int DEFAULT_SPILL_THRESHOLD = 1 << 20;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final Set<OpenOption> READ_OPTIONS
+        = Collections.<OpenOption>singleton(StandardOpenOption.READ);
+    private static final Set<OpenOption> WRITE_OPTIONS = optionSet(
+        StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    private static final Set<OpenOption> CREATE_NEW_OPTIONS = optionSet(
+        StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+    private static final Set<OpenOption> TRUNCATE_OPTIONS = optionSet(
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+    private final FileSystemDriver driver;
+    private final Path path;
+    private final boolean readable;
+    private final boolean append;
+    private final int spillThreshold;
+
+    /*
+     * Not a monitor: closing the channel writes its contents back using the
+     * driver, which must not pin the carrier of a virtual thread
+     */
+    private final Lock lock = new ReentrantLock();
+
+    private volatile boolean open = true;
+
+    // All guarded by lock; heap is null once spilled, storage once closed
+    private HeapChannel heap = new HeapChannel();
+    private SeekableByteChannel storage = heap;
+    private boolean dirty = false;
+
+    /**
+     * Open a channel with the default spill threshold
+     *
+     * @param driver the driver
+     * @param path the path
+     * @param options the channel options; they must have been checked
+     * already, and must include {@link StandardOpenOption#WRITE}
+     * @return a new channel
+     * @throws IOException failed to create, truncate or read the path
+     *
+     * @see #DEFAULT_SPILL_THRESHOLD
+     */
+    @Nonnull
+    public static SeekableByteChannel open(final FileSystemDriver driver,
+        final Path path, final Set<? extends OpenOption> options)
+        throws IOException
+    {
+        return open(driver, path, options, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * Open a channel
+     *
+     * @param driver the driver
+     * @param path the path
+     * @param options the channel options; they must have been checked
+     * already, and must include {@link StandardOpenOption#WRITE}
+     * @param spillThreshold the size above which contents are moved to a
+     * temporary file; {@code 0} to always use a temporary file
+     * @return a new channel
+     * @throws IllegalArgumentException spill threshold is negative
+     * @throws IOException failed to create, truncate or read the path
+     */
+    @Nonnull
+    public static SeekableByteChannel open(final FileSystemDriver driver,
+        final Path path, final Set<? extends OpenOption> options,
+        final int spillThreshold)
+        throws IOException
+    {
+        Objects.requireNonNull(driver);
+        Objects.requireNonNull(path);
+        if (spillThreshold < 0)
+            throw new IllegalArgumentException("spill threshold must not be"
+                + " negative");
+
+        final SpillingSeekableByteChannel channel
+            = new SpillingSeekableByteChannel(driver, path,
+                options.contains(StandardOpenOption.READ),
+                options.contains(StandardOpenOption.APPEND), spillThreshold);
+
+        channel.lock.lock();
+        try {
+            channel.init(options);
+        } catch (IOException | RuntimeException e) {
+            channel.open = false;
+            channel.storage.close();
+            throw e;
+        } finally {
+            channel.lock.unlock();
+        }
+
+        return channel;
+    }
+
+    private SpillingSeekableByteChannel(final FileSystemDriver driver,
+        final Path path, final boolean readable, final boolean append,
+        final int spillThreshold)
+    {
+        this.driver = driver;
+        this.path = path;
+        this.readable = readable;
+        this.append = append;
+        this.spillThreshold = spillThreshold;
+    }
+
+    @Override
+    public int read(final ByteBuffer dst)
+        throws IOException
+    {
+        lock.lock();
+        try {
+            checkOpen();
+            if (!readable)
+                throw new NonReadableChannelException();
+            return storage.read(dst);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int write(final ByteBuffer src)
+        throws IOException
+    {
+        lock.lock();
+        try {
+            checkOpen();
+            final int nw = doWrite(src);
+            dirty = true;
+            return nw;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long position()
+        throws IOException
+    {
+        lock.lock();
+        try {
+            checkOpen();
+            return storage.position();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SeekableByteChannel position(final long newPosition)
+        throws IOException
+    {
+        if (newPosition < 0L)
+            throw new IllegalArgumentException("negative position");
+
+        lock.lock();
+        try {
+            checkOpen();
+            storage.position(newPosition);
+            return this;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long size()
+        throws IOException
+    {
+        lock.lock();
+        try {
+            checkOpen();
+            return storage.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SeekableByteChannel truncate(final long size)
+        throws IOException
+    {
+        if (size < 0L)
+            throw new IllegalArgumentException("negative size");
+
+        lock.lock();
+        try {
+            checkOpen();
+            if (size < storage.size())
+                dirty = true;
+            storage.truncate(size);
+            return this;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return open;
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        open = false;
+
+        lock.lock();
+        try {
+            if (storage == null)
+                return;
+
+            try {
+                if (dirty)
+                    writeBack();
+            } finally {
+                storage.close();
+                storage = null;
+                heap = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isSpilled()
+    {
+        lock.lock();
+        try {
+            return heap == null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkOpen()
+        throws ClosedChannelException
+    {
+        if (!open)
+            throw new ClosedChannelException();
+    }
+
+    private void init(final Set<? extends OpenOption> options)
+        throws IOException
+    {
+        if (options.contains(StandardOpenOption.CREATE_NEW)) {
+            touch(CREATE_NEW_OPTIONS);
+            return;
+        }
+
+        if (options.contains(StandardOpenOption.TRUNCATE_EXISTING)) {
+            touch(options.contains(StandardOpenOption.CREATE) ? WRITE_OPTIONS
+                : TRUNCATE_OPTIONS);
+            return;
+        }
+
+        if (!options.contains(StandardOpenOption.CREATE)) {
+            load();
+            return;
+        }
+
+        try {
+            load();
+        } catch (NoSuchFileException ignored) {
+            try {
+                touch(CREATE_NEW_OPTIONS);
+            } catch (FileAlreadyExistsException ignored2) {
+                // Created in the meantime
+                load();
+            }
+        }
+    }
+
+    private void touch(final Set<OpenOption> options)
+        throws IOException
+    {
+        driver.newOutputStream(path, options).close();
+    }
+
+    private void load()
+        throws IOException
+    {
+        try (
+            final InputStream in = driver.newInputStream(path, READ_OPTIONS);
+        ) {
+            final ReadableByteChannel source = StreamAdapters.newChannel(in);
+            final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+            while (source.read(buf) != -1) {
+                buf.flip();
+                while (buf.hasRemaining())
+                    doWrite(buf);
+                buf.clear();
+            }
+        }
+
+        storage.position(0L);
+    }
+
+    private int doWrite(final ByteBuffer src)
+        throws IOException
+    {
+        if (append)
+            storage.position(storage.size());
+        if (heap != null && heap.position() + src.remaining() > spillThreshold)
+            spill();
+        return storage.write(src);
+    }
+
+    private void spill()
+        throws IOException
+    {
+        final Path tmp = Files.createTempFile("spill", ".tmp");
+        final FileChannel file;
+
+        try {
+            file = FileChannel.open(tmp, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e2) {
+                e.addSuppressed(e2);
+            }
+            throw e;
+        }
+
+        try {
+            heap.transferTo(file);
+            file.position(heap.position());
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+
+        storage = file;
+        heap = null;
+    }
+
+    private void writeBack()
+        throws IOException
+    {
+        try (
+            final OutputStream out = driver.newOutputStream(path,
+                WRITE_OPTIONS);
+        ) {
+            if (heap != null) {
+                heap.writeTo(out);
+            } else {
+                final FileChannel file = (FileChannel) storage;
+                final WritableByteChannel target
+                    = StreamAdapters.newChannel(out);
+                final long size = file.size();
+                long done = 0L;
+                while (done < size)
+                    done += file.transferTo(done, size - done, target);
+            }
+            out.flush();
+        }
+    }
+
+    private static Set<OpenOption> optionSet(final OpenOption... options)
+    {
+        return Collections.unmodifiableSet(
+            new HashSet<OpenOption>(Arrays.asList(options)));
+    }
+
+    /*
+     * Local copy of the contents until the spill threshold is reached; the
+     * enclosing channel never lets it grow beyond that threshold
+     */
+    private static final class HeapChannel
+        implements SeekableByteChannel
+    {
+        private byte[] contents = new byte[0];
+        private int size = 0;
+        private long position = 0L;
+
+        @Override
+        public int read(final ByteBuffer dst)
+        {
+            if (position >= size)
+                return -1;
+
+            final int count = Math.min(dst.remaining(), size - (int) position);
+            dst.put(contents, (int) position, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int write(final ByteBuffer src)
+        {
+            final int len = src.remaining();
+            final int start = (int) position;
+            final int end = start + len;
+
+            if (end > contents.length)
+                contents = Arrays.copyOf(contents,
+                    Math.max(end, 2 * contents.length));
+            // Bytes beyond the size may be left over by a truncation
+            if (start > size)
+                Arrays.fill(contents, size, start, (byte) 0);
+
+            src.get(contents, start, len);
+            position = end;
+            size = Math.max(size, end);
+            return len;
+        }
+
+        @Override
+        public long position()
+        {
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(final long newPosition)
+        {
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size()
+        {
+            return size;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(final long size)
+        {
+            if (size < this.size)
+                this.size = (int) size;
+            if (position > size)
+                position = size;
+            return this;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        private void transferTo(final FileChannel file)
+            throws IOException
+        {
+            final ByteBuffer buf = ByteBuffer.wrap(contents, 0, size);
+
+            while (buf.hasRemaining())
+                file.write(buf, buf.position());
+        }
+
+        private void writeTo(final OutputStream out)
+            throws IOException
+        {
+            out.write(contents, 0, size);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channels over the streams of a driver
+ *
+ * <p>Unlike the channels returned by {@link Channels}, these do not hold a
+ * monitor while reading or writing their stream, which is a blocking driver
+ * call; they must therefore not be used by several threads at once. Closing
+ * them does not close the stream.</p>
+ */
+@ParametersAreNonnullByDefault
+final class StreamAdapters
+{
+    private static final int CHUNK_SIZE = 8192;
+
+    private StreamAdapters()
+    {
+    }
+
+    static ReadableByteChannel newChannel(final InputStream in)
+    {
+        return new InputStreamChannel(in);
+    }
+
+    static WritableByteChannel newChannel(final OutputStream out)
+    {
+        return new OutputStreamChannel(out);
+    }
+
+    private abstract static class StreamChannel
+    {
+        // Used for buffers without an accessible array
+        private byte[] chunk = new byte[0];
+        private volatile boolean open = true;
+
+        protected final byte[] chunk(final int len)
+        {
+            final int size = Math.min(len, CHUNK_SIZE);
+
+            if (chunk.length < size)
+                chunk = new byte[size];
+
+            return chunk;
+        }
+
+        protected final void checkOpen()
+            throws ClosedChannelException
+        {
+            if (!open)
+                throw new ClosedChannelException();
+        }
+
+        public final boolean isOpen()
+        {
+            return open;
+        }
+
+        public final void close()
+        {
+            open = false;
+        }
+    }
+
+    private static final class InputStreamChannel
+        extends StreamChannel
+        implements ReadableByteChannel
+    {
+        private final InputStream in;
+
+        private InputStreamChannel(final InputStream in)
+        {
+            this.in = in;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst)
+            throws IOException
+        {
+            checkOpen();
+
+            final int len = dst.remaining();
+
+            if (len == 0)
+                return 0;
+
+            final int ret;
+
+            if (dst.hasArray()) {
+                ret = in.read(dst.array(), dst.arrayOffset() + dst.position(),
+                    len);
+                if (ret > 0)
+                    dst.position(dst.position() + ret);
+                return ret;
+            }
+
+            final byte[] chunk = chunk(len);
+
+            ret = in.read(chunk, 0, Math.min(len, chunk.length));
+            if (ret > 0)
+                dst.put(chunk, 0, ret);
+            return ret;
+        }
+    }
+
+    private static final class OutputStreamChannel
+        extends StreamChannel
+        implements WritableByteChannel
+    {
+        private final OutputStream out;
+
+        private OutputStreamChannel(final OutputStream out)
+        {
+            this.out = out;
+        }
+
+        @Override
+        public int write(final ByteBuffer src)
+            throws IOException
+        {
+            checkOpen();
+
+            final int len = src.remaining();
+
+            if (src.hasArray()) {
+                out.write(src.array(), src.arrayOffset() + src.position(),
+                    len);
+                src.position(src.limit());
+                return len;
+            }
+
+            int count;
+
+            while (src.hasRemaining()) {
+                final byte[] chunk = chunk(src.remaining());
+                count = Math.min(src.remaining(), chunk.length);
+                src.get(chunk, 0, count);
+                out.write(chunk, 0, count);
+            }
+
+            return len;
+        }
+    }
+}
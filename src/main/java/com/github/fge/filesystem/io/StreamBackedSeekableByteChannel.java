@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A read only {@link SeekableByteChannel} built on top of an input stream
+ *
+ * <p>The input stream is obtained from {@link
+ * FileSystemDriver#newInputStream(Path, Set)} on the first read. Seeking
+ * forward {@link InputStream#skip(long) skips} bytes from the current stream;
+ * seeking backward closes the current stream and opens a new one. Changing the
+ * position of the channel performs no I/O by itself; the stream is only
+ * repositioned on the next read.</p>
+ *
+ * <p>The size of the channel is read from the {@link BasicFileAttributes} of
+ * the path, only once.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class StreamBackedSeekableByteChannel
+    implements SeekableByteChannel
+{
+    private final FileSystemDriver driver;
+    private final Path path;
+    private final Set<OpenOption> options;
+
+    /*
+     * Not a monitor: reads block on the driver's stream, and must not pin
+     * the carrier of a virtual thread
+     */
+    private final Lock lock = new ReentrantLock();
+
+    // All guarded by lock
+    private InputStream in = null;
+    private ReadableByteChannel channel = null;
+    private long streamPosition = 0L;
+    private long position = 0L;
+    private long size = -1L;
+    private boolean open = true;
+
+    /**
+     * Constructor
+     *
+     * @param driver the driver
+     * @param path the path to read from
+     * @param options the options to open input streams with
+     */
+    public StreamBackedSeekableByteChannel(final FileSystemDriver driver,
+        final Path path, final Set<OpenOption> options)
+    {
+        this.driver = Objects.requireNonNull(driver);
+        this.path = Objects.requireNonNull(path);
+        this.options = Objects.requireNonNull(options);
+    }
+
+    @Override
+    public int read(final ByteBuffer dst)
+        throws IOException
+    {
+        lock.lock();
+        try {
+            checkOpen();
+
+            if (!seek())
+                return -1;
+
+            final int nr = channel.read(dst);
+
+            if (nr > 0) {
+                position += nr;
+                streamPosition += nr;
+            }
+
+            return nr;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int write(final ByteBuffer src)
+        throws IOException
+    {
+        checkOpen();
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position()
+        throws IOException
+    {
+        lock.lock();
+        try {
+            checkOpen();
+            return position;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SeekableByteChannel position(final long newPosition)
+        throws IOException
+    {
+        lock.lock();
+        try {
+            if (newPosition < 0L)
+                throw new IllegalArgumentException("negative position");
+            checkOpen();
+            position = newPosition;
+            return this;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long size()
+        throws IOException
+    {
+        lock.lock();
+        try {
+            checkOpen();
+            if (size == -1L)
+                size = driver.readAttributes(path, BasicFileAttributes.class)
+                    .size();
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SeekableByteChannel truncate(final long size)
+        throws IOException
+    {
+        checkOpen();
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        lock.lock();
+        try {
+            return open;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        lock.lock();
+        try {
+            if (!open)
+                return;
+            open = false;
+            closeStream();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkOpen()
+        throws ClosedChannelException
+    {
+        if (!open)
+            throw new ClosedChannelException();
+    }
+
+    /*
+     * Bring the stream to the channel position; return false if the end of
+     * the stream is reached before that.
+     */
+    private boolean seek()
+        throws IOException
+    {
+        if (in != null && position < streamPosition)
+            closeStream();
+
+        if (in == null) {
+            in = driver.newInputStream(path, options);
+            channel = StreamAdapters.newChannel(in);
+            streamPosition = 0L;
+        }
+
+        long skipped;
+
+        while (streamPosition < position) {
+            skipped = in.skip(position - streamPosition);
+            if (skipped <= 0L) {
+                // skip() may not detect the end of stream; read() will
+                if (in.read() == -1)
+                    return false;
+                skipped = 1L;
+            }
+            streamPosition += skipped;
+        }
+
+        return true;
+    }
+
+    private void closeStream()
+        throws IOException
+    {
+        final InputStream stream = in;
+
+        in = null;
+        channel = null;
+
+        if (stream != null)
+            stream.close();
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An {@link OutputStream} uploading its contents in parts, in the background
+ *
+ * <p>Writes are accumulated into a buffer of the configured part size; each
+ * time the buffer is full, it is handed over to a {@link PartUploader} on an
+ * executor, and writing continues into a new buffer. At most a configured
+ * number of parts may be pending at any time: once this limit is reached,
+ * writes block until a part is done uploading.</p>
+ *
+ * <p>{@link #close()} uploads the last (partial) part, waits for all parts
+ * and then either {@link PartUploader#complete(int) completes} the upload or,
+ * if any part failed, {@link PartUploader#abort() aborts} it and throws the
+ * first failure. A failure is also reported by the next write following it.
+ * </p>
+ *
+ * <p>{@link #flush()} does not upload partial parts, since backends usually
+ * enforce a minimum part size; it only reports failures.</p>
+ *
+ * <p>Instances of this class are not thread safe.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class WriteBehindOutputStream
+    extends OutputStream
+{
+    private final PartUploader uploader;
+    private final int partSize;
+    private final int maxPendingParts;
+    private final Executor executor;
+
+    private final Semaphore pending;
+    private final AtomicReference<IOException> failure
+        = new AtomicReference<>();
+
+    private ByteBuffer buffer = null;
+    private int partCount = 0;
+    private boolean closed = false;
+
+    /**
+     * Constructor
+     *
+     * @param uploader the part uploader
+     * @param partSize the size of a part, in bytes
+     * @param maxPendingParts the maximum number of parts being uploaded
+     * @param executor the executor to run uploads on
+     * @throws IllegalArgumentException part size or maximum number of pending
+     * parts are not strictly positive
+     */
+    public WriteBehindOutputStream(final PartUploader uploader,
+        final int partSize, final int maxPendingParts, final Executor executor)
+    {
+        if (partSize <= 0)
+            throw new IllegalArgumentException("part size must be strictly"
+                + " positive");
+        if (maxPendingParts <= 0)
+            throw new IllegalArgumentException("maximum number of pending"
+                + " parts must be strictly positive");
+        this.uploader = Objects.requireNonNull(uploader);
+        this.partSize = partSize;
+        this.maxPendingParts = maxPendingParts;
+        this.executor = Objects.requireNonNull(executor);
+        pending = new Semaphore(maxPendingParts);
+    }
+
+    /**
+     * Constructor
+     *
+     * <p>Uploads are run on {@link
+     * ExecutorAsynchronousFileChannel#getDefaultExecutor()}.</p>
+     *
+     * @param uploader the part uploader
+     * @param partSize the size of a part, in bytes
+     * @param maxPendingParts the maximum number of parts being uploaded
+     */
+    public WriteBehindOutputStream(final PartUploader uploader,
+        final int partSize, final int maxPendingParts)
+    {
+        this(uploader, partSize, maxPendingParts,
+            ExecutorAsynchronousFileChannel.getDefaultExecutor());
+    }
+
+    @Override
+    public void write(final int b)
+        throws IOException
+    {
+        checkState();
+
+        if (buffer == null)
+            buffer = ByteBuffer.allocate(partSize);
+        buffer.put((byte) b);
+        if (!buffer.hasRemaining())
+            submit();
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+        if (off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+        checkState();
+
+        int offset = off;
+        int remaining = len;
+
+        while (remaining > 0) {
+            if (buffer == null)
+                buffer = ByteBuffer.allocate(partSize);
+            final int count = Math.min(remaining, buffer.remaining());
+            buffer.put(b, offset, count);
+            offset += count;
+            remaining -= count;
+            if (!buffer.hasRemaining())
+                submit();
+        }
+    }
+
+    @Override
+    public void flush()
+        throws IOException
+    {
+        checkState();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if (closed)
+            return;
+        closed = true;
+
+        try {
+            if (failure.get() == null && buffer != null
+                && buffer.position() > 0)
+                submit();
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+
+        buffer = null;
+        awaitAll();
+
+        IOException e = failure.get();
+
+        if (e == null)
+            try {
+                uploader.complete(partCount);
+                return;
+            } catch (IOException | RuntimeException e2) {
+                e = fail(e2);
+            }
+
+        try {
+            uploader.abort();
+        } catch (IOException | RuntimeException e2) {
+            e.addSuppressed(e2);
+        }
+        throw e;
+    }
+
+    /*
+     * Hand the current buffer over to the executor. Any failure to do so is
+     * recorded, so that the part is never silently dropped; the part count
+     * is only incremented once the part is actually submitted.
+     */
+    private void submit()
+        throws IOException
+    {
+        final ByteBuffer data = buffer;
+
+        buffer = null;
+        data.flip();
+
+        try {
+            pending.acquire();
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+            throw fail(new InterruptedIOException(
+                "interrupted while waiting for a part upload"));
+        }
+
+        final int partNumber = partCount + 1;
+
+        try {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        if (failure.get() == null)
+                            uploader.uploadPart(partNumber, data);
+                    } catch (IOException | RuntimeException e) {
+                        fail(e);
+                    } finally {
+                        pending.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            pending.release();
+            throw fail(new IOException("cannot submit part upload", e));
+        }
+
+        partCount = partNumber;
+    }
+
+    /*
+     * Wait for all submitted parts. This is not interruptible, since the
+     * upload must not be completed or aborted while parts are in flight;
+     * once a failure is recorded, pending parts are skipped quickly.
+     */
+    private void awaitAll()
+    {
+        pending.acquireUninterruptibly(maxPendingParts);
+        pending.release(maxPendingParts);
+    }
+
+    /*
+     * Record a failure, unless one has been recorded already; return the
+     * failure to throw
+     */
+    private IOException fail(final Exception e)
+    {
+        final IOException exception = e instanceof IOException
+            ? (IOException) e : new IOException(e);
+
+        failure.compareAndSet(null, exception);
+        return exception;
+    }
+
+    private void checkState()
+        throws IOException
+    {
+        if (closed)
+            throw new IOException("stream closed");
+
+        final IOException e = failure.get();
+
+        if (e != null)
+            throw new IOException("part upload failed", e);
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+/**
+ * Channel and stream implementations
+ *
+ * <p>Classes in this package are building blocks used by {@link
+ * com.github.fge.filesystem.driver.FileSystemDriverBase} to provide default
+ * implementations of I/O methods on top of the few methods a driver has to
+ * implement; you can also use them in your own drivers.</p>
+ */
+package com.github.fge.filesystem.io;
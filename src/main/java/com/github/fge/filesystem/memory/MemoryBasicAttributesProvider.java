@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import com.github.fge.filesystem.attributes.provider.BasicFileAttributesProvider;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Provider for the {@code "basic"} view of memory filesystems
+ */
+@ParametersAreNonnullByDefault
+public final class MemoryBasicAttributesProvider
+    extends BasicFileAttributesProvider
+{
+    private final MemoryNode node;
+
+    public MemoryBasicAttributesProvider(final MemoryNode node)
+        throws IOException
+    {
+        this.node = node;
+    }
+
+    @Override
+    public FileTime lastModifiedTime()
+    {
+        return node.getLastModifiedTime();
+    }
+
+    @Override
+    public FileTime lastAccessTime()
+    {
+        return node.getLastAccessTime();
+    }
+
+    @Override
+    public FileTime creationTime()
+    {
+        return node.getCreationTime();
+    }
+
+    @Override
+    public boolean isRegularFile()
+    {
+        return !node.isDirectory();
+    }
+
+    @Override
+    public boolean isDirectory()
+    {
+        return node.isDirectory();
+    }
+
+    @Override
+    public long size()
+    {
+        return node.getSize();
+    }
+
+    @Override
+    public Object fileKey()
+    {
+        return node;
+    }
+
+    @Override
+    public void setTimes(@Nullable final FileTime lastModifiedTime,
+        @Nullable final FileTime lastAccessTime,
+        @Nullable final FileTime createTime)
+        throws IOException
+    {
+        node.setTimes(lastModifiedTime, lastAccessTime, createTime);
+    }
+}
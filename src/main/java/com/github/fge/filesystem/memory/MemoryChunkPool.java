@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystemException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The pool of direct buffers holding the content of files
+ *
+ * <p>All chunks have the same size. The number of chunks in use is capped by
+ * the capacity of the filesystem; released chunks are kept for reuse, up to a
+ * limit, since direct buffers are expensive to allocate.</p>
+ */
+@ParametersAreNonnullByDefault
+final class MemoryChunkPool
+{
+    private static final int ZEROS_SIZE = 8192;
+    private static final ByteBuffer ZEROS
+        = ByteBuffer.allocateDirect(ZEROS_SIZE).asReadOnlyBuffer();
+
+    private final int chunkSize;
+    private final long maxChunks;
+    private final int maxRetained;
+
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicInteger retained = new AtomicInteger();
+    private final Queue<ByteBuffer> chunks = new ConcurrentLinkedQueue<>();
+
+    MemoryChunkPool(final int chunkSize, final long capacity,
+        final int maxRetained)
+    {
+        this.chunkSize = chunkSize;
+        maxChunks = capacity / chunkSize;
+        this.maxRetained = maxRetained;
+    }
+
+    int getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    long getCapacity()
+    {
+        return maxChunks * chunkSize;
+    }
+
+    long getUsedSpace()
+    {
+        return used.get() * chunkSize;
+    }
+
+    /**
+     * Obtain a zero filled chunk
+     *
+     * @return a cleared chunk
+     * @throws FileSystemException the filesystem is full
+     */
+    ByteBuffer acquire()
+        throws FileSystemException
+    {
+        long current;
+
+        do {
+            current = used.get();
+            if (current >= maxChunks)
+                throw new FileSystemException(null, null, "filesystem is full");
+        } while (!used.compareAndSet(current, current + 1));
+
+        final ByteBuffer chunk = chunks.poll();
+
+        if (chunk == null)
+            return ByteBuffer.allocateDirect(chunkSize);
+
+        retained.decrementAndGet();
+        zero(chunk);
+        return chunk;
+    }
+
+    void release(final ByteBuffer chunk)
+    {
+        used.decrementAndGet();
+
+        if (retained.incrementAndGet() > maxRetained) {
+            retained.decrementAndGet();
+            return;
+        }
+
+        chunk.clear();
+        chunks.offer(chunk);
+    }
+
+    /**
+     * Drop all retained chunks
+     */
+    void clear()
+    {
+        while (chunks.poll() != null)
+            retained.decrementAndGet();
+    }
+
+    private static void zero(final ByteBuffer chunk)
+    {
+        chunk.clear();
+
+        while (chunk.hasRemaining()) {
+            final ByteBuffer zeros = ZEROS.duplicate();
+            zeros.limit(Math.min(ZEROS_SIZE, chunk.remaining()));
+            chunk.put(zeros);
+        }
+
+        chunk.clear();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A directory of a {@link MemoryFileSystemDriver}
+ *
+ * <p>Entries are kept in a concurrent sorted map, so that lookups need no
+ * locking and listings are sorted and weakly consistent.</p>
+ */
+@ParametersAreNonnullByDefault
+final class MemoryDirectory
+    extends MemoryNode
+{
+    final ConcurrentNavigableMap<String, MemoryNode> entries
+        = new ConcurrentSkipListMap<>();
+
+    MemoryDirectory(final UserPrincipal owner, final GroupPrincipal group,
+        final Set<PosixFilePermission> permissions)
+    {
+        super(owner, group, permissions);
+    }
+
+    @Override
+    boolean isDirectory()
+    {
+        return true;
+    }
+
+    @Override
+    long getSize()
+    {
+        return 0L;
+    }
+}
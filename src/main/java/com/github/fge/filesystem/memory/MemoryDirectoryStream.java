@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A stream over the entries of a {@link MemoryDirectory}
+ *
+ * <p>Entries are returned in name order; as for the underlying map, iteration
+ * is weakly consistent.</p>
+ */
+@ParametersAreNonnullByDefault
+final class MemoryDirectoryStream
+    implements DirectoryStream<Path>
+{
+    private final Path dir;
+    private final MemoryDirectory directory;
+    private final Filter<? super Path> filter;
+
+    // Both guarded by this
+    private boolean open = true;
+    private boolean iterated = false;
+
+    MemoryDirectoryStream(final Path dir, final MemoryDirectory directory,
+        final Filter<? super Path> filter)
+    {
+        this.dir = dir;
+        this.directory = directory;
+        this.filter = filter;
+    }
+
+    @Override
+    public synchronized Iterator<Path> iterator()
+    {
+        if (!open)
+            throw new IllegalStateException("directory stream is closed");
+        if (iterated)
+            throw new IllegalStateException("iterator already obtained");
+        iterated = true;
+
+        final Iterator<String> names = directory.entries.keySet().iterator();
+
+        return new Iterator<Path>()
+        {
+            private Path next = null;
+
+            @Override
+            public boolean hasNext()
+            {
+                if (next != null)
+                    return true;
+
+                Path candidate;
+
+                while (isOpen() && names.hasNext()) {
+                    candidate = dir.resolve(names.next());
+                    try {
+                        if (filter.accept(candidate)) {
+                            next = candidate;
+                            return true;
+                        }
+                    } catch (IOException e) {
+                        throw new DirectoryIteratorException(e);
+                    }
+                }
+
+                return false;
+            }
+
+            @Override
+            public Path next()
+            {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                final Path ret = next;
+                next = null;
+                return ret;
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        open = false;
+    }
+
+    private synchronized boolean isOpen()
+    {
+        return open;
+    }
+}
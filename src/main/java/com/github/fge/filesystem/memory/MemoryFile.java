@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A regular file of a {@link MemoryFileSystemDriver}
+ *
+ * <p>The content is stored in chunks obtained from a {@link MemoryChunkPool};
+ * bytes of the last chunk beyond the size of the file are always zero, so
+ * that writing past the end of the file leaves a zero filled gap. Reads take
+ * a shared lock, writes an exclusive one.</p>
+ *
+ * <p>As on Unix systems, the content of a deleted file remains available to
+ * the channels which were open at the time of deletion; chunks are returned to
+ * the pool when the last one is closed.</p>
+ */
+@ParametersAreNonnullByDefault
+final class MemoryFile
+    extends MemoryNode
+{
+    private final MemoryChunkPool pool;
+    private final int chunkSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
+
+    // All guarded by lock
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private long size = 0L;
+    private int openCount = 0;
+    private boolean unlinked = false;
+
+    MemoryFile(final MemoryChunkPool pool, final UserPrincipal owner,
+        final GroupPrincipal group, final Set<PosixFilePermission> permissions)
+    {
+        super(owner, group, permissions);
+        this.pool = pool;
+        chunkSize = pool.getChunkSize();
+    }
+
+    @Override
+    boolean isDirectory()
+    {
+        return false;
+    }
+
+    @Override
+    long getSize()
+    {
+        readLock.lock();
+        try {
+            return size;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Read bytes at a given position
+     *
+     * @param position the position
+     * @param dst the buffer to read into
+     * @return the number of bytes read, or -1 if the position is at or beyond
+     * the end of the file
+     */
+    int read(final long position, final ByteBuffer dst)
+    {
+        readLock.lock();
+        try {
+            if (position >= size)
+                return -1;
+
+            long pos = position;
+            int index = (int) (pos / chunkSize);
+            int offset = (int) (pos % chunkSize);
+            int len;
+            ByteBuffer src;
+
+            while (dst.hasRemaining() && pos < size) {
+                len = (int) Math.min(Math.min(chunkSize - offset, size - pos),
+                    dst.remaining());
+                src = chunks.get(index).duplicate();
+                src.limit(offset + len).position(offset);
+                dst.put(src);
+                pos += len;
+                index++;
+                offset = 0;
+            }
+
+            return (int) (pos - position);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Write bytes at a given position
+     *
+     * <p>If the position is beyond the end of the file, the gap is filled
+     * with zeroes. Either all bytes are written, or none are.</p>
+     *
+     * @param position the position
+     * @param src the buffer to write from
+     * @return the number of bytes written
+     * @throws IOException the filesystem is full
+     */
+    int write(final long position, final ByteBuffer src)
+        throws IOException
+    {
+        writeLock.lock();
+        try {
+            return doWrite(position, src);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Write bytes at the end of the file
+     *
+     * @param src the buffer to write from
+     * @return the size of the file after the write
+     * @throws IOException the filesystem is full
+     */
+    long append(final ByteBuffer src)
+        throws IOException
+    {
+        writeLock.lock();
+        try {
+            doWrite(size, src);
+            return size;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Truncate the file
+     *
+     * <p>Does nothing if the given size is greater than or equal to the
+     * current size.</p>
+     *
+     * @param newSize the new size
+     */
+    void truncate(final long newSize)
+    {
+        writeLock.lock();
+        try {
+            if (newSize >= size)
+                return;
+
+            final int needed = chunkCount(newSize);
+
+            while (chunks.size() > needed)
+                pool.release(chunks.remove(chunks.size() - 1));
+
+            final int offset = (int) (newSize % chunkSize);
+
+            if (offset != 0) {
+                final ByteBuffer last = chunks.get(needed - 1);
+                for (int i = offset; i < chunkSize; i++)
+                    last.put(i, (byte) 0);
+            }
+
+            size = newSize;
+            touch();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Create a copy of this file, with default attributes
+     *
+     * @param owner the owner of the copy
+     * @param group the group of the copy
+     * @param permissions the permissions of the copy
+     * @return the copy
+     * @throws IOException the filesystem is full
+     */
+    MemoryFile copy(final UserPrincipal owner, final GroupPrincipal group,
+        final Set<PosixFilePermission> permissions)
+        throws IOException
+    {
+        final MemoryFile copy = new MemoryFile(pool, owner, group,
+            permissions);
+
+        readLock.lock();
+        try {
+            ByteBuffer chunk;
+            for (final ByteBuffer src: chunks) {
+                try {
+                    chunk = pool.acquire();
+                } catch (IOException e) {
+                    copy.free();
+                    throw e;
+                }
+                chunk.put(src.duplicate()).clear();
+                copy.chunks.add(chunk);
+            }
+            copy.size = size;
+        } finally {
+            readLock.unlock();
+        }
+
+        return copy;
+    }
+
+    void open()
+    {
+        writeLock.lock();
+        try {
+            openCount++;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void close()
+    {
+        writeLock.lock();
+        try {
+            if (--openCount == 0 && unlinked)
+                free();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Mark this file as deleted
+     *
+     * <p>The content is released immediately if no channel is open.</p>
+     */
+    void unlink()
+    {
+        writeLock.lock();
+        try {
+            unlinked = true;
+            if (openCount == 0)
+                free();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private int doWrite(final long position, final ByteBuffer src)
+        throws IOException
+    {
+        final int total = src.remaining();
+        final long end = position + total;
+
+        ensureCapacity(end);
+
+        long pos = position;
+        int index = (int) (pos / chunkSize);
+        int offset = (int) (pos % chunkSize);
+        int len;
+        ByteBuffer dst;
+
+        while (src.hasRemaining()) {
+            len = Math.min(chunkSize - offset, src.remaining());
+            dst = chunks.get(index).duplicate();
+            dst.position(offset);
+            final ByteBuffer slice = src.duplicate();
+            slice.limit(slice.position() + len);
+            dst.put(slice);
+            src.position(src.position() + len);
+            pos += len;
+            index++;
+            offset = 0;
+        }
+
+        if (end > size)
+            size = end;
+        touch();
+        return total;
+    }
+
+    private void ensureCapacity(final long end)
+        throws IOException
+    {
+        final int needed = chunkCount(end);
+        final int current = chunks.size();
+
+        try {
+            while (chunks.size() < needed)
+                chunks.add(pool.acquire());
+        } catch (IOException e) {
+            while (chunks.size() > current)
+                pool.release(chunks.remove(chunks.size() - 1));
+            throw e;
+        }
+    }
+
+    private int chunkCount(final long bytes)
+    {
+        return (int) ((bytes + chunkSize - 1) / chunkSize);
+    }
+
+    // Called with the write lock held, or on an unpublished copy
+    private void free()
+    {
+        for (final ByteBuffer chunk: chunks)
+            pool.release(chunk);
+        chunks.clear();
+        size = 0L;
+    }
+}
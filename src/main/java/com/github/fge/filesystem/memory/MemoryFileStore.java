@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import com.github.fge.filesystem.attributes.FileAttributesFactory;
+import com.github.fge.filesystem.filestore.FileStoreBase;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * The file store of a memory filesystem
+ *
+ * <p>Space is accounted for in chunks; the capacity is the one of the {@link
+ * MemoryChunkPool} of the filesystem.</p>
+ */
+@ParametersAreNonnullByDefault
+final class MemoryFileStore
+    extends FileStoreBase
+{
+    private final MemoryChunkPool pool;
+
+    MemoryFileStore(final MemoryChunkPool pool,
+        final FileAttributesFactory factory)
+    {
+        super("memory", factory, false);
+        this.pool = pool;
+    }
+
+    @Override
+    public long getTotalSpace()
+    {
+        return pool.getCapacity();
+    }
+
+    @Override
+    public long getUsableSpace()
+    {
+        return pool.getCapacity() - pool.getUsedSpace();
+    }
+
+    @Override
+    public long getUnallocatedSpace()
+    {
+        return pool.getCapacity() - pool.getUsedSpace();
+    }
+}
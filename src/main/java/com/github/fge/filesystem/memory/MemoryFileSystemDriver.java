@@ -0,0 +1,792 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import com.github.fge.filesystem.driver.UnixLikeFileSystemDriverBase;
+import com.github.fge.filesystem.exceptions.IsDirectoryException;
+import com.github.fge.filesystem.provider.FileSystemFactoryProvider;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A driver for filesystems held in memory
+ *
+ * <p>The tree is made of directories whose entries are held in concurrent
+ * maps: path lookups take no lock. Operations modifying the tree (creations,
+ * deletions, copies and moves) are serialized by a single lock, which makes
+ * moves atomic with regard to each other; a concurrent lookup may however see
+ * a moved entry at both its source and its target for a short time.</p>
+ *
+ * <p>File content is stored in direct buffers of a fixed size ({@link
+ * #DEFAULT_CHUNK_SIZE} by default), taken from a pool shared by all files of
+ * the filesystem; the capacity of the filesystem is capped. Files support
+ * random access through {@link #newByteChannel(Path, Set, FileAttribute[])};
+ * streams are built on top of these channels.</p>
+ *
+ * <p>The {@code "basic"}, {@code "owner"} and {@code "posix"} attribute views
+ * are supported when the driver is used with a {@link
+ * MemoryFileSystemFactoryProvider}. Permissions can be set at creation time
+ * and are recorded, but not enforced. Symbolic links are not supported.</p>
+ *
+ * @see MemoryFileSystemProvider
+ */
+@ParametersAreNonnullByDefault
+public final class MemoryFileSystemDriver
+    extends UnixLikeFileSystemDriverBase
+{
+    /**
+     * Default size of content chunks (16 KiB)
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16384;
+
+    /**
+     * Default capacity (1 GiB)
+     */
+    public static final long DEFAULT_CAPACITY = 1L << 30;
+
+    private static final long MAX_RETAINED_BYTES = 64L << 20;
+
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS
+        = PosixFilePermissions.fromString("rw-r--r--");
+    private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS
+        = PosixFilePermissions.fromString("rwxr-xr-x");
+    private static final String PERMISSIONS_ATTRIBUTE = "posix:permissions";
+
+    private final MemoryChunkPool pool;
+    private final MemoryPrincipal owner;
+    private final MemoryPrincipal group;
+    private final MemoryDirectory root;
+
+    private final Lock treeLock = new ReentrantLock();
+
+    /**
+     * Constructor with the default chunk size and capacity
+     *
+     * @param factoryProvider the factory provider
+     */
+    public MemoryFileSystemDriver(
+        final FileSystemFactoryProvider factoryProvider)
+    {
+        this(factoryProvider, DEFAULT_CHUNK_SIZE, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param factoryProvider the factory provider
+     * @param chunkSize the size of content chunks
+     * @param capacity the capacity of the filesystem, in bytes
+     * @throws IllegalArgumentException chunk size is not strictly positive, or
+     * capacity is lower than the chunk size
+     */
+    public MemoryFileSystemDriver(
+        final FileSystemFactoryProvider factoryProvider, final int chunkSize,
+        final long capacity)
+    {
+        this(factoryProvider, newPool(chunkSize, capacity));
+    }
+
+    private MemoryFileSystemDriver(
+        final FileSystemFactoryProvider factoryProvider,
+        final MemoryChunkPool pool)
+    {
+        super(new MemoryFileStore(pool, factoryProvider.getAttributesFactory()),
+            factoryProvider);
+        this.pool = pool;
+
+        final String user = System.getProperty("user.name", "user");
+        owner = new MemoryPrincipal(user, false);
+        group = new MemoryPrincipal(user, true);
+        root = new MemoryDirectory(owner, group, DIRECTORY_PERMISSIONS);
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService()
+    {
+        return MemoryPrincipal.LOOKUP_SERVICE;
+    }
+
+    @Nonnull
+    @Override
+    public InputStream newInputStream(final Path path,
+        final Set<OpenOption> options)
+        throws IOException
+    {
+        return Channels.newInputStream(newByteChannel(path, options));
+    }
+
+    @Nonnull
+    @Override
+    public OutputStream newOutputStream(final Path path,
+        final Set<OpenOption> options)
+        throws IOException
+    {
+        return Channels.newOutputStream(newByteChannel(path, options));
+    }
+
+    @Nonnull
+    @Override
+    public SeekableByteChannel newByteChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        final boolean append = options.contains(StandardOpenOption.APPEND);
+        final boolean writable
+            = append || options.contains(StandardOpenOption.WRITE);
+        final boolean readable
+            = !writable || options.contains(StandardOpenOption.READ);
+        final boolean createNew
+            = options.contains(StandardOpenOption.CREATE_NEW);
+        final Set<PosixFilePermission> permissions
+            = getPermissions(FILE_PERMISSIONS, attrs);
+
+        final Path absolute = toAbsolute(path);
+        MemoryNode node = lookup(absolute);
+
+        if (writable && (createNew
+            || node == null && options.contains(StandardOpenOption.CREATE)))
+            node = createFile(absolute, createNew, permissions);
+
+        if (node == null)
+            throw new NoSuchFileException(path.toString());
+        if (node.isDirectory())
+            throw new IsDirectoryException(path.toString());
+
+        final MemoryFile file = (MemoryFile) node;
+
+        if (writable && options.contains(StandardOpenOption.TRUNCATE_EXISTING))
+            file.truncate(0L);
+
+        return new MemorySeekableByteChannel(file, readable, writable, append);
+    }
+
+    @Nonnull
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(final Path dir,
+        final DirectoryStream.Filter<? super Path> filter)
+        throws IOException
+    {
+        final MemoryNode node = getNode(dir);
+
+        if (!node.isDirectory())
+            throw new NotDirectoryException(dir.toString());
+
+        return new MemoryDirectoryStream(dir, (MemoryDirectory) node, filter);
+    }
+
+    @Override
+    public void createDirectory(final Path dir, final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        final Set<PosixFilePermission> permissions
+            = getPermissions(DIRECTORY_PERMISSIONS, attrs);
+        final Path absolute = toAbsolute(dir);
+
+        treeLock.lock();
+        try {
+            final MemoryDirectory parent = getParent(absolute);
+            final String name = absolute.getFileName().toString();
+
+            if (parent.entries.containsKey(name))
+                throw new FileAlreadyExistsException(dir.toString());
+
+            parent.entries.put(name,
+                new MemoryDirectory(owner, group, permissions));
+            parent.touch();
+        } finally {
+            treeLock.unlock();
+        }
+    }
+
+    /**
+     * Create several directories
+     *
+     * <p>The tree lock is held for the whole batch; this only serializes the
+     * batch with other modifications of the tree. Lookups take no lock, and
+     * may see part of the directories created before the batch completes.
+     * </p>
+     *
+     * @param dirs the directories to create
+     * @param attrs the attributes of the directories
+     * @throws IOException some directories could not be created
+     */
+    @Override
+    public void batchCreateDirectory(final Collection<Path> dirs,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        treeLock.lock();
+        try {
+            super.batchCreateDirectory(dirs, attrs);
+        } finally {
+            treeLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(final Path path)
+        throws IOException
+    {
+        final Path absolute = toAbsolute(path);
+
+        treeLock.lock();
+        try {
+            final MemoryDirectory parent = getParent(absolute);
+            final String name = absolute.getFileName().toString();
+            final MemoryNode node = parent.entries.get(name);
+
+            if (node == null)
+                throw new NoSuchFileException(path.toString());
+
+            checkRemovable(node, path);
+            parent.entries.remove(name);
+            parent.touch();
+            release(node);
+        } finally {
+            treeLock.unlock();
+        }
+    }
+
+    /**
+     * Delete several paths
+     *
+     * <p>The tree lock is held for the whole batch; this only serializes the
+     * batch with other modifications of the tree. Lookups take no lock, and
+     * may see part of the paths deleted before the batch completes.</p>
+     *
+     * @param paths the victims
+     * @throws IOException some paths could not be deleted
+     */
+    @Override
+    public void batchDelete(final Collection<Path> paths)
+        throws IOException
+    {
+        treeLock.lock();
+        try {
+            super.batchDelete(paths);
+        } finally {
+            treeLock.unlock();
+        }
+    }
+
+    /**
+     * Copy a file or directory
+     *
+     * <p>Directories are copied empty. The content of files is copied before
+     * the tree lock is taken, so that large copies do not block other
+     * modifications of the tree.</p>
+     *
+     * @param source the source
+     * @param target the target
+     * @param options the copy options
+     * @throws IOException source does not exist; or target exists and {@link
+     * StandardCopyOption#REPLACE_EXISTING} is not set; or target is a non
+     * empty directory; or the filesystem is full
+     */
+    @Override
+    public void copy(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        final MemoryNode node = getNode(source);
+        final Path absolute = toAbsolute(target);
+
+        if (absolute.equals(toAbsolute(source)))
+            return;
+
+        final MemoryNode copy = copyNode(node, false,
+            options.contains(StandardCopyOption.COPY_ATTRIBUTES));
+
+        link(absolute, target, copy, options);
+    }
+
+    /**
+     * Copy a file or directory and all of its contents
+     *
+     * <p>The whole subtree is copied before the tree lock is taken, then
+     * linked at once: other threads never see a partial copy. Entries added
+     * to the source while it is being copied may or may not be copied.</p>
+     *
+     * @param source the source
+     * @param target the target
+     * @param options the copy options
+     * @return true
+     * @throws IOException see {@link #copy(Path, Path, Set)}; or the source
+     * is a directory and an ancestor of the target
+     */
+    @Override
+    public boolean copyTree(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        final MemoryNode node = getNode(source);
+        final Path absoluteSource = toAbsolute(source);
+        final Path absolute = toAbsolute(target);
+
+        if (absolute.equals(absoluteSource))
+            return true;
+        if (node.isDirectory() && absolute.startsWith(absoluteSource))
+            throw new FileSystemException(source.toString(),
+                target.toString(), "cannot copy a directory into itself");
+
+        final MemoryNode copy = copyNode(node, true,
+            options.contains(StandardCopyOption.COPY_ATTRIBUTES));
+
+        link(absolute, target, copy, options);
+        return true;
+    }
+
+    /**
+     * Move a file or directory
+     *
+     * <p>Moves are always atomic: {@link StandardCopyOption#ATOMIC_MOVE} is
+     * accepted and has no further effect.</p>
+     *
+     * @param source the source
+     * @param target the target
+     * @param options the copy options
+     * @throws IOException source does not exist; or target exists and {@link
+     * StandardCopyOption#REPLACE_EXISTING} is not set; or target is a non
+     * empty directory; or source is the root directory, or a directory and an
+     * ancestor of the target
+     */
+    @Override
+    public void move(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        final Path absoluteSource = toAbsolute(source);
+        final Path absoluteTarget = toAbsolute(target);
+
+        if (absoluteSource.equals(absoluteTarget))
+            return;
+
+        treeLock.lock();
+        try {
+            final MemoryDirectory sourceParent = getParent(absoluteSource);
+            final String sourceName = absoluteSource.getFileName().toString();
+            final MemoryNode node = sourceParent.entries.get(sourceName);
+
+            if (node == null)
+                throw new NoSuchFileException(source.toString());
+            if (node.isDirectory() && absoluteTarget.startsWith(absoluteSource))
+                throw new FileSystemException(source.toString(),
+                    target.toString(), "cannot move a directory into itself");
+
+            final MemoryDirectory targetParent = getParent(absoluteTarget);
+            final String targetName = absoluteTarget.getFileName().toString();
+
+            replace(targetParent, targetName, target, options);
+            // Link first, so that the node is always reachable
+            targetParent.entries.put(targetName, node);
+            sourceParent.entries.remove(sourceName);
+            sourceParent.touch();
+            targetParent.touch();
+        } finally {
+            treeLock.unlock();
+        }
+    }
+
+    /**
+     * Rename a file or directory
+     *
+     * <p>Moves only relink nodes, so this is the same as {@link #move(Path,
+     * Path, Set)}.</p>
+     *
+     * @param source the source
+     * @param target the target
+     * @param options the copy options
+     * @return true
+     * @throws IOException see {@link #move(Path, Path, Set)}
+     */
+    @Override
+    public boolean rename(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        move(source, target, options);
+        return true;
+    }
+
+    /**
+     * Delete a file or directory and all of its contents
+     *
+     * <p>The subtree is unlinked at once, then its files are released outside
+     * of the tree lock. Files still open remain readable until closed.</p>
+     *
+     * @param path the root of the subtree
+     * @return true
+     * @throws IOException path does not exist, or is the root directory
+     */
+    @Override
+    public boolean deleteTree(final Path path)
+        throws IOException
+    {
+        final Path absolute = toAbsolute(path);
+        final MemoryNode node;
+
+        treeLock.lock();
+        try {
+            final MemoryDirectory parent = getParent(absolute);
+            final String name = absolute.getFileName().toString();
+
+            node = parent.entries.remove(name);
+            if (node == null)
+                throw new NoSuchFileException(path.toString());
+            parent.touch();
+        } finally {
+            treeLock.unlock();
+        }
+
+        release(node);
+        return true;
+    }
+
+    /**
+     * Tell whether two paths refer to the same file
+     *
+     * <p>Unlike the default implementation, this also detects the same file
+     * being accessed through different paths.</p>
+     *
+     * @param path the first path
+     * @param path2 the second path
+     * @return true if the two paths refer to the same file
+     * @throws IOException one of the paths does not exist
+     */
+    @Override
+    public boolean isSameFile(final Path path, final Path path2)
+        throws IOException
+    {
+        //noinspection ObjectEquality
+        return toAbsolute(path).equals(toAbsolute(path2))
+            || getNode(path) == getNode(path2);
+    }
+
+    /**
+     * Check access to a path
+     *
+     * <p>Only the existence of the path is checked; permissions are not
+     * enforced.</p>
+     *
+     * @param path the path
+     * @param modes the access modes
+     * @throws NoSuchFileException path does not exist
+     */
+    @Override
+    public void checkAccess(final Path path, final AccessMode... modes)
+        throws IOException
+    {
+        getNode(path);
+    }
+
+    @Nonnull
+    @Override
+    public Object getPathMetadata(final Path path)
+        throws IOException
+    {
+        return getNode(path);
+    }
+
+    /**
+     * Close this driver
+     *
+     * <p>All files are deleted, and the chunk pool is emptied.</p>
+     *
+     * @throws IOException never thrown
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        treeLock.lock();
+        try {
+            release(root);
+            pool.clear();
+        } finally {
+            treeLock.unlock();
+        }
+    }
+
+    private static MemoryChunkPool newPool(final int chunkSize,
+        final long capacity)
+    {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunk size must be strictly"
+                + " positive");
+        if (capacity < chunkSize)
+            throw new IllegalArgumentException("capacity must not be lower"
+                + " than the chunk size");
+        final long retained = Math.min(MAX_RETAINED_BYTES, capacity);
+        return new MemoryChunkPool(chunkSize, capacity,
+            (int) (retained / chunkSize));
+    }
+
+    private static Path toAbsolute(final Path path)
+    {
+        return path.toAbsolutePath().normalize();
+    }
+
+    @Nullable
+    private MemoryNode lookup(final Path absolute)
+    {
+        MemoryNode node = root;
+
+        for (final Path name: absolute) {
+            if (!node.isDirectory())
+                return null;
+            node = ((MemoryDirectory) node).entries.get(name.toString());
+            if (node == null)
+                return null;
+        }
+
+        return node;
+    }
+
+    private MemoryNode getNode(final Path path)
+        throws NoSuchFileException
+    {
+        final MemoryNode node = lookup(toAbsolute(path));
+
+        if (node == null)
+            throw new NoSuchFileException(path.toString());
+
+        return node;
+    }
+
+    /*
+     * Get the parent directory of an absolute path, which must not be the
+     * root directory
+     */
+    private MemoryDirectory getParent(final Path absolute)
+        throws IOException
+    {
+        final Path parent = absolute.getParent();
+
+        if (parent == null)
+            throw new FileSystemException(absolute.toString(), null,
+                "operation not permitted on the root directory");
+
+        final MemoryNode node = lookup(parent);
+
+        if (node == null)
+            throw new NoSuchFileException(parent.toString());
+        if (!node.isDirectory())
+            throw new NotDirectoryException(parent.toString());
+
+        return (MemoryDirectory) node;
+    }
+
+    private MemoryFile createFile(final Path absolute, final boolean createNew,
+        final Set<PosixFilePermission> permissions)
+        throws IOException
+    {
+        treeLock.lock();
+        try {
+            final MemoryDirectory parent = getParent(absolute);
+            final String name = absolute.getFileName().toString();
+            final MemoryNode node = parent.entries.get(name);
+
+            if (node != null) {
+                if (createNew)
+                    throw new FileAlreadyExistsException(absolute.toString());
+                if (node.isDirectory())
+                    throw new IsDirectoryException(absolute.toString());
+                return (MemoryFile) node;
+            }
+
+            final MemoryFile file
+                = new MemoryFile(pool, owner, group, permissions);
+            parent.entries.put(name, file);
+            parent.touch();
+            return file;
+        } finally {
+            treeLock.unlock();
+        }
+    }
+
+    /*
+     * Copy a node, and its entries if recursive is true; the copy is not
+     * linked to the tree, and is released if copying fails
+     */
+    private MemoryNode copyNode(final MemoryNode node, final boolean recursive,
+        final boolean copyAttributes)
+        throws IOException
+    {
+        final MemoryNode copy;
+
+        if (node.isDirectory()) {
+            final MemoryDirectory directory
+                = new MemoryDirectory(owner, group, DIRECTORY_PERMISSIONS);
+            if (recursive)
+                try {
+                    for (final Map.Entry<String, MemoryNode> entry:
+                        ((MemoryDirectory) node).entries.entrySet())
+                        directory.entries.put(entry.getKey(),
+                            copyNode(entry.getValue(), true, copyAttributes));
+                } catch (IOException e) {
+                    release(directory);
+                    throw e;
+                }
+            copy = directory;
+        } else
+            copy = ((MemoryFile) node).copy(owner, group, FILE_PERMISSIONS);
+
+        if (copyAttributes)
+            node.copyAttributesTo(copy);
+
+        return copy;
+    }
+
+    /*
+     * Link a copied node at an absolute path, replacing the existing entry if
+     * allowed; the node is released if it cannot be linked
+     */
+    private void link(final Path absolute, final Path target,
+        final MemoryNode node, final Set<CopyOption> options)
+        throws IOException
+    {
+        boolean linked = false;
+
+        treeLock.lock();
+        try {
+            final MemoryDirectory parent = getParent(absolute);
+            final String name = absolute.getFileName().toString();
+
+            replace(parent, name, target, options);
+            parent.entries.put(name, node);
+            parent.touch();
+            linked = true;
+        } finally {
+            treeLock.unlock();
+            if (!linked)
+                release(node);
+        }
+    }
+
+    /*
+     * Check that an entry can be replaced by a copy or move, and release it;
+     * called with the tree lock held
+     */
+    private static void replace(final MemoryDirectory parent,
+        final String name, final Path target, final Set<CopyOption> options)
+        throws IOException
+    {
+        final MemoryNode existing = parent.entries.get(name);
+
+        if (existing == null)
+            return;
+        if (!options.contains(StandardCopyOption.REPLACE_EXISTING))
+            throw new FileAlreadyExistsException(target.toString());
+
+        checkRemovable(existing, target);
+        release(existing);
+    }
+
+    private static void checkRemovable(final MemoryNode node, final Path path)
+        throws DirectoryNotEmptyException
+    {
+        if (node.isDirectory() && !((MemoryDirectory) node).entries.isEmpty())
+            throw new DirectoryNotEmptyException(path.toString());
+    }
+
+    /*
+     * Release the content of a node which has been unlinked from the tree,
+     * recursively
+     */
+    private static void release(final MemoryNode node)
+    {
+        if (!node.isDirectory()) {
+            ((MemoryFile) node).unlink();
+            return;
+        }
+
+        final MemoryDirectory directory = (MemoryDirectory) node;
+
+        for (final MemoryNode entry: directory.entries.values())
+            release(entry);
+
+        directory.entries.clear();
+    }
+
+    private static Set<PosixFilePermission> getPermissions(
+        final Set<PosixFilePermission> defaultPermissions,
+        final FileAttribute<?>... attrs)
+    {
+        Set<PosixFilePermission> ret = defaultPermissions;
+
+        for (final FileAttribute<?> attr: attrs) {
+            if (!PERMISSIONS_ATTRIBUTE.equals(attr.name()))
+                throw new UnsupportedOperationException("attribute "
+                    + attr.name() + " cannot be set at creation time");
+            ret = toPermissions(attr.value());
+        }
+
+        return ret;
+    }
+
+    private static Set<PosixFilePermission> toPermissions(final Object value)
+    {
+        if (!(value instanceof Set))
+            throw new IllegalArgumentException("value of attribute "
+                + PERMISSIONS_ATTRIBUTE + " is not a set");
+
+        final Set<PosixFilePermission> ret
+            = EnumSet.noneOf(PosixFilePermission.class);
+
+        for (final Object element: (Set<?>) value) {
+            if (!(element instanceof PosixFilePermission))
+                throw new IllegalArgumentException("value of attribute "
+                    + PERMISSIONS_ATTRIBUTE + " contains " + element
+                    + ", which is not a permission");
+            ret.add((PosixFilePermission) element);
+        }
+
+        return ret;
+    }
+}
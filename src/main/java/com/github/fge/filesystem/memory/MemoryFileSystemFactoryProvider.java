@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import com.github.fge.filesystem.attributes.FileAttributesFactory;
+import com.github.fge.filesystem.options.FileSystemOptionsFactory;
+import com.github.fge.filesystem.provider.FileSystemFactoryProvider;
+
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The factory provider of memory filesystems
+ *
+ * <p>In addition to the defaults, memory filesystems support {@link
+ * StandardOpenOption#APPEND}, and the {@code "basic"}, {@code "owner"} and
+ * {@code "posix"} attribute views.</p>
+ *
+ * <p>This class can be extended, for instance to {@link
+ * #setProviderListener(com.github.fge.filesystem.provider.ProviderListener)
+ * trace} operations.</p>
+ */
+public class MemoryFileSystemFactoryProvider
+    extends FileSystemFactoryProvider
+{
+    public MemoryFileSystemFactoryProvider()
+    {
+        setOptionsFactory(new FileSystemOptionsFactory()
+        {
+            {
+                addWriteOpenOption(StandardOpenOption.APPEND);
+            }
+        });
+        setAttributesFactory(new FileAttributesFactory()
+        {
+            {
+                setMetadataClass(MemoryNode.class);
+                addImplementation("basic",
+                    MemoryBasicAttributesProvider.class);
+                addImplementation("owner",
+                    MemoryOwnerAttributesProvider.class);
+                addImplementation("posix",
+                    MemoryPosixAttributesProvider.class);
+            }
+        });
+    }
+}
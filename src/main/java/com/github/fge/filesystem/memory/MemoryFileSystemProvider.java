@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import com.github.fge.filesystem.provider.FileSystemProviderBase;
+
+/**
+ * The provider of memory filesystems
+ *
+ * <p>This provider is not registered as an installed provider; create
+ * filesystems from an instance of it:</p>
+ *
+ * <pre>
+ *     final FileSystemProvider provider = new MemoryFileSystemProvider();
+ *     final FileSystem fs = provider.newFileSystem(
+ *         URI.create("memory://test/"),
+ *         Collections.&lt;String, Object&gt;emptyMap());
+ * </pre>
+ *
+ * @see MemoryFileSystemRepository
+ */
+public final class MemoryFileSystemProvider
+    extends FileSystemProviderBase
+{
+    public MemoryFileSystemProvider()
+    {
+        super(new MemoryFileSystemRepository());
+    }
+
+    public MemoryFileSystemProvider(
+        final MemoryFileSystemFactoryProvider factoryProvider)
+    {
+        super(new MemoryFileSystemRepository(factoryProvider));
+    }
+}
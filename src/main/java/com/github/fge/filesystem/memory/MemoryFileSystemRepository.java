@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import com.github.fge.filesystem.provider.FileSystemRepositoryBase;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * The repository of memory filesystems
+ *
+ * <p>Each URI (for instance {@code memory://test/}) designates an independent
+ * filesystem. The environment given to {@link
+ * java.nio.file.FileSystems#newFileSystem(URI, Map)} may contain the
+ * following keys, with numeric (or string) values:</p>
+ *
+ * <ul>
+ *     <li>{@link #CHUNK_SIZE}: the size of content chunks;</li>
+ *     <li>{@link #CAPACITY}: the capacity of the filesystem, in bytes.</li>
+ * </ul>
+ *
+ * @see MemoryFileSystemDriver
+ */
+@ParametersAreNonnullByDefault
+public final class MemoryFileSystemRepository
+    extends FileSystemRepositoryBase
+{
+    public static final String SCHEME = "memory";
+
+    public static final String CHUNK_SIZE = "chunkSize";
+    public static final String CAPACITY = "capacity";
+
+    public MemoryFileSystemRepository()
+    {
+        this(new MemoryFileSystemFactoryProvider());
+    }
+
+    public MemoryFileSystemRepository(
+        final MemoryFileSystemFactoryProvider factoryProvider)
+    {
+        super(SCHEME, factoryProvider);
+    }
+
+    @Nonnull
+    @Override
+    protected FileSystemDriver createDriver(final URI uri,
+        final Map<String, ?> env)
+        throws IOException
+    {
+        final long chunkSize = getLong(env, CHUNK_SIZE,
+            MemoryFileSystemDriver.DEFAULT_CHUNK_SIZE);
+        final long capacity = getLong(env, CAPACITY,
+            MemoryFileSystemDriver.DEFAULT_CAPACITY);
+
+        if (chunkSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("chunk size is too large");
+
+        return new MemoryFileSystemDriver(factoryProvider, (int) chunkSize,
+            capacity);
+    }
+
+    private static long getLong(final Map<String, ?> env, final String key,
+        final long defaultValue)
+    {
+        final Object value = env.get(key);
+
+        if (value == null)
+            return defaultValue;
+        if (value instanceof Number)
+            return ((Number) value).longValue();
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException ignored) {
+            throw new IllegalArgumentException("invalid value for " + key
+                + ": " + value);
+        }
+    }
+}
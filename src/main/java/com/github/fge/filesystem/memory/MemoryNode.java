@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A file or directory of a {@link MemoryFileSystemDriver}
+ *
+ * <p>This is the metadata class of the attribute providers of memory
+ * filesystems; it has no public methods. Attributes are volatile: they can be
+ * read and written without locking, and the node itself is the {@link
+ * java.nio.file.attribute.BasicFileAttributes#fileKey() file key}.</p>
+ */
+@ParametersAreNonnullByDefault
+public abstract class MemoryNode
+{
+    private volatile FileTime lastModifiedTime;
+    private volatile FileTime lastAccessTime;
+    private volatile FileTime creationTime;
+    private volatile UserPrincipal owner;
+    private volatile GroupPrincipal group;
+    private volatile Set<PosixFilePermission> permissions;
+
+    MemoryNode(final UserPrincipal owner, final GroupPrincipal group,
+        final Set<PosixFilePermission> permissions)
+    {
+        final FileTime now = now();
+
+        lastModifiedTime = now;
+        lastAccessTime = now;
+        creationTime = now;
+        this.owner = owner;
+        this.group = group;
+        setPermissions(permissions);
+    }
+
+    abstract boolean isDirectory();
+
+    abstract long getSize();
+
+    final FileTime getLastModifiedTime()
+    {
+        return lastModifiedTime;
+    }
+
+    final FileTime getLastAccessTime()
+    {
+        return lastAccessTime;
+    }
+
+    final FileTime getCreationTime()
+    {
+        return creationTime;
+    }
+
+    final void setTimes(@Nullable final FileTime lastModifiedTime,
+        @Nullable final FileTime lastAccessTime,
+        @Nullable final FileTime creationTime)
+    {
+        if (lastModifiedTime != null)
+            this.lastModifiedTime = lastModifiedTime;
+        if (lastAccessTime != null)
+            this.lastAccessTime = lastAccessTime;
+        if (creationTime != null)
+            this.creationTime = creationTime;
+    }
+
+    /**
+     * Record a modification of the content of this node
+     */
+    final void touch()
+    {
+        lastModifiedTime = now();
+    }
+
+    final UserPrincipal getOwner()
+    {
+        return owner;
+    }
+
+    final void setOwner(final UserPrincipal owner)
+    {
+        this.owner = owner;
+    }
+
+    final GroupPrincipal getGroup()
+    {
+        return group;
+    }
+
+    final void setGroup(final GroupPrincipal group)
+    {
+        this.group = group;
+    }
+
+    final Set<PosixFilePermission> getPermissions()
+    {
+        return permissions;
+    }
+
+    final void setPermissions(final Set<PosixFilePermission> permissions)
+    {
+        final Set<PosixFilePermission> set
+            = EnumSet.noneOf(PosixFilePermission.class);
+        set.addAll(permissions);
+        this.permissions = Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * Copy the attributes of this node to another node
+     *
+     * @param other the other node
+     */
+    final void copyAttributesTo(final MemoryNode other)
+    {
+        other.lastModifiedTime = lastModifiedTime;
+        other.lastAccessTime = lastAccessTime;
+        other.creationTime = creationTime;
+        other.owner = owner;
+        other.group = group;
+        other.permissions = permissions;
+    }
+
+    private static FileTime now()
+    {
+        return FileTime.fromMillis(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import com.github.fge.filesystem.attributes.provider.FileOwnerFileAttributesProvider;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Objects;
+
+/**
+ * Provider for the {@code "owner"} view of memory filesystems
+ */
+@ParametersAreNonnullByDefault
+public final class MemoryOwnerAttributesProvider
+    extends FileOwnerFileAttributesProvider
+{
+    private final MemoryNode node;
+
+    public MemoryOwnerAttributesProvider(final MemoryNode node)
+        throws IOException
+    {
+        this.node = node;
+    }
+
+    @Override
+    public UserPrincipal getOwner()
+        throws IOException
+    {
+        return node.getOwner();
+    }
+
+    @Override
+    public void setOwner(final UserPrincipal owner)
+        throws IOException
+    {
+        node.setOwner(Objects.requireNonNull(owner));
+    }
+}
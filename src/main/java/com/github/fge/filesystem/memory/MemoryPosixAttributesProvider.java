@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import com.github.fge.filesystem.attributes.provider.PosixFileAttributesProvider;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Provider for the {@code "posix"} view of memory filesystems
+ *
+ * <p>Permissions are recorded but not enforced.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class MemoryPosixAttributesProvider
+    extends PosixFileAttributesProvider
+{
+    private final MemoryNode node;
+
+    public MemoryPosixAttributesProvider(final MemoryNode node)
+        throws IOException
+    {
+        this.node = node;
+    }
+
+    @Override
+    public FileTime lastModifiedTime()
+    {
+        return node.getLastModifiedTime();
+    }
+
+    @Override
+    public FileTime lastAccessTime()
+    {
+        return node.getLastAccessTime();
+    }
+
+    @Override
+    public FileTime creationTime()
+    {
+        return node.getCreationTime();
+    }
+
+    @Override
+    public boolean isRegularFile()
+    {
+        return !node.isDirectory();
+    }
+
+    @Override
+    public boolean isDirectory()
+    {
+        return node.isDirectory();
+    }
+
+    @Override
+    public long size()
+    {
+        return node.getSize();
+    }
+
+    @Override
+    public Object fileKey()
+    {
+        return node;
+    }
+
+    @Override
+    public UserPrincipal owner()
+    {
+        return node.getOwner();
+    }
+
+    @Override
+    public UserPrincipal getOwner()
+        throws IOException
+    {
+        return node.getOwner();
+    }
+
+    @Override
+    public GroupPrincipal group()
+    {
+        return node.getGroup();
+    }
+
+    @Override
+    public Set<PosixFilePermission> permissions()
+    {
+        return node.getPermissions();
+    }
+
+    @Override
+    public void setTimes(@Nullable final FileTime lastModifiedTime,
+        @Nullable final FileTime lastAccessTime,
+        @Nullable final FileTime createTime)
+        throws IOException
+    {
+        node.setTimes(lastModifiedTime, lastAccessTime, createTime);
+    }
+
+    @Override
+    public void setOwner(final UserPrincipal owner)
+        throws IOException
+    {
+        node.setOwner(Objects.requireNonNull(owner));
+    }
+
+    @Override
+    public void setGroup(final GroupPrincipal group)
+        throws IOException
+    {
+        node.setGroup(Objects.requireNonNull(group));
+    }
+
+    @Override
+    public void setPermissions(final Set<PosixFilePermission> perms)
+        throws IOException
+    {
+        node.setPermissions(perms);
+    }
+}
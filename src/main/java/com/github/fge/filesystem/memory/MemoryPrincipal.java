@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.UserPrincipal;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.Objects;
+
+/**
+ * A user or group of a memory filesystem
+ *
+ * <p>Memory filesystems have no user database: any name is a valid user or
+ * group name.</p>
+ */
+@ParametersAreNonnullByDefault
+final class MemoryPrincipal
+    implements GroupPrincipal
+{
+    static final UserPrincipalLookupService LOOKUP_SERVICE
+        = new UserPrincipalLookupService()
+    {
+        @Override
+        public UserPrincipal lookupPrincipalByName(final String name)
+        {
+            return new MemoryPrincipal(name, false);
+        }
+
+        @Override
+        public GroupPrincipal lookupPrincipalByGroupName(final String group)
+        {
+            return new MemoryPrincipal(group, true);
+        }
+    };
+
+    private final String name;
+    private final boolean group;
+
+    MemoryPrincipal(final String name, final boolean group)
+    {
+        this.name = Objects.requireNonNull(name);
+        this.group = group;
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return name.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj)
+    {
+        if (obj == null)
+            return false;
+        if (this == obj)
+            return true;
+        if (getClass() != obj.getClass())
+            return false;
+        final MemoryPrincipal other = (MemoryPrincipal) obj;
+        return group == other.group && name.equals(other.name);
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A channel to a {@link MemoryFile}
+ *
+ * <p>Channels have their own position; several channels to the same file see
+ * each other's writes immediately. In append mode, each write goes to the end
+ * of the file, atomically.</p>
+ */
+@ParametersAreNonnullByDefault
+final class MemorySeekableByteChannel
+    implements SeekableByteChannel
+{
+    private final MemoryFile file;
+    private final boolean readable;
+    private final boolean writable;
+    private final boolean append;
+
+    // All guarded by this
+    private long position = 0L;
+    private boolean open = true;
+
+    MemorySeekableByteChannel(final MemoryFile file, final boolean readable,
+        final boolean writable, final boolean append)
+    {
+        this.file = file;
+        this.readable = readable;
+        this.writable = writable;
+        this.append = append;
+        file.open();
+    }
+
+    @Override
+    public synchronized int read(final ByteBuffer dst)
+        throws IOException
+    {
+        checkOpen();
+        if (!readable)
+            throw new NonReadableChannelException();
+
+        final int nr = file.read(position, dst);
+
+        if (nr > 0)
+            position += nr;
+
+        return nr;
+    }
+
+    @Override
+    public synchronized int write(final ByteBuffer src)
+        throws IOException
+    {
+        checkOpen();
+        if (!writable)
+            throw new NonWritableChannelException();
+
+        final int len = src.remaining();
+
+        if (append)
+            position = file.append(src);
+        else
+            position += file.write(position, src);
+
+        return len;
+    }
+
+    @Override
+    public synchronized long position()
+        throws IOException
+    {
+        checkOpen();
+        return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(final long newPosition)
+        throws IOException
+    {
+        if (newPosition < 0L)
+            throw new IllegalArgumentException("negative position");
+        checkOpen();
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public synchronized long size()
+        throws IOException
+    {
+        checkOpen();
+        return file.getSize();
+    }
+
+    @Override
+    public synchronized SeekableByteChannel truncate(final long size)
+        throws IOException
+    {
+        if (size < 0L)
+            throw new IllegalArgumentException("negative size");
+        checkOpen();
+        if (!writable)
+            throw new NonWritableChannelException();
+
+        file.truncate(size);
+
+        if (position > size)
+            position = size;
+
+        return this;
+    }
+
+    @Override
+    public synchronized boolean isOpen()
+    {
+        return open;
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (!open)
+            return;
+        open = false;
+        file.close();
+    }
+
+    private void checkOpen()
+        throws ClosedChannelException
+    {
+        if (!open)
+            throw new ClosedChannelException();
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+/**
+ * In-memory filesystems
+ *
+ * <p>{@link com.github.fge.filesystem.memory.MemoryFileSystemDriver} is a
+ * complete driver keeping files in memory, with random access and POSIX
+ * attributes. It is mostly useful as a scratch filesystem in tests, and as a
+ * fixture for benchmarks; {@link
+ * com.github.fge.filesystem.memory.MemoryFileSystemProvider} creates such
+ * filesystems.</p>
+ */
+package com.github.fge.filesystem.memory;
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.metrics;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+@ParametersAreNonnullByDefault
+final class CountingOutputStream
+    extends FilterOutputStream
+{
+    private final DriverMetricsListener listener;
+
+    CountingOutputStream(final OutputStream out,
+        final DriverMetricsListener listener)
+    {
+        super(out);
+        this.listener = listener;
+    }
+
+    @Override
+    public void write(final int b)
+        throws IOException
+    {
+        out.write(b);
+        listener.bytesWritten(1L);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+        out.write(b, off, len);
+        listener.bytesWritten(len);
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        out.close();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.metrics;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+@ParametersAreNonnullByDefault
+final class CountingSeekableByteChannel
+    implements SeekableByteChannel
+{
+    private final SeekableByteChannel channel;
+    private final DriverMetricsListener listener;
+
+    CountingSeekableByteChannel(final SeekableByteChannel channel,
+        final DriverMetricsListener listener)
+    {
+        this.channel = channel;
+        this.listener = listener;
+    }
+
+    @Override
+    public int read(final ByteBuffer dst)
+        throws IOException
+    {
+        final int ret = channel.read(dst);
+        if (ret > 0)
+            listener.bytesRead(ret);
+        return ret;
+    }
+
+    @Override
+    public int write(final ByteBuffer src)
+        throws IOException
+    {
+        final int ret = channel.write(src);
+        if (ret > 0)
+            listener.bytesWritten(ret);
+        return ret;
+    }
+
+    @Override
+    public long position()
+        throws IOException
+    {
+        return channel.position();
+    }
+
+    @Override
+    public SeekableByteChannel position(final long newPosition)
+        throws IOException
+    {
+        channel.position(newPosition);
+        return this;
+    }
+
+    @Override
+    public long size()
+        throws IOException
+    {
+        return channel.size();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(final long size)
+        throws IOException
+    {
+        channel.truncate(size);
+        return this;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        channel.close();
+    }
+}
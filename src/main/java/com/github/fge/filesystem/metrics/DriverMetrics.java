@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.metrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of an {@link InstrumentedFileSystemDriver}
+ *
+ * <p>For each {@link DriverOperation}, this records the number of calls, the
+ * number of calls which failed and a {@link LatencyHistogram latency
+ * histogram}; it also records the number of bytes read from and written to
+ * streams and channels.</p>
+ *
+ * <p>This class is a {@link DriverMetricsListener} itself, and is always
+ * notified by the driver it belongs to.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class DriverMetrics
+    implements DriverMetricsListener, DriverMetricsMXBean
+{
+    private final Map<DriverOperation, OperationMetrics> operations
+        = new EnumMap<>(DriverOperation.class);
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    public DriverMetrics()
+    {
+        for (final DriverOperation operation: DriverOperation.values())
+            operations.put(operation, new OperationMetrics());
+    }
+
+    public long getCallCount(final DriverOperation operation)
+    {
+        return operations.get(operation).calls.get();
+    }
+
+    public long getErrorCount(final DriverOperation operation)
+    {
+        return operations.get(operation).errors.get();
+    }
+
+    @Nonnull
+    public LatencyHistogram getLatencies(final DriverOperation operation)
+    {
+        return operations.get(operation).latencies;
+    }
+
+    @Override
+    public void operationCompleted(final DriverOperation operation,
+        final long nanos, final boolean success)
+    {
+        final OperationMetrics metrics = operations.get(operation);
+
+        metrics.calls.incrementAndGet();
+        if (!success)
+            metrics.errors.incrementAndGet();
+        metrics.latencies.record(nanos);
+    }
+
+    @Override
+    public void bytesRead(final long count)
+    {
+        bytesRead.addAndGet(count);
+    }
+
+    @Override
+    public void bytesWritten(final long count)
+    {
+        bytesWritten.addAndGet(count);
+    }
+
+    @Override
+    public long getBytesRead()
+    {
+        return bytesRead.get();
+    }
+
+    @Override
+    public long getBytesWritten()
+    {
+        return bytesWritten.get();
+    }
+
+    @Override
+    public Map<String, Long> getCallCounts()
+    {
+        final Map<String, Long> ret = new LinkedHashMap<>();
+
+        for (final DriverOperation operation: DriverOperation.values())
+            ret.put(operation.name(), getCallCount(operation));
+
+        return ret;
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts()
+    {
+        final Map<String, Long> ret = new LinkedHashMap<>();
+
+        for (final DriverOperation operation: DriverOperation.values())
+            ret.put(operation.name(), getErrorCount(operation));
+
+        return ret;
+    }
+
+    @Override
+    public Map<String, Long> getMeanLatencies()
+    {
+        final Map<String, Long> ret = new LinkedHashMap<>();
+
+        for (final DriverOperation operation: DriverOperation.values())
+            ret.put(operation.name(),
+                getLatencies(operation).getMean(TimeUnit.MICROSECONDS));
+
+        return ret;
+    }
+
+    @Override
+    public Map<String, Long> getMedianLatencies()
+    {
+        return percentiles(50.0);
+    }
+
+    @Override
+    public Map<String, Long> get99thPercentileLatencies()
+    {
+        return percentiles(99.0);
+    }
+
+    @Override
+    public Map<String, Long> getMaxLatencies()
+    {
+        final Map<String, Long> ret = new LinkedHashMap<>();
+
+        for (final DriverOperation operation: DriverOperation.values())
+            ret.put(operation.name(),
+                getLatencies(operation).getMax(TimeUnit.MICROSECONDS));
+
+        return ret;
+    }
+
+    @Override
+    public void reset()
+    {
+        for (final OperationMetrics metrics: operations.values()) {
+            metrics.calls.set(0L);
+            metrics.errors.set(0L);
+            metrics.latencies.reset();
+        }
+        bytesRead.set(0L);
+        bytesWritten.set(0L);
+    }
+
+    private Map<String, Long> percentiles(final double percentile)
+    {
+        final Map<String, Long> ret = new LinkedHashMap<>();
+
+        for (final DriverOperation operation: DriverOperation.values())
+            ret.put(operation.name(), getLatencies(operation)
+                .getValueAtPercentile(percentile, TimeUnit.MICROSECONDS));
+
+        return ret;
+    }
+
+    private static final class OperationMetrics
+    {
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+    }
+}
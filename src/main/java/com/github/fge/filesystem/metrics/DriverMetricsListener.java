@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.metrics;
+
+/**
+ * A listener for metrics recorded by an {@link InstrumentedFileSystemDriver}
+ *
+ * <p>Methods of this interface are called synchronously, from the threads
+ * performing the operations; implementations must be thread safe and should
+ * return quickly.</p>
+ */
+public interface DriverMetricsListener
+{
+    /**
+     * Called after a driver operation completes
+     *
+     * @param operation the operation
+     * @param nanos the duration of the operation, in nanoseconds
+     * @param success false if the operation threw an exception
+     */
+    void operationCompleted(DriverOperation operation, long nanos,
+        boolean success);
+
+    /**
+     * Called when bytes are read from a stream or channel
+     *
+     * @param count the number of bytes
+     */
+    void bytesRead(long count);
+
+    /**
+     * Called when bytes are written to a stream or channel
+     *
+     * @param count the number of bytes
+     */
+    void bytesWritten(long count);
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link DriverMetrics}
+ *
+ * <p>Maps are keyed by {@link DriverOperation} name; latencies are in
+ * microseconds.</p>
+ *
+ * @see InstrumentedFileSystemDriver#registerMBean(String)
+ */
+public interface DriverMetricsMXBean
+{
+    Map<String, Long> getCallCounts();
+
+    Map<String, Long> getErrorCounts();
+
+    Map<String, Long> getMeanLatencies();
+
+    Map<String, Long> getMedianLatencies();
+
+    Map<String, Long> get99thPercentileLatencies();
+
+    Map<String, Long> getMaxLatencies();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    void reset();
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.metrics;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import com.github.fge.filesystem.simulation.SimulatedFileSystemDriver;
+
+/**
+ * The {@link FileSystemDriver} operations recorded by an {@link
+ * InstrumentedFileSystemDriver}
+ *
+ * <p>This enumeration is also used to configure the operations of a {@link
+ * SimulatedFileSystemDriver}.</p>
+ */
+public enum DriverOperation
+{
+    NEW_INPUT_STREAM,
+    NEW_OUTPUT_STREAM,
+    NEW_BYTE_CHANNEL,
+    NEW_ASYNCHRONOUS_FILE_CHANNEL,
+    NEW_FILE_CHANNEL,
+    NEW_DIRECTORY_STREAM,
+    CREATE_DIRECTORY,
+    DELETE,
+    COPY,
+    MOVE,
+    RENAME,
+    DELETE_TREE,
+    COPY_TREE,
+    BATCH_CREATE_DIRECTORY,
+    BATCH_DELETE,
+    IS_SAME_FILE,
+    READ_SYMBOLIC_LINK,
+    TO_REAL_PATH,
+    IS_HIDDEN,
+    CHECK_ACCESS,
+    READ_ATTRIBUTES,
+    SET_ATTRIBUTE,
+    SET_ATTRIBUTES,
+    BATCH_SET_ATTRIBUTE,
+    GET_PATH_METADATA,
+    ;
+}
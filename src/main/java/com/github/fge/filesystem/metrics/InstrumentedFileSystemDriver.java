@@ -0,0 +1,662 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.metrics;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import com.github.fge.filesystem.driver.ForwardingFileSystemDriver;
+import com.github.fge.filesystem.driver.ReadOnlyFileSystemDriver;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A {@link FileSystemDriver} decorator recording metrics of all I/O
+ * operations
+ *
+ * <p>For each {@link DriverOperation}, the number of calls, failed calls and
+ * the latency of calls are recorded in {@link #getMetrics() metrics}; input
+ * streams, output streams and seekable channels returned by the driver also
+ * record the number of bytes read and written (asynchronous and file channels
+ * are timed, but their bytes are not counted).</p>
+ *
+ * <p>Additional {@link DriverMetricsListener listeners} can be registered,
+ * and metrics can be exposed as an MXBean using {@link
+ * #registerMBean(String)}.</p>
+ *
+ * <p>Use {@link #wrap(FileSystemDriver)} to obtain an instance.</p>
+ *
+ * @see ReadOnlyFileSystemDriver
+ */
+@SuppressWarnings("OverloadedVarargsMethod")
+@ParametersAreNonnullByDefault
+public final class InstrumentedFileSystemDriver
+    extends ForwardingFileSystemDriver
+{
+    private static final String MBEAN_DOMAIN = "com.github.fge.filesystem";
+
+    private final DriverMetrics metrics = new DriverMetrics();
+    private final List<DriverMetricsListener> listeners
+        = new CopyOnWriteArrayList<>();
+    private final Notifier notifier = new Notifier();
+
+    private ObjectName mbeanName = null;
+
+    @Nonnull
+    public static InstrumentedFileSystemDriver wrap(
+        @Nonnull final FileSystemDriver driver)
+    {
+        Objects.requireNonNull(driver);
+        return driver instanceof InstrumentedFileSystemDriver
+            ? (InstrumentedFileSystemDriver) driver
+            : new InstrumentedFileSystemDriver(driver);
+    }
+
+    private InstrumentedFileSystemDriver(final FileSystemDriver delegate)
+    {
+        super(delegate);
+    }
+
+    @Nonnull
+    public DriverMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    public void addListener(final DriverMetricsListener listener)
+    {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    public void removeListener(final DriverMetricsListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Register the metrics of this driver with the platform MBean server
+     *
+     * <p>The MBean is registered under domain {@code
+     * com.github.fge.filesystem}, with {@code type=DriverMetrics} and the
+     * given name; it is unregistered when this driver is closed.</p>
+     *
+     * @param name the name of the MBean (for instance, the URI of the
+     * filesystem)
+     * @return the object name of the MBean
+     * @throws IllegalStateException an MBean is already registered for this
+     * driver
+     * @throws JMException failed to register the MBean
+     */
+    @Nonnull
+    public synchronized ObjectName registerMBean(final String name)
+        throws JMException
+    {
+        if (mbeanName != null)
+            throw new IllegalStateException("MBean already registered");
+
+        final ObjectName objectName = new ObjectName(MBEAN_DOMAIN
+            + ":type=DriverMetrics,name=" + ObjectName.quote(name));
+
+        ManagementFactory.getPlatformMBeanServer()
+            .registerMBean(metrics, objectName);
+        mbeanName = objectName;
+        return objectName;
+    }
+
+    @Override
+    @Nonnull
+    public InputStream newInputStream(final Path path,
+        final Set<OpenOption> options)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final InputStream ret = new CountingInputStream(
+                delegate.newInputStream(path, options), notifier);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.NEW_INPUT_STREAM, start,
+                success);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public OutputStream newOutputStream(final Path path,
+        final Set<OpenOption> options)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final OutputStream ret = new CountingOutputStream(
+                delegate.newOutputStream(path, options), notifier);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.NEW_OUTPUT_STREAM, start,
+                success);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public SeekableByteChannel newByteChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final SeekableByteChannel ret = new CountingSeekableByteChannel(
+                delegate.newByteChannel(path, options, attrs), notifier);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.NEW_BYTE_CHANNEL, start,
+                success);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public AsynchronousFileChannel newAsynchronousFileChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        @Nullable final ExecutorService executor,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final AsynchronousFileChannel ret
+                = delegate.newAsynchronousFileChannel(path, options, executor,
+                    attrs);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.NEW_ASYNCHRONOUS_FILE_CHANNEL,
+                start, success);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public FileChannel newFileChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final FileChannel ret
+                = delegate.newFileChannel(path, options, attrs);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.NEW_FILE_CHANNEL, start,
+                success);
+        }
+    }
+
+    @Override
+    @Nonnull
+    public DirectoryStream<Path> newDirectoryStream(final Path dir,
+        final DirectoryStream.Filter<? super Path> filter)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final DirectoryStream<Path> ret
+                = delegate.newDirectoryStream(dir, filter);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.NEW_DIRECTORY_STREAM, start,
+                success);
+        }
+    }
+
+    @Override
+    public void createDirectory(final Path dir, final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            delegate.createDirectory(dir, attrs);
+            success = true;
+        } finally {
+            notifier.completed(DriverOperation.CREATE_DIRECTORY, start,
+                success);
+        }
+    }
+
+    @Override
+    public void delete(final Path path)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            delegate.delete(path);
+            success = true;
+        } finally {
+            notifier.completed(DriverOperation.DELETE, start, success);
+        }
+    }
+
+    @Override
+    public void copy(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            delegate.copy(source, target, options);
+            success = true;
+        } finally {
+            notifier.completed(DriverOperation.COPY, start, success);
+        }
+    }
+
+    @Override
+    public void move(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            delegate.move(source, target, options);
+            success = true;
+        } finally {
+            notifier.completed(DriverOperation.MOVE, start, success);
+        }
+    }
+
+    @Override
+    public boolean rename(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final boolean ret = delegate.rename(source, target, options);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.RENAME, start, success);
+        }
+    }
+
+    @Override
+    public boolean deleteTree(final Path path)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final boolean ret = delegate.deleteTree(path);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.DELETE_TREE, start, success);
+        }
+    }
+
+    @Override
+    public boolean copyTree(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final boolean ret = delegate.copyTree(source, target, options);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.COPY_TREE, start, success);
+        }
+    }
+
+    @Override
+    public void batchCreateDirectory(final Collection<Path> dirs,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            delegate.batchCreateDirectory(dirs, attrs);
+            success = true;
+        } finally {
+            notifier.completed(DriverOperation.BATCH_CREATE_DIRECTORY, start,
+                success);
+        }
+    }
+
+    @Override
+    public void batchDelete(final Collection<Path> paths)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            delegate.batchDelete(paths);
+            success = true;
+        } finally {
+            notifier.completed(DriverOperation.BATCH_DELETE, start, success);
+        }
+    }
+
+    @Override
+    public boolean isSameFile(final Path path, final Path path2)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final boolean ret = delegate.isSameFile(path, path2);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.IS_SAME_FILE, start, success);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Path readSymbolicLink(final Path link)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final Path ret = delegate.readSymbolicLink(link);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.READ_SYMBOLIC_LINK, start,
+                success);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Path toRealPath(final Path path, final LinkOption... options)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final Path ret = delegate.toRealPath(path, options);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.TO_REAL_PATH, start, success);
+        }
+    }
+
+    @Override
+    public boolean isHidden(final Path path)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final boolean ret = delegate.isHidden(path);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.IS_HIDDEN, start, success);
+        }
+    }
+
+    @Override
+    public void checkAccess(final Path path, final AccessMode... modes)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            delegate.checkAccess(path, modes);
+            success = true;
+        } finally {
+            notifier.completed(DriverOperation.CHECK_ACCESS, start, success);
+        }
+    }
+
+    @Override
+    public <A extends BasicFileAttributes> A readAttributes(final Path path,
+        final Class<A> type, final LinkOption... options)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final A ret = delegate.readAttributes(path, type, options);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.READ_ATTRIBUTES, start, success);
+        }
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(final Path path,
+        final String attributes, final LinkOption... options)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final Map<String, Object> ret
+                = delegate.readAttributes(path, attributes, options);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.READ_ATTRIBUTES, start, success);
+        }
+    }
+
+    @Override
+    public void setAttribute(final Path path, final String attribute,
+        final Object value, final LinkOption... options)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            delegate.setAttribute(path, attribute, value, options);
+            success = true;
+        } finally {
+            notifier.completed(DriverOperation.SET_ATTRIBUTE, start, success);
+        }
+    }
+
+    @Override
+    public void setAttributes(final Path path,
+        final Map<String, Object> attributes, final LinkOption... options)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            delegate.setAttributes(path, attributes, options);
+            success = true;
+        } finally {
+            notifier.completed(DriverOperation.SET_ATTRIBUTES, start,
+                success);
+        }
+    }
+
+    @Override
+    public void batchSetAttribute(final Collection<Path> paths,
+        final String attribute, final Object value, final LinkOption... options)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            delegate.batchSetAttribute(paths, attribute, value, options);
+            success = true;
+        } finally {
+            notifier.completed(DriverOperation.BATCH_SET_ATTRIBUTE, start,
+                success);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Object getPathMetadata(final Path path)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            final Object ret = delegate.getPathMetadata(path);
+            success = true;
+            return ret;
+        } finally {
+            notifier.completed(DriverOperation.GET_PATH_METADATA, start,
+                success);
+        }
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        try {
+            unregisterMBean();
+        } finally {
+            delegate.close();
+        }
+    }
+
+    private synchronized void unregisterMBean()
+    {
+        if (mbeanName == null)
+            return;
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            server.unregisterMBean(mbeanName);
+        } catch (JMException ignored) {
+            // already unregistered
+        }
+        mbeanName = null;
+    }
+
+    private final class Notifier
+        implements DriverMetricsListener
+    {
+        private void completed(final DriverOperation operation,
+            final long start, final boolean success)
+        {
+            operationCompleted(operation, System.nanoTime() - start, success);
+        }
+
+        @Override
+        public void operationCompleted(final DriverOperation operation,
+            final long nanos, final boolean success)
+        {
+            metrics.operationCompleted(operation, nanos, success);
+            for (final DriverMetricsListener listener: listeners)
+                listener.operationCompleted(operation, nanos, success);
+        }
+
+        @Override
+        public void bytesRead(final long count)
+        {
+            metrics.bytesRead(count);
+            for (final DriverMetricsListener listener: listeners)
+                listener.bytesRead(count);
+        }
+
+        @Override
+        public void bytesWritten(final long count)
+        {
+            metrics.bytesWritten(count);
+            for (final DriverMetricsListener listener: listeners)
+                listener.bytesWritten(count);
+        }
+    }
+}
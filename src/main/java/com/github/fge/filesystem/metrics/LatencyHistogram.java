@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free, fixed size histogram of latencies
+ *
+ * <p>Values (in nanoseconds) are recorded in log-linear buckets: each power of
+ * two is split into {@value #SUB_BUCKETS} buckets, so that any recorded value
+ * is known with a relative precision of about 6%, over the whole range of
+ * {@code long} values. Recording a value does not allocate.</p>
+ *
+ * <p>Reads are not atomic with regard to concurrent writes: percentiles
+ * computed while values are recorded may be slightly off.</p>
+ */
+public final class LatencyHistogram
+{
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value
+     *
+     * @param nanos the value, in nanoseconds; negative values count as 0
+     */
+    public void record(final long nanos)
+    {
+        final long value = Math.max(nanos, 0L);
+
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current;
+        do {
+            current = max.get();
+        } while (value > current && !max.compareAndSet(current, value));
+    }
+
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    public long getMax(final TimeUnit unit)
+    {
+        return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMean(final TimeUnit unit)
+    {
+        final long n = count.get();
+        return n == 0L ? 0L : unit.convert(sum.get() / n, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Return the value at a given percentile
+     *
+     * <p>The returned value is the upper bound of the bucket containing the
+     * percentile, capped to the maximum recorded value.</p>
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @param unit the time unit of the result
+     * @return the value at this percentile, or 0 if no value was recorded
+     * @throws IllegalArgumentException invalid percentile
+     */
+    public long getValueAtPercentile(final double percentile,
+        final TimeUnit unit)
+    {
+        if (percentile < 0.0 || percentile > 100.0)
+            throw new IllegalArgumentException("invalid percentile "
+                + percentile);
+
+        long total = 0L;
+        for (int i = 0; i < BUCKETS; i++)
+            total += counts.get(i);
+
+        if (total == 0L)
+            return 0L;
+
+        final long target = Math.max(1L,
+            (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0L;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target)
+                return unit.convert(Math.min(upperBound(i), max.get()),
+                    TimeUnit.NANOSECONDS);
+        }
+
+        return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0L);
+        count.set(0L);
+        sum.set(0L);
+        max.set(0L);
+    }
+
+    static int bucketOf(final long value)
+    {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        final int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(final int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long sub = bucket % SUB_BUCKETS;
+        final long next = (SUB_BUCKETS + sub + 1) << shift;
+
+        return next < 0L ? Long.MAX_VALUE : next - 1;
+    }
+}
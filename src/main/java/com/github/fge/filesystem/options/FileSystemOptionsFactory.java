@@ -20,19 +20,25 @@ package com.github.fge.filesystem.options;
 
 import com.github.fge.filesystem.exceptions.IllegalOptionSetException;
 import com.github.fge.filesystem.exceptions.UnsupportedOptionException;
+import com.github.fge.filesystem.provider.FileSystemProviderBase;
 
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.nio.file.CopyOption;
 import java.nio.file.LinkOption;
 import java.nio.file.OpenOption;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -49,11 +55,17 @@ import java.util.Set;
  *     <li>{@link StandardOpenOption#SPARSE};</li>
  *     <li>{@link StandardOpenOption#TRUNCATE_EXISTING};</li>
  *     <li>{@link StandardOpenOption#WRITE};</li>
+ *     <li>{@link StandardCopyOption#ATOMIC_MOVE};</li>
+ *     <li>{@link StandardCopyOption#COPY_ATTRIBUTES};</li>
  *     <li>{@link StandardCopyOption#REPLACE_EXISTING}.</li>
  * </ul>
  *
+ * <p>Atomic moves and attribute copies are always accepted here, since the
+ * provider implements them on top of the driver: see {@link
+ * FileSystemProviderBase#move(Path, Path, CopyOption...)}.</p>
+ *
  * <p>Extend this class if you want to add support for further options. For
- * instance, if atomic move is supported:</p>
+ * instance, if appending is supported:</p>
  *
  * <pre>
  *     public final class MyFileSystemOptionsRepository
@@ -61,18 +73,26 @@ import java.util.Set;
  *     {
  *         public MyFileSystemOptionsRepository()
  *         {
- *             addCopyOption(StandardCopyOption.ATOMIC_MOVE);
+ *             addWriteOpenOption(StandardOpenOption.APPEND);
  *         }
  *     }
  * </pre>
  *
+ * <p>Registration is only possible until the factory is {@link #freeze()
+ * frozen}. The option checking methods all work against immutable tables
+ * compiled at registration time; they are therefore safe to use from any
+ * thread once the factory is published.</p>
+ *
  * <p>Unless otherwise noted, all methods in this class will throw a {@link
  * NullPointerException} if a null argument is passed.</p>
  */
-// TODO: see newByteChannel() and its Set<? extends OpenOption>
 @ParametersAreNonnullByDefault
 public class FileSystemOptionsFactory
 {
+	/*
+	 * Registration state; only ever accessed by registration methods, which
+	 * recompile the lookup tables each time.
+	 */
 	private final Set<OpenOption> readOpenOptions = new HashSet<>();
 	private final Set<OpenOption> writeOpenOptions = new HashSet<>();
 	private final Set<CopyOption> copyOptions = new HashSet<>();
@@ -83,8 +103,13 @@ public class FileSystemOptionsFactory
 	private final Map<CopyOption, Set<OpenOption>> writeTranslations
 		= new HashMap<>();
 
+	private volatile Tables tables = new Tables(this);
+	private volatile boolean frozen = false;
+
 	public FileSystemOptionsFactory()
 	{
+		addCopyOption(StandardCopyOption.ATOMIC_MOVE);
+		addCopyOption(StandardCopyOption.COPY_ATTRIBUTES);
 		addCopyOption(StandardCopyOption.REPLACE_EXISTING);
 
 		// Note: Javadoc says option should be ignored if not supported, so...
@@ -103,8 +128,6 @@ public class FileSystemOptionsFactory
 			StandardOpenOption.TRUNCATE_EXISTING);
 		addWriteTranslation(StandardCopyOption.REPLACE_EXISTING,
 			StandardOpenOption.WRITE);
-
-		// TODO: for now, cannot add translations for unsupported options
 	}
 
 	/**
@@ -121,17 +144,19 @@ public class FileSystemOptionsFactory
 	@Nonnull
 	public final Set<OpenOption> compileReadOptions(final OpenOption... opts)
 	{
-		final Set<OpenOption> set = new HashSet<>();
+		final Tables t = tables;
 
 		for (final OpenOption opt: opts)
-			set.add(Objects.requireNonNull(opt));
+			if (contains(t.writeOnlyOptions, Objects.requireNonNull(opt)))
+				throw new IllegalOptionSetException(Arrays.toString(opts));
 
-		if (set.removeAll(writeOpenOptions))
-			throw new IllegalOptionSetException(Arrays.toString(opts));
+		final Set<OpenOption> set = new HashSet<>();
 
-		for (final OpenOption opt: set)
-			if (!readOpenOptions.contains(opt))
+		for (final OpenOption opt: opts) {
+			if (!contains(t.readOptions, opt))
 				throw new UnsupportedOptionException(opt.toString());
+			set.add(opt);
+		}
 
 		// We want at least READ
 		set.add(StandardOpenOption.READ);
@@ -153,16 +178,16 @@ public class FileSystemOptionsFactory
 	@Nonnull
 	public final Set<OpenOption> compileWriteOptions(final OpenOption... opts)
 	{
-		final Set<OpenOption> set = new HashSet<>();
+		final Tables t = tables;
 
 		for (final OpenOption opt: opts)
-			set.add(Objects.requireNonNull(opt));
+			if (contains(t.readOnlyOptions, Objects.requireNonNull(opt)))
+				throw new IllegalOptionSetException(Arrays.toString(opts));
 
-		if (set.removeAll(readOpenOptions))
-			throw new IllegalOptionSetException(Arrays.toString(opts));
+		final Set<OpenOption> set = new HashSet<>();
 
 		for (final OpenOption opt: opts) {
-			if (!writeOpenOptions.contains(Objects.requireNonNull(opt)))
+			if (!contains(t.writeOptions, opt))
 				throw new UnsupportedOptionException(opt.toString());
 			set.add(opt);
 		}
@@ -185,6 +210,61 @@ public class FileSystemOptionsFactory
 		return Collections.unmodifiableSet(set);
 	}
 
+	/**
+	 * Compile a set of options for a channel
+	 *
+	 * <p>The rules are the same as for {@link
+	 * FileSystemProvider#newByteChannel(Path, Set, FileAttribute[])}:</p>
+	 *
+	 * <ul>
+	 *     <li>{@link StandardOpenOption#APPEND} implies {@link
+	 *     StandardOpenOption#WRITE};</li>
+	 *     <li>if the channel is not opened for writing, {@link
+	 *     StandardOpenOption#READ} is added, and options only relevant for
+	 *     writing are ignored (and removed from the result set);</li>
+	 *     <li>{@link StandardOpenOption#APPEND} cannot be combined with either
+	 *     {@link StandardOpenOption#READ} or {@link
+	 *     StandardOpenOption#TRUNCATE_EXISTING}.</li>
+	 * </ul>
+	 *
+	 * @param opts the options
+	 * @return an unmodifiable set of options
+	 * @throws UnsupportedOptionException one or more options are not supported
+	 * @throws IllegalOptionSetException illegal combination of options
+	 */
+	@Nonnull
+	public final Set<OpenOption> compileChannelOptions(
+		final Set<? extends OpenOption> opts)
+	{
+		final Tables t = tables;
+		final Set<OpenOption> set = new HashSet<>();
+
+		for (final OpenOption opt: opts) {
+			if (!contains(t.readOptions, Objects.requireNonNull(opt))
+				&& !contains(t.writeOptions, opt))
+				throw new UnsupportedOptionException(opt.toString());
+			set.add(opt);
+		}
+
+		if (set.contains(StandardOpenOption.APPEND)) {
+			if (set.contains(StandardOpenOption.READ))
+				throw new IllegalOptionSetException("cannot append and read "
+					+ "at the same time");
+			if (set.contains(StandardOpenOption.TRUNCATE_EXISTING))
+				throw new IllegalOptionSetException("cannot append and "
+					+ "truncate at the same time");
+			set.add(StandardOpenOption.WRITE);
+		}
+
+		if (!set.contains(StandardOpenOption.WRITE)) {
+			for (final OpenOption opt: t.writeOnlyOptions)
+				set.remove(opt);
+			set.add(StandardOpenOption.READ);
+		}
+
+		return Collections.unmodifiableSet(set);
+	}
+
 	/**
 	 * Compile a set of copy options from a {@link CopyOption} array
 	 *
@@ -194,9 +274,11 @@ public class FileSystemOptionsFactory
 	@Nonnull
 	public final Set<CopyOption> compileCopyOptions(final CopyOption... opts)
 	{
+		final Tables t = tables;
 		final Set<CopyOption> set = new HashSet<>();
+
 		for (final CopyOption opt: opts) {
-			if (!copyOptions.contains(Objects.requireNonNull(opt)))
+			if (!contains(t.copyOptions, Objects.requireNonNull(opt)))
 				throw new UnsupportedOptionException(opt.toString());
 			set.add(opt);
 		}
@@ -206,58 +288,86 @@ public class FileSystemOptionsFactory
 
 	public final void checkLinkOptions(final LinkOption... opts)
 	{
+		final Tables t = tables;
+
 		for (final LinkOption opt: opts)
-			if (!linkOptions.contains(Objects.requireNonNull(opt)))
+			if (!contains(t.linkOptions, Objects.requireNonNull(opt)))
 				throw new UnsupportedOptionException(opt.toString());
 	}
 
 	@Nonnull
 	public final Set<OpenOption> toReadOptions(final Set<CopyOption> options)
 	{
-		final Set<OpenOption> set = new HashSet<>();
+		final Set<OpenOption> set = copyTranslations(options,
+			tables.readTranslations);
 
-		for (final CopyOption option: options) {
-			if (!copyOptions.contains(Objects.requireNonNull(option)))
-				throw new UnsupportedOptionException(option.toString());
-			if (readTranslations.containsKey(option))
-				set.addAll(readTranslations.get(option));
-		}
-
-		set.add(StandardOpenOption.READ);
+		if (set.contains(StandardOpenOption.READ))
+			return set;
 
-		return Collections.unmodifiableSet(set);
+		final Set<OpenOption> ret = new HashSet<>(set);
+		ret.add(StandardOpenOption.READ);
+		return Collections.unmodifiableSet(ret);
 	}
 
 	@Nonnull
 	public final Set<OpenOption> toWriteOptions(final Set<CopyOption> options)
 	{
-		return copyTranslations(options, writeTranslations);
+		return copyTranslations(options, tables.writeTranslations);
+	}
+
+	/**
+	 * Freeze this factory
+	 *
+	 * <p>Once this method has been called, any attempt to register a new
+	 * option or translation will fail with an {@link IllegalStateException}.
+	 * Calling this method more than once has no effect.</p>
+	 */
+	public final void freeze()
+	{
+		frozen = true;
+	}
+
+	/**
+	 * Tell whether this factory is frozen
+	 *
+	 * @return true if {@link #freeze()} has been called
+	 */
+	public final boolean isFrozen()
+	{
+		return frozen;
 	}
 
 	/**
 	 * Add an open option supported for read
 	 *
 	 * @param option the option
+	 * @throws IllegalStateException this factory is frozen
 	 */
 	protected final void addReadOpenOption(final OpenOption option)
 	{
+		checkNotFrozen();
 		readOpenOptions.add(Objects.requireNonNull(option));
+		tables = new Tables(this);
 	}
 
 	/**
 	 * Add an option option supported for write
 	 *
 	 * @param option the option
+	 * @throws IllegalStateException this factory is frozen
 	 */
 	protected final void addWriteOpenOption(final OpenOption option)
 	{
+		checkNotFrozen();
 		writeOpenOptions.add(Objects.requireNonNull(option));
+		tables = new Tables(this);
 	}
 
 	/**
 	 * Add an option option supported for both read and write
 	 *
 	 * @param option the option
+	 * @throws IllegalStateException this factory is frozen
 	 */
 	protected final void addOpenOption(final OpenOption option)
 	{
@@ -269,27 +379,35 @@ public class FileSystemOptionsFactory
 	 * Add a supported copy option
 	 *
 	 * @param option the option
+	 * @throws IllegalStateException this factory is frozen
 	 */
 	protected final void addCopyOption(final CopyOption option)
 	{
+		checkNotFrozen();
 		copyOptions.add(Objects.requireNonNull(option));
+		tables = new Tables(this);
 	}
 
 	/**
 	 * Add a supported link option
 	 *
 	 * @param option the option
+	 * @throws IllegalStateException this factory is frozen
 	 */
 	protected final void addLinkOption(final LinkOption option)
 	{
+		checkNotFrozen();
 		linkOptions.add(Objects.requireNonNull(option));
-		addOpenOption(option);
+		readOpenOptions.add(option);
+		writeOpenOptions.add(option);
 		copyOptions.add(option);
+		tables = new Tables(this);
 	}
 
 	protected final void addReadTranslation(final CopyOption option,
 		final OpenOption translated)
 	{
+		checkNotFrozen();
 		if (!copyOptions.contains(Objects.requireNonNull(option)))
 			throw new IllegalArgumentException("option " + option + " is not "
 				+ "a supported copy option (did you forget to .addCopyOption"
@@ -301,11 +419,13 @@ public class FileSystemOptionsFactory
 		if (!readTranslations.containsKey(option))
 			readTranslations.put(option, new HashSet<OpenOption>());
 		readTranslations.get(option).add(translated);
+		tables = new Tables(this);
 	}
 
 	protected final void addWriteTranslation(final CopyOption option,
 		final OpenOption translated)
 	{
+		checkNotFrozen();
 		if (!copyOptions.contains(Objects.requireNonNull(option)))
 			throw new IllegalArgumentException("option " + option + " is not "
 				+ "a supported copy option (did you forget to .addCopyOption"
@@ -317,22 +437,111 @@ public class FileSystemOptionsFactory
 		if (!writeTranslations.containsKey(option))
 			writeTranslations.put(option, new HashSet<OpenOption>());
 		writeTranslations.get(option).add(translated);
+		tables = new Tables(this);
+	}
+
+	private void checkNotFrozen()
+	{
+		if (frozen)
+			throw new IllegalStateException("options factory is frozen");
 	}
 
 	@Nonnull
 	private Set<OpenOption> copyTranslations(final Set<CopyOption> options,
-		final Map<CopyOption, Set<OpenOption>> map)
+		final Translations translations)
 	{
+		final Tables t = tables;
 		final Set<OpenOption> set = new HashSet<>();
 
 		for (final CopyOption option: options) {
-			if (!copyOptions.contains(Objects.requireNonNull(option)))
+			if (!contains(t.copyOptions, Objects.requireNonNull(option)))
 				throw new UnsupportedOptionException(option.toString());
-			if (map.containsKey(option))
-				set.addAll(map.get(option));
+			translations.addTranslations(option, set);
 		}
 
 		return set.isEmpty() ? Collections.<OpenOption>emptySet()
 			: Collections.unmodifiableSet(set);
 	}
+
+	private static boolean contains(final Object[] array, final Object o)
+	{
+		//noinspection ForLoopReplaceableByForEach
+		for (int i = 0; i < array.length; i++)
+			if (array[i].equals(o))
+				return true;
+		return false;
+	}
+
+	/*
+	 * Immutable lookup tables; the number of supported options being small,
+	 * a linear scan of an array is cheaper than hashing.
+	 */
+	private static final class Tables
+	{
+		private final OpenOption[] readOptions;
+		private final OpenOption[] writeOptions;
+		// read options which are not also write options, and vice versa
+		private final OpenOption[] readOnlyOptions;
+		private final OpenOption[] writeOnlyOptions;
+		private final CopyOption[] copyOptions;
+		private final LinkOption[] linkOptions;
+		private final Translations readTranslations;
+		private final Translations writeTranslations;
+
+		private Tables(final FileSystemOptionsFactory factory)
+		{
+			readOptions = factory.readOpenOptions.toArray(new OpenOption[0]);
+			writeOptions = factory.writeOpenOptions.toArray(new OpenOption[0]);
+			readOnlyOptions = difference(factory.readOpenOptions,
+				factory.writeOpenOptions);
+			writeOnlyOptions = difference(factory.writeOpenOptions,
+				factory.readOpenOptions);
+			copyOptions = factory.copyOptions.toArray(new CopyOption[0]);
+			linkOptions = factory.linkOptions.toArray(new LinkOption[0]);
+			readTranslations = new Translations(factory.readTranslations);
+			writeTranslations = new Translations(factory.writeTranslations);
+		}
+
+		private static OpenOption[] difference(final Set<OpenOption> set,
+			final Set<OpenOption> other)
+		{
+			final List<OpenOption> list = new ArrayList<>(set);
+			list.removeAll(other);
+			return list.toArray(new OpenOption[list.size()]);
+		}
+	}
+
+	private static final class Translations
+	{
+		private final CopyOption[] options;
+		// translated[i] are the translations of options[i]
+		private final OpenOption[][] translated;
+
+		private Translations(final Map<CopyOption, Set<OpenOption>> map)
+		{
+			final int size = map.size();
+			options = new CopyOption[size];
+			translated = new OpenOption[size][];
+
+			int index = 0;
+
+			for (final Map.Entry<CopyOption, Set<OpenOption>> entry:
+				map.entrySet()) {
+				options[index] = entry.getKey();
+				translated[index] = entry.getValue()
+					.toArray(new OpenOption[0]);
+				index++;
+			}
+		}
+
+		private void addTranslations(final CopyOption option,
+			final Set<OpenOption> set)
+		{
+			for (int i = 0; i < options.length; i++)
+				if (options[i].equals(option)) {
+					Collections.addAll(set, translated[i]);
+					return;
+				}
+		}
+	}
 }
@@ -19,6 +19,7 @@
 package com.github.fge.filesystem.path;
 
 import com.github.fge.filesystem.fs.GenericFileSystem;
+import com.github.fge.filesystem.watch.WatchServiceBase;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -63,6 +64,9 @@ import java.util.Objects;
 public final class GenericPath
     implements Path
 {
+    private static final WatchEvent.Modifier[] NO_MODIFIERS
+        = new WatchEvent.Modifier[0];
+
     private final GenericFileSystem fs;
 
     private final PathElementsFactory factory;
@@ -329,8 +333,7 @@ public final class GenericPath
     public Path toRealPath(final LinkOption... options)
         throws IOException
     {
-        // TODO: symlinks
-        return toAbsolutePath();
+        return fs.getDriver().toRealPath(this, options);
     }
 
     @Override
@@ -346,7 +349,15 @@ public final class GenericPath
         final WatchEvent.Modifier... modifiers)
         throws IOException
     {
-        throw new UnsupportedOperationException("TODO");
+        if (!(Objects.requireNonNull(watcher) instanceof WatchServiceBase))
+            throw new ProviderMismatchException();
+
+        final WatchServiceBase service = (WatchServiceBase) watcher;
+
+        if (!service.canWatch(fs))
+            throw new ProviderMismatchException();
+
+        return service.register(this, events, modifiers);
     }
 
     @SuppressWarnings("OverloadedVarargsMethod")
@@ -355,7 +366,7 @@ public final class GenericPath
         final WatchEvent.Kind<?>... events)
         throws IOException
     {
-        throw new UnsupportedOperationException("TODO");
+        return register(watcher, events, NO_MODIFIERS);
     }
 
     @SuppressWarnings("AnonymousInnerClassWithTooManyMethods")
@@ -23,11 +23,23 @@ import javax.annotation.ParametersAreNonnullByDefault;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.nio.file.FileSystem;
 import java.nio.file.PathMatcher;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Objects;
 
+/**
+ * Factory for {@link PathMatcher} instances
+ *
+ * <p>By default, this factory supports the {@code "glob"} and {@code "regex"}
+ * syntaxes. Extend this class and use {@link #registerPathMatcher(String,
+ * Class)} in your constructor to add more.</p>
+ *
+ * <p>Registration is only possible until the factory is {@link #freeze()
+ * frozen}.</p>
+ *
+ * @see FileSystem#getPathMatcher(String)
+ */
 @ParametersAreNonnullByDefault
 public class PathMatcherFactory
 {
@@ -36,8 +48,13 @@ public class PathMatcherFactory
     private static final MethodType CONSTRUCTOR_TYPE
         = MethodType.methodType(void.class, String.class);
 
-    private final Map<String, MethodHandle> handleMap
-        = new HashMap<>();
+    /*
+     * Registered syntaxes; the array is replaced (never modified) on
+     * registration, see registerPathMatcher().
+     */
+    private volatile Entry[] entries = new Entry[0];
+
+    private volatile boolean frozen = false;
 
     public PathMatcherFactory()
     {
@@ -50,7 +67,17 @@ public class PathMatcherFactory
         Objects.requireNonNull(name);
         Objects.requireNonNull(arg);
 
-        final MethodHandle handle = handleMap.get(name);
+        final Entry[] array = entries;
+        final int len = array.length;
+
+        MethodHandle handle = null;
+
+        for (int i = 0; i < len; i++)
+            if (array[i].name.equals(name)) {
+                handle = array[i].handle;
+                break;
+            }
+
         if (handle == null)
             throw new UnsupportedOperationException();
 
@@ -63,9 +90,44 @@ public class PathMatcherFactory
         }
     }
 
+    /**
+     * Freeze this factory
+     *
+     * <p>Once this method has been called, any attempt to register a new path
+     * matcher will fail with an {@link IllegalStateException}. Calling this
+     * method more than once has no effect.</p>
+     */
+    public final void freeze()
+    {
+        frozen = true;
+    }
+
+    /**
+     * Tell whether this factory is frozen
+     *
+     * @return true if {@link #freeze()} has been called
+     */
+    public final boolean isFrozen()
+    {
+        return frozen;
+    }
+
+    /**
+     * Register a path matcher class for a given syntax
+     *
+     * <p>The class must have a public constructor taking a single {@link
+     * String} argument (the pattern). Registering a class for an already
+     * registered syntax replaces the previous registration.</p>
+     *
+     * @param name the syntax name
+     * @param matcherClass the path matcher class
+     * @throws IllegalStateException this factory is frozen
+     */
     protected final void registerPathMatcher(@Nonnull final String name,
         @Nonnull final Class<? extends PathMatcher> matcherClass)
     {
+        if (frozen)
+            throw new IllegalStateException("path matcher factory is frozen");
         Objects.requireNonNull(name);
         Objects.requireNonNull(matcherClass);
 
@@ -79,6 +141,33 @@ public class PathMatcherFactory
         }
 
         type = handle.type().changeReturnType(PathMatcher.class);
-        handleMap.put(name, handle.asType(type));
+
+        final Entry entry = new Entry(name, handle.asType(type));
+        final Entry[] array = entries;
+        final int len = array.length;
+
+        for (int i = 0; i < len; i++)
+            if (array[i].name.equals(name)) {
+                final Entry[] newArray = array.clone();
+                newArray[i] = entry;
+                entries = newArray;
+                return;
+            }
+
+        final Entry[] newArray = Arrays.copyOf(array, len + 1);
+        newArray[len] = entry;
+        entries = newArray;
+    }
+
+    private static final class Entry
+    {
+        private final String name;
+        private final MethodHandle handle;
+
+        private Entry(final String name, final MethodHandle handle)
+        {
+            this.name = name;
+            this.handle = handle;
+        }
     }
 }
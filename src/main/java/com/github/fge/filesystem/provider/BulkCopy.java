@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.provider;
+
+import com.github.fge.filesystem.driver.DirectoryFilters;
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import com.github.fge.filesystem.exceptions.UnsupportedOptionException;
+import com.github.fge.filesystem.options.FileSystemOptionsFactory;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Copy a subtree to another filesystem, skipping unchanged files
+ *
+ * <p>This is meant to synchronize large subtrees between two filesystems
+ * built with this package, possibly from different providers; the source
+ * is copied <em>as</em> the target root, which is created if needed.</p>
+ *
+ * <p>Work is split into tasks which run on a pool of at most {@code
+ * parallelism} concurrent workers: listing a source directory submits one
+ * task per entry, which reads the attributes of the entry then copies it,
+ * so that listing, reading attributes, copying contents and setting
+ * attributes of different entries overlap.</p>
+ *
+ * <p>For each entry:</p>
+ *
+ * <ul>
+ *     <li>directories are created at the target unless they already exist
+ *     there;</li>
+ *     <li>files are skipped if the target is a file with the same size and
+ *     last modification time; otherwise, their contents are copied, using
+ *     the read and write options translated from the copy options by the
+ *     {@link FileSystemOptionsFactory} of each filesystem, replacing any
+ *     existing target;</li>
+ *     <li>attributes of created directories and copied files are then
+ *     copied as with {@link StandardCopyOption#COPY_ATTRIBUTES}, so that
+ *     later copies can detect unchanged files; attributes which the
+ *     target filesystem cannot set are not copied.</li>
+ * </ul>
+ *
+ * <p>Files are never skipped on their size alone: if the target filesystem
+ * cannot set last modification times, targets keep the time of their copy,
+ * and files are therefore copied again on every run.</p>
+ *
+ * <p>{@link StandardCopyOption#REPLACE_EXISTING} and {@link
+ * StandardCopyOption#COPY_ATTRIBUTES} are therefore always implied; other
+ * copy options only matter through their read and write translations.</p>
+ *
+ * <p>Symbolic links are followed: the entry a link points to is copied in its
+ * place. A directory whose real path is that of one of its ancestors in the
+ * source subtree is not copied, and the copy fails with a {@link
+ * FileSystemLoopException}.</p>
+ *
+ * <p>Entries present at the target but not at the source are left
+ * untouched. The copy stops at the first failure; entries copied until then
+ * are kept. Progress can be followed with {@link #getProgress()}.</p>
+ *
+ * <p>Sample usage:</p>
+ *
+ * <pre>
+ *     final BulkCopy copy = new BulkCopy(source, target, 16);
+ *     copy.run();
+ *     System.out.println(copy.getProgress());
+ * </pre>
+ */
+@ParametersAreNonnullByDefault
+public final class BulkCopy
+{
+    private final Path source;
+    private final Path target;
+    private final FileSystemDriver src;
+    private final FileSystemDriver dst;
+    private final Set<CopyOption> options;
+    private final Set<OpenOption> readOptions;
+    private final Set<OpenOption> writeOptions;
+    private final int parallelism;
+    private final Executor executor;
+
+    private final BulkCopyProgress progress = new BulkCopyProgress();
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * Constructor
+     *
+     * <p>Workers run on the {@link FileSystemFactoryProvider#getTreeExecutor()
+     * tree executor} of the source filesystem.</p>
+     *
+     * @param source the root of the subtree to copy
+     * @param target the target root
+     * @param parallelism the maximum number of concurrent workers
+     * @param options the copy options
+     * @throws ProviderMismatchException one of the paths is not issued from
+     * a {@link FileSystemProviderBase}
+     * @throws IllegalArgumentException parallelism is not strictly positive
+     * @throws UnsupportedOptionException an option is not supported, or
+     * {@link StandardCopyOption#ATOMIC_MOVE} was specified
+     */
+    public BulkCopy(final Path source, final Path target,
+        final int parallelism, final CopyOption... options)
+    {
+        this(source, target, getProvider(source).repository
+            .getFactoryProvider().getTreeExecutor(), parallelism, options);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param source the root of the subtree to copy
+     * @param target the target root
+     * @param executor the executor on which to run workers; its threads
+     * must not themselves run bulk copies or operations on subtrees
+     * @param parallelism the maximum number of concurrent workers
+     * @param options the copy options
+     * @throws ProviderMismatchException one of the paths is not issued from
+     * a {@link FileSystemProviderBase}
+     * @throws IllegalArgumentException parallelism is not strictly positive
+     * @throws UnsupportedOptionException an option is not supported, or
+     * {@link StandardCopyOption#ATOMIC_MOVE} was specified
+     */
+    public BulkCopy(final Path source, final Path target,
+        final Executor executor, final int parallelism,
+        final CopyOption... options)
+    {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException(
+                "parallelism must be strictly positive");
+
+        this.source = Objects.requireNonNull(source);
+        this.target = Objects.requireNonNull(target);
+        this.executor = Objects.requireNonNull(executor);
+        this.parallelism = parallelism;
+
+        final FileSystemProviderBase srcProvider = getProvider(source);
+        final FileSystemProviderBase dstProvider = getProvider(target);
+
+        src = srcProvider.repository.getDriver(source);
+        dst = dstProvider.repository.getDriver(target);
+
+        this.options = new HashSet<>(
+            srcProvider.optionsFactory.compileCopyOptions(options));
+        if (this.options.contains(StandardCopyOption.ATOMIC_MOVE))
+            throw new UnsupportedOptionException(
+                StandardCopyOption.ATOMIC_MOVE.toString());
+        this.options.add(StandardCopyOption.REPLACE_EXISTING);
+        this.options.add(StandardCopyOption.COPY_ATTRIBUTES);
+
+        readOptions = srcProvider.optionsFactory.toReadOptions(this.options);
+        writeOptions = new HashSet<>(
+            dstProvider.optionsFactory.toWriteOptions(this.options));
+        writeOptions.add(StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Return the progress of this copy
+     *
+     * @return the progress, updated while the copy runs
+     */
+    public BulkCopyProgress getProgress()
+    {
+        return progress;
+    }
+
+    /**
+     * Run the copy
+     *
+     * <p>This method blocks until all entries have been processed, or until
+     * the first failure.</p>
+     *
+     * @throws NoSuchFileException the source, or the parent of the target,
+     * does not exist
+     * @throws FileSystemException the target is below the source
+     * @throws FileSystemLoopException a symbolic link points to one of its
+     * ancestors
+     * @throws IOException other I/O error
+     * @throws IllegalStateException this copy has already been run
+     */
+    public void run()
+        throws IOException
+    {
+        if (!started.compareAndSet(false, true))
+            throw new IllegalStateException("bulk copy already run");
+
+        //noinspection ObjectEquality
+        if (src == dst) {
+            final Path absoluteSource = source.toAbsolutePath().normalize();
+            final Path absoluteTarget = target.toAbsolutePath().normalize();
+            if (absoluteTarget.startsWith(absoluteSource))
+                throw new FileSystemException(source.toString(),
+                    target.toString(), "cannot copy a directory into itself");
+        }
+
+        final TreeTaskRunner runner
+            = new TreeTaskRunner(executor, parallelism);
+
+        try {
+            copyEntry(runner, source, target, Collections.<Path>emptyList());
+            runner.await();
+        } finally {
+            dst.invalidate(target);
+        }
+    }
+
+    /*
+     * ancestors are the real paths of the directories above from in the
+     * source subtree
+     */
+    private void copyEntry(final TreeTaskRunner runner, final Path from,
+        final Path to, final List<Path> ancestors)
+        throws IOException
+    {
+        final BasicFileAttributes attrs
+            = src.readAttributes(from, BasicFileAttributes.class);
+
+        if (!attrs.isDirectory()) {
+            copyFile(from, to, attrs, readTargetAttributes(to));
+            return;
+        }
+
+        final List<Path> directories
+            = FileSystemProviderBase.enterDirectory(src, from, ancestors);
+        final BasicFileAttributes targetAttrs = readTargetAttributes(to);
+
+        if (targetAttrs == null || !targetAttrs.isDirectory()) {
+            if (targetAttrs != null)
+                dst.delete(to);
+            dst.createDirectory(to);
+            FileSystemProviderBase.copyAttributes(src, dst, from, to, attrs);
+        }
+        progress.directoryProcessed();
+
+        try (
+            final DirectoryStream<Path> stream = src.newDirectoryStream(from,
+                DirectoryFilters.ACCEPT_ALL);
+        ) {
+            for (final Path entry: stream)
+                runner.submit(new TreeTaskRunner.Task()
+                {
+                    @Override
+                    public void run()
+                        throws IOException
+                    {
+                        copyEntry(runner, entry,
+                            to.resolve(entry.getFileName().toString()),
+                            directories);
+                    }
+                });
+        }
+    }
+
+    private void copyFile(final Path from, final Path to,
+        final BasicFileAttributes attrs,
+        @Nullable final BasicFileAttributes targetAttrs)
+        throws IOException
+    {
+        if (targetAttrs != null) {
+            if (isUnchanged(attrs, targetAttrs)) {
+                progress.fileSkipped();
+                return;
+            }
+            if (targetAttrs.isDirectory())
+                dst.delete(to);
+        }
+
+        try (
+            final InputStream in = src.newInputStream(from, readOptions);
+            final OutputStream out = dst.newOutputStream(to, writeOptions);
+        ) {
+            final byte[] buf = new byte[FileSystemProviderBase.BUFSIZE];
+            int bytesRead;
+
+            while ((bytesRead = in.read(buf)) != -1) {
+                out.write(buf, 0, bytesRead);
+                progress.bytesCopied(bytesRead);
+            }
+
+            out.flush();
+        }
+
+        FileSystemProviderBase.copyAttributes(src, dst, from, to, attrs);
+        progress.fileCopied();
+    }
+
+    @Nullable
+    private BasicFileAttributes readTargetAttributes(final Path path)
+        throws IOException
+    {
+        try {
+            return dst.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException ignored) {
+            return null;
+        }
+    }
+
+    private static boolean isUnchanged(final BasicFileAttributes attrs,
+        final BasicFileAttributes targetAttrs)
+    {
+        return !targetAttrs.isDirectory()
+            && targetAttrs.size() == attrs.size()
+            && targetAttrs.lastModifiedTime().equals(attrs.lastModifiedTime());
+    }
+
+    private static FileSystemProviderBase getProvider(final Path path)
+    {
+        final FileSystemProvider provider = path.getFileSystem().provider();
+
+        if (!(provider instanceof FileSystemProviderBase))
+            throw new ProviderMismatchException();
+
+        return (FileSystemProviderBase) provider;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.provider;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a {@link BulkCopy}
+ *
+ * <p>Counters are updated by the workers of the copy as entries are
+ * processed, and can be read at any time from any thread, for instance to
+ * report progress periodically while {@link BulkCopy#run()} is running.</p>
+ */
+@ThreadSafe
+public final class BulkCopyProgress
+{
+    private final AtomicLong directories = new AtomicLong();
+    private final AtomicLong filesCopied = new AtomicLong();
+    private final AtomicLong filesSkipped = new AtomicLong();
+    private final AtomicLong bytesCopied = new AtomicLong();
+
+    BulkCopyProgress()
+    {
+    }
+
+    /**
+     * Return the number of directories processed so far
+     *
+     * @return the number of directories created or found at the target
+     */
+    public long getDirectories()
+    {
+        return directories.get();
+    }
+
+    /**
+     * Return the number of files copied so far
+     *
+     * @return the number of files whose contents have been copied
+     */
+    public long getFilesCopied()
+    {
+        return filesCopied.get();
+    }
+
+    /**
+     * Return the number of files skipped so far
+     *
+     * @return the number of files which were found unchanged at the target
+     */
+    public long getFilesSkipped()
+    {
+        return filesSkipped.get();
+    }
+
+    /**
+     * Return the number of bytes copied so far
+     *
+     * @return the number of bytes written to the target, including those of
+     * files which are being copied
+     */
+    public long getBytesCopied()
+    {
+        return bytesCopied.get();
+    }
+
+    void directoryProcessed()
+    {
+        directories.incrementAndGet();
+    }
+
+    void fileCopied()
+    {
+        filesCopied.incrementAndGet();
+    }
+
+    void fileSkipped()
+    {
+        filesSkipped.incrementAndGet();
+    }
+
+    void bytesCopied(final long count)
+    {
+        bytesCopied.addAndGet(count);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "directories: " + directories.get() + ", files copied: "
+            + filesCopied.get() + ", files skipped: " + filesSkipped.get()
+            + ", bytes copied: " + bytesCopied.get();
+    }
+}
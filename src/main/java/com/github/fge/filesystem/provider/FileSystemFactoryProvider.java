@@ -19,35 +19,55 @@
 package com.github.fge.filesystem.provider;
 
 import com.github.fge.filesystem.attributes.FileAttributesFactory;
+import com.github.fge.filesystem.io.DaemonExecutors;
+import com.github.fge.filesystem.io.ReadAheadFactory;
 import com.github.fge.filesystem.options.FileSystemOptionsFactory;
 import com.github.fge.filesystem.path.PathElementsFactory;
 import com.github.fge.filesystem.path.UnixPathElementsFactory;
 import com.github.fge.filesystem.path.matchers.PathMatcherFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
 @ParametersAreNonnullByDefault
 public class FileSystemFactoryProvider
 {
+    /**
+     * Default maximum number of concurrent operations for operations on
+     * subtrees
+     *
+     * @see #setTreeParallelism(int)
+     */
+    public static final int DEFAULT_TREE_PARALLELISM = 4;
+
     private static final PathElementsFactory PATH_ELEMENTS_FACTORY
         = new UnixPathElementsFactory();
-    private static final PathMatcherFactory PATH_MATCHER_FACTORY
-        = new PathMatcherFactory();
-    private static final FileSystemOptionsFactory OPTIONS_FACTORY
-        = new FileSystemOptionsFactory();
 
     private PathElementsFactory pathElementsFactory;
     private PathMatcherFactory pathMatcherFactory;
     private FileAttributesFactory attributesFactory;
     private FileSystemOptionsFactory optionsFactory;
+    private ReadAheadFactory readAheadFactory;
+    private ProviderListener providerListener;
+    private int tracingSampleRate = 1;
+    private int treeParallelism = DEFAULT_TREE_PARALLELISM;
+    private Executor treeExecutor = DefaultTreeExecutor.INSTANCE;
 
     public FileSystemFactoryProvider()
     {
         setPathElementsFactory(PATH_ELEMENTS_FACTORY);
-        setPathMatcherFactory(PATH_MATCHER_FACTORY);
-        setOptionsFactory(OPTIONS_FACTORY);
+        /*
+         * Not shared: validate() freezes these factories, which would prevent
+         * any other provider from registering its own matchers or options
+         */
+        setPathMatcherFactory(new PathMatcherFactory());
+        setOptionsFactory(new FileSystemOptionsFactory());
+        setReadAheadFactory(ReadAheadFactory.DISABLED);
     }
 
     @Nonnull
@@ -74,6 +94,49 @@ public class FileSystemFactoryProvider
         return optionsFactory;
     }
 
+    @Nonnull
+    public final ReadAheadFactory getReadAheadFactory()
+    {
+        return readAheadFactory;
+    }
+
+    @Nullable
+    public final ProviderListener getProviderListener()
+    {
+        return providerListener;
+    }
+
+    public final int getTracingSampleRate()
+    {
+        return tracingSampleRate;
+    }
+
+    public final int getTreeParallelism()
+    {
+        return treeParallelism;
+    }
+
+    @Nonnull
+    public final Executor getTreeExecutor()
+    {
+        return treeExecutor;
+    }
+
+    /**
+     * Validate this factory provider and freeze all of its factories
+     *
+     * <p>This is called when a {@link FileSystemRepositoryBase repository} is
+     * built; no further registration is possible on any of the factories
+     * afterwards.</p>
+     *
+     * @throws NullPointerException no attributes factory has been set
+     * @throws IllegalArgumentException the attributes factory does not
+     * support the {@code "basic"} file attribute view
+     *
+     * @see FileAttributesFactory#freeze()
+     * @see PathMatcherFactory#freeze()
+     * @see FileSystemOptionsFactory#freeze()
+     */
     public final void validate()
     {
         Objects.requireNonNull(attributesFactory,
@@ -81,6 +144,9 @@ public class FileSystemFactoryProvider
         if (!attributesFactory.supportsFileAttributeView("basic"))
             throw new IllegalArgumentException("\"basic\" file attribute view"
                 + " must be supported");
+        attributesFactory.freeze();
+        pathMatcherFactory.freeze();
+        optionsFactory.freeze();
     }
 
     protected final void setPathElementsFactory(
@@ -110,4 +176,108 @@ public class FileSystemFactoryProvider
     {
         this.optionsFactory = Objects.requireNonNull(optionsFactory);
     }
+
+    /**
+     * Set the read ahead factory for this filesystem
+     *
+     * <p>By default, read ahead is {@link ReadAheadFactory#DISABLED disabled}.
+     * </p>
+     *
+     * @param readAheadFactory the read ahead factory
+     */
+    protected final void setReadAheadFactory(
+        final ReadAheadFactory readAheadFactory
+    )
+    {
+        this.readAheadFactory = Objects.requireNonNull(readAheadFactory);
+    }
+
+    /**
+     * Set a listener for all operations of the provider
+     *
+     * <p>All operations are reported to the listener.</p>
+     *
+     * @param providerListener the listener
+     *
+     * @see #setProviderListener(ProviderListener, int)
+     */
+    protected final void setProviderListener(
+        final ProviderListener providerListener
+    )
+    {
+        setProviderListener(providerListener, 1);
+    }
+
+    /**
+     * Set a listener for a sample of the operations of the provider
+     *
+     * <p>Each operation is reported with a probability of {@code
+     * 1/sampleRate}; operations which are not sampled incur no tracing cost
+     * beyond drawing a random number.</p>
+     *
+     * @param providerListener the listener
+     * @param sampleRate the inverse of the sampling probability
+     * @throws IllegalArgumentException sample rate is not strictly positive
+     */
+    protected final void setProviderListener(
+        final ProviderListener providerListener, final int sampleRate
+    )
+    {
+        if (sampleRate <= 0)
+            throw new IllegalArgumentException("sample rate must be strictly"
+                + " positive");
+        this.providerListener = Objects.requireNonNull(providerListener);
+        tracingSampleRate = sampleRate;
+    }
+
+    /**
+     * Set the maximum number of concurrent operations when operating on
+     * subtrees
+     *
+     * <p>This applies to {@link FileSystemProviderBase#deleteTree(Path)} and
+     * {@link FileSystemProviderBase#copyTree(Path, Path, CopyOption...)} when
+     * the driver cannot process subtrees in bulk. The default is {@link
+     * #DEFAULT_TREE_PARALLELISM}.</p>
+     *
+     * @param treeParallelism the maximum number of concurrent operations
+     * @throws IllegalArgumentException parallelism is not strictly positive
+     */
+    protected final void setTreeParallelism(final int treeParallelism)
+    {
+        if (treeParallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be strictly"
+                + " positive");
+        this.treeParallelism = treeParallelism;
+    }
+
+    /**
+     * Set the executor running operations on subtrees
+     *
+     * <p>This applies to the same operations as {@link
+     * #setTreeParallelism(int)}, and to {@link BulkCopy}s from this
+     * filesystem which are not given their own executor. Tasks of these
+     * operations perform blocking driver I/O, and callers wait for them: do
+     * not use an executor whose threads may themselves start operations on
+     * subtrees, such as the one running asynchronous channels.</p>
+     *
+     * <p>By default, a pool of daemon threads dedicated to operations on
+     * subtrees, and shared by all filesystems, is used.</p>
+     *
+     * @param treeExecutor the executor
+     */
+    protected final void setTreeExecutor(final Executor treeExecutor)
+    {
+        this.treeExecutor = Objects.requireNonNull(treeExecutor);
+    }
+
+    private static final class DefaultTreeExecutor
+    {
+        private static final Executor INSTANCE
+            = DaemonExecutors.newThreadPool("tree-worker",
+                2 * Runtime.getRuntime().availableProcessors());
+
+        private DefaultTreeExecutor()
+        {
+        }
+    }
 }
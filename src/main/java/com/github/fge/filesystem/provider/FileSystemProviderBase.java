@@ -18,27 +18,38 @@
 
 package com.github.fge.filesystem.provider;
 
+import com.github.fge.filesystem.driver.DirectoryFilters;
 import com.github.fge.filesystem.driver.FileSystemDriver;
+import com.github.fge.filesystem.exceptions.BatchOperationException;
 import com.github.fge.filesystem.exceptions.IllegalOptionSetException;
+import com.github.fge.filesystem.exceptions.ReadOnlyAttributeException;
 import com.github.fge.filesystem.exceptions.UnsupportedOptionException;
+import com.github.fge.filesystem.io.ReadAheadFactory;
 import com.github.fge.filesystem.options.FileSystemOptionsFactory;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.AccessMode;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.CopyOption;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileStore;
 import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystemLoopException;
 import java.nio.file.LinkOption;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.NotLinkException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -47,10 +58,18 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.FileAttributeView;
 import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Base {@link FileSystemProvider} implementation
@@ -89,6 +108,10 @@ import java.util.Set;
  *     <li>{@link IllegalOptionSetException}.</li>
  * </ul>
  *
+ * <p>I/O operations can be traced end to end, including option checks, by
+ * setting a {@link ProviderListener} on the {@link FileSystemFactoryProvider}
+ * of the filesystem.</p>
+ *
  * @see FileSystemOptionsFactory
  * @see FileSystemDriver
  * @see FileSystemRepository#getDriver(Path)
@@ -98,15 +121,44 @@ import java.util.Set;
 public abstract class FileSystemProviderBase
     extends FileSystemProvider
 {
-    private static final int BUFSIZE = 16384;
+    static final int BUFSIZE = 16384;
+
+    /*
+     * Attributes copied across filesystems in addition to the last
+     * modification time, by view
+     */
+    private static final Map<String, String> PORTABLE_ATTRIBUTES;
+
+    private static final String LAST_MODIFIED_TIME = "basic:lastModifiedTime";
+
+    static {
+        final Map<String, String> map = new LinkedHashMap<>();
+
+        map.put("posix", "permissions");
+        map.put("dos", "readonly,hidden,system,archive");
+
+        PORTABLE_ATTRIBUTES = Collections.unmodifiableMap(map);
+    }
 
     protected final FileSystemRepository repository;
     protected final FileSystemOptionsFactory optionsFactory;
+    protected final ReadAheadFactory readAheadFactory;
+
+    private final ProviderTracer tracer;
+    private final int treeParallelism;
+    private final Executor treeExecutor;
 
     protected FileSystemProviderBase(final FileSystemRepository repository)
     {
         this.repository = Objects.requireNonNull(repository);
-        optionsFactory = repository.getFactoryProvider().getOptionsFactory();
+        final FileSystemFactoryProvider factoryProvider
+            = repository.getFactoryProvider();
+        optionsFactory = factoryProvider.getOptionsFactory();
+        readAheadFactory = factoryProvider.getReadAheadFactory();
+        tracer = new ProviderTracer(factoryProvider.getProviderListener(),
+            factoryProvider.getTracingSampleRate());
+        treeParallelism = factoryProvider.getTreeParallelism();
+        treeExecutor = factoryProvider.getTreeExecutor();
     }
 
     @Override
@@ -145,6 +197,9 @@ public abstract class FileSystemProviderBase
      * creation of the input stream to the relevant driver. The driver is also
      * responsible to deal with the target not being a directory.</p>
      *
+     * <p>The stream is wrapped by the {@link ReadAheadFactory read ahead
+     * factory} of this filesystem.</p>
+     *
      * @param path the path to open
      * @param options open options
      * @return an input stream
@@ -157,6 +212,25 @@ public abstract class FileSystemProviderBase
     public final InputStream newInputStream(final Path path,
         final OpenOption... options)
         throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.NEW_INPUT_STREAM,
+                path, null, options);
+
+        return traced(event, new TracedOperation<InputStream, IOException>()
+        {
+            @Override
+            public InputStream run()
+                throws IOException
+            {
+                return doNewInputStream(path, options);
+            }
+        });
+    }
+
+    private InputStream doNewInputStream(final Path path,
+        final OpenOption... options)
+        throws IOException
     {
         final Set<OpenOption> optionSet
             = optionsFactory.compileReadOptions(options);
@@ -164,7 +238,7 @@ public abstract class FileSystemProviderBase
 
         driver.checkAccess(path);
 
-        return driver.newInputStream(path, optionSet);
+        return readAheadFactory.wrap(driver.newInputStream(path, optionSet));
     }
 
     /**
@@ -200,30 +274,59 @@ public abstract class FileSystemProviderBase
     public final OutputStream newOutputStream(final Path path,
         final OpenOption... options)
         throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.NEW_OUTPUT_STREAM,
+                path, null, options);
+
+        return traced(event, new TracedOperation<OutputStream, IOException>()
+        {
+            @Override
+            public OutputStream run()
+                throws IOException
+            {
+                return doNewOutputStream(path, options);
+            }
+        });
+    }
+
+    private OutputStream doNewOutputStream(final Path path,
+        final OpenOption... options)
+        throws IOException
     {
         final Set<OpenOption> optionSet
             = optionsFactory.compileWriteOptions(options);
         final FileSystemDriver driver = repository.getDriver(path);
 
-        try {
-            driver.checkAccess(path, AccessMode.WRITE);
-            if (optionSet.contains(StandardOpenOption.CREATE_NEW))
-                throw new FileAlreadyExistsException(path.toString());
-        } catch (NoSuchFileException e) {
-            if (!optionSet.contains(StandardOpenOption.CREATE))
-                throw e;
-        }
+        checkWriteTarget(driver, path, optionSet);
 
         return driver.newOutputStream(path, optionSet);
     }
 
     /**
-     * TODO: throws UnsupportedOperationException if attributes are specified
+     * Open a channel to a path
+     *
+     * <p>The options are first {@link
+     * FileSystemOptionsFactory#compileChannelOptions(Set) compiled}; then,
+     * if the channel is only opened for reading, this method checks that the
+     * path exists. If it is opened for writing, the same checks as for {@link
+     * #newOutputStream(Path, OpenOption...)} are performed.</p>
+     *
+     * <p>File attributes are passed as is to the driver, which is responsible
+     * for throwing {@link UnsupportedOperationException} if it cannot set them
+     * when creating the file.</p>
+     *
+     * <p>Read only channels are wrapped by the {@link ReadAheadFactory read
+     * ahead factory} of this filesystem.</p>
      *
      * @param path the path to open a channel to
      * @param options the set of options
      * @param attrs file attributes to set if file is created
      * @return a new channel
+     * @throws NoSuchFileException file does not exist, and the options do not
+     * allow to create it
+     * @throws FileAlreadyExistsException {@link StandardOpenOption#CREATE_NEW}
+     * was specified but the target already exists
      * @throws IOException error creating the channel
      *
      * @see FileSystemDriver#newByteChannel(Path, Set, FileAttribute[])
@@ -234,12 +337,149 @@ public abstract class FileSystemProviderBase
         final FileAttribute<?>... attrs)
         throws IOException
     {
-        // TODO: check options
-        if (attrs.length != 0)
-            throw new UnsupportedOperationException("TODO");
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.NEW_BYTE_CHANNEL,
+                path, null, options);
+
+        return traced(event,
+            new TracedOperation<SeekableByteChannel, IOException>()
+            {
+                @Override
+                public SeekableByteChannel run()
+                    throws IOException
+                {
+                    return doNewByteChannel(path, options, attrs);
+                }
+            });
+    }
+
+    private SeekableByteChannel doNewByteChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        final Set<OpenOption> optionSet
+            = optionsFactory.compileChannelOptions(options);
         final FileSystemDriver driver = repository.getDriver(path);
-        // TODO: check existence/creation
-        return driver.newByteChannel(path, options, attrs);
+
+        checkChannelTarget(driver, path, optionSet);
+
+        final SeekableByteChannel channel
+            = driver.newByteChannel(path, optionSet, attrs);
+
+        return optionSet.contains(StandardOpenOption.WRITE) ? channel
+            : readAheadFactory.wrap(channel);
+    }
+
+    /**
+     * Open an asynchronous channel to a path
+     *
+     * <p>Options are checked in the same way as for {@link
+     * #newByteChannel(Path, Set, FileAttribute[])}. This method then delegates
+     * to the driver, which, unless it provides its own implementation, runs
+     * the blocking channel of {@link #newByteChannel(Path, Set,
+     * FileAttribute[])} on the executor.</p>
+     *
+     * @param path the path to open a channel to
+     * @param options the set of options
+     * @param executor the executor to run I/O operations on; if {@code null},
+     * the driver uses a default executor
+     * @param attrs file attributes to set if file is created
+     * @return a new channel
+     * @throws IOException error creating the channel
+     *
+     * @see FileSystemDriver#newAsynchronousFileChannel(Path, Set,
+     * ExecutorService, FileAttribute[])
+     */
+    @Override
+    public final AsynchronousFileChannel newAsynchronousFileChannel(
+        final Path path, final Set<? extends OpenOption> options,
+        final ExecutorService executor, final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.NEW_ASYNCHRONOUS_FILE_CHANNEL,
+                path, null, options);
+
+        return traced(event,
+            new TracedOperation<AsynchronousFileChannel, IOException>()
+            {
+                @Override
+                public AsynchronousFileChannel run()
+                    throws IOException
+                {
+                    return doNewAsynchronousFileChannel(path, options, executor,
+                               attrs);
+                }
+            });
+    }
+
+    private AsynchronousFileChannel doNewAsynchronousFileChannel(
+        final Path path, final Set<? extends OpenOption> options,
+        final ExecutorService executor, final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        final Set<OpenOption> optionSet
+            = optionsFactory.compileChannelOptions(options);
+        final FileSystemDriver driver = repository.getDriver(path);
+
+        checkChannelTarget(driver, path, optionSet);
+
+        return driver.newAsynchronousFileChannel(path, optionSet, executor,
+            attrs);
+    }
+
+    /**
+     * Obtain a new file channel to a path
+     *
+     * <p>The options are checked as for {@link #newByteChannel(Path, Set,
+     * FileAttribute[])}; it is then up to the driver to provide the channel,
+     * which is only possible if the content of the path is available locally.
+     * </p>
+     *
+     * @param path the path to open
+     * @param options the open options
+     * @param attrs file attributes to set if file is created
+     * @return a new channel
+     * @throws UnsupportedOperationException the driver cannot provide a file
+     * channel for this path
+     * @throws IOException error creating the channel
+     *
+     * @see FileSystemDriver#newFileChannel(Path, Set, FileAttribute[])
+     */
+    @Override
+    public final FileChannel newFileChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.NEW_FILE_CHANNEL,
+                path, null, options);
+
+        return traced(event, new TracedOperation<FileChannel, IOException>()
+        {
+            @Override
+            public FileChannel run()
+                throws IOException
+            {
+                return doNewFileChannel(path, options, attrs);
+            }
+        });
+    }
+
+    private FileChannel doNewFileChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        final Set<OpenOption> optionSet
+            = optionsFactory.compileChannelOptions(options);
+        final FileSystemDriver driver = repository.getDriver(path);
+
+        checkChannelTarget(driver, path, optionSet);
+
+        return driver.newFileChannel(path, optionSet, attrs);
     }
 
     /**
@@ -264,6 +504,26 @@ public abstract class FileSystemProviderBase
     public final DirectoryStream<Path> newDirectoryStream(final Path dir,
         final DirectoryStream.Filter<? super Path> filter)
         throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.NEW_DIRECTORY_STREAM,
+                dir, null, null);
+
+        return traced(event,
+            new TracedOperation<DirectoryStream<Path>, IOException>()
+            {
+                @Override
+                public DirectoryStream<Path> run()
+                    throws IOException
+                {
+                    return doNewDirectoryStream(dir, filter);
+                }
+            });
+    }
+
+    private DirectoryStream<Path> doNewDirectoryStream(final Path dir,
+        final DirectoryStream.Filter<? super Path> filter)
+        throws IOException
     {
         // TODO: EXECUTE permission not checked; unneeded on Unix. Others?
         final FileSystemDriver driver = repository.getDriver(dir);
@@ -274,13 +534,15 @@ public abstract class FileSystemProviderBase
     /**
      * Create a directory
      *
-     * <p>TODO: UnsupportedOperationException if any attributes are specified
-     * </p>
+     * <p>Attributes are handed to the driver along with the directory;
+     * whether they can be set at creation time depends on the driver.</p>
      *
      * @param dir the directory to create
      * @param attrs attributes to the created directory
      * @throws FileAlreadyExistsException path already exists (whether it is
      * a directory or not)
+     * @throws UnsupportedOperationException the driver cannot create
+     * directories with one of the attributes
      * @throws IOException directory creation failed
      *
      * @see FileSystemDriver#createDirectory(Path, FileAttribute[])
@@ -290,14 +552,30 @@ public abstract class FileSystemProviderBase
         final FileAttribute<?>... attrs)
         throws IOException
     {
-        // TODO
-        if (attrs.length != 0)
-            throw new UnsupportedOperationException("TODO");
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.CREATE_DIRECTORY,
+                dir, null, attrs);
 
+        traced(event, new TracedOperation<Void, IOException>()
+        {
+            @Override
+            public Void run()
+                throws IOException
+            {
+                doCreateDirectory(dir, attrs);
+                return null;
+            }
+        });
+    }
+
+    private void doCreateDirectory(final Path dir,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
         final FileSystemDriver driver = repository.getDriver(dir);
 
         try {
-            checkAccess(dir);
+            driver.checkAccess(dir);
             throw new FileAlreadyExistsException(dir.toString());
         } catch (NoSuchFileException ignored) {
             /*
@@ -309,6 +587,61 @@ public abstract class FileSystemProviderBase
         driver.createDirectory(dir, attrs);
     }
 
+    /**
+     * Create several directories
+     *
+     * <p>Unlike {@link #createDirectory(Path, FileAttribute[])}, this method
+     * does not check beforehand that the directories do not exist: paths
+     * are grouped by filesystem, and each group is handed to {@link
+     * FileSystemDriver#batchCreateDirectory(Collection, FileAttribute[])} in
+     * the iteration order of the collection. Failures do not stop the batch.
+     * </p>
+     *
+     * <p>Attributes are handed to the driver along with the directories;
+     * whether they can be set at creation time depends on the driver.</p>
+     *
+     * @param dirs the directories to create
+     * @param attrs the attributes of the directories
+     * @throws BatchOperationException some directories could not be created
+     * @throws UnsupportedOperationException the driver cannot create
+     * directories with one of the attributes
+     * @throws IOException other I/O error
+     */
+    public final void batchCreateDirectory(final Collection<Path> dirs,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        final ProviderEvent event = tracer.start(
+            ProviderOperation.BATCH_CREATE_DIRECTORY, dirs, attrs);
+
+        traced(event, new TracedOperation<Void, IOException>()
+        {
+            @Override
+            public Void run()
+                throws IOException
+            {
+                doBatchCreateDirectory(dirs, attrs);
+                return null;
+            }
+        });
+    }
+
+    private void doBatchCreateDirectory(final Collection<Path> dirs,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        runBatches(dirs, new BatchOperation()
+        {
+            @Override
+            public void run(final FileSystemDriver driver,
+                final List<Path> batch)
+                throws IOException
+            {
+                driver.batchCreateDirectory(batch, attrs);
+            }
+        });
+    }
+
     /**
      * Delete an entry on the filesystem
      *
@@ -329,10 +662,127 @@ public abstract class FileSystemProviderBase
     @Override
     public final void delete(final Path path)
         throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.DELETE, path, null, null);
+
+        traced(event, new TracedOperation<Void, IOException>()
+        {
+            @Override
+            public Void run()
+                throws IOException
+            {
+                doDelete(path);
+                return null;
+            }
+        });
+    }
+
+    private void doDelete(final Path path)
+        throws IOException
     {
         final FileSystemDriver driver = repository.getDriver(path);
         driver.checkAccess(path);
         driver.delete(path);
+        driver.invalidate(path);
+    }
+
+    /**
+     * Delete several entries
+     *
+     * <p>Unlike {@link #delete(Path)}, this method does not check beforehand
+     * that the paths exist: paths are grouped by filesystem, and each group
+     * is handed to {@link FileSystemDriver#batchDelete(Collection)} in the
+     * iteration order of the collection. Failures do not stop the batch; in
+     * particular, a directory is deleted if all of its entries are deleted
+     * earlier in the same batch.</p>
+     *
+     * @param paths the victims
+     * @throws BatchOperationException some paths could not be deleted
+     * @throws IOException other I/O error
+     */
+    public final void batchDelete(final Collection<Path> paths)
+        throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.BATCH_DELETE, paths, null);
+
+        traced(event, new TracedOperation<Void, IOException>()
+        {
+            @Override
+            public Void run()
+                throws IOException
+            {
+                doBatchDelete(paths);
+                return null;
+            }
+        });
+    }
+
+    private void doBatchDelete(final Collection<Path> paths)
+        throws IOException
+    {
+        runBatches(paths, new BatchOperation()
+        {
+            @Override
+            public void run(final FileSystemDriver driver,
+                final List<Path> batch)
+                throws IOException
+            {
+                try {
+                    driver.batchDelete(batch);
+                } finally {
+                    for (final Path path: batch)
+                        driver.invalidate(path);
+                }
+            }
+        });
+    }
+
+    /*
+     * Group paths by driver, and run an operation on each group.
+     *
+     * Failures are merged into a single BatchOperationException; if a driver
+     * fails a whole group with another I/O exception, this exception is
+     * reported for each path of the group.
+     */
+    private void runBatches(final Collection<Path> paths,
+        final BatchOperation operation)
+        throws IOException
+    {
+        final Map<FileSystemDriver, List<Path>> batches
+            = new LinkedHashMap<>();
+
+        FileSystemDriver driver;
+        List<Path> batch;
+
+        for (final Path path: paths) {
+            driver = repository.getDriver(path);
+            batch = batches.get(driver);
+            if (batch == null) {
+                batch = new ArrayList<>();
+                batches.put(driver, batch);
+            }
+            batch.add(path);
+        }
+
+        final Map<Path, IOException> failures = new LinkedHashMap<>();
+
+        for (final Map.Entry<FileSystemDriver, List<Path>> entry:
+            batches.entrySet()) {
+            batch = entry.getValue();
+            try {
+                operation.run(entry.getKey(), batch);
+            } catch (BatchOperationException e) {
+                failures.putAll(e.getFailures());
+            } catch (IOException e) {
+                for (final Path path: batch)
+                    failures.put(path, e);
+            }
+        }
+
+        if (!failures.isEmpty())
+            throw new BatchOperationException(failures, paths.size());
     }
 
     /**
@@ -354,12 +804,22 @@ public abstract class FileSystemProviderBase
      * <p>Note that recursive copies are NOT performed by this method.
      * Similarly, the driver SHOULD NOT perform recursive copies.</p>
      *
+     * <p>When copying across filesystems, {@link
+     * StandardCopyOption#COPY_ATTRIBUTES} copies the last modification time
+     * of the source, as well as its POSIX permissions and DOS flags if both
+     * filesystems support these views; all attributes are set in one {@link
+     * FileSystemDriver#setAttributes(Path, Map, LinkOption...) bulk update}.
+     * This is best effort: attributes which the target filesystem cannot set
+     * are not copied.</p>
+     *
      * @param source the source path
      * @param target the target path
      * @param options the copy options
      * @throws NoSuchFileException source path does not exist
      * @throws FileAlreadyExistsException destination path exists and {@link
      * StandardCopyOption#REPLACE_EXISTING} was not set
+     * @throws UnsupportedOptionException {@link StandardCopyOption#ATOMIC_MOVE}
+     * was set
      * @throws IOException other I/O error
      *
      * @see FileSystemDriver#copy(Path, Path, Set)
@@ -368,20 +828,38 @@ public abstract class FileSystemProviderBase
     public final void copy(final Path source, final Path target,
         final CopyOption... options)
         throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.COPY, source, target, options);
+
+        traced(event, new TracedOperation<Void, IOException>()
+        {
+            @Override
+            public Void run()
+                throws IOException
+            {
+                doCopy(source, target, options);
+                return null;
+            }
+        });
+    }
+
+    private void doCopy(final Path source, final Path target,
+        final CopyOption... options)
+        throws IOException
     {
         final Set<CopyOption> optionSet
             = optionsFactory.compileCopyOptions(options);
 
+        if (optionSet.contains(StandardCopyOption.ATOMIC_MOVE))
+            throw new UnsupportedOptionException(
+                StandardCopyOption.ATOMIC_MOVE.toString());
+
         final FileSystemDriver src = repository.getDriver(source);
         final FileSystemDriver dst = repository.getDriver(target);
 
         src.checkAccess(source);
-        try {
-            dst.checkAccess(target);
-            if (!optionSet.contains(StandardCopyOption.REPLACE_EXISTING))
-                throw new FileAlreadyExistsException(target.toString());
-        } catch (NoSuchFileException ignored) {
-        }
+        final boolean targetExists = checkTarget(dst, target, optionSet);
 
         /*
          * If the same filesystem, call the (hopefully optimize) copy method
@@ -390,32 +868,17 @@ public abstract class FileSystemProviderBase
         //noinspection ObjectEquality
         if (src == dst) {
             src.copy(source, target, optionSet);
+            src.invalidate(target);
             return;
         }
 
         /*
-         * Otherwise, translate the copy options and do a regular stream copy.
+         * Otherwise, do a regular stream copy.
          */
-        final Set<OpenOption> readOptions
-            = optionsFactory.toReadOptions(optionSet);
-        final Set<OpenOption> writeOptions
-            = optionsFactory.toWriteOptions(optionSet);
-
-        try (
-            /*
-             * It is delegated to the drivers to see whether the source or
-             * target are directories
-             */
-            final InputStream in = src.newInputStream(source, readOptions);
-            final OutputStream out = dst.newOutputStream(source, writeOptions);
-        ) {
-            final byte[] buf = new byte[BUFSIZE];
-            int bytesRead;
-
-            while ((bytesRead = in.read(buf)) != -1)
-                out.write(buf, 0, bytesRead);
-
-            out.flush();
+        try {
+            copyAcross(src, dst, source, target, targetExists, optionSet);
+        } finally {
+            dst.invalidate(target);
         }
     }
 
@@ -432,9 +895,17 @@ public abstract class FileSystemProviderBase
      *     FileAlreadyExistsException}.</li>
      * </ul>
      *
-     * <p>From this point on, it will delegate to the driver <em>if and only
-     * if</em> both the source and target are on the same filesystem. If this
-     * is not the case, TODO: implement metadata driver, for now it sucks</p>
+     * <p>If both paths are on the same filesystem, the driver is first asked
+     * to {@link FileSystemDriver#rename(Path, Path, Set) rename} the source;
+     * if it cannot, this method falls back to {@link
+     * FileSystemDriver#move(Path, Path, Set) its move implementation}, unless
+     * {@link StandardCopyOption#ATOMIC_MOVE} is set. The checks above are
+     * left to the driver in this case.</p>
+     *
+     * <p>If the paths are on different filesystems, the source is copied (as
+     * with {@link StandardCopyOption#COPY_ATTRIBUTES}) then deleted; only
+     * files and empty directories can be moved this way, and {@link
+     * StandardCopyOption#ATOMIC_MOVE} is not supported.</p>
      *
      * @param source the path to move
      * @param target the destination path
@@ -442,53 +913,519 @@ public abstract class FileSystemProviderBase
      * @throws NoSuchFileException the source does not exist
      * @throws FileAlreadyExistsException the target exists and {@link
      * StandardCopyOption#REPLACE_EXISTING} was not set
+     * @throws AtomicMoveNotSupportedException {@link
+     * StandardCopyOption#ATOMIC_MOVE} was set, but the move cannot be
+     * performed atomically
      * @throws IOException other I/O exception
      *
+     * @see FileSystemDriver#rename(Path, Path, Set)
      * @see FileSystemDriver#move(Path, Path, Set)
      */
     @Override
     public final void move(final Path source, final Path target,
         final CopyOption... options)
         throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.MOVE, source, target, options);
+
+        traced(event, new TracedOperation<Void, IOException>()
+        {
+            @Override
+            public Void run()
+                throws IOException
+            {
+                doMove(source, target, options);
+                return null;
+            }
+        });
+    }
+
+    private void doMove(final Path source, final Path target,
+        final CopyOption... options)
+        throws IOException
     {
         final Set<CopyOption> optionSet
             = optionsFactory.compileCopyOptions(options);
+        final boolean atomic
+            = optionSet.contains(StandardCopyOption.ATOMIC_MOVE);
 
         final FileSystemDriver src = repository.getDriver(source);
         final FileSystemDriver dst = repository.getDriver(target);
 
         /*
-         * If the same filesystem, call the (hopefully optimize) move method
-         * from the driver.
+         * If the same filesystem, try a rename first, then the (hopefully
+         * optimized) move method from the driver.
          */
         //noinspection ObjectEquality
         if (src == dst) {
-            src.move(source, target, optionSet);
+            try {
+                if (src.rename(source, target, optionSet))
+                    return;
+                if (atomic)
+                    throw new AtomicMoveNotSupportedException(
+                        source.toString(), target.toString(),
+                        "atomic moves are not supported by this filesystem");
+                src.move(source, target, optionSet);
+            } finally {
+                src.invalidate(source);
+                src.invalidate(target);
+            }
             return;
         }
 
+        if (atomic)
+            throw new AtomicMoveNotSupportedException(source.toString(),
+                target.toString(), "paths are not on the same filesystem");
+
         /*
-         * Otherwise, translate the copy options and do a regular stream copy.
+         * Otherwise, copy with attributes, then delete the source.
          */
-        // TODO!!
-        final Set<OpenOption> readOptions
-            = optionsFactory.toReadOptions(optionSet);
-        final Set<OpenOption> writeOptions
-            = optionsFactory.toWriteOptions(optionSet);
+        src.checkAccess(source);
+        final boolean targetExists = checkTarget(dst, target, optionSet);
+
+        final Set<CopyOption> copyOptions = new HashSet<>(optionSet);
+        copyOptions.add(StandardCopyOption.COPY_ATTRIBUTES);
+
+        try {
+            copyAcross(src, dst, source, target, targetExists, copyOptions);
+        } finally {
+            dst.invalidate(target);
+        }
+
+        try {
+            src.delete(source);
+        } finally {
+            src.invalidate(source);
+        }
+    }
+
+    /**
+     * Check whether the target of a copy or move exists
+     *
+     * @param driver the driver of the target
+     * @param target the target
+     * @param options the copy options
+     * @return true if the target exists
+     * @throws FileAlreadyExistsException the target exists and {@link
+     * StandardCopyOption#REPLACE_EXISTING} was not set
+     * @throws IOException other I/O exception
+     */
+    private static boolean checkTarget(final FileSystemDriver driver,
+        final Path target, final Set<CopyOption> options)
+        throws IOException
+    {
+        try {
+            driver.checkAccess(target);
+        } catch (NoSuchFileException ignored) {
+            return false;
+        }
+
+        if (!options.contains(StandardCopyOption.REPLACE_EXISTING))
+            throw new FileAlreadyExistsException(target.toString());
+
+        return true;
+    }
+
+    /*
+     * Copy a file or an empty directory between two different filesystems.
+     */
+    private void copyAcross(final FileSystemDriver src,
+        final FileSystemDriver dst, final Path source, final Path target,
+        final boolean targetExists, final Set<CopyOption> options)
+        throws IOException
+    {
+        final BasicFileAttributes attrs
+            = src.readAttributes(source, BasicFileAttributes.class);
+
+        if (attrs.isDirectory())
+            try (
+                final DirectoryStream<Path> stream
+                    = src.newDirectoryStream(source,
+                        DirectoryFilters.ACCEPT_ALL);
+            ) {
+                if (stream.iterator().hasNext())
+                    throw new DirectoryNotEmptyException(source.toString());
+            }
+
+        copyEntryAcross(src, dst, source, target, attrs, targetExists,
+            options);
+    }
+
+    /*
+     * Copy a single entry between two different filesystems.
+     *
+     * If the source is a directory, the existing target (if any) is deleted
+     * and an empty directory is created, whatever the contents of the source.
+     * Otherwise, the contents are copied using streams, with write options
+     * translated from the copy options.
+     */
+    private void copyEntryAcross(final FileSystemDriver src,
+        final FileSystemDriver dst, final Path source, final Path target,
+        final BasicFileAttributes attrs, final boolean targetExists,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        if (attrs.isDirectory()) {
+            if (targetExists)
+                dst.delete(target);
+            dst.createDirectory(target);
+        } else {
+            final Set<OpenOption> readOptions
+                = optionsFactory.toReadOptions(options);
+            final Set<OpenOption> writeOptions
+                = new HashSet<>(optionsFactory.toWriteOptions(options));
+
+            /*
+             * The target has been checked not to exist, but may have been
+             * created since then
+             */
+            if (!options.contains(StandardCopyOption.REPLACE_EXISTING))
+                writeOptions.add(StandardOpenOption.CREATE_NEW);
+            writeOptions.add(StandardOpenOption.WRITE);
+
+            try (
+                /*
+                 * It is delegated to the target driver to see whether the
+                 * target is a directory
+                 */
+                final InputStream in = src.newInputStream(source, readOptions);
+                final OutputStream out
+                    = dst.newOutputStream(target, writeOptions);
+            ) {
+                final byte[] buf = new byte[BUFSIZE];
+                int bytesRead;
+
+                while ((bytesRead = in.read(buf)) != -1)
+                    out.write(buf, 0, bytesRead);
+
+                out.flush();
+            }
+        }
+
+        if (options.contains(StandardCopyOption.COPY_ATTRIBUTES))
+            copyAttributes(src, dst, source, target, attrs);
+    }
+
+    /*
+     * Copy the attributes of a path to a path on another filesystem.
+     *
+     * Only attributes which do not depend on the filesystem are copied: the
+     * last modification time, and the attributes in PORTABLE_ATTRIBUTES for
+     * views supported by both filesystems. Each view is read with a single
+     * call, and all attributes are then set with a single bulk update.
+     *
+     * The copy is best effort: if the target refuses the bulk update because
+     * one attribute is read only or unsupported, attributes are set one by
+     * one, and those which the target refuses are skipped.
+     */
+    static void copyAttributes(final FileSystemDriver src,
+        final FileSystemDriver dst, final Path source, final Path target,
+        final BasicFileAttributes attrs)
+        throws IOException
+    {
+        final Set<String> views = new HashSet<>(
+            source.getFileSystem().supportedFileAttributeViews());
+        views.retainAll(target.getFileSystem().supportedFileAttributeViews());
+
+        final Map<String, Object> map = new LinkedHashMap<>();
+
+        map.put(LAST_MODIFIED_TIME, attrs.lastModifiedTime());
+
+        String view;
+
+        for (final Map.Entry<String, String> entry:
+            PORTABLE_ATTRIBUTES.entrySet()) {
+            view = entry.getKey();
+            if (!views.contains(view))
+                continue;
+            for (final Map.Entry<String, Object> attr: src.readAttributes(
+                source, view + ':' + entry.getValue()).entrySet())
+                map.put(view + ':' + attr.getKey(), attr.getValue());
+        }
+
+        try {
+            dst.setAttributes(target, map);
+            return;
+        } catch (ReadOnlyAttributeException
+            | UnsupportedOperationException ignored) {
+            // fall back to setting attributes one by one
+        }
+
+        for (final Map.Entry<String, Object> entry: map.entrySet())
+            try {
+                dst.setAttribute(target, entry.getKey(), entry.getValue());
+            } catch (ReadOnlyAttributeException
+                | UnsupportedOperationException ignored) {
+                // this attribute cannot be set on the target
+            }
+    }
+
+    /**
+     * Delete a path and, if it is a directory, all of its contents
+     *
+     * <p>The driver is first asked to {@link FileSystemDriver#deleteTree(Path)
+     * delete the subtree in bulk}. If it cannot, entries are deleted in
+     * parallel on the {@link FileSystemFactoryProvider#getTreeExecutor() tree
+     * executor}, with at most {@link
+     * FileSystemFactoryProvider#getTreeParallelism()} concurrent driver
+     * operations: each entry is deleted directly, and
+     * directories which turn out not to be empty are listed, emptied, then
+     * deleted again. Entries deleted concurrently by someone else are
+     * ignored.</p>
+     *
+     * <p>Symbolic links are deleted, not followed. This operation is not
+     * atomic: if it fails, part of the subtree may have been deleted.</p>
+     *
+     * <p>Obtain this provider from a path to use this method, for
+     * instance:</p>
+     *
+     * <pre>
+     *     ((FileSystemProviderBase) dir.getFileSystem().provider())
+     *         .deleteTree(dir);
+     * </pre>
+     *
+     * @param path the root of the subtree to delete
+     * @throws NoSuchFileException path does not exist
+     * @throws IOException other I/O error
+     *
+     * @see FileSystemDriver#deleteTree(Path)
+     */
+    public final void deleteTree(final Path path)
+        throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.DELETE_TREE, path, null, null);
+
+        traced(event, new TracedOperation<Void, IOException>()
+        {
+            @Override
+            public Void run()
+                throws IOException
+            {
+                doDeleteTree(path);
+                return null;
+            }
+        });
+    }
+
+    private void doDeleteTree(final Path path)
+        throws IOException
+    {
+        final FileSystemDriver driver = repository.getDriver(path);
+
+        try {
+            if (driver.deleteTree(path))
+                return;
+            final TreeTaskRunner runner = newTreeTaskRunner();
+            deleteEntry(runner, driver, path, null);
+            runner.await();
+        } finally {
+            driver.invalidate(path);
+        }
+    }
+
+    private void deleteEntry(final TreeTaskRunner runner,
+        final FileSystemDriver driver, final Path path,
+        @Nullable final PendingDirectory parent)
+        throws IOException
+    {
+        try {
+            driver.delete(path);
+        } catch (NoSuchFileException e) {
+            if (parent == null)
+                throw e;
+        } catch (DirectoryNotEmptyException ignored) {
+            final PendingDirectory directory
+                = new PendingDirectory(driver, path, parent);
+            try (
+                final DirectoryStream<Path> stream
+                    = driver.newDirectoryStream(path,
+                        DirectoryFilters.ACCEPT_ALL);
+            ) {
+                for (final Path entry: stream) {
+                    directory.pending.incrementAndGet();
+                    runner.submit(new TreeTaskRunner.Task()
+                    {
+                        @Override
+                        public void run()
+                            throws IOException
+                        {
+                            deleteEntry(runner, driver, entry, directory);
+                        }
+                    });
+                }
+            }
+            directory.entryDeleted();
+            return;
+        }
+
+        if (parent != null)
+            parent.entryDeleted();
+    }
+
+    /**
+     * Copy a path and, if it is a directory, all of its contents
+     *
+     * <p>The checks are the same as for {@link #copy(Path, Path,
+     * CopyOption...)}, and only apply to the target path itself; in addition,
+     * a directory cannot be copied below itself.</p>
+     *
+     * <p>If both paths are on the same filesystem, the driver is first asked
+     * to {@link FileSystemDriver#copyTree(Path, Path, Set) copy the subtree
+     * in bulk}. Otherwise, or if it cannot, entries are copied in parallel
+     * on the {@link FileSystemFactoryProvider#getTreeExecutor() tree
+     * executor}, with at most {@link
+     * FileSystemFactoryProvider#getTreeParallelism()} concurrent copies; a
+     * directory is always created before its entries are copied.</p>
+     *
+     * <p>Symbolic links are followed, since drivers cannot create them: the
+     * entry a link points to is copied in its place. A directory whose real
+     * path is that of one of its ancestors in the source subtree is not
+     * copied, and the copy fails with a {@link FileSystemLoopException}. This
+     * operation is not atomic: if it fails, part of the subtree may have been
+     * copied.</p>
+     *
+     * @param source the root of the subtree to copy
+     * @param target the target path
+     * @param options the copy options
+     * @throws NoSuchFileException source path does not exist
+     * @throws FileAlreadyExistsException target path exists and {@link
+     * StandardCopyOption#REPLACE_EXISTING} was not set
+     * @throws UnsupportedOptionException {@link StandardCopyOption#ATOMIC_MOVE}
+     * was set
+     * @throws FileSystemLoopException a symbolic link points to one of its
+     * ancestors
+     * @throws IOException other I/O error
+     *
+     * @see FileSystemDriver#copyTree(Path, Path, Set)
+     */
+    public final void copyTree(final Path source, final Path target,
+        final CopyOption... options)
+        throws IOException
+    {
+        final ProviderEvent event = tracer.start(ProviderOperation.COPY_TREE,
+            source, target, options);
+
+        traced(event, new TracedOperation<Void, IOException>()
+        {
+            @Override
+            public Void run()
+                throws IOException
+            {
+                doCopyTree(source, target, options);
+                return null;
+            }
+        });
+    }
+
+    private void doCopyTree(final Path source, final Path target,
+        final CopyOption... options)
+        throws IOException
+    {
+        final Set<CopyOption> optionSet
+            = optionsFactory.compileCopyOptions(options);
+
+        if (optionSet.contains(StandardCopyOption.ATOMIC_MOVE))
+            throw new UnsupportedOptionException(
+                StandardCopyOption.ATOMIC_MOVE.toString());
+
+        final FileSystemDriver src = repository.getDriver(source);
+        final FileSystemDriver dst = repository.getDriver(target);
+
+        src.checkAccess(source);
+
+        //noinspection ObjectEquality
+        if (src == dst) {
+            final Path absoluteSource = source.toAbsolutePath().normalize();
+            final Path absoluteTarget = target.toAbsolutePath().normalize();
+            if (!absoluteTarget.equals(absoluteSource)
+                && absoluteTarget.startsWith(absoluteSource))
+                throw new FileSystemException(source.toString(),
+                    target.toString(), "cannot copy a directory into itself");
+        }
+
+        final boolean targetExists = checkTarget(dst, target, optionSet);
+
+        try {
+            //noinspection ObjectEquality
+            if (src == dst && src.copyTree(source, target, optionSet))
+                return;
+            final TreeTaskRunner runner = newTreeTaskRunner();
+            copyEntry(runner, src, dst, source, target, targetExists,
+                optionSet, Collections.<Path>emptyList());
+            runner.await();
+        } finally {
+            dst.invalidate(target);
+        }
+    }
+
+    /*
+     * ancestors are the real paths of the directories above source in the
+     * source subtree
+     */
+    private void copyEntry(final TreeTaskRunner runner,
+        final FileSystemDriver src, final FileSystemDriver dst,
+        final Path source, final Path target, final boolean targetExists,
+        final Set<CopyOption> options, final List<Path> ancestors)
+        throws IOException
+    {
+        final BasicFileAttributes attrs
+            = src.readAttributes(source, BasicFileAttributes.class);
+        final List<Path> directories = attrs.isDirectory()
+            ? enterDirectory(src, source, ancestors) : null;
+
+        //noinspection ObjectEquality
+        if (src == dst)
+            src.copy(source, target, options);
+        else
+            copyEntryAcross(src, dst, source, target, attrs, targetExists,
+                options);
+
+        if (directories == null)
+            return;
+
         try (
-            final InputStream in = src.newInputStream(source, readOptions);
-            final OutputStream out = dst.newOutputStream(source, writeOptions);
+            final DirectoryStream<Path> stream
+                = src.newDirectoryStream(source,
+                    DirectoryFilters.ACCEPT_ALL);
         ) {
-            final byte[] buf = new byte[BUFSIZE];
-            int bytesRead;
+            for (final Path entry: stream)
+                runner.submit(new TreeTaskRunner.Task()
+                {
+                    @Override
+                    public void run()
+                        throws IOException
+                    {
+                        copyEntry(runner, src, dst, entry,
+                            target.resolve(entry.getFileName().toString()),
+                            false, options, directories);
+                    }
+                });
+        }
+    }
 
-            while ((bytesRead = in.read(buf)) != -1)
-                out.write(buf, 0, bytesRead);
+    /*
+     * Return the real paths of a directory and its ancestors, failing if it
+     * is one of its ancestors
+     */
+    static List<Path> enterDirectory(final FileSystemDriver driver,
+        final Path dir, final List<Path> ancestors)
+        throws IOException
+    {
+        final Path real = driver.toRealPath(dir);
 
-            out.flush();
-        }
+        if (ancestors.contains(real))
+            throw new FileSystemLoopException(dir.toString());
+
+        final List<Path> ret = new ArrayList<>(ancestors);
+        ret.add(real);
+        return ret;
+    }
 
-        src.delete(source);
+    private TreeTaskRunner newTreeTaskRunner()
+    {
+        return new TreeTaskRunner(treeExecutor, treeParallelism);
     }
 
     /**
@@ -512,6 +1449,24 @@ public abstract class FileSystemProviderBase
     @Override
     public final boolean isSameFile(final Path path, final Path path2)
         throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.IS_SAME_FILE, path, path2, null);
+
+        return traced(event, new TracedOperation<Boolean, IOException>()
+        {
+            @Override
+            public Boolean run()
+                throws IOException
+            {
+                return doIsSameFile(path, path2);
+            }
+        });
+    }
+
+    @SuppressWarnings("ObjectEquality")
+    private boolean doIsSameFile(final Path path, final Path path2)
+        throws IOException
     {
         final FileSystemDriver driver = repository.getDriver(path);
         final FileSystemDriver driver2 = repository.getDriver(path2);
@@ -540,6 +1495,23 @@ public abstract class FileSystemProviderBase
     @Override
     public final boolean isHidden(final Path path)
         throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.IS_HIDDEN, path, null, null);
+
+        return traced(event, new TracedOperation<Boolean, IOException>()
+        {
+            @Override
+            public Boolean run()
+                throws IOException
+            {
+                return doIsHidden(path);
+            }
+        });
+    }
+
+    private boolean doIsHidden(final Path path)
+        throws IOException
     {
         return repository.getDriver(path).isHidden(path);
     }
@@ -558,6 +1530,24 @@ public abstract class FileSystemProviderBase
     @Override
     public final void checkAccess(final Path path, final AccessMode... modes)
         throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.CHECK_ACCESS, path, null, modes);
+
+        traced(event, new TracedOperation<Void, IOException>()
+        {
+            @Override
+            public Void run()
+                throws IOException
+            {
+                doCheckAccess(path, modes);
+                return null;
+            }
+        });
+    }
+
+    private void doCheckAccess(final Path path, final AccessMode... modes)
+        throws IOException
     {
         repository.getDriver(path).checkAccess(path, modes);
     }
@@ -565,6 +1555,23 @@ public abstract class FileSystemProviderBase
     @Override
     public final <V extends FileAttributeView> V getFileAttributeView(
         final Path path, final Class<V> type, final LinkOption... options)
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.GET_FILE_ATTRIBUTE_VIEW,
+                path, null, options);
+
+        return traced(event, new TracedOperation<V, RuntimeException>()
+        {
+            @Override
+            public V run()
+            {
+                return doGetFileAttributeView(path, type, options);
+            }
+        });
+    }
+
+    private <V extends FileAttributeView> V doGetFileAttributeView(
+        final Path path, final Class<V> type, final LinkOption... options)
     {
         optionsFactory.checkLinkOptions(options);
         return repository.getDriver(path)
@@ -575,6 +1582,25 @@ public abstract class FileSystemProviderBase
     public final <A extends BasicFileAttributes> A readAttributes(
         final Path path, final Class<A> type, final LinkOption... options)
         throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.READ_ATTRIBUTES,
+                path, null, options);
+
+        return traced(event, new TracedOperation<A, IOException>()
+        {
+            @Override
+            public A run()
+                throws IOException
+            {
+                return doReadAttributes(path, type, options);
+            }
+        });
+    }
+
+    private <A extends BasicFileAttributes> A doReadAttributes(
+        final Path path, final Class<A> type, final LinkOption... options)
+        throws IOException
     {
         optionsFactory.checkLinkOptions(options);
         final FileSystemDriver driver = repository.getDriver(path);
@@ -585,6 +1611,26 @@ public abstract class FileSystemProviderBase
     public final Map<String, Object> readAttributes(final Path path,
         final String attributes, final LinkOption... options)
         throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.READ_ATTRIBUTES,
+                path, null, options);
+
+        return traced(event,
+            new TracedOperation<Map<String, Object>, IOException>()
+            {
+                @Override
+                public Map<String, Object> run()
+                    throws IOException
+                {
+                    return doReadAttributes(path, attributes, options);
+                }
+            });
+    }
+
+    private Map<String, Object> doReadAttributes(final Path path,
+        final String attributes, final LinkOption... options)
+        throws IOException
     {
         optionsFactory.checkLinkOptions(options);
         return repository.getDriver(path)
@@ -595,12 +1641,121 @@ public abstract class FileSystemProviderBase
     public final void setAttribute(final Path path, final String attribute,
         final Object value, final LinkOption... options)
         throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.SET_ATTRIBUTE,
+                path, null, options);
+
+        traced(event, new TracedOperation<Void, IOException>()
+        {
+            @Override
+            public Void run()
+                throws IOException
+            {
+                doSetAttribute(path, attribute, value, options);
+                return null;
+            }
+        });
+    }
+
+    private void doSetAttribute(final Path path, final String attribute,
+        final Object value, final LinkOption... options)
+        throws IOException
     {
         optionsFactory.checkLinkOptions(options);
         repository.getDriver(path)
             .setAttribute(path, attribute, value, options);
     }
 
+    /**
+     * Set the same attribute for several paths
+     *
+     * <p>Paths are grouped by filesystem, and each group is handed to {@link
+     * FileSystemDriver#batchSetAttribute(Collection, String, Object,
+     * LinkOption...)}. Failures for individual paths do not stop the batch.
+     * </p>
+     *
+     * @param paths the victims
+     * @param attribute the name of the attribute
+     * @param value the value of the attribute
+     * @param options the link options
+     * @throws BatchOperationException the attribute could not be set for
+     * some paths
+     * @throws IOException other I/O error
+     *
+     * @see #setAttribute(Path, String, Object, LinkOption...)
+     */
+    public final void batchSetAttribute(final Collection<Path> paths,
+        final String attribute, final Object value, final LinkOption... options)
+        throws IOException
+    {
+        final ProviderEvent event = tracer.start(
+            ProviderOperation.BATCH_SET_ATTRIBUTE, paths, options);
+
+        traced(event, new TracedOperation<Void, IOException>()
+        {
+            @Override
+            public Void run()
+                throws IOException
+            {
+                doBatchSetAttribute(paths, attribute, value, options);
+                return null;
+            }
+        });
+    }
+
+    private void doBatchSetAttribute(final Collection<Path> paths,
+        final String attribute, final Object value, final LinkOption... options)
+        throws IOException
+    {
+        optionsFactory.checkLinkOptions(options);
+        runBatches(paths, new BatchOperation()
+        {
+            @Override
+            public void run(final FileSystemDriver driver,
+                final List<Path> batch)
+                throws IOException
+            {
+                driver.batchSetAttribute(batch, attribute, value, options);
+            }
+        });
+    }
+
+    /**
+     * Read the target of a symbolic link
+     *
+     * @param link the link
+     * @return the target of the link
+     * @throws NotLinkException path is not a symbolic link
+     * @throws IOException other I/O error
+     *
+     * @see FileSystemDriver#readSymbolicLink(Path)
+     */
+    @Override
+    public final Path readSymbolicLink(final Path link)
+        throws IOException
+    {
+        final ProviderEvent event
+            = tracer.start(ProviderOperation.READ_SYMBOLIC_LINK,
+                link, null, null);
+
+        return traced(event, new TracedOperation<Path, IOException>()
+        {
+            @Override
+            public Path run()
+                throws IOException
+            {
+                return doReadSymbolicLink(link);
+            }
+        });
+    }
+
+    private Path doReadSymbolicLink(final Path link)
+        throws IOException
+    {
+        return repository.getDriver(link).readSymbolicLink(link);
+    }
+
     @Override
     public final FileStore getFileStore(final Path path)
         throws IOException
@@ -608,4 +1763,99 @@ public abstract class FileSystemProviderBase
         // See GenericFileSystem: only one file store per filesystem
         return path.getFileSystem().getFileStores().iterator().next();
     }
+
+    private static void checkChannelTarget(final FileSystemDriver driver,
+        final Path path, final Set<OpenOption> options)
+        throws IOException
+    {
+        if (options.contains(StandardOpenOption.WRITE))
+            checkWriteTarget(driver, path, options);
+        else
+            driver.checkAccess(path);
+    }
+
+    private static void checkWriteTarget(final FileSystemDriver driver,
+        final Path path, final Set<OpenOption> options)
+        throws IOException
+    {
+        try {
+            driver.checkAccess(path, AccessMode.WRITE);
+            if (options.contains(StandardOpenOption.CREATE_NEW))
+                throw new FileAlreadyExistsException(path.toString());
+        } catch (NoSuchFileException e) {
+            if (!options.contains(StandardOpenOption.CREATE)
+                && !options.contains(StandardOpenOption.CREATE_NEW))
+                throw e;
+        }
+    }
+
+    /*
+     * Run an operation, reporting it to the listener if it is traced (that
+     * is, if event is not null)
+     */
+    private <V, X extends Exception> V traced(
+        @Nullable final ProviderEvent event,
+        final TracedOperation<V, X> operation)
+        throws X
+    {
+        if (event == null)
+            return operation.run();
+
+        final V ret;
+
+        try {
+            ret = operation.run();
+        } catch (Throwable t) {
+            tracer.end(event, t);
+            throw t;
+        }
+
+        tracer.end(event, null);
+        return ret;
+    }
+
+    private interface TracedOperation<V, X extends Exception>
+    {
+        V run()
+            throws X;
+    }
+
+    private interface BatchOperation
+    {
+        void run(FileSystemDriver driver, List<Path> batch)
+            throws IOException;
+    }
+
+    /*
+     * A directory being emptied by deleteTree(); it is deleted once all of
+     * its entries are, and then notifies its own parent
+     */
+    private static final class PendingDirectory
+    {
+        // One more than the number of entries left, until listing is done
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        private final FileSystemDriver driver;
+        private final Path path;
+        private final PendingDirectory parent;
+
+        private PendingDirectory(final FileSystemDriver driver,
+            final Path path, @Nullable final PendingDirectory parent)
+        {
+            this.driver = driver;
+            this.path = path;
+            this.parent = parent;
+        }
+
+        private void entryDeleted()
+            throws IOException
+        {
+            if (pending.decrementAndGet() != 0)
+                return;
+
+            driver.delete(path);
+            if (parent != null)
+                parent.entryDeleted();
+        }
+    }
 }
@@ -32,16 +32,33 @@ import java.nio.file.FileSystemAlreadyExistsException;
 import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Path;
 import java.nio.file.spi.FileSystemProvider;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Base implementation of a {@link FileSystemRepository}
+ *
+ * <p>No lock is held while calling {@link #createDriver(URI, Map)} or while
+ * looking up filesystems: a slow driver creation does not block operations
+ * on other filesystems, nor pins the carrier of a virtual thread. The
+ * creation of a filesystem for a given URI only fails with {@link
+ * FileSystemAlreadyExistsException} if this URI is already registered, or
+ * being registered by another thread.</p>
+ */
 @ParametersAreNonnullByDefault
 public abstract class FileSystemRepositoryBase
     implements FileSystemRepository
 {
     private final String scheme;
-    private final Map<URI, GenericFileSystem> filesystems = new HashMap<>();
+    private final ConcurrentMap<URI, GenericFileSystem> filesystems
+        = new ConcurrentHashMap<>();
+    // URIs whose drivers are being created
+    private final Set<URI> pending
+        = Collections.newSetFromMap(new ConcurrentHashMap<URI, Boolean>());
 
     protected final FileSystemFactoryProvider factoryProvider;
 
@@ -82,7 +99,14 @@ public abstract class FileSystemRepositoryBase
         Objects.requireNonNull(env);
         checkURI(uri);
 
-        synchronized (filesystems) {
+        if (filesystems.containsKey(uri) || !pending.add(uri))
+            throw new FileSystemAlreadyExistsException();
+
+        try {
+            /*
+             * Check again: another thread may have registered this URI
+             * between the first check and the reservation
+             */
             if (filesystems.containsKey(uri))
                 throw new FileSystemAlreadyExistsException();
             final FileSystemDriver driver = createDriver(uri, env);
@@ -90,6 +114,8 @@ public abstract class FileSystemRepositoryBase
                 = new GenericFileSystem(uri, this, driver, provider);
             filesystems.put(uri, fs);
             return fs;
+        } finally {
+            pending.remove(uri);
         }
     }
 
@@ -99,11 +125,7 @@ public abstract class FileSystemRepositoryBase
     {
         checkURI(uri);
 
-        final FileSystem fs;
-
-        synchronized (filesystems) {
-            fs = filesystems.get(uri);
-        }
+        final FileSystem fs = filesystems.get(uri);
 
         if (fs == null)
             throw new FileSystemNotFoundException();
@@ -122,21 +144,19 @@ public abstract class FileSystemRepositoryBase
         GenericFileSystem fs;
         String path;
 
-        synchronized (filesystems) {
-            for (final Map.Entry<URI, GenericFileSystem> entry:
-                filesystems.entrySet()) {
-                tmp = uri.relativize(entry.getKey());
-                if (tmp.isAbsolute())
-                    continue;
-                fs = entry.getValue();
-                // TODO: can happen...
-                if (!fs.isOpen())
-                    continue;
-                path = tmp.getPath();
-                if (path == null)
-                    path = "";
-                return entry.getValue().getPath(path);
-            }
+        for (final Map.Entry<URI, GenericFileSystem> entry:
+            filesystems.entrySet()) {
+            tmp = uri.relativize(entry.getKey());
+            if (tmp.isAbsolute())
+                continue;
+            fs = entry.getValue();
+            // TODO: can happen...
+            if (!fs.isOpen())
+                continue;
+            path = tmp.getPath();
+            if (path == null)
+                path = "";
+            return entry.getValue().getPath(path);
         }
 
         throw new FileSystemNotFoundException();
@@ -148,18 +168,19 @@ public abstract class FileSystemRepositoryBase
     {
         final FileSystem fs = Objects.requireNonNull(path).getFileSystem();
 
-        synchronized (filesystems) {
-            for (final GenericFileSystem gfs: filesystems.values()) {
-                //noinspection ObjectEquality
-                if (gfs != fs)
-                    continue;
-                if (!gfs.isOpen())
-                    throw new ClosedFileSystemException();
-                return gfs.getDriver();
-            }
-        }
+        if (!(fs instanceof GenericFileSystem))
+            throw new FileSystemNotFoundException();
 
-        throw new FileSystemNotFoundException();
+        final GenericFileSystem gfs
+            = filesystems.get(((GenericFileSystem) fs).getUri());
+
+        //noinspection ObjectEquality
+        if (gfs != fs)
+            throw new FileSystemNotFoundException();
+        if (!gfs.isOpen())
+            throw new ClosedFileSystemException();
+
+        return gfs.getDriver();
     }
 
     // Called ONLY after the driver and fs have been successfully closed
@@ -167,10 +188,7 @@ public abstract class FileSystemRepositoryBase
     @Override
     public final void unregister(final URI uri)
     {
-        Objects.requireNonNull(uri);
-        synchronized (filesystems) {
-            filesystems.remove(uri);
-        }
+        filesystems.remove(Objects.requireNonNull(uri));
     }
 
     // TODO: should be checked at the provider level, not here
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.provider;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * An operation of a {@link FileSystemProviderBase}, as reported to a {@link
+ * ProviderListener}
+ *
+ * <p>The options are the ones given by the caller, before they are compiled;
+ * for {@link ProviderOperation#CREATE_DIRECTORY}, they are the file
+ * attributes.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class ProviderEvent
+{
+    private final ProviderOperation operation;
+    private final List<Path> paths;
+    private final List<Object> options;
+    private final long startTime;
+
+    ProviderEvent(final ProviderOperation operation, final List<Path> paths,
+        final List<Object> options, final long startTime)
+    {
+        this.operation = operation;
+        this.paths = paths;
+        this.options = options;
+        this.startTime = startTime;
+    }
+
+    public ProviderOperation getOperation()
+    {
+        return operation;
+    }
+
+    /**
+     * Return the paths of the operation
+     *
+     * <p>Operations on two paths (copies, moves and {@link
+     * ProviderOperation#IS_SAME_FILE}) have two paths, source first.</p>
+     *
+     * @return an immutable list of paths
+     */
+    public List<Path> getPaths()
+    {
+        return paths;
+    }
+
+    /**
+     * Return the options of the operation
+     *
+     * @return an immutable list of options (possibly empty)
+     */
+    public List<Object> getOptions()
+    {
+        return options;
+    }
+
+    /**
+     * Return the start time of the operation
+     *
+     * @return the value of {@link System#nanoTime()} when the operation
+     * started
+     */
+    public long getStartTime()
+    {
+        return startTime;
+    }
+
+    @Override
+    public String toString()
+    {
+        return operation + " " + paths + " " + options;
+    }
+}
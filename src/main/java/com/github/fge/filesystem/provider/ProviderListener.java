@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.provider;
+
+import javax.annotation.Nullable;
+
+/**
+ * A listener for operations of a {@link FileSystemProviderBase}
+ *
+ * <p>A listener is set with {@link
+ * FileSystemFactoryProvider#setProviderListener(ProviderListener, int)}; it is
+ * notified before an operation starts and when it ends, from the thread
+ * performing the operation. Events cover the whole operation, including option
+ * compilation and access checks.</p>
+ *
+ * <p>Implementations must be thread safe and should return quickly. Runtime
+ * exceptions thrown by listeners are ignored.</p>
+ */
+public interface ProviderListener
+{
+    /**
+     * Called before an operation starts
+     *
+     * @param event the event
+     */
+    void operationStarted(ProviderEvent event);
+
+    /**
+     * Called after an operation ends
+     *
+     * @param event the event (the same instance as the one given to {@link
+     * #operationStarted(ProviderEvent)})
+     * @param nanos the duration of the operation, in nanoseconds
+     * @param failure the exception thrown by the operation, or {@code null} if
+     * it succeeded
+     */
+    void operationEnded(ProviderEvent event, long nanos,
+        @Nullable Throwable failure);
+}
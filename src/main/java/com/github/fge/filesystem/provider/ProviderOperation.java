@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.provider;
+
+/**
+ * The {@link FileSystemProviderBase} operations reported to {@link
+ * ProviderListener}s
+ */
+public enum ProviderOperation
+{
+    NEW_INPUT_STREAM,
+    NEW_OUTPUT_STREAM,
+    NEW_BYTE_CHANNEL,
+    NEW_ASYNCHRONOUS_FILE_CHANNEL,
+    NEW_FILE_CHANNEL,
+    NEW_DIRECTORY_STREAM,
+    CREATE_DIRECTORY,
+    BATCH_CREATE_DIRECTORY,
+    DELETE,
+    BATCH_DELETE,
+    COPY,
+    MOVE,
+    DELETE_TREE,
+    COPY_TREE,
+    IS_SAME_FILE,
+    IS_HIDDEN,
+    CHECK_ACCESS,
+    GET_FILE_ATTRIBUTE_VIEW,
+    READ_ATTRIBUTES,
+    SET_ATTRIBUTE,
+    BATCH_SET_ATTRIBUTE,
+    READ_SYMBOLIC_LINK,
+    ;
+}
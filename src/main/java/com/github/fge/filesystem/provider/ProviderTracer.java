@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.provider;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reports operations of a {@link FileSystemProviderBase} to its listener
+ *
+ * <p>When there is no listener, or an operation is not sampled, {@link
+ * #start(ProviderOperation, Path, Path, Object)} returns {@code null} without
+ * allocating anything, and the provider performs the operation directly.</p>
+ */
+@ParametersAreNonnullByDefault
+final class ProviderTracer
+{
+    @Nullable
+    private final ProviderListener listener;
+    private final int sampleRate;
+
+    ProviderTracer(@Nullable final ProviderListener listener,
+        final int sampleRate)
+    {
+        this.listener = listener;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Start tracing an operation
+     *
+     * @param operation the operation
+     * @param path the (first) path of the operation
+     * @param path2 the second path, if any
+     * @param options the options, as an array or a collection, if any
+     * @return an event, or {@code null} if the operation is not traced
+     */
+    @Nullable
+    ProviderEvent start(final ProviderOperation operation, final Path path,
+        @Nullable final Path path2, @Nullable final Object options)
+    {
+        if (listener == null)
+            return null;
+        if (sampleRate > 1
+            && ThreadLocalRandom.current().nextInt(sampleRate) != 0)
+            return null;
+
+        final List<Path> paths = path2 == null
+            ? Collections.singletonList(path)
+            : Collections.unmodifiableList(Arrays.asList(path, path2));
+
+        return started(operation, paths, options);
+    }
+
+    /**
+     * Start tracing an operation on a batch of paths
+     *
+     * @param operation the operation
+     * @param paths the paths of the batch
+     * @param options the options, as an array or a collection, if any
+     * @return an event, or {@code null} if the operation is not traced
+     */
+    @Nullable
+    ProviderEvent start(final ProviderOperation operation,
+        final Collection<Path> paths, @Nullable final Object options)
+    {
+        if (listener == null)
+            return null;
+        if (sampleRate > 1
+            && ThreadLocalRandom.current().nextInt(sampleRate) != 0)
+            return null;
+
+        return started(operation,
+            Collections.unmodifiableList(new ArrayList<>(paths)), options);
+    }
+
+    void end(final ProviderEvent event, @Nullable final Throwable failure)
+    {
+        final long nanos = System.nanoTime() - event.getStartTime();
+
+        try {
+            //noinspection ConstantConditions
+            listener.operationEnded(event, nanos, failure);
+        } catch (RuntimeException ignored) {
+            // listeners must not break operations
+        }
+    }
+
+    private ProviderEvent started(final ProviderOperation operation,
+        final List<Path> paths, @Nullable final Object options)
+    {
+        final ProviderEvent event = new ProviderEvent(operation, paths,
+            toList(options), System.nanoTime());
+
+        try {
+            //noinspection ConstantConditions
+            listener.operationStarted(event);
+        } catch (RuntimeException ignored) {
+            // listeners must not break operations
+        }
+
+        return event;
+    }
+
+    private static List<Object> toList(@Nullable final Object options)
+    {
+        if (options == null)
+            return Collections.emptyList();
+        if (options instanceof Object[])
+            return Collections.unmodifiableList(
+                new ArrayList<Object>(Arrays.asList((Object[]) options)));
+        if (options instanceof Collection)
+            return Collections.unmodifiableList(
+                new ArrayList<Object>((Collection<?>) options));
+        return Collections.singletonList(options);
+    }
+}
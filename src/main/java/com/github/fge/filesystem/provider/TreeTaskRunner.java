@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.provider;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the tasks of an operation on a subtree, with bounded concurrency
+ *
+ * <p>Tasks may submit further tasks. At most a given number of tasks run at
+ * any time, on an executor; tasks are never blocked waiting for each other,
+ * so the executor may have fewer threads than this limit.</p>
+ *
+ * <p>Once a task has failed, tasks which have not started yet are skipped;
+ * {@link #await()} returns when all tasks have completed or been skipped, and
+ * throws the first failure, if any. The executor refusing to run a worker
+ * counts as a failure.</p>
+ */
+@ParametersAreNonnullByDefault
+final class TreeTaskRunner
+{
+    interface Task
+    {
+        void run()
+            throws IOException;
+    }
+
+    private final Executor executor;
+    private final int parallelism;
+
+    private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger workers = new AtomicInteger();
+    // One more than the number of unfinished tasks, until await() is called
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private final Runnable worker = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            work();
+        }
+    };
+
+    TreeTaskRunner(final Executor executor, final int parallelism)
+    {
+        this.executor = Objects.requireNonNull(executor);
+        this.parallelism = parallelism;
+    }
+
+    void submit(final Task task)
+    {
+        pending.incrementAndGet();
+        queue.add(task);
+        startWorkers();
+    }
+
+    /**
+     * Wait for all tasks to complete
+     *
+     * <p>Tasks must not be submitted after this method is called, other than
+     * by running tasks.</p>
+     *
+     * @throws IOException a task failed with this exception
+     * @throws InterruptedIOException interrupted while waiting; remaining
+     * tasks are skipped
+     */
+    void await()
+        throws IOException
+    {
+        if (pending.decrementAndGet() == 0)
+            done.countDown();
+
+        try {
+            done.await();
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException e = new InterruptedIOException(
+                "interrupted while waiting for tree operation");
+            failure.compareAndSet(null, e);
+            throw e;
+        }
+
+        final Throwable t = failure.get();
+
+        if (t == null)
+            return;
+        if (t instanceof IOException)
+            throw (IOException) t;
+        if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        throw (Error) t;
+    }
+
+    private void startWorkers()
+    {
+        int count;
+
+        while (!queue.isEmpty()) {
+            count = workers.get();
+            if (count >= parallelism)
+                return;
+            if (!workers.compareAndSet(count, count + 1))
+                continue;
+            try {
+                executor.execute(worker);
+            } catch (RuntimeException e) {
+                workers.decrementAndGet();
+                failure.compareAndSet(null, e);
+                skipQueued();
+                return;
+            }
+        }
+    }
+
+    /*
+     * Drop all tasks not started yet; running workers may still be finishing
+     * theirs
+     */
+    private void skipQueued()
+    {
+        while (queue.poll() != null)
+            if (pending.decrementAndGet() == 0)
+                done.countDown();
+    }
+
+    private void work()
+    {
+        Task task;
+
+        while ((task = queue.poll()) != null) {
+            if (failure.get() == null)
+                try {
+                    task.run();
+                } catch (IOException | RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                }
+            if (pending.decrementAndGet() == 0)
+                done.countDown();
+        }
+
+        workers.decrementAndGet();
+        // A task may have been submitted after the last poll
+        startWorkers();
+    }
+}
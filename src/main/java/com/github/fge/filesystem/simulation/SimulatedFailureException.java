@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.simulation;
+
+import com.github.fge.filesystem.metrics.DriverOperation;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+/**
+ * Exception thrown by a {@link SimulatedFileSystemDriver} when it simulates
+ * the failure of an operation
+ */
+public final class SimulatedFailureException
+    extends IOException
+{
+    private final DriverOperation operation;
+
+    public SimulatedFailureException(final DriverOperation operation)
+    {
+        super("simulated failure of operation " + operation);
+        this.operation = operation;
+    }
+
+    @Nonnull
+    public DriverOperation getOperation()
+    {
+        return operation;
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.simulation;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import com.github.fge.filesystem.driver.ForwardingFileSystemDriver;
+import com.github.fge.filesystem.metrics.DriverOperation;
+import com.github.fge.filesystem.metrics.InstrumentedFileSystemDriver;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link FileSystemDriver} decorator simulating the performance
+ * characteristics of a remote backend
+ *
+ * <p>Before being forwarded to the wrapped driver, each {@link
+ * DriverOperation operation} waits for the latency defined by the {@link
+ * SimulationProfile profile}, plus a random jitter; it then fails with a
+ * {@link SimulatedFailureException} with the probability defined by the
+ * profile.</p>
+ *
+ * <p>Bytes read and written through input streams, output streams and
+ * seekable channels are throttled to the bandwidth of the profile; all
+ * streams and channels of a driver share the same bandwidth. Asynchronous and
+ * file channels, as well as copies, moves and renames (including bulk
+ * operations on subtrees), are only subject to latency and failures.</p>
+ *
+ * <p>Jitter and failures are drawn from a random number generator seeded
+ * with the seed of the profile: a given sequence of calls made by a single
+ * thread always sees the same delays and failures.</p>
+ *
+ * <p>This driver is meant for benchmarks and tests, for instance:</p>
+ *
+ * <pre>
+ *     return new SimulatedFileSystemDriver(new MyDriver(...), profile);
+ * </pre>
+ *
+ * <p>It can be combined with an {@link InstrumentedFileSystemDriver} to
+ * observe the effect of the simulated link on callers.</p>
+ */
+@SuppressWarnings("OverloadedVarargsMethod")
+@ParametersAreNonnullByDefault
+public final class SimulatedFileSystemDriver
+    extends ForwardingFileSystemDriver
+{
+    private final SimulationProfile profile;
+    private final Random random;
+    private final Throttle readThrottle;
+    private final Throttle writeThrottle;
+
+    /**
+     * Constructor
+     *
+     * @param delegate the driver to wrap
+     * @param profile the simulated characteristics
+     */
+    public SimulatedFileSystemDriver(final FileSystemDriver delegate,
+        final SimulationProfile profile)
+    {
+        super(delegate);
+        this.profile = Objects.requireNonNull(profile);
+        random = new Random(profile.getSeed());
+        readThrottle = new Throttle(profile.getReadBandwidth());
+        writeThrottle = new Throttle(profile.getWriteBandwidth());
+    }
+
+    @Nonnull
+    public SimulationProfile getProfile()
+    {
+        return profile;
+    }
+
+    @Override
+    @Nonnull
+    public InputStream newInputStream(final Path path,
+        final Set<OpenOption> options)
+        throws IOException
+    {
+        simulate(DriverOperation.NEW_INPUT_STREAM);
+        return new ThrottledInputStream(delegate.newInputStream(path, options),
+            readThrottle);
+    }
+
+    @Nonnull
+    @Override
+    public OutputStream newOutputStream(final Path path,
+        final Set<OpenOption> options)
+        throws IOException
+    {
+        simulate(DriverOperation.NEW_OUTPUT_STREAM);
+        return new ThrottledOutputStream(
+            delegate.newOutputStream(path, options), writeThrottle);
+    }
+
+    @Nonnull
+    @Override
+    public SeekableByteChannel newByteChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        simulate(DriverOperation.NEW_BYTE_CHANNEL);
+        return new ThrottledSeekableByteChannel(
+            delegate.newByteChannel(path, options, attrs), readThrottle,
+            writeThrottle);
+    }
+
+    @Nonnull
+    @Override
+    public AsynchronousFileChannel newAsynchronousFileChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        @Nullable final ExecutorService executor,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        simulate(DriverOperation.NEW_ASYNCHRONOUS_FILE_CHANNEL);
+        return delegate.newAsynchronousFileChannel(path, options, executor,
+            attrs);
+    }
+
+    @Nonnull
+    @Override
+    public FileChannel newFileChannel(final Path path,
+        final Set<? extends OpenOption> options,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        simulate(DriverOperation.NEW_FILE_CHANNEL);
+        return delegate.newFileChannel(path, options, attrs);
+    }
+
+    @Override
+    @Nonnull
+    public DirectoryStream<Path> newDirectoryStream(final Path dir,
+        final DirectoryStream.Filter<? super Path> filter)
+        throws IOException
+    {
+        simulate(DriverOperation.NEW_DIRECTORY_STREAM);
+        return delegate.newDirectoryStream(dir, filter);
+    }
+
+    @Override
+    public void createDirectory(final Path dir, final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        simulate(DriverOperation.CREATE_DIRECTORY);
+        delegate.createDirectory(dir, attrs);
+    }
+
+    @Override
+    public void delete(final Path path)
+        throws IOException
+    {
+        simulate(DriverOperation.DELETE);
+        delegate.delete(path);
+    }
+
+    @Override
+    public void copy(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        simulate(DriverOperation.COPY);
+        delegate.copy(source, target, options);
+    }
+
+    @Override
+    public void move(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        simulate(DriverOperation.MOVE);
+        delegate.move(source, target, options);
+    }
+
+    @Override
+    public boolean rename(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        simulate(DriverOperation.RENAME);
+        return delegate.rename(source, target, options);
+    }
+
+    @Override
+    public boolean deleteTree(final Path path)
+        throws IOException
+    {
+        simulate(DriverOperation.DELETE_TREE);
+        return delegate.deleteTree(path);
+    }
+
+    @Override
+    public boolean copyTree(final Path source, final Path target,
+        final Set<CopyOption> options)
+        throws IOException
+    {
+        simulate(DriverOperation.COPY_TREE);
+        return delegate.copyTree(source, target, options);
+    }
+
+    @Override
+    public void batchCreateDirectory(final Collection<Path> dirs,
+        final FileAttribute<?>... attrs)
+        throws IOException
+    {
+        simulate(DriverOperation.BATCH_CREATE_DIRECTORY);
+        delegate.batchCreateDirectory(dirs, attrs);
+    }
+
+    @Override
+    public void batchDelete(final Collection<Path> paths)
+        throws IOException
+    {
+        simulate(DriverOperation.BATCH_DELETE);
+        delegate.batchDelete(paths);
+    }
+
+    @Override
+    public boolean isSameFile(final Path path, final Path path2)
+        throws IOException
+    {
+        simulate(DriverOperation.IS_SAME_FILE);
+        return delegate.isSameFile(path, path2);
+    }
+
+    @Nonnull
+    @Override
+    public Path readSymbolicLink(final Path link)
+        throws IOException
+    {
+        simulate(DriverOperation.READ_SYMBOLIC_LINK);
+        return delegate.readSymbolicLink(link);
+    }
+
+    @Nonnull
+    @Override
+    public Path toRealPath(final Path path, final LinkOption... options)
+        throws IOException
+    {
+        simulate(DriverOperation.TO_REAL_PATH);
+        return delegate.toRealPath(path, options);
+    }
+
+    @Override
+    public boolean isHidden(final Path path)
+        throws IOException
+    {
+        simulate(DriverOperation.IS_HIDDEN);
+        return delegate.isHidden(path);
+    }
+
+    @Override
+    public void checkAccess(final Path path, final AccessMode... modes)
+        throws IOException
+    {
+        simulate(DriverOperation.CHECK_ACCESS);
+        delegate.checkAccess(path, modes);
+    }
+
+    @Override
+    public <A extends BasicFileAttributes> A readAttributes(final Path path,
+        final Class<A> type, final LinkOption... options)
+        throws IOException
+    {
+        simulate(DriverOperation.READ_ATTRIBUTES);
+        return delegate.readAttributes(path, type, options);
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(final Path path,
+        final String attributes, final LinkOption... options)
+        throws IOException
+    {
+        simulate(DriverOperation.READ_ATTRIBUTES);
+        return delegate.readAttributes(path, attributes, options);
+    }
+
+    @Override
+    public void setAttribute(final Path path, final String attribute,
+        final Object value, final LinkOption... options)
+        throws IOException
+    {
+        simulate(DriverOperation.SET_ATTRIBUTE);
+        delegate.setAttribute(path, attribute, value, options);
+    }
+
+    @Override
+    public void setAttributes(final Path path,
+        final Map<String, Object> attributes, final LinkOption... options)
+        throws IOException
+    {
+        simulate(DriverOperation.SET_ATTRIBUTES);
+        delegate.setAttributes(path, attributes, options);
+    }
+
+    @Override
+    public void batchSetAttribute(final Collection<Path> paths,
+        final String attribute, final Object value, final LinkOption... options)
+        throws IOException
+    {
+        simulate(DriverOperation.BATCH_SET_ATTRIBUTE);
+        delegate.batchSetAttribute(paths, attribute, value, options);
+    }
+
+    @Nonnull
+    @Override
+    public Object getPathMetadata(final Path path)
+        throws IOException
+    {
+        simulate(DriverOperation.GET_PATH_METADATA);
+        return delegate.getPathMetadata(path);
+    }
+
+    private void simulate(final DriverOperation operation)
+        throws IOException
+    {
+        final long jitter = profile.getJitter(TimeUnit.NANOSECONDS);
+        final double rate = profile.getFailureRate(operation);
+        long delay = profile.getLatency(operation, TimeUnit.NANOSECONDS);
+        final boolean fail;
+
+        synchronized (random) {
+            if (jitter > 0L)
+                delay += (long) (random.nextDouble() * jitter);
+            fail = rate > 0.0 && random.nextDouble() < rate;
+        }
+
+        Throttle.sleep(delay);
+
+        if (fail)
+            throw new SimulatedFailureException(operation);
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.simulation;
+
+import com.github.fge.filesystem.metrics.DriverOperation;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The performance characteristics simulated by a {@link
+ * SimulatedFileSystemDriver}
+ *
+ * <p>A profile defines, for each {@link DriverOperation}:</p>
+ *
+ * <ul>
+ *     <li>a fixed latency, to which a random jitter between zero and the
+ *     configured jitter is added;</li>
+ *     <li>a failure rate, that is the probability that a call fails with a
+ *     {@link SimulatedFailureException}.</li>
+ * </ul>
+ *
+ * <p>It also defines the read and write bandwidth of the simulated link, and
+ * the seed of the random number generator used for jitter and failures.</p>
+ *
+ * <p>Profiles are immutable; start from {@link #NONE} and use the {@code
+ * with*()} methods to obtain a modified copy, for instance:</p>
+ *
+ * <pre>
+ *     final SimulationProfile profile = SimulationProfile.NONE
+ *         .withLatency(20L, TimeUnit.MILLISECONDS)
+ *         .withJitter(5L, TimeUnit.MILLISECONDS)
+ *         .withBandwidth(10L * 1024L * 1024L)
+ *         .withFailureRate(DriverOperation.NEW_INPUT_STREAM, 0.01);
+ * </pre>
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class SimulationProfile
+{
+    /**
+     * A profile with no latency, no failures and unlimited bandwidth
+     */
+    public static final SimulationProfile NONE = new SimulationProfile();
+
+    private final Map<DriverOperation, Long> latencies;
+    private final Map<DriverOperation, Double> failureRates;
+    private final long jitter;
+    private final long readBandwidth;
+    private final long writeBandwidth;
+    private final long seed;
+
+    private SimulationProfile()
+    {
+        latencies = new EnumMap<>(DriverOperation.class);
+        failureRates = new EnumMap<>(DriverOperation.class);
+        for (final DriverOperation operation: DriverOperation.values()) {
+            latencies.put(operation, 0L);
+            failureRates.put(operation, 0.0);
+        }
+        jitter = 0L;
+        readBandwidth = 0L;
+        writeBandwidth = 0L;
+        seed = 0L;
+    }
+
+    private SimulationProfile(final SimulationProfile other,
+        final long jitter, final long readBandwidth, final long writeBandwidth,
+        final long seed)
+    {
+        latencies = new EnumMap<>(other.latencies);
+        failureRates = new EnumMap<>(other.failureRates);
+        this.jitter = jitter;
+        this.readBandwidth = readBandwidth;
+        this.writeBandwidth = writeBandwidth;
+        this.seed = seed;
+    }
+
+    private SimulationProfile copy()
+    {
+        return new SimulationProfile(this, jitter, readBandwidth,
+            writeBandwidth, seed);
+    }
+
+    /**
+     * Set the latency of all operations
+     *
+     * @param duration the latency
+     * @param unit the time unit of the latency
+     * @return a new profile
+     * @throws IllegalArgumentException latency is negative
+     */
+    @Nonnull
+    public SimulationProfile withLatency(final long duration,
+        final TimeUnit unit)
+    {
+        final long nanos = toNanos(duration, unit, "latency");
+        final SimulationProfile ret = copy();
+        for (final DriverOperation operation: DriverOperation.values())
+            ret.latencies.put(operation, nanos);
+        return ret;
+    }
+
+    /**
+     * Set the latency of one operation
+     *
+     * @param operation the operation
+     * @param duration the latency
+     * @param unit the time unit of the latency
+     * @return a new profile
+     * @throws IllegalArgumentException latency is negative
+     */
+    @Nonnull
+    public SimulationProfile withLatency(final DriverOperation operation,
+        final long duration, final TimeUnit unit)
+    {
+        Objects.requireNonNull(operation);
+        final long nanos = toNanos(duration, unit, "latency");
+        final SimulationProfile ret = copy();
+        ret.latencies.put(operation, nanos);
+        return ret;
+    }
+
+    /**
+     * Set the maximum jitter added to the latency of operations
+     *
+     * @param duration the maximum jitter
+     * @param unit the time unit of the jitter
+     * @return a new profile
+     * @throws IllegalArgumentException jitter is negative
+     */
+    @Nonnull
+    public SimulationProfile withJitter(final long duration,
+        final TimeUnit unit)
+    {
+        return new SimulationProfile(this, toNanos(duration, unit, "jitter"),
+            readBandwidth, writeBandwidth, seed);
+    }
+
+    /**
+     * Set the failure rate of all operations
+     *
+     * @param rate the failure rate, between 0 and 1
+     * @return a new profile
+     * @throws IllegalArgumentException rate is not between 0 and 1
+     */
+    @Nonnull
+    public SimulationProfile withFailureRate(final double rate)
+    {
+        checkRate(rate);
+        final SimulationProfile ret = copy();
+        for (final DriverOperation operation: DriverOperation.values())
+            ret.failureRates.put(operation, rate);
+        return ret;
+    }
+
+    /**
+     * Set the failure rate of one operation
+     *
+     * @param operation the operation
+     * @param rate the failure rate, between 0 and 1
+     * @return a new profile
+     * @throws IllegalArgumentException rate is not between 0 and 1
+     */
+    @Nonnull
+    public SimulationProfile withFailureRate(final DriverOperation operation,
+        final double rate)
+    {
+        Objects.requireNonNull(operation);
+        checkRate(rate);
+        final SimulationProfile ret = copy();
+        ret.failureRates.put(operation, rate);
+        return ret;
+    }
+
+    /**
+     * Set both the read and write bandwidth
+     *
+     * @param bytesPerSecond the bandwidth, in bytes per second; 0 means
+     * unlimited
+     * @return a new profile
+     * @throws IllegalArgumentException bandwidth is negative
+     */
+    @Nonnull
+    public SimulationProfile withBandwidth(final long bytesPerSecond)
+    {
+        checkBandwidth(bytesPerSecond);
+        return new SimulationProfile(this, jitter, bytesPerSecond,
+            bytesPerSecond, seed);
+    }
+
+    /**
+     * Set the read bandwidth
+     *
+     * @param bytesPerSecond the bandwidth, in bytes per second; 0 means
+     * unlimited
+     * @return a new profile
+     * @throws IllegalArgumentException bandwidth is negative
+     */
+    @Nonnull
+    public SimulationProfile withReadBandwidth(final long bytesPerSecond)
+    {
+        checkBandwidth(bytesPerSecond);
+        return new SimulationProfile(this, jitter, bytesPerSecond,
+            writeBandwidth, seed);
+    }
+
+    /**
+     * Set the write bandwidth
+     *
+     * @param bytesPerSecond the bandwidth, in bytes per second; 0 means
+     * unlimited
+     * @return a new profile
+     * @throws IllegalArgumentException bandwidth is negative
+     */
+    @Nonnull
+    public SimulationProfile withWriteBandwidth(final long bytesPerSecond)
+    {
+        checkBandwidth(bytesPerSecond);
+        return new SimulationProfile(this, jitter, readBandwidth,
+            bytesPerSecond, seed);
+    }
+
+    /**
+     * Set the seed of the random number generator
+     *
+     * @param seed the seed
+     * @return a new profile
+     */
+    @Nonnull
+    public SimulationProfile withSeed(final long seed)
+    {
+        return new SimulationProfile(this, jitter, readBandwidth,
+            writeBandwidth, seed);
+    }
+
+    public long getLatency(final DriverOperation operation,
+        final TimeUnit unit)
+    {
+        return unit.convert(latencies.get(operation), TimeUnit.NANOSECONDS);
+    }
+
+    public long getJitter(final TimeUnit unit)
+    {
+        return unit.convert(jitter, TimeUnit.NANOSECONDS);
+    }
+
+    public double getFailureRate(final DriverOperation operation)
+    {
+        return failureRates.get(operation);
+    }
+
+    public long getReadBandwidth()
+    {
+        return readBandwidth;
+    }
+
+    public long getWriteBandwidth()
+    {
+        return writeBandwidth;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    private static long toNanos(final long duration, final TimeUnit unit,
+        final String what)
+    {
+        if (duration < 0L)
+            throw new IllegalArgumentException(what + " must not be negative");
+        return unit.toNanos(duration);
+    }
+
+    private static void checkRate(final double rate)
+    {
+        if (!(rate >= 0.0 && rate <= 1.0))
+            throw new IllegalArgumentException("failure rate must be between"
+                + " 0 and 1");
+    }
+
+    private static void checkBandwidth(final long bytesPerSecond)
+    {
+        if (bytesPerSecond < 0L)
+            throw new IllegalArgumentException("bandwidth must not be"
+                + " negative");
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.simulation;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A simulated link of limited bandwidth
+ *
+ * <p>Transfers are queued: a transfer of n bytes occupies the link for n
+ * divided by the bandwidth seconds, starting when the previous transfer ends;
+ * {@link #transfer(long)} blocks until the transfer ends. Streams and
+ * channels of a driver share the same throttle, so that concurrent transfers
+ * share the bandwidth.</p>
+ */
+@ThreadSafe
+final class Throttle
+{
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final long bytesPerSecond;
+
+    private long nextFree = System.nanoTime();
+
+    /**
+     * Constructor
+     *
+     * @param bytesPerSecond the bandwidth; 0 means unlimited
+     */
+    Throttle(final long bytesPerSecond)
+    {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    void transfer(final long bytes)
+        throws InterruptedIOException
+    {
+        if (bytesPerSecond == 0L || bytes <= 0L)
+            return;
+
+        final long nanos = (long) (bytes * NANOS_PER_SECOND / bytesPerSecond);
+        final long end;
+
+        synchronized (this) {
+            final long now = System.nanoTime();
+            if (nextFree - now < 0L)
+                nextFree = now;
+            nextFree += nanos;
+            end = nextFree;
+        }
+
+        sleep(end - System.nanoTime());
+    }
+
+    static void sleep(final long nanos)
+        throws InterruptedIOException
+    {
+        if (nanos <= 0L)
+            return;
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while simulating"
+                + " a transfer");
+        }
+    }
+}
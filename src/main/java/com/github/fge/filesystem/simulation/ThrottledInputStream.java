@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.simulation;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+@ParametersAreNonnullByDefault
+final class ThrottledInputStream
+    extends FilterInputStream
+{
+    private final Throttle throttle;
+
+    ThrottledInputStream(final InputStream in, final Throttle throttle)
+    {
+        super(in);
+        this.throttle = throttle;
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+        final int ret = in.read();
+        if (ret != -1)
+            throttle.transfer(1L);
+        return ret;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+        final int ret = in.read(b, off, len);
+        if (ret > 0)
+            throttle.transfer(ret);
+        return ret;
+    }
+
+    @Override
+    public long skip(final long n)
+        throws IOException
+    {
+        return in.skip(n);
+    }
+}
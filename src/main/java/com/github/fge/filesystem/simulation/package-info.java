@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+/**
+ * Simulation of remote backends
+ *
+ * <p>{@link com.github.fge.filesystem.simulation.SimulatedFileSystemDriver}
+ * wraps a driver and adds latency, jitter, bandwidth limits and failures to
+ * its operations, as defined by a {@link
+ * com.github.fge.filesystem.simulation.SimulationProfile}. Wrapping a local
+ * driver (for instance, a memory driver) makes it possible to measure
+ * caching, read ahead and other optimizations for remote backends without a
+ * network, in benchmarks as well as in tests.</p>
+ */
+package com.github.fge.filesystem.simulation;
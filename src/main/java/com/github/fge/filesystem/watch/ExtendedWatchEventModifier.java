@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.watch;
+
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchService;
+
+/**
+ * Watch event modifiers supported by {@link WatchServiceBase} implementations
+ *
+ * <p>Modifiers with the same name from other packages (such as the JDK's own
+ * {@code com.sun.nio.file.ExtendedWatchEventModifier}) are accepted as well.
+ * </p>
+ *
+ * @see Path#register(WatchService, WatchEvent.Kind[], WatchEvent.Modifier...)
+ */
+public enum ExtendedWatchEventModifier
+    implements WatchEvent.Modifier
+{
+    /**
+     * Watch the whole file tree below the registered path
+     *
+     * <p>A single key then receives the events of all directories below the
+     * registered path; event contexts are the paths of entries relative to
+     * the registered path.</p>
+     */
+    FILE_TREE,
+    ;
+}
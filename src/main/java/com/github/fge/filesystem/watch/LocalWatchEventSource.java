@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.watch;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An in memory {@link WatchEventSource}
+ *
+ * <p>Events are published directly to all sinks by the thread calling {@link
+ * #publish(WatchEvent.Kind, Path)}. This is mainly useful for tests, and for
+ * drivers which perform all modifications themselves (in memory filesystems,
+ * for instance).</p>
+ */
+@ParametersAreNonnullByDefault
+public final class LocalWatchEventSource
+    implements WatchEventSource, WatchEventSink
+{
+    private final List<WatchEventSink> sinks = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void addSink(final WatchEventSink sink)
+    {
+        sinks.add(Objects.requireNonNull(sink));
+    }
+
+    @Override
+    public void removeSink(final WatchEventSink sink)
+    {
+        sinks.remove(sink);
+    }
+
+    @Override
+    public void publish(final WatchEvent.Kind<?> kind, final Path path)
+    {
+        Objects.requireNonNull(kind);
+        Objects.requireNonNull(path);
+
+        for (final WatchEventSink sink: sinks)
+            sink.publish(kind, path);
+    }
+
+    @Override
+    public void overflow()
+    {
+        for (final WatchEventSink sink: sinks)
+            sink.overflow();
+    }
+
+    /**
+     * Return the number of sinks currently attached to this source
+     *
+     * @return the number of sinks
+     */
+    public int getSinkCount()
+    {
+        return sinks.size();
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.watch;
+
+import com.github.fge.filesystem.driver.DirectoryFilters;
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import com.github.fge.filesystem.io.DaemonExecutors;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link WatchServiceBase} which polls directories for changes
+ *
+ * <p>This watch service can be used with any {@link FileSystemDriver}: for
+ * each registered directory, it keeps a snapshot of the directory entries
+ * (obtained using {@link FileSystemDriver#newDirectoryStream(Path,
+ * DirectoryStream.Filter)}) along with their last modification time and size
+ * (obtained using {@link FileSystemDriver#readAttributes(Path, Class,
+ * java.nio.file.LinkOption...)}), and compares it with a fresh snapshot at
+ * each poll.</p>
+ *
+ * <p>Each key is polled independently as a task of a {@link
+ * ScheduledExecutorService}; by default, a scheduler shared by all instances
+ * of this class and running on daemon threads is used. The polling interval
+ * of a key is adaptive: it is reset to the minimum interval whenever changes
+ * are detected, and doubled (up to the maximum interval) when no changes are
+ * detected.</p>
+ *
+ * <p>If a watched directory disappears, its key is cancelled and signalled.
+ * </p>
+ *
+ * <p>Keys registered with {@link ExtendedWatchEventModifier#FILE_TREE} poll
+ * the whole tree below the registered directory. In order for registration to
+ * take the same time whatever the size of the tree, the first snapshot of such
+ * a key is taken by its first poll rather than at registration time; changes
+ * made before this first poll completes are not reported.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class PollingWatchService
+    extends WatchServiceBase
+{
+    /**
+     * Default minimum polling interval, in milliseconds
+     */
+    public static final long DEFAULT_MIN_INTERVAL = 500L;
+
+    /**
+     * Default maximum polling interval, in milliseconds
+     */
+    public static final long DEFAULT_MAX_INTERVAL = 8000L;
+
+    private final FileSystemDriver driver;
+    private final ScheduledExecutorService scheduler;
+    private final long minInterval;
+    private final long maxInterval;
+
+    private final ConcurrentMap<Path, PollingKey> keys
+        = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor using the shared scheduler and default intervals
+     *
+     * @param driver the driver
+     */
+    public PollingWatchService(final FileSystemDriver driver)
+    {
+        this(driver, SharedScheduler.INSTANCE, DEFAULT_MIN_INTERVAL,
+            DEFAULT_MAX_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param driver the driver
+     * @param scheduler the scheduler to run polls on
+     * @param minInterval the minimum polling interval
+     * @param maxInterval the maximum polling interval
+     * @param unit the time unit of polling intervals
+     */
+    public PollingWatchService(final FileSystemDriver driver,
+        final ScheduledExecutorService scheduler, final long minInterval,
+        final long maxInterval, final TimeUnit unit)
+    {
+        if (minInterval <= 0L)
+            throw new IllegalArgumentException("minimum interval must be"
+                + " strictly positive");
+        if (maxInterval < minInterval)
+            throw new IllegalArgumentException("maximum interval must not be"
+                + " less than the minimum interval");
+        this.driver = Objects.requireNonNull(driver);
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.minInterval = unit.toNanos(minInterval);
+        this.maxInterval = unit.toNanos(maxInterval);
+    }
+
+    @SuppressWarnings("OverloadedVarargsMethod")
+    @Nonnull
+    @Override
+    public WatchKey register(final Path path, final WatchEvent.Kind<?>[] events,
+        final WatchEvent.Modifier... modifiers)
+        throws IOException
+    {
+        checkOpen();
+
+        final Set<WatchEvent.Kind<?>> kinds = checkEvents(events);
+        final boolean fileTree = checkModifiers(modifiers);
+
+        final Path dir = path.toAbsolutePath();
+        final PollingKey existing = keys.get(dir);
+
+        if (existing != null && existing.isValid()) {
+            existing.setKinds(kinds);
+            existing.fileTree = fileTree;
+            return existing;
+        }
+
+        if (!driver.readAttributes(dir, BasicFileAttributes.class)
+            .isDirectory())
+            throw new NotDirectoryException(path.toString());
+
+        final PollingKey key = new PollingKey(path, dir, kinds, fileTree);
+
+        if (!fileTree) {
+            key.snapshot = snapshot(dir, false);
+            key.snapshotIsTree = false;
+        }
+
+        while (true) {
+            final PollingKey other = keys.putIfAbsent(dir, key);
+            if (other == null)
+                break;
+            if (other.isValid()) {
+                other.setKinds(kinds);
+                other.fileTree = fileTree;
+                return other;
+            }
+            keys.remove(dir, other);
+        }
+
+        key.schedule();
+
+        // The service may have been closed in the meantime
+        if (!isOpen())
+            key.cancel();
+
+        return key;
+    }
+
+    @Override
+    protected void implClose()
+        throws IOException
+    {
+        for (final PollingKey key: keys.values())
+            key.cancel();
+    }
+
+    @Override
+    protected void keyCancelled(final WatchKeyBase key)
+    {
+        final PollingKey pollingKey = (PollingKey) key;
+        keys.remove(pollingKey.dir, pollingKey);
+
+        final ScheduledFuture<?> future = pollingKey.future;
+        if (future != null)
+            future.cancel(false);
+    }
+
+    /*
+     * Entries are indexed by their path relative to the watched directory;
+     * for a file tree, subdirectories are listed breadth first.
+     */
+    private Map<Path, Entry> snapshot(final Path dir, final boolean fileTree)
+        throws IOException
+    {
+        final Map<Path, Entry> map = new HashMap<>();
+        final Queue<Path> dirs = new ArrayDeque<>();
+
+        dirs.add(dir);
+
+        Path current;
+        BasicFileAttributes attributes;
+
+        while ((current = dirs.poll()) != null)
+            try (
+                final DirectoryStream<Path> stream
+                    = driver.newDirectoryStream(current,
+                        DirectoryFilters.ACCEPT_ALL);
+            ) {
+                for (final Path entry: stream)
+                    try {
+                        attributes = driver.readAttributes(entry,
+                            BasicFileAttributes.class);
+                        if (!fileTree) {
+                            map.put(entry.getFileName(),
+                                new Entry(attributes));
+                            continue;
+                        }
+                        map.put(dir.relativize(entry), new Entry(attributes));
+                        if (attributes.isDirectory())
+                            dirs.add(entry);
+                    } catch (NoSuchFileException ignored) {
+                        // Deleted after being listed: as if it were not there
+                    }
+            } catch (NoSuchFileException | NotDirectoryException e) {
+                //noinspection ObjectEquality
+                if (current == dir)
+                    throw e;
+                // Subdirectory deleted or replaced while walking the tree
+            }
+
+        return map;
+    }
+
+    private final class PollingKey
+        extends WatchKeyBase
+        implements Runnable
+    {
+        private final Path dir;
+
+        private volatile boolean fileTree;
+
+        // Only accessed from the polling task, or before it is scheduled
+        @Nullable
+        private Map<Path, Entry> snapshot;
+        private boolean snapshotIsTree;
+        private long interval = minInterval;
+
+        @Nullable
+        private volatile ScheduledFuture<?> future;
+
+        private PollingKey(final Path watchable, final Path dir,
+            final Set<WatchEvent.Kind<?>> kinds, final boolean fileTree)
+        {
+            super(PollingWatchService.this, watchable, kinds,
+                DEFAULT_MAX_EVENTS);
+            this.dir = dir;
+            this.fileTree = fileTree;
+        }
+
+        @Override
+        public void run()
+        {
+            if (!isValid())
+                return;
+
+            boolean changed;
+
+            try {
+                changed = poll();
+            } catch (NoSuchFileException | NotDirectoryException ignored) {
+                cancel();
+                signal();
+                return;
+            } catch (IOException ignored) {
+                changed = false;
+            }
+
+            interval = changed ? minInterval
+                : Math.min(interval << 1, maxInterval);
+
+            schedule();
+        }
+
+        private void schedule()
+        {
+            if (!isValid())
+                return;
+
+            try {
+                future = scheduler.schedule(this, interval,
+                    TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ignored) {
+                cancel();
+                signal();
+            }
+        }
+
+        /*
+         * Compare a fresh snapshot with the previous one; the entries of the
+         * previous snapshot are removed as they are matched, therefore what
+         * remains at the end are deleted entries.
+         *
+         * If there is no previous snapshot, or if the key has been registered
+         * again with a different file tree setting, the fresh snapshot
+         * becomes the new baseline.
+         */
+        private boolean poll()
+            throws IOException
+        {
+            final boolean tree = fileTree;
+            final Map<Path, Entry> previous = snapshot;
+            final Map<Path, Entry> current = snapshot(dir, tree);
+
+            if (previous == null || tree != snapshotIsTree) {
+                snapshot = current;
+                snapshotIsTree = tree;
+                return false;
+            }
+
+            boolean changed = false;
+            Entry old;
+
+            for (final Map.Entry<Path, Entry> entry: current.entrySet()) {
+                old = previous.remove(entry.getKey());
+                if (old == null) {
+                    changed = true;
+                    signalEvent(StandardWatchEventKinds.ENTRY_CREATE,
+                        entry.getKey());
+                } else if (!old.equals(entry.getValue())) {
+                    changed = true;
+                    signalEvent(StandardWatchEventKinds.ENTRY_MODIFY,
+                        entry.getKey());
+                }
+            }
+
+            for (final Path name: previous.keySet()) {
+                changed = true;
+                signalEvent(StandardWatchEventKinds.ENTRY_DELETE, name);
+            }
+
+            snapshot = current;
+            return changed;
+        }
+    }
+
+    private static final class Entry
+    {
+        private final FileTime lastModified;
+        private final long size;
+        private final boolean directory;
+
+        private Entry(final BasicFileAttributes attributes)
+        {
+            lastModified = attributes.lastModifiedTime();
+            size = attributes.size();
+            directory = attributes.isDirectory();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(lastModified, size, directory);
+        }
+
+        @Override
+        public boolean equals(@Nullable final Object obj)
+        {
+            if (obj == null)
+                return false;
+            if (this == obj)
+                return true;
+            if (getClass() != obj.getClass())
+                return false;
+            final Entry other = (Entry) obj;
+            return Objects.equals(lastModified, other.lastModified)
+                && size == other.size && directory == other.directory;
+        }
+    }
+
+    /*
+     * Lazily initialized shared scheduler; polling is I/O bound, hence a
+     * number of threads which is not tied to the number of processors.
+     */
+    private static final class SharedScheduler
+    {
+        private static final int THREADS = 4;
+
+        private static final ScheduledThreadPoolExecutor INSTANCE
+            = DaemonExecutors.newScheduledThreadPool("watch-poller", THREADS);
+
+        private SharedScheduler()
+        {
+        }
+    }
+}
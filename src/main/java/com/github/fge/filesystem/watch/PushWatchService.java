@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.watch;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link WatchServiceBase} fed by a {@link WatchEventSource}
+ *
+ * <p>This service registers itself as a sink of the source when created, and
+ * unregisters itself when closed. Each event published by the source is routed
+ * to the key registered for the parent of the event path, if any, with no
+ * locking involved; events for unwatched directories are dropped.</p>
+ *
+ * <p>Keys registered with {@link ExtendedWatchEventModifier#FILE_TREE} also
+ * receive events for all paths below them: once such a key exists, routing
+ * also looks up every ancestor of the event path in the key index. The cost
+ * of registering a file tree is therefore the same whatever its depth, and
+ * the cost of routing an event is proportional to the depth of its path.</p>
+ *
+ * <p>Registration performs no I/O: the path is not checked for existence, nor
+ * whether it is a directory.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class PushWatchService
+    extends WatchServiceBase
+    implements WatchEventSink
+{
+    private final WatchEventSource source;
+    private final int maxEvents;
+
+    private final ConcurrentMap<Path, PushKey> keys
+        = new ConcurrentHashMap<>();
+
+    // Set once a file tree key has been registered, never reset
+    private volatile boolean hasFileTrees = false;
+
+    /**
+     * Constructor with the default maximum number of pending events per key
+     *
+     * @param source the event source
+     *
+     * @see WatchKeyBase#DEFAULT_MAX_EVENTS
+     */
+    public PushWatchService(final WatchEventSource source)
+    {
+        this(source, WatchKeyBase.DEFAULT_MAX_EVENTS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param source the event source
+     * @param maxEvents the maximum number of pending events per key
+     */
+    public PushWatchService(final WatchEventSource source,
+        final int maxEvents)
+    {
+        if (maxEvents <= 0)
+            throw new IllegalArgumentException("maximum number of events must"
+                + " be strictly positive");
+        this.source = Objects.requireNonNull(source);
+        this.maxEvents = maxEvents;
+        source.addSink(this);
+    }
+
+    @SuppressWarnings("OverloadedVarargsMethod")
+    @Nonnull
+    @Override
+    public WatchKey register(final Path path, final WatchEvent.Kind<?>[] events,
+        final WatchEvent.Modifier... modifiers)
+        throws IOException
+    {
+        checkOpen();
+
+        final Set<WatchEvent.Kind<?>> kinds = checkEvents(events);
+        final boolean fileTree = checkModifiers(modifiers);
+
+        if (fileTree)
+            hasFileTrees = true;
+
+        final Path dir = path.toAbsolutePath().normalize();
+        final PushKey key = new PushKey(path, kinds, fileTree);
+
+        PushKey other;
+
+        while ((other = keys.putIfAbsent(dir, key)) != null) {
+            if (other.isValid()) {
+                other.setKinds(kinds);
+                other.fileTree = fileTree;
+                return other;
+            }
+            keys.remove(dir, other);
+        }
+
+        // The service may have been closed in the meantime
+        if (!isOpen())
+            key.cancel();
+
+        return key;
+    }
+
+    @Override
+    public void publish(final WatchEvent.Kind<?> kind, final Path path)
+    {
+        Path parent = path.getParent();
+
+        if (parent == null)
+            return;
+
+        PushKey key = keys.get(parent);
+
+        if (key != null)
+            key.signalEvent(kind, path.getFileName());
+
+        if (!hasFileTrees)
+            return;
+
+        while ((parent = parent.getParent()) != null) {
+            key = keys.get(parent);
+            if (key != null && key.fileTree)
+                key.signalEvent(kind, parent.relativize(path));
+        }
+    }
+
+    @Override
+    public void overflow()
+    {
+        for (final PushKey key: keys.values())
+            key.signalEvent(StandardWatchEventKinds.OVERFLOW, null);
+    }
+
+    @Override
+    protected void implClose()
+        throws IOException
+    {
+        source.removeSink(this);
+
+        for (final PushKey key: keys.values())
+            key.cancel();
+    }
+
+    @Override
+    protected void keyCancelled(final WatchKeyBase key)
+    {
+        keys.remove(key.watchable().toAbsolutePath().normalize(), key);
+    }
+
+    private final class PushKey
+        extends WatchKeyBase
+    {
+        private volatile boolean fileTree;
+
+        private PushKey(final Path watchable,
+            final Set<WatchEvent.Kind<?>> kinds, final boolean fileTree)
+        {
+            super(PushWatchService.this, watchable, kinds, maxEvents);
+            this.fileTree = fileTree;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.watch;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+
+/**
+ * Receiver of change events published by a {@link WatchEventSource}
+ *
+ * <p>Implementations of this interface must be thread safe, and must not
+ * block: they are called from whatever thread the source uses to read its
+ * change feed.</p>
+ *
+ * @see PushWatchService
+ */
+@ParametersAreNonnullByDefault
+public interface WatchEventSink
+{
+    /**
+     * Publish a change event
+     *
+     * @param kind the kind of event; one of {@link
+     * StandardWatchEventKinds#ENTRY_CREATE}, {@link
+     * StandardWatchEventKinds#ENTRY_DELETE} or {@link
+     * StandardWatchEventKinds#ENTRY_MODIFY}
+     * @param path the absolute path of the created, deleted or modified entry
+     */
+    void publish(WatchEvent.Kind<?> kind, Path path);
+
+    /**
+     * Signal that events have been lost
+     *
+     * <p>Sources should call this method when they know that their change
+     * feed has missed events (for instance, after a reconnection).</p>
+     */
+    void overflow();
+}
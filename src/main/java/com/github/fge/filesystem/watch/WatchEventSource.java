@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.watch;
+
+import com.github.fge.filesystem.driver.FileSystemDriverBase;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * A source of change events for a filesystem
+ *
+ * <p>Implement this interface if your backend can push changes (event queues,
+ * change streams, etc) and return an instance from {@link
+ * FileSystemDriverBase#getWatchEventSource()}; watch services for your
+ * filesystem will then be {@link PushWatchService}s instead of {@link
+ * PollingWatchService}s.</p>
+ *
+ * <p>A source may have several sinks at the same time (one per open watch
+ * service); it should publish all events to all of them.</p>
+ *
+ * @see LocalWatchEventSource
+ */
+@ParametersAreNonnullByDefault
+public interface WatchEventSource
+{
+    /**
+     * Add a sink to this source
+     *
+     * @param sink the sink
+     */
+    void addSink(WatchEventSink sink);
+
+    /**
+     * Remove a sink from this source
+     *
+     * <p>This is called when the watch service owning the sink is closed.</p>
+     *
+     * @param sink the sink
+     */
+    void removeSink(WatchEventSink sink);
+}
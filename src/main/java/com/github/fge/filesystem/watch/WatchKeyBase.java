@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.watch;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base {@link WatchKey} implementation
+ *
+ * <p>Events are queued without locking; at most a fixed number of events are
+ * kept pending, after which further events are only counted and reported as
+ * a single {@link StandardWatchEventKinds#OVERFLOW} event, whose {@link
+ * WatchEvent#count() count} is the number of lost events.</p>
+ *
+ * <p>When events are {@link #pollEvents() retrieved}, successive identical
+ * events (same kind and context) are coalesced into one event with the
+ * appropriate count.</p>
+ *
+ * @see WatchServiceBase
+ */
+@ParametersAreNonnullByDefault
+public class WatchKeyBase
+    implements WatchKey
+{
+    /**
+     * Default maximum number of pending events per key
+     */
+    public static final int DEFAULT_MAX_EVENTS = 512;
+
+    private static final int READY = 0;
+    private static final int SIGNALLED = 1;
+
+    private final WatchServiceBase service;
+    private final Path watchable;
+    private final int maxEvents;
+
+    private final Queue<Event<?>> events = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger overflows = new AtomicInteger();
+    private final AtomicInteger state = new AtomicInteger(READY);
+    private final AtomicBoolean valid = new AtomicBoolean(true);
+
+    private volatile Set<WatchEvent.Kind<?>> kinds;
+
+    /**
+     * Constructor
+     *
+     * @param service the watch service this key belongs to
+     * @param watchable the watched path
+     * @param kinds the kinds of events to report
+     * @param maxEvents the maximum number of pending events
+     */
+    protected WatchKeyBase(final WatchServiceBase service,
+        final Path watchable, final Set<WatchEvent.Kind<?>> kinds,
+        final int maxEvents)
+    {
+        if (maxEvents <= 0)
+            throw new IllegalArgumentException("maximum number of events must"
+                + " be strictly positive");
+        this.service = Objects.requireNonNull(service);
+        this.watchable = Objects.requireNonNull(watchable);
+        this.kinds = Objects.requireNonNull(kinds);
+        this.maxEvents = maxEvents;
+    }
+
+    @Override
+    public final boolean isValid()
+    {
+        return valid.get() && service.isOpen();
+    }
+
+    @Override
+    public final List<WatchEvent<?>> pollEvents()
+    {
+        final List<WatchEvent<?>> list = new ArrayList<>();
+
+        int drained = 0;
+        Event<?> last = null;
+        Event<?> event;
+
+        while ((event = events.poll()) != null) {
+            drained++;
+            if (last != null && last.isRepeatedBy(event)) {
+                last = last.repeat(event.count);
+                list.set(list.size() - 1, last);
+                continue;
+            }
+            list.add(event);
+            last = event;
+        }
+
+        pending.addAndGet(-drained);
+
+        final int lost = overflows.getAndSet(0);
+
+        if (lost > 0)
+            list.add(new Event<>(StandardWatchEventKinds.OVERFLOW, null, lost));
+
+        return list;
+    }
+
+    @Override
+    public final boolean reset()
+    {
+        if (!isValid())
+            return false;
+
+        state.set(READY);
+
+        if (!events.isEmpty() || overflows.get() > 0)
+            signal();
+
+        return true;
+    }
+
+    @Override
+    public final void cancel()
+    {
+        if (valid.getAndSet(false))
+            service.keyCancelled(this);
+    }
+
+    @Override
+    public final Path watchable()
+    {
+        return watchable;
+    }
+
+    /**
+     * Change the kinds of events reported by this key
+     *
+     * <p>This is used when a path is registered again to the same service.
+     * </p>
+     *
+     * @param kinds the new event kinds
+     */
+    public final void setKinds(final Set<WatchEvent.Kind<?>> kinds)
+    {
+        this.kinds = Objects.requireNonNull(kinds);
+    }
+
+    /**
+     * Tell whether this key reports a given kind of event
+     *
+     * @param kind the event kind
+     * @return true if events of this kind are reported
+     */
+    public final boolean accepts(final WatchEvent.Kind<?> kind)
+    {
+        return kind == StandardWatchEventKinds.OVERFLOW
+            || kinds.contains(kind);
+    }
+
+    /**
+     * Add an event to this key, and signal it if it was ready
+     *
+     * <p>Events of kinds this key was not registered for are ignored; so are
+     * events signalled on an invalid key.</p>
+     *
+     * @param kind the event kind
+     * @param context the event context (usually the path relative to the
+     * watched path); {@code null} for {@link StandardWatchEventKinds#OVERFLOW}
+     * events
+     */
+    public final void signalEvent(final WatchEvent.Kind<?> kind,
+        @Nullable final Path context)
+    {
+        if (!valid.get() || !accepts(kind))
+            return;
+
+        if (kind == StandardWatchEventKinds.OVERFLOW) {
+            overflows.incrementAndGet();
+        } else if (pending.incrementAndGet() > maxEvents) {
+            pending.decrementAndGet();
+            overflows.incrementAndGet();
+        } else {
+            events.add(new Event<>(kind, context, 1));
+        }
+
+        signal();
+    }
+
+    /**
+     * Put this key in the queue of its watch service, if it is ready
+     *
+     * <p>This can be used to notify consumers of a key which has been
+     * cancelled by the implementation (for instance, because the watched
+     * directory has been deleted).</p>
+     */
+    public final void signal()
+    {
+        if (state.compareAndSet(READY, SIGNALLED))
+            service.enqueue(this);
+    }
+
+    private static final class Event<T>
+        implements WatchEvent<T>
+    {
+        private final Kind<T> kind;
+        private final T context;
+        private final int count;
+
+        @SuppressWarnings("unchecked")
+        private Event(final Kind<?> kind, @Nullable final Object context,
+            final int count)
+        {
+            this.kind = (Kind<T>) kind;
+            this.context = (T) context;
+            this.count = count;
+        }
+
+        private boolean isRepeatedBy(final Event<?> other)
+        {
+            //noinspection ObjectEquality
+            return kind == other.kind && Objects.equals(context, other.context);
+        }
+
+        private Event<T> repeat(final int more)
+        {
+            return new Event<T>(kind, context, count + more);
+        }
+
+        @Nonnull
+        @Override
+        public Kind<T> kind()
+        {
+            return kind;
+        }
+
+        @Override
+        public int count()
+        {
+            return count;
+        }
+
+        @Override
+        public T context()
+        {
+            return context;
+        }
+
+        @Override
+        public String toString()
+        {
+            return kind.name() + ": " + context + " (count: " + count + ')';
+        }
+    }
+}
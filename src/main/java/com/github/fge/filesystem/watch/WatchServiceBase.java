@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.watch;
+
+import com.github.fge.filesystem.fs.GenericFileSystem;
+import com.github.fge.filesystem.path.GenericPath;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Base {@link WatchService} implementation
+ *
+ * <p>This class handles the queue of signalled keys and the closing of the
+ * service; implementations only have to provide key registration (see {@link
+ * #register(Path, WatchEvent.Kind[], WatchEvent.Modifier...)}) and produce
+ * events on their keys (see {@link WatchKeyBase#signalEvent(WatchEvent.Kind,
+ * Path)}).</p>
+ *
+ * <p>{@link GenericPath#register(WatchService, WatchEvent.Kind[],
+ * WatchEvent.Modifier...)} delegates to the registration method of this class;
+ * watch services which do not extend this class cannot be used with paths
+ * of this package.</p>
+ *
+ * <p>Services obtained from {@link GenericFileSystem#newWatchService()} are
+ * {@link #attach(FileSystem) attached} to that filesystem, and paths of other
+ * filesystems cannot be registered to them.</p>
+ *
+ * @see WatchKeyBase
+ * @see PollingWatchService
+ */
+@ParametersAreNonnullByDefault
+public abstract class WatchServiceBase
+    implements WatchService
+{
+    /*
+     * Put into the queue of signalled keys when the service is closed, so as
+     * to wake up all waiting threads
+     */
+    private static final WatchKey CLOSED_SENTINEL = new WatchKey()
+    {
+        @Override
+        public boolean isValid()
+        {
+            return false;
+        }
+
+        @Override
+        public List<WatchEvent<?>> pollEvents()
+        {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean reset()
+        {
+            return false;
+        }
+
+        @Override
+        public void cancel()
+        {
+        }
+
+        @Override
+        public Path watchable()
+        {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicReference<FileSystem> fileSystem
+        = new AtomicReference<>();
+    private final BlockingQueue<WatchKey> signalledKeys
+        = new LinkedBlockingQueue<>();
+
+    /**
+     * Register a path to this watch service
+     *
+     * @param path the path to register
+     * @param events the events to register for
+     * @param modifiers the modifiers, if any
+     * @return a watch key
+     * @throws ClosedWatchServiceException this watch service is closed
+     * @throws UnsupportedOperationException unsupported event kind or
+     * modifier
+     * @throws IOException failed to register the path
+     *
+     * @see Path#register(WatchService, WatchEvent.Kind[],
+     * WatchEvent.Modifier...)
+     */
+    @SuppressWarnings("OverloadedVarargsMethod")
+    @Nonnull
+    public abstract WatchKey register(Path path, WatchEvent.Kind<?>[] events,
+        WatchEvent.Modifier... modifiers)
+        throws IOException;
+
+    /**
+     * Attach this watch service to the filesystem it was created for
+     *
+     * <p>Attaching a service to the filesystem it is already attached to has
+     * no effect.</p>
+     *
+     * @param fs the filesystem
+     * @throws IllegalStateException service already attached to another
+     * filesystem
+     *
+     * @see GenericFileSystem#newWatchService()
+     */
+    public final void attach(final FileSystem fs)
+    {
+        if (!fileSystem.compareAndSet(null, Objects.requireNonNull(fs))
+            && fileSystem.get() != fs)
+            throw new IllegalStateException("watch service already attached"
+                + " to another filesystem");
+    }
+
+    /**
+     * Tell whether paths of a filesystem can be registered to this service
+     *
+     * @param fs the filesystem
+     * @return true if this service is attached to this filesystem, or not
+     * attached at all
+     */
+    public final boolean canWatch(final FileSystem fs)
+    {
+        final FileSystem attached = fileSystem.get();
+        return attached == null || attached == fs;
+    }
+
+    @Override
+    public final WatchKey poll()
+    {
+        checkOpen();
+        return checkKey(signalledKeys.poll());
+    }
+
+    @Override
+    public final WatchKey poll(final long timeout, final TimeUnit unit)
+        throws InterruptedException
+    {
+        checkOpen();
+        return checkKey(signalledKeys.poll(timeout, unit));
+    }
+
+    @Override
+    public final WatchKey take()
+        throws InterruptedException
+    {
+        checkOpen();
+        return checkKey(signalledKeys.take());
+    }
+
+    @Override
+    public final void close()
+        throws IOException
+    {
+        if (closed.getAndSet(true))
+            return;
+
+        try {
+            implClose();
+        } finally {
+            signalledKeys.clear();
+            signalledKeys.offer(CLOSED_SENTINEL);
+        }
+    }
+
+    /**
+     * Tell whether this watch service is open
+     *
+     * @return true if the service is open
+     */
+    public final boolean isOpen()
+    {
+        return !closed.get();
+    }
+
+    /**
+     * Close this watch service
+     *
+     * <p>This method is called only once, by {@link #close()}; implementations
+     * should cancel all keys and release the resources they hold.</p>
+     *
+     * @throws IOException failed to close the service
+     */
+    protected abstract void implClose()
+        throws IOException;
+
+    /**
+     * Called when a key of this service is cancelled
+     *
+     * <p>This implementation does nothing.</p>
+     *
+     * @param key the cancelled key
+     */
+    @SuppressWarnings({ "DesignForExtension", "UnusedParameters" })
+    protected void keyCancelled(final WatchKeyBase key)
+    {
+    }
+
+    /**
+     * Check that this service is open
+     *
+     * @throws ClosedWatchServiceException service is closed
+     */
+    protected final void checkOpen()
+    {
+        if (closed.get())
+            throw new ClosedWatchServiceException();
+    }
+
+    /**
+     * Check the event kinds given at registration time
+     *
+     * <p>Only the three standard entry events are supported; {@link
+     * StandardWatchEventKinds#OVERFLOW} is ignored since it is always
+     * reported.</p>
+     *
+     * @param events the event kinds
+     * @return an immutable set of event kinds
+     * @throws UnsupportedOperationException unsupported event kind
+     * @throws IllegalArgumentException no event kinds
+     */
+    @Nonnull
+    protected static Set<WatchEvent.Kind<?>> checkEvents(
+        final WatchEvent.Kind<?>... events)
+    {
+        final Set<WatchEvent.Kind<?>> set = new HashSet<>();
+
+        for (final WatchEvent.Kind<?> kind: events) {
+            if (kind == StandardWatchEventKinds.OVERFLOW)
+                continue;
+            if (kind != StandardWatchEventKinds.ENTRY_CREATE
+                && kind != StandardWatchEventKinds.ENTRY_DELETE
+                && kind != StandardWatchEventKinds.ENTRY_MODIFY)
+                throw new UnsupportedOperationException(kind.name());
+            set.add(kind);
+        }
+
+        if (set.isEmpty())
+            throw new IllegalArgumentException("no events to register");
+
+        return Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * Check the modifiers given at registration time
+     *
+     * <p>The only supported modifier is {@link
+     * ExtendedWatchEventModifier#FILE_TREE}, or any modifier with the same
+     * name.</p>
+     *
+     * @param modifiers the modifiers
+     * @return true if the file tree modifier is present
+     * @throws UnsupportedOperationException unsupported modifier
+     */
+    protected static boolean checkModifiers(
+        final WatchEvent.Modifier... modifiers)
+    {
+        boolean fileTree = false;
+
+        for (final WatchEvent.Modifier modifier: modifiers) {
+            if (!ExtendedWatchEventModifier.FILE_TREE.name()
+                .equals(modifier.name()))
+                throw new UnsupportedOperationException(modifier.name());
+            fileTree = true;
+        }
+
+        return fileTree;
+    }
+
+    final void enqueue(final WatchKeyBase key)
+    {
+        if (!closed.get())
+            signalledKeys.offer(key);
+    }
+
+    private WatchKey checkKey(final WatchKey key)
+    {
+        //noinspection ObjectEquality
+        if (key != CLOSED_SENTINEL)
+            return key;
+
+        // Let other waiting threads see it too
+        signalledKeys.offer(CLOSED_SENTINEL);
+        throw new ClosedWatchServiceException();
+    }
+}
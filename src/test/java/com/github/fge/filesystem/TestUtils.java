@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public final class TestUtils
+{
+    private TestUtils()
+    {
+    }
+
+    /**
+     * Read an input stream until its end, then close it
+     *
+     * <p>Unlike {@link java.nio.file.Files#readAllBytes(java.nio.file.Path)},
+     * this reads through the stream with a small buffer.</p>
+     *
+     * @param in the input stream
+     * @return the bytes read
+     * @throws IOException read failure
+     */
+    public static byte[] readFully(final InputStream in)
+        throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[100];
+        int n;
+
+        try (
+            final InputStream stream = in;
+        ) {
+            while ((n = stream.read(buf)) != -1)
+                out.write(buf, 0, n);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Return an array of bytes with values 1, 2, 3 and so on
+     *
+     * @param size the size of the array
+     * @return the array
+     */
+    public static byte[] bytes(final int size)
+    {
+        final byte[] ret = new byte[size];
+
+        for (int i = 0; i < size; i++)
+            ret[i] = (byte) (i + 1);
+
+        return ret;
+    }
+}
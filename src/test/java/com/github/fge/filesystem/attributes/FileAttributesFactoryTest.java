@@ -207,4 +207,73 @@ public final class FileAttributesFactoryTest
             .as("attribute provider extending basic supports basic")
             .isTrue();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void registrationInvalidatesPreviousLookups()
+    {
+        final FileAttributesFactory factory
+            = new FileAttributesFactory()
+        {
+            {
+                setMetadataClass(ArgType1.class);
+                assertThat(supportsFileAttributeView(
+                    FileOwnerAttributeView.class)).isFalse();
+                assertThat(getSupportedViews()).isEmpty();
+                addImplementation("acl", PublicAcl.class);
+            }
+        };
+
+        assertThat(factory.supportsFileAttributeView(
+            FileOwnerAttributeView.class)).isTrue();
+        assertThat(factory.getSupportedViews())
+            .containsOnly("acl", "owner");
+    }
+
+    @Test
+    public void supportedViewsAreComputedOnlyOnce()
+    {
+        final FileAttributesFactory factory
+            = new FileAttributesFactory()
+        {
+            {
+                setMetadataClass(ArgType1.class);
+                addImplementation("posix", DummyPosix.class);
+            }
+        };
+
+        assertThat(factory.getSupportedViews())
+            .containsOnly("basic", "posix", "owner")
+            .isSameAs(factory.getSupportedViews());
+    }
+
+    @Test
+    public void registrationFailsOnceFrozen()
+    {
+        final MyFactory factory = new MyFactory();
+
+        factory.freeze();
+
+        try {
+            factory.register();
+            failBecauseExceptionWasNotThrown(IllegalStateException.class);
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessage("attributes factory is frozen");
+        }
+
+        assertThat(factory.supportsFileAttributeView("acl")).isFalse();
+    }
+
+    private static final class MyFactory
+        extends FileAttributesFactory
+    {
+        private MyFactory()
+        {
+            setMetadataClass(ArgType1.class);
+        }
+
+        void register()
+        {
+            addImplementation("acl", PublicAcl.class);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.attributes.provider;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public final class UserDefinedFileAttributesProviderTest
+{
+    private MapProvider provider;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        provider = new MapProvider();
+        provider.values.put("foo", "hello".getBytes(StandardCharsets.UTF_8));
+        provider.values.put("bar", "world!".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void sizeIfPresentReportsMissingAttributes()
+        throws IOException
+    {
+        assertThat(provider.sizeIfPresent("foo")).isEqualTo(5);
+        assertThat(provider.sizeIfPresent("baz")).isEqualTo(-1);
+        assertThat(provider.lists).isEqualTo(0);
+    }
+
+    @Test
+    public void getAttributeByNameReadsValue()
+        throws IOException
+    {
+        assertThat((byte[]) provider.getAttributeByName("bar"))
+            .isEqualTo("world!".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            provider.getAttributeByName("baz");
+            fail("No exception thrown!");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void getAllAttributesReadsValues()
+        throws IOException
+    {
+        final Map<String, Object> map = provider.getAllAttributes();
+
+        assertThat(map).hasSize(2);
+        assertThat((byte[]) map.get("foo"))
+            .isEqualTo("hello".getBytes(StandardCharsets.UTF_8));
+        assertThat((byte[]) map.get("bar"))
+            .isEqualTo("world!".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void readAllFillsCallerBuffer()
+        throws IOException
+    {
+        final ByteBuffer buf = ByteBuffer.allocateDirect(32);
+        buf.put((byte) 0);
+
+        final Map<String, ByteBuffer> map = provider.readAll(buf);
+
+        assertThat(buf.position()).isEqualTo(12);
+        assertThat(buf.limit()).isEqualTo(32);
+        assertThat(new ArrayList<>(map.keySet())).containsExactly("foo",
+            "bar");
+        assertThat(decode(map.get("foo"))).isEqualTo("hello");
+        assertThat(decode(map.get("bar"))).isEqualTo("world!");
+        assertThat(map.get("foo").isReadOnly()).isTrue();
+    }
+
+    @Test
+    public void readAllDoesNotTouchTooSmallBuffer()
+        throws IOException
+    {
+        final ByteBuffer buf = ByteBuffer.allocateDirect(10);
+
+        try {
+            provider.readAll(buf);
+            fail("No exception thrown!");
+        } catch (BufferOverflowException ignored) {
+        }
+
+        assertThat(buf.position()).isEqualTo(0);
+        assertThat(buf.limit()).isEqualTo(10);
+    }
+
+    private static String decode(final ByteBuffer buf)
+    {
+        return StandardCharsets.UTF_8.decode(buf.duplicate()).toString();
+    }
+
+    private static final class MapProvider
+        extends UserDefinedFileAttributesProvider
+    {
+        private final Map<String, byte[]> values = new LinkedHashMap<>();
+        private int lists = 0;
+
+        private MapProvider()
+            throws IOException
+        {
+        }
+
+        @Override
+        public List<String> list()
+            throws IOException
+        {
+            lists++;
+            return new ArrayList<>(values.keySet());
+        }
+
+        @Override
+        public int size(final String name)
+            throws IOException
+        {
+            final byte[] value = values.get(name);
+            if (value == null)
+                throw new NoSuchFileException(name);
+            return value.length;
+        }
+
+        @Override
+        public int read(final String name, final ByteBuffer dst)
+            throws IOException
+        {
+            final byte[] value = values.get(name);
+            dst.put(value);
+            return value.length;
+        }
+    }
+}
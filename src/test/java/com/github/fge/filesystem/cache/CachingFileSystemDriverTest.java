@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.cache;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.fge.filesystem.CustomAssertions.shouldHaveThrown;
+import static com.github.fge.filesystem.TestUtils.readFully;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public final class CachingFileSystemDriverTest
+{
+    private static final Set<OpenOption> READ
+        = Collections.<OpenOption>singleton(StandardOpenOption.READ);
+
+    private final AtomicInteger opened = new AtomicInteger();
+
+    private Path path;
+    private Path localFile;
+    private byte[] contents;
+    private FileSystemDriver delegate;
+    private MemoryBlockCache cache;
+    private CachingFileSystemDriver driver;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        path = Paths.get("/foo/bar");
+        contents = new byte[1000];
+        new Random(42L).nextBytes(contents);
+        localFile = Files.createTempFile("cache", ".tmp");
+        Files.write(localFile, contents);
+        opened.set(0);
+
+        delegate = mock(FileSystemDriver.class);
+        when(delegate.newByteChannel(eq(path), anySetOf(OpenOption.class)))
+            .thenAnswer(new Answer<SeekableByteChannel>()
+            {
+                @Override
+                public SeekableByteChannel answer(
+                    final InvocationOnMock invocation)
+                    throws IOException
+                {
+                    opened.incrementAndGet();
+                    return FileChannel.open(localFile);
+                }
+            });
+        setVersion(1L);
+
+        cache = new MemoryBlockCache(1L << 20, false);
+        driver = new CachingFileSystemDriver(delegate, cache, 128);
+    }
+
+    @AfterMethod
+    public void cleanup()
+        throws IOException
+    {
+        Files.delete(localFile);
+    }
+
+    @Test
+    public void streamsShareCachedBlocks()
+        throws IOException
+    {
+        assertThat(readFully(driver.newInputStream(path, READ)))
+            .isEqualTo(contents);
+        assertThat(opened.get()).isEqualTo(1);
+        assertThat(cache.getStats().getBlockCount()).isEqualTo(8L);
+
+        assertThat(readFully(driver.newInputStream(path, READ)))
+            .isEqualTo(contents);
+        assertThat(opened.get()).isEqualTo(1);
+        assertThat(cache.getStats().getHitCount()).isEqualTo(8L);
+    }
+
+    @Test
+    public void concurrentReadersFetchEachBlockOnce()
+        throws Exception
+    {
+        final CountDownLatch fetching = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        // A single block, so that readers do not race for the next ones
+        final CachingFileSystemDriver driver
+            = new CachingFileSystemDriver(delegate, cache, contents.length);
+
+        when(delegate.newByteChannel(eq(path), anySetOf(OpenOption.class)))
+            .thenAnswer(new Answer<SeekableByteChannel>()
+            {
+                @Override
+                public SeekableByteChannel answer(
+                    final InvocationOnMock invocation)
+                    throws Exception
+                {
+                    opened.incrementAndGet();
+                    fetching.countDown();
+                    release.await();
+                    return FileChannel.open(localFile);
+                }
+            });
+
+        final Callable<byte[]> read = new Callable<byte[]>()
+        {
+            @Override
+            public byte[] call()
+                throws IOException
+            {
+                return readFully(driver.newInputStream(path, READ));
+            }
+        };
+        final FutureTask<byte[]> first = new FutureTask<>(read);
+        final FutureTask<byte[]> second = new FutureTask<>(read);
+
+        try {
+            new Thread(first).start();
+            assertThat(fetching.await(10L, TimeUnit.SECONDS)).isTrue();
+
+            final Thread waiter = new Thread(second);
+            waiter.start();
+
+            final long deadline = System.nanoTime()
+                + TimeUnit.SECONDS.toNanos(10L);
+            while (waiter.getState() != Thread.State.WAITING
+                && System.nanoTime() < deadline)
+                Thread.sleep(1L);
+            assertThat(waiter.getState()).isEqualTo(Thread.State.WAITING);
+        } finally {
+            release.countDown();
+        }
+
+        assertThat(first.get(10L, TimeUnit.SECONDS)).isEqualTo(contents);
+        assertThat(second.get(10L, TimeUnit.SECONDS)).isEqualTo(contents);
+        assertThat(opened.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void streamsHoldNoMonitorWhileReading()
+        throws IOException
+    {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        final AtomicInteger monitors = new AtomicInteger();
+
+        when(delegate.newByteChannel(eq(path), anySetOf(OpenOption.class)))
+            .thenAnswer(new Answer<SeekableByteChannel>()
+            {
+                @Override
+                public SeekableByteChannel answer(
+                    final InvocationOnMock invocation)
+                    throws IOException
+                {
+                    monitors.set(bean.getThreadInfo(
+                        new long[] { Thread.currentThread().getId() }, true,
+                        false)[0].getLockedMonitors().length);
+                    return FileChannel.open(localFile);
+                }
+            });
+
+        final InputStream in = driver.newInputStream(path, READ);
+
+        assertThat(in.skip(200L)).isEqualTo(200L);
+        assertThat(in.read()).isEqualTo(contents[200] & 0xff);
+        assertThat(in.skip(2000L)).isEqualTo(799L);
+        assertThat(in.read()).isEqualTo(-1);
+        in.close();
+
+        assertThat(monitors.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void channelsReadThroughCache()
+        throws IOException
+    {
+        final ByteBuffer buf = ByteBuffer.allocate(100);
+
+        try (
+            final SeekableByteChannel channel
+                = driver.newByteChannel(path, READ);
+        ) {
+            assertThat(channel.size()).isEqualTo(1000L);
+            channel.position(120L);
+            while (buf.hasRemaining())
+                channel.read(buf);
+            assertThat(channel.position()).isEqualTo(220L);
+        }
+
+        for (int i = 0; i < 100; i++)
+            assertThat(buf.get(i)).isEqualTo(contents[120 + i]);
+        assertThat(cache.getStats().getBlockCount()).isEqualTo(2L);
+    }
+
+    @Test
+    public void newVersionIsNotServedStaleBlocks()
+        throws IOException
+    {
+        readFully(driver.newInputStream(path, READ));
+        setVersion(2L);
+        readFully(driver.newInputStream(path, READ));
+
+        assertThat(opened.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shortBlocksAreNotCached()
+        throws IOException
+    {
+        // The file shrinks behind the back of the version read by the channel
+        Files.write(localFile, Arrays.copyOf(contents, 900));
+
+        try {
+            readFully(driver.newInputStream(path, READ));
+            shouldHaveThrown(IOException.class);
+        } catch (IOException e) {
+            assertThat(e).hasMessage("file " + path + " changed while reading");
+        }
+
+        assertThat(cache.getStats().getBlockCount()).isEqualTo(0L);
+    }
+
+    @Test
+    public void writesInvalidateBlocks()
+        throws IOException
+    {
+        when(delegate.newOutputStream(eq(path), anySetOf(OpenOption.class)))
+            .thenReturn(mock(OutputStream.class));
+
+        readFully(driver.newInputStream(path, READ));
+        driver.newOutputStream(path, Collections.<OpenOption>emptySet())
+            .close();
+
+        assertThat(cache.getStats().getBlockCount()).isEqualTo(0L);
+        verify(delegate, atLeastOnce()).invalidate(path);
+    }
+
+    @Test
+    public void moveInvalidatesSourceAndTarget()
+        throws IOException
+    {
+        readFully(driver.newInputStream(path, READ));
+        driver.move(Paths.get("/foo"), Paths.get("/baz"),
+            Collections.<CopyOption>emptySet());
+
+        assertThat(cache.getStats().getBlockCount()).isEqualTo(0L);
+    }
+
+    private void setVersion(final long lastModified)
+        throws IOException
+    {
+        final BasicFileAttributes attributes = mock(BasicFileAttributes.class);
+
+        when(attributes.size()).thenReturn((long) contents.length);
+        when(attributes.lastModifiedTime())
+            .thenReturn(FileTime.fromMillis(lastModified));
+        when(delegate.readAttributes(any(Path.class),
+            eq(BasicFileAttributes.class))).thenReturn(attributes);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.cache;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class DiskBlockCacheTest
+{
+    private static final BlockKey KEY1 = new BlockKey("/a", 1L, 20L, 0L);
+    private static final BlockKey KEY2 = new BlockKey("/a", 1L, 20L, 1L);
+
+    private Path directory;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        directory = Files.createTempDirectory("blocks");
+    }
+
+    @AfterMethod
+    public void cleanup()
+        throws IOException
+    {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(final Path file,
+                final BasicFileAttributes attrs)
+                throws IOException
+            {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir,
+                final IOException exc)
+                throws IOException
+            {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Test
+    public void blocksSurviveReopening()
+        throws IOException
+    {
+        try (
+            final DiskBlockCache cache = DiskBlockCache.open(directory, 100L);
+        ) {
+            cache.put(KEY1, block(10, (byte) 1));
+            cache.put(KEY2, block(10, (byte) 2));
+            assertThat(cache.getLoadedBlockCount()).isEqualTo(0);
+        }
+
+        try (
+            final DiskBlockCache cache = DiskBlockCache.open(directory, 100L);
+        ) {
+            assertThat(cache.getLoadedBlockCount()).isEqualTo(2);
+            assertThat(cache.getWarmStartTime(TimeUnit.NANOSECONDS))
+                .isGreaterThan(0L);
+
+            final ByteBuffer buf = cache.get(KEY2);
+            assertThat(buf).isNotNull();
+            assertThat(buf.remaining()).isEqualTo(10);
+            assertThat(buf.get(9)).isEqualTo((byte) 2);
+            assertThat(cache.getStats().getByteCount()).isEqualTo(20L);
+            assertThat(cache.getStats().getHitRatio()).isEqualTo(1.0);
+
+            cache.put(new BlockKey("/b", 1L, 10L, 0L), block(10, (byte) 3));
+        }
+
+        assertThat(countBlockFiles()).isEqualTo(3);
+    }
+
+    @Test
+    public void invalidEntriesAndOrphansAreDroppedOnOpen()
+        throws IOException
+    {
+        try (
+            final DiskBlockCache cache = DiskBlockCache.open(directory, 100L);
+        ) {
+            cache.put(KEY1, block(10, (byte) 1));
+            cache.put(KEY2, block(10, (byte) 2));
+        }
+
+        try (
+            final DirectoryStream<Path> stream
+                = Files.newDirectoryStream(directory, "0.blk");
+        ) {
+            for (final Path file: stream)
+                Files.write(file, new byte[3]);
+        }
+        Files.write(directory.resolve("42.blk"), new byte[3]);
+
+        try (
+            final DiskBlockCache cache = DiskBlockCache.open(directory, 100L);
+        ) {
+            assertThat(cache.getLoadedBlockCount()).isEqualTo(1);
+            assertThat(cache.get(KEY1)).isNull();
+            assertThat(cache.get(KEY2)).isNotNull();
+        }
+
+        assertThat(countBlockFiles()).isEqualTo(1);
+    }
+
+    @Test
+    public void truncatedBlocksAreDroppedOnRead()
+        throws IOException
+    {
+        try (
+            final DiskBlockCache cache = DiskBlockCache.open(directory, 100L);
+        ) {
+            cache.put(KEY1, block(10, (byte) 1));
+            cache.put(KEY2, block(10, (byte) 2));
+
+            Files.write(directory.resolve("0.blk"), new byte[3]);
+
+            assertThat(cache.get(KEY1)).isNull();
+            assertThat(cache.get(KEY2)).isNotNull();
+            assertThat(cache.getStats().getMissCount()).isEqualTo(1L);
+            assertThat(cache.getStats().getByteCount()).isEqualTo(10L);
+            assertThat(countBlockFiles()).isEqualTo(1);
+
+            cache.put(KEY1, block(10, (byte) 1));
+            assertThat(cache.get(KEY1)).isNotNull();
+        }
+    }
+
+    @Test
+    public void corruptIndexIsIgnored()
+        throws IOException
+    {
+        try (
+            final DiskBlockCache cache = DiskBlockCache.open(directory, 100L);
+        ) {
+            cache.put(KEY1, block(10, (byte) 1));
+        }
+
+        Files.write(directory.resolve("index"), new byte[] { 1, 2, 3 });
+
+        try (
+            final DiskBlockCache cache = DiskBlockCache.open(directory, 100L);
+        ) {
+            assertThat(cache.getLoadedBlockCount()).isEqualTo(0);
+            assertThat(cache.get(KEY1)).isNull();
+        }
+
+        assertThat(countBlockFiles()).isEqualTo(0);
+    }
+
+    @Test
+    public void evictedAndStaleBlocksAreDeleted()
+        throws IOException
+    {
+        try (
+            final DiskBlockCache cache = DiskBlockCache.open(directory, 20L);
+        ) {
+            cache.put(KEY1, block(10, (byte) 1));
+            cache.put(KEY2, block(10, (byte) 2));
+            cache.put(new BlockKey("/b", 1L, 10L, 0L), block(10, (byte) 3));
+
+            assertThat(cache.get(KEY1)).isNull();
+            assertThat(cache.getStats().getEvictionCount()).isEqualTo(1L);
+            assertThat(countBlockFiles()).isEqualTo(2);
+
+            cache.put(new BlockKey("/a", 2L, 20L, 0L), block(10, (byte) 4));
+            assertThat(cache.get(KEY2)).isNull();
+            assertThat(countBlockFiles()).isEqualTo(2);
+
+            cache.invalidate("/");
+            assertThat(countBlockFiles()).isEqualTo(0);
+        }
+    }
+
+    private int countBlockFiles()
+        throws IOException
+    {
+        int count = 0;
+
+        try (
+            final DirectoryStream<Path> stream
+                = Files.newDirectoryStream(directory, "*.blk");
+        ) {
+            for (final Path ignored: stream)
+                count++;
+        }
+
+        return count;
+    }
+
+    private static ByteBuffer block(final int size, final byte value)
+    {
+        final byte[] bytes = new byte[size];
+
+        for (int i = 0; i < size; i++)
+            bytes[i] = value;
+
+        return ByteBuffer.wrap(bytes);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.cache;
+
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class MemoryBlockCacheTest
+{
+    @Test
+    public void blocksAreCopiedAndReturnedReadOnly()
+    {
+        final MemoryBlockCache cache = new MemoryBlockCache(100L, true);
+        final BlockKey key = new BlockKey("/a", 1L, 10L, 0L);
+        final ByteBuffer data = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+
+        cache.put(key, data);
+        data.put(0, (byte) 42);
+
+        final ByteBuffer cached = cache.get(key);
+
+        assertThat(data.position()).isEqualTo(0);
+        assertThat(cached).isNotNull();
+        assertThat(cached.isReadOnly()).isTrue();
+        assertThat(cached.isDirect()).isTrue();
+        assertThat(cached.remaining()).isEqualTo(3);
+        assertThat(cached.get(0)).isEqualTo((byte) 1);
+    }
+
+    @Test
+    public void versionIsPartOfTheKey()
+    {
+        final MemoryBlockCache cache = new MemoryBlockCache(100L, false);
+
+        cache.put(new BlockKey("/a", 1L, 10L, 0L), ByteBuffer.allocate(10));
+
+        assertThat(cache.get(new BlockKey("/a", 2L, 10L, 0L))).isNull();
+        assertThat(cache.get(new BlockKey("/a", 1L, 11L, 0L))).isNull();
+        assertThat(cache.get(new BlockKey("/a", 1L, 10L, 0L))).isNotNull();
+
+        final BlockCacheStats stats = cache.getStats();
+
+        assertThat(stats.getHitCount()).isEqualTo(1L);
+        assertThat(stats.getMissCount()).isEqualTo(2L);
+        assertThat(stats.getHitRatio()).isEqualTo(1.0 / 3);
+    }
+
+    @Test
+    public void leastRecentlyUsedBlocksAreEvicted()
+    {
+        final MemoryBlockCache cache = new MemoryBlockCache(30L, false);
+        final BlockKey key1 = new BlockKey("/a", 1L, 30L, 0L);
+        final BlockKey key2 = new BlockKey("/a", 1L, 30L, 1L);
+        final BlockKey key3 = new BlockKey("/a", 1L, 30L, 2L);
+        final BlockKey key4 = new BlockKey("/b", 1L, 10L, 0L);
+
+        cache.put(key1, ByteBuffer.allocate(10));
+        cache.put(key2, ByteBuffer.allocate(10));
+        cache.put(key3, ByteBuffer.allocate(10));
+        cache.get(key1);
+        cache.put(key4, ByteBuffer.allocate(10));
+
+        assertThat(cache.get(key2)).isNull();
+        assertThat(cache.get(key1)).isNotNull();
+        assertThat(cache.get(key3)).isNotNull();
+        assertThat(cache.get(key4)).isNotNull();
+
+        final BlockCacheStats stats = cache.getStats();
+
+        assertThat(stats.getEvictionCount()).isEqualTo(1L);
+        assertThat(stats.getBlockCount()).isEqualTo(3L);
+        assertThat(stats.getByteCount()).isEqualTo(30L);
+    }
+
+    @Test
+    public void invalidationRemovesFileAndChildren()
+    {
+        final MemoryBlockCache cache = new MemoryBlockCache(100L, false);
+        final BlockKey file = new BlockKey("/a", 1L, 10L, 0L);
+        final BlockKey child = new BlockKey("/a/b", 1L, 10L, 0L);
+        final BlockKey sibling = new BlockKey("/ab", 1L, 10L, 0L);
+
+        cache.put(file, ByteBuffer.allocate(10));
+        cache.put(child, ByteBuffer.allocate(10));
+        cache.put(sibling, ByteBuffer.allocate(10));
+
+        cache.invalidate("/a");
+
+        assertThat(cache.get(file)).isNull();
+        assertThat(cache.get(child)).isNull();
+        assertThat(cache.get(sibling)).isNotNull();
+        assertThat(cache.getStats().getByteCount()).isEqualTo(10L);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.cache;
+
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class TieredBlockCacheTest
+{
+    @Test
+    public void secondTierHitsArePromoted()
+    {
+        final MemoryBlockCache first = new MemoryBlockCache(100L, false);
+        final MemoryBlockCache second = new MemoryBlockCache(100L, false);
+        final TieredBlockCache cache = new TieredBlockCache(first, second);
+        final BlockKey key = new BlockKey("/a", 1L, 10L, 0L);
+
+        second.put(key, ByteBuffer.allocate(10));
+
+        assertThat(cache.get(key)).isNotNull();
+        assertThat(first.getStats().getBlockCount()).isEqualTo(1L);
+        assertThat(cache.get(new BlockKey("/b", 1L, 10L, 0L))).isNull();
+
+        final BlockCacheStats stats = cache.getStats();
+
+        assertThat(stats.getHitRatio()).isEqualTo(0.5);
+        assertThat(stats.getBlockCount()).isEqualTo(2L);
+
+        cache.invalidate("/a");
+        assertThat(first.getStats().getBlockCount()).isEqualTo(0L);
+        assertThat(second.getStats().getBlockCount()).isEqualTo(0L);
+    }
+}
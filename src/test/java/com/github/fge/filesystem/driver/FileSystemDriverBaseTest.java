@@ -0,0 +1,729 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.driver;
+
+import com.github.fge.filesystem.attributes.BulkUserDefinedAttributeView;
+import com.github.fge.filesystem.attributes.FileAttributesFactory;
+import com.github.fge.filesystem.attributes.RefreshableAttributeView;
+import com.github.fge.filesystem.attributes.provider.BasicFileAttributesProvider;
+import com.github.fge.filesystem.attributes.provider.FileAttributesProvider;
+import com.github.fge.filesystem.attributes.provider.UserDefinedFileAttributesProvider;
+import com.github.fge.filesystem.exceptions.UnsupportedOptionException;
+import com.github.fge.filesystem.fs.GenericFileSystem;
+import com.github.fge.filesystem.provider.FileSystemFactoryProvider;
+import com.github.fge.filesystem.provider.FileSystemProviderBase;
+import com.github.fge.filesystem.provider.FileSystemRepository;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotLinkException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public final class FileSystemDriverBaseTest
+{
+    private static final FileTime TIME = FileTime.fromMillis(42L);
+    private static final Set<OpenOption> READ
+        = Collections.<OpenOption>singleton(StandardOpenOption.READ);
+
+    private Path path;
+    private TestDriver driver;
+    private GenericFileSystem fs;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        path = mock(Path.class);
+        when(path.toRealPath()).thenReturn(path);
+
+        final FileSystemFactoryProvider factoryProvider
+            = new FileSystemFactoryProvider()
+        {
+            {
+                setAttributesFactory(new FileAttributesFactory()
+                {
+                    {
+                        setMetadataClass(Metadata.class);
+                        addImplementation("basic", BasicProvider.class);
+                        addImplementation("user", UserProvider.class);
+                    }
+                });
+            }
+        };
+        final FileSystemRepository repository
+            = mock(FileSystemRepository.class);
+        when(repository.getFactoryProvider()).thenReturn(factoryProvider);
+
+        driver = new TestDriver(factoryProvider);
+        when(repository.getDriver(any(Path.class))).thenReturn(driver);
+        fs = new GenericFileSystem(URI.create("foo://bar"), repository, driver,
+            new FileSystemProviderBase(repository)
+            {
+            });
+    }
+
+    @Test
+    public void unsupportedViewYieldsNull()
+    {
+        assertThat(driver.getFileAttributeView(path,
+            PosixFileAttributeView.class)).isNull();
+    }
+
+    @Test
+    public void attributeViewIsLoadedOnFirstReadOnly()
+        throws IOException
+    {
+        final BasicFileAttributeView view
+            = driver.getFileAttributeView(path, BasicFileAttributeView.class);
+
+        assertThat(view).isNotNull();
+        assertThat(view.name()).isEqualTo("basic");
+        assertThat(driver.reads.get()).isEqualTo(0);
+
+        assertThat(view.readAttributes().lastModifiedTime()).isEqualTo(TIME);
+        assertThat(view.readAttributes().size()).isEqualTo(1L);
+        assertThat(driver.reads.get()).isEqualTo(1);
+
+        ((RefreshableAttributeView) view).refresh();
+        assertThat(view.readAttributes().size()).isEqualTo(2L);
+        assertThat(driver.reads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void userViewOffersBulkAccess()
+        throws IOException
+    {
+        final UserDefinedFileAttributeView view = Files.getFileAttributeView(
+            fs.getPath("/a"), UserDefinedFileAttributeView.class);
+
+        assertThat(view).isInstanceOf(BulkUserDefinedAttributeView.class)
+            .isInstanceOf(RefreshableAttributeView.class);
+
+        final BulkUserDefinedAttributeView bulk
+            = (BulkUserDefinedAttributeView) view;
+
+        assertThat(bulk.sizeIfPresent("foo")).isEqualTo(3);
+        assertThat(bulk.sizeIfPresent("bar")).isEqualTo(-1);
+        assertThat(bulk.sizes()).containsExactly(entry("foo", 3));
+
+        final Map<String, ByteBuffer> values
+            = bulk.readAll(ByteBuffer.allocate(3));
+
+        assertThat(values).containsOnlyKeys("foo");
+        assertThat(StandardCharsets.UTF_8.decode(values.get("foo")).toString())
+            .isEqualTo("foo");
+        assertThat(driver.reads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void otherViewsDoNotOfferBulkAccess()
+    {
+        assertThat(Files.getFileAttributeView(fs.getPath("/a"),
+            BasicFileAttributeView.class))
+            .isNotInstanceOf(BulkUserDefinedAttributeView.class);
+    }
+
+    @Test
+    public void otherViewsAreResolvedOnCreation()
+    {
+        final FileAttributeView view
+            = driver.getFileAttributeView(path, FileAttributeView.class);
+
+        assertThat(view).isInstanceOf(FileAttributesProvider.class)
+            .isNotInstanceOf(RefreshableAttributeView.class);
+        assertThat(driver.reads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void modificationsDoNotFetchMetadata()
+        throws IOException
+    {
+        final BasicFileAttributeView view
+            = driver.getFileAttributeView(path, BasicFileAttributeView.class);
+
+        view.setTimes(TIME, null, null);
+
+        assertThat(driver.reads.get()).isEqualTo(0);
+        assertThat(driver.updates.get()).isEqualTo(1);
+        assertThat(driver.modified.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void pathMetadataIsNotFetchedForUpdates()
+        throws IOException
+    {
+        final FileSystemFactoryProvider factoryProvider
+            = new FileSystemFactoryProvider()
+        {
+            {
+                setAttributesFactory(new FileAttributesFactory()
+                {
+                    {
+                        setMetadataClass(Path.class);
+                        addImplementation("basic", PathProvider.class);
+                    }
+                });
+            }
+        };
+        driver = new TestDriver(factoryProvider, false);
+
+        assertThat(driver.getPathMetadataForUpdate(path)).isSameAs(path);
+
+        driver.getFileAttributeView(path, BasicFileAttributeView.class)
+            .setTimes(TIME, null, null);
+
+        assertThat(driver.reads.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void bulkModificationsFetchMetadataOnce()
+        throws IOException
+    {
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("lastModifiedTime", TIME);
+        attributes.put("basic:lastAccessTime", TIME);
+        attributes.put("basic:creationTime", TIME);
+
+        driver.setAttributes(path, attributes);
+
+        assertThat(driver.reads.get()).isEqualTo(0);
+        assertThat(driver.updates.get()).isEqualTo(1);
+        assertThat(driver.modified.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void bulkModificationsCheckAllViewsFirst()
+        throws IOException
+    {
+        final Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("basic:lastModifiedTime", TIME);
+        attributes.put("posix:permissions",
+            Collections.<PosixFilePermission>emptySet());
+
+        try {
+            driver.setAttributes(path, attributes);
+            fail("no exception thrown");
+        } catch (UnsupportedOperationException ignored) {
+        }
+
+        assertThat(driver.modified.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void modificationsDiscardFetchedMetadata()
+        throws IOException
+    {
+        final BasicFileAttributeView view
+            = driver.getFileAttributeView(path, BasicFileAttributeView.class);
+
+        view.readAttributes();
+        view.setTimes(TIME, null, null);
+        view.readAttributes();
+
+        assertThat(driver.reads.get()).isEqualTo(2);
+        assertThat(driver.updates.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void realPathWithoutLinksPerformsNoIo()
+        throws IOException
+    {
+        assertThat(driver.toRealPath(fs.getPath("/a/./b/../c")).toString())
+            .isEqualTo("/a/c");
+        assertThat(driver.linkReads.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void realPathResolvesLinks()
+        throws IOException
+    {
+        driver.link("/a/l", "../b");
+        driver.link("/b/m", "/c");
+
+        assertThat(driver.toRealPath(fs.getPath("/a/l/m/x")).toString())
+            .isEqualTo("/c/x");
+        assertThat(driver.toRealPath(fs.getPath("/a/l/m/x"),
+            LinkOption.NOFOLLOW_LINKS).toString()).isEqualTo("/a/l/m/x");
+        assertThat(driver.toRealPath(fs.getPath("/a/l/../d")).toString())
+            .isEqualTo("/d");
+    }
+
+    @Test
+    public void linkResolutionIsCachedUntilInvalidated()
+        throws IOException
+    {
+        driver.link("/a/l", "/b");
+
+        driver.toRealPath(fs.getPath("/a/l/x"));
+        final int reads = driver.linkReads.get();
+
+        assertThat(driver.toRealPath(fs.getPath("/a/l/x")).toString())
+            .isEqualTo("/b/x");
+        assertThat(driver.linkReads.get()).isEqualTo(reads);
+
+        driver.link("/a/l", "/c");
+        driver.invalidate(fs.getPath("/a/l"));
+
+        assertThat(driver.toRealPath(fs.getPath("/a/l/x")).toString())
+            .isEqualTo("/c/x");
+        assertThat(driver.linkReads.get()).isGreaterThan(reads);
+    }
+
+    @Test
+    public void linksResolvedThroughRetargetedLinkAreInvalidated()
+        throws IOException
+    {
+        driver.link("/d/link2", "/e");
+        driver.link("/l", "/d/link2");
+        driver.link("/m", "/d/link2/../g");
+
+        assertThat(driver.toRealPath(fs.getPath("/l/x")).toString())
+            .isEqualTo("/e/x");
+        assertThat(driver.toRealPath(fs.getPath("/m")).toString())
+            .isEqualTo("/g");
+
+        driver.link("/d/link2", "/f/sub");
+        driver.invalidate(fs.getPath("/d/link2"));
+
+        assertThat(driver.toRealPath(fs.getPath("/l/x")).toString())
+            .isEqualTo("/f/sub/x");
+        assertThat(driver.toRealPath(fs.getPath("/m")).toString())
+            .isEqualTo("/f/g");
+    }
+
+    @Test
+    public void linkLoopsAreDetected()
+        throws IOException
+    {
+        driver.link("/x", "/y");
+        driver.link("/y", "x");
+
+        try {
+            driver.toRealPath(fs.getPath("/x/z"));
+            fail("No exception thrown!");
+        } catch (FileSystemException e) {
+            assertThat(e.getFile()).isEqualTo("/x/z");
+        }
+    }
+
+    @Test
+    public void readSymbolicLinkReturnsTarget()
+        throws IOException
+    {
+        driver.link("/a/l", "../b");
+
+        assertThat(driver.readSymbolicLink(fs.getPath("/a/l")).toString())
+            .isEqualTo("../b");
+
+        try {
+            driver.readSymbolicLink(fs.getPath("/a"));
+            fail("No exception thrown!");
+        } catch (NotLinkException e) {
+            assertThat(e.getFile()).isEqualTo("/a");
+        }
+    }
+
+    @Test
+    public void fileChannelIsOpenedOnLocalFile()
+        throws IOException
+    {
+        final Path localFile = Files.createTempFile("driver", ".tmp");
+
+        try {
+            Files.write(localFile, "hello".getBytes(StandardCharsets.UTF_8));
+            driver.localFiles.put("/a", localFile);
+
+            try (
+                final FileChannel channel = driver.newFileChannel(
+                    fs.getPath("/a"), READ);
+            ) {
+                final MappedByteBuffer buf = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+                assertThat(buf.remaining()).isEqualTo(5);
+                assertThat(buf.get(4)).isEqualTo((byte) 'o');
+            }
+        } finally {
+            Files.delete(localFile);
+        }
+    }
+
+    @Test
+    public void fileChannelRequiresReadableLocalFile()
+        throws IOException
+    {
+        try {
+            driver.newFileChannel(fs.getPath("/a"), READ);
+            fail("No exception thrown!");
+        } catch (UnsupportedOperationException ignored) {
+        }
+
+        driver.localFiles.put("/a", mock(Path.class));
+
+        try {
+            driver.newFileChannel(fs.getPath("/a"),
+                Collections.singleton(StandardOpenOption.WRITE));
+            fail("No exception thrown!");
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+
+    @Test
+    public void fileChannelCannotCreateOrDeleteLocalFile()
+        throws IOException
+    {
+        final Path localFile = Files.createTempFile("driver", ".tmp");
+
+        try {
+            driver.localFiles.put("/a", localFile);
+
+            for (final StandardOpenOption option: EnumSet.of(
+                StandardOpenOption.DELETE_ON_CLOSE, StandardOpenOption.CREATE,
+                StandardOpenOption.CREATE_NEW))
+                try {
+                    driver.newFileChannel(fs.getPath("/a"),
+                        EnumSet.of(StandardOpenOption.READ, option)).close();
+                    fail("No exception thrown!");
+                } catch (UnsupportedOptionException ignored) {
+                }
+
+            assertThat(Files.exists(localFile)).isTrue();
+        } finally {
+            Files.deleteIfExists(localFile);
+        }
+    }
+
+    @Test
+    public void asynchronousChannelsDoNotSupportAppend()
+        throws IOException
+    {
+        final Set<StandardOpenOption> options = EnumSet.of(
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        try {
+            driver.newAsynchronousFileChannel(fs.getPath("/a"), options, null);
+            fail("No exception thrown!");
+        } catch (UnsupportedOptionException ignored) {
+        }
+    }
+
+    public static final class Metadata
+    {
+        private final long size;
+        private final AtomicInteger modified;
+
+        private Metadata(final long size, final AtomicInteger modified)
+        {
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    public static final class BasicProvider
+        extends BasicFileAttributesProvider
+    {
+        private final Metadata metadata;
+
+        public BasicProvider(final Metadata metadata)
+            throws IOException
+        {
+            this.metadata = metadata;
+        }
+
+        @Override
+        public FileTime lastModifiedTime()
+        {
+            return TIME;
+        }
+
+        @Override
+        public void setTimes(final FileTime lastModifiedTime,
+            final FileTime lastAccessTime, final FileTime createTime)
+            throws IOException
+        {
+            metadata.modified.incrementAndGet();
+        }
+
+        @Override
+        public boolean isRegularFile()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean isDirectory()
+        {
+            return false;
+        }
+
+        @Override
+        public long size()
+        {
+            return metadata.size;
+        }
+    }
+
+    public static final class PathProvider
+        extends BasicFileAttributesProvider
+    {
+        public PathProvider(final Path path)
+            throws IOException
+        {
+        }
+
+        @Override
+        public void setTimes(final FileTime lastModifiedTime,
+            final FileTime lastAccessTime, final FileTime createTime)
+            throws IOException
+        {
+        }
+
+        @Override
+        public boolean isRegularFile()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean isDirectory()
+        {
+            return false;
+        }
+
+        @Override
+        public long size()
+        {
+            return 0L;
+        }
+    }
+
+    public static final class UserProvider
+        extends UserDefinedFileAttributesProvider
+    {
+        public UserProvider(final Metadata metadata)
+            throws IOException
+        {
+        }
+
+        @Override
+        public List<String> list()
+            throws IOException
+        {
+            return Collections.singletonList("foo");
+        }
+
+        @Override
+        public int size(final String name)
+            throws IOException
+        {
+            if (!"foo".equals(name))
+                throw new NoSuchFileException(name);
+            return 3;
+        }
+
+        @Override
+        public int read(final String name, final ByteBuffer dst)
+            throws IOException
+        {
+            dst.put(name.getBytes(StandardCharsets.UTF_8));
+            return 3;
+        }
+    }
+
+    private static final class TestDriver
+        extends FileSystemDriverBase
+    {
+        private final AtomicInteger reads = new AtomicInteger();
+        private final AtomicInteger updates = new AtomicInteger();
+        private final AtomicInteger modified = new AtomicInteger();
+        private final AtomicInteger linkReads = new AtomicInteger();
+        private final Map<String, String> links = new HashMap<>();
+        private final Map<String, Path> localFiles = new HashMap<>();
+
+        private final boolean customUpdates;
+
+        private TestDriver(final FileSystemFactoryProvider factoryProvider)
+        {
+            this(factoryProvider, true);
+        }
+
+        private TestDriver(final FileSystemFactoryProvider factoryProvider,
+            final boolean customUpdates)
+        {
+            super(mock(FileStore.class), factoryProvider);
+            this.customUpdates = customUpdates;
+        }
+
+        private void link(final String link, final String target)
+        {
+            links.put(link, target);
+        }
+
+        @Override
+        protected boolean hasSymbolicLinks()
+        {
+            return !links.isEmpty();
+        }
+
+        @Override
+        protected Path getLinkTarget(final Path path)
+            throws IOException
+        {
+            linkReads.incrementAndGet();
+            final String target = links.get(path.toString());
+            return target == null ? null : path.getFileSystem().getPath(target);
+        }
+
+        @Override
+        protected Path getLocalFile(final Path path)
+        {
+            return localFiles.get(path.toString());
+        }
+
+        @Override
+        public Object getPathMetadata(final Path path)
+            throws IOException
+        {
+            return new Metadata(reads.incrementAndGet(), modified);
+        }
+
+        @Override
+        protected Object getPathMetadataForUpdate(final Path path)
+            throws IOException
+        {
+            if (!customUpdates)
+                return super.getPathMetadataForUpdate(path);
+            updates.incrementAndGet();
+            return new Metadata(-1L, modified);
+        }
+
+        @Override
+        public InputStream newInputStream(final Path path,
+            final Set<OpenOption> options)
+            throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public OutputStream newOutputStream(final Path path,
+            final Set<OpenOption> options)
+            throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public DirectoryStream<Path> newDirectoryStream(final Path dir,
+            final DirectoryStream.Filter<? super Path> filter)
+            throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void createDirectory(final Path dir,
+            final FileAttribute<?>... attrs)
+            throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(final Path path)
+            throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void copy(final Path source, final Path target,
+            final Set<CopyOption> options)
+            throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void move(final Path source, final Path target,
+            final Set<CopyOption> options)
+            throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isHidden(final Path path)
+            throws IOException
+        {
+            return false;
+        }
+
+        @Override
+        public void checkAccess(final Path path, final AccessMode... modes)
+            throws IOException
+        {
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class DaemonExecutorsTest
+{
+    private static final Callable<Thread> CURRENT_THREAD
+        = new Callable<Thread>()
+    {
+        @Override
+        public Thread call()
+        {
+            return Thread.currentThread();
+        }
+    };
+
+    @Test
+    public void threadPoolRunsTasksOnNamedDaemonThreads()
+        throws ExecutionException, InterruptedException
+    {
+        final ThreadPoolExecutor executor
+            = DaemonExecutors.newThreadPool("foo", 2);
+
+        try {
+            final Thread thread = executor.submit(CURRENT_THREAD).get();
+
+            assertThat(thread.isDaemon()).isTrue();
+            assertThat(thread.getName()).isEqualTo("foo-1");
+            assertThat(executor.getMaximumPoolSize()).isEqualTo(2);
+            assertThat(executor.allowsCoreThreadTimeOut()).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void scheduledThreadPoolRunsTasksOnNamedDaemonThreads()
+        throws ExecutionException, InterruptedException
+    {
+        final ScheduledThreadPoolExecutor executor
+            = DaemonExecutors.newScheduledThreadPool("bar", 1);
+
+        try {
+            final Thread thread = executor.submit(CURRENT_THREAD).get();
+
+            assertThat(thread.isDaemon()).isTrue();
+            assertThat(thread.getName()).isEqualTo("bar-1");
+            assertThat(executor.getRemoveOnCancelPolicy()).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public final class ExecutorAsynchronousFileChannelTest
+{
+    private ExecutorService executor;
+    private Path file;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        executor = Executors.newFixedThreadPool(2);
+        file = Files.createTempFile("async", ".bin");
+        Files.write(file, "hello world".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterMethod
+    public void cleanup()
+        throws IOException
+    {
+        executor.shutdownNow();
+        Files.delete(file);
+    }
+
+    @Test
+    public void positionalReadsAreRunOnExecutor()
+        throws IOException, InterruptedException, ExecutionException
+    {
+        try (
+            final AsynchronousFileChannel channel = open(false);
+        ) {
+            final ByteBuffer buf = ByteBuffer.allocate(5);
+
+            assertThat(channel.read(buf, 6L).get()).isEqualTo(5);
+            assertThat(new String(buf.array(), StandardCharsets.UTF_8))
+                .isEqualTo("world");
+
+            buf.clear();
+            assertThat(channel.read(buf, 42L).get()).isEqualTo(-1);
+            assertThat(channel.size()).isEqualTo(11L);
+        }
+    }
+
+    @Test
+    public void completionHandlerIsCalled()
+        throws IOException, InterruptedException
+    {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger written = new AtomicInteger();
+
+        try (
+            final AsynchronousFileChannel channel = open(true);
+        ) {
+            channel.write(ByteBuffer.wrap("HELLO".getBytes(
+                StandardCharsets.UTF_8)), 0L, latch,
+                new CompletionHandler<Integer, CountDownLatch>()
+                {
+                    @Override
+                    public void completed(final Integer result,
+                        final CountDownLatch attachment)
+                    {
+                        written.set(result);
+                        attachment.countDown();
+                    }
+
+                    @Override
+                    public void failed(final Throwable exc,
+                        final CountDownLatch attachment)
+                    {
+                        attachment.countDown();
+                    }
+                });
+
+            assertThat(latch.await(1L, TimeUnit.SECONDS)).isTrue();
+        }
+
+        assertThat(written.get()).isEqualTo(5);
+        assertThat(new String(Files.readAllBytes(file),
+            StandardCharsets.UTF_8)).isEqualTo("HELLO world");
+    }
+
+    @Test
+    public void writesToReadOnlyChannelFail()
+        throws IOException
+    {
+        try (
+            final AsynchronousFileChannel channel = open(false);
+        ) {
+            channel.write(ByteBuffer.allocate(1), 0L);
+            fail("No exception thrown!");
+        } catch (NonWritableChannelException ignored) {
+        }
+    }
+
+    private AsynchronousFileChannel open(final boolean writable)
+        throws IOException
+    {
+        final FileChannel channel = writable
+            ? FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)
+            : FileChannel.open(file, StandardOpenOption.READ);
+        return new ExecutorAsynchronousFileChannel(channel, executor, true,
+            writable);
+    }
+}
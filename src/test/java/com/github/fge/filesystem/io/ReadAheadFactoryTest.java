@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static com.github.fge.filesystem.TestUtils.readFully;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public final class ReadAheadFactoryTest
+{
+    private static final int BLOCK_SIZE = 256;
+    private static final int DEPTH = 4;
+    private static final Executor SAME_THREAD = new Executor()
+    {
+        @Override
+        public void execute(final Runnable command)
+        {
+            command.run();
+        }
+    };
+
+    private byte[] contents;
+    private ReadAheadFactory factory;
+
+    @BeforeMethod
+    public void init()
+    {
+        contents = new byte[10000];
+        new Random(42L).nextBytes(contents);
+        factory = new ReadAheadFactory(BLOCK_SIZE, DEPTH, 16 * BLOCK_SIZE,
+            SAME_THREAD);
+    }
+
+    @Test
+    public void disabledFactoryDoesNotWrap()
+        throws IOException
+    {
+        final InputStream in = new ByteArrayInputStream(contents);
+        final SeekableByteChannel channel = new ArrayChannel(contents);
+
+        assertThat(ReadAheadFactory.DISABLED.isEnabled()).isFalse();
+        assertThat(ReadAheadFactory.DISABLED.wrap(in)).isSameAs(in);
+        assertThat(ReadAheadFactory.DISABLED.wrap(channel)).isSameAs(channel);
+    }
+
+    @Test
+    public void streamReadsAllContents()
+        throws IOException
+    {
+        try (
+            final InputStream in
+                = factory.wrap(new ByteArrayInputStream(contents));
+        ) {
+            assertThat(in.read()).isEqualTo(contents[0] & 0xff);
+            assertThat(readFully(in)).isEqualTo(
+                Arrays.copyOfRange(contents, 1, contents.length));
+        }
+
+        assertThat(factory.availableBlocks()).isEqualTo(16);
+    }
+
+    @Test
+    public void streamReadsAllContentsAsynchronously()
+        throws IOException
+    {
+        factory = new ReadAheadFactory(BLOCK_SIZE, DEPTH, 4 * BLOCK_SIZE);
+
+        try (
+            final InputStream in
+                = factory.wrap(new ByteArrayInputStream(contents));
+        ) {
+            assertThat(readFully(in)).isEqualTo(contents);
+        }
+
+        assertThat(factory.availableBlocks()).isEqualTo(4);
+    }
+
+    @Test(timeOut = 10000L)
+    public void uncheckedFetchFailureIsReportedAndReleasesBlocks()
+        throws IOException
+    {
+        final IllegalStateException failure = new IllegalStateException();
+
+        factory = new ReadAheadFactory(BLOCK_SIZE, DEPTH, 4 * BLOCK_SIZE);
+
+        final InputStream in = factory.wrap(new InputStream()
+        {
+            @Override
+            public int read()
+            {
+                throw failure;
+            }
+        });
+
+        try {
+            in.read();
+            fail("No exception thrown!");
+        } catch (IllegalStateException e) {
+            assertThat(e).isSameAs(failure);
+        } finally {
+            in.close();
+        }
+
+        assertThat(factory.availableBlocks()).isEqualTo(4);
+    }
+
+    @Test
+    public void exhaustedPoolFallsBackToDirectReads()
+        throws IOException
+    {
+        factory = new ReadAheadFactory(BLOCK_SIZE, DEPTH, BLOCK_SIZE,
+            SAME_THREAD);
+
+        try (
+            final InputStream in1
+                = factory.wrap(new ByteArrayInputStream(contents));
+            final InputStream in2
+                = factory.wrap(new ByteArrayInputStream(contents));
+        ) {
+            final ByteArrayOutputStream out1 = new ByteArrayOutputStream();
+            final ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+            final byte[] buf = new byte[100];
+            int n1 = 0;
+            int n2 = 0;
+
+            while (n1 != -1 || n2 != -1) {
+                if (n1 != -1 && (n1 = in1.read(buf)) > 0)
+                    out1.write(buf, 0, n1);
+                if (n2 != -1 && (n2 = in2.read(buf)) > 0)
+                    out2.write(buf, 0, n2);
+            }
+
+            assertThat(out1.toByteArray()).isEqualTo(contents);
+            assertThat(out2.toByteArray()).isEqualTo(contents);
+        }
+
+        assertThat(factory.availableBlocks()).isEqualTo(1);
+    }
+
+    @Test
+    public void channelOnlyReadsAheadWhenSequential()
+        throws IOException
+    {
+        final ArrayChannel channel = new ArrayChannel(contents);
+        final ByteBuffer buf = ByteBuffer.allocate(10);
+
+        try (
+            final SeekableByteChannel wrapped = factory.wrap(channel);
+        ) {
+            wrapped.read(buf);
+            assertThat(channel.position()).isEqualTo(10L);
+
+            buf.clear();
+            wrapped.position(100L).read(buf);
+            assertThat(channel.position()).isEqualTo(110L);
+
+            buf.clear();
+            wrapped.read(buf);
+            assertThat(channel.position())
+                .isEqualTo(120L + DEPTH * BLOCK_SIZE);
+            assertThat(wrapped.position()).isEqualTo(120L);
+
+            buf.clear();
+            wrapped.read(buf);
+            assertThat(buf.array()).isEqualTo(
+                Arrays.copyOfRange(contents, 120, 130));
+
+            buf.clear();
+            wrapped.position(5000L).read(buf);
+            assertThat(channel.position()).isEqualTo(5010L);
+            assertThat(buf.array()).isEqualTo(
+                Arrays.copyOfRange(contents, 5000, 5010));
+        }
+
+        assertThat(factory.availableBlocks()).isEqualTo(16);
+    }
+
+    @Test
+    public void channelReadsAllContents()
+        throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteBuffer buf = ByteBuffer.allocate(100);
+
+        try (
+            final SeekableByteChannel wrapped
+                = factory.wrap(new ArrayChannel(contents));
+        ) {
+            while (wrapped.read(buf) != -1) {
+                out.write(buf.array(), 0, buf.position());
+                buf.clear();
+            }
+            assertThat(wrapped.position()).isEqualTo(contents.length);
+            assertThat(wrapped.size()).isEqualTo(contents.length);
+        }
+
+        assertThat(out.toByteArray()).isEqualTo(contents);
+    }
+
+    @Test
+    public void channelIsReadOnly()
+        throws IOException
+    {
+        try {
+            factory.wrap(new ArrayChannel(contents))
+                .write(ByteBuffer.allocate(1));
+            fail("No exception thrown!");
+        } catch (NonWritableChannelException ignored) {
+        }
+    }
+
+    private static final class ArrayChannel
+        implements SeekableByteChannel
+    {
+        private final byte[] contents;
+        private int position = 0;
+        private boolean open = true;
+
+        private ArrayChannel(final byte[] contents)
+        {
+            this.contents = contents;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst)
+        {
+            if (position >= contents.length)
+                return -1;
+            final int count = Math.min(dst.remaining(),
+                contents.length - position);
+            dst.put(contents, position, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int write(final ByteBuffer src)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long position()
+        {
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(final long newPosition)
+        {
+            position = (int) newPosition;
+            return this;
+        }
+
+        @Override
+        public long size()
+        {
+            return contents.length;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(final long size)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return open;
+        }
+
+        @Override
+        public void close()
+        {
+            open = false;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public final class StreamChannelsTest
+{
+    private static final Set<OpenOption> READ
+        = Collections.<OpenOption>singleton(StandardOpenOption.READ);
+
+    private FileSystemDriver driver;
+    private Path path;
+    private byte[] contents;
+    private final AtomicInteger opened = new AtomicInteger();
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        driver = mock(FileSystemDriver.class);
+        path = mock(Path.class);
+        contents = "hello world".getBytes(StandardCharsets.UTF_8);
+        opened.set(0);
+
+        when(driver.newInputStream(eq(path), anySetOf(OpenOption.class)))
+            .thenAnswer(new Answer<InputStream>()
+            {
+                @Override
+                public InputStream answer(final InvocationOnMock invocation)
+                    throws IOException
+                {
+                    if (contents == null)
+                        throw new NoSuchFileException("foo");
+                    opened.incrementAndGet();
+                    return new ByteArrayInputStream(contents);
+                }
+            });
+        when(driver.newOutputStream(eq(path), anySetOf(OpenOption.class)))
+            .thenAnswer(new Answer<OutputStream>()
+            {
+                @Override
+                public OutputStream answer(final InvocationOnMock invocation)
+                    throws IOException
+                {
+                    final Set<?> options
+                        = (Set<?>) invocation.getArguments()[1];
+
+                    if (contents != null
+                        && options.contains(StandardOpenOption.CREATE_NEW))
+                        throw new FileAlreadyExistsException("foo");
+                    if (contents == null
+                        && !options.contains(StandardOpenOption.CREATE)
+                        && !options.contains(StandardOpenOption.CREATE_NEW))
+                        throw new NoSuchFileException("foo");
+                    return new ByteArrayOutputStream()
+                    {
+                        @Override
+                        public void close()
+                        {
+                            contents = toByteArray();
+                        }
+                    };
+                }
+            });
+
+        final BasicFileAttributes attributes = mock(BasicFileAttributes.class);
+        when(attributes.size()).thenReturn((long) contents.length);
+        when(driver.readAttributes(any(Path.class),
+            eq(BasicFileAttributes.class))).thenReturn(attributes);
+    }
+
+    @Test
+    public void streamChannelSeeksForwardWithoutReopening()
+        throws IOException
+    {
+        try (
+            final SeekableByteChannel channel
+                = new StreamBackedSeekableByteChannel(driver, path, READ);
+        ) {
+            assertThat(read(channel, 0L, 5)).isEqualTo("hello");
+            assertThat(read(channel, 6L, 5)).isEqualTo("world");
+            assertThat(opened.get()).isEqualTo(1);
+            assertThat(channel.size()).isEqualTo(11L);
+        }
+    }
+
+    @Test
+    public void streamChannelReopensOnBackwardSeek()
+        throws IOException
+    {
+        try (
+            final SeekableByteChannel channel
+                = new StreamBackedSeekableByteChannel(driver, path, READ);
+        ) {
+            assertThat(read(channel, 6L, 5)).isEqualTo("world");
+            assertThat(read(channel, 0L, 5)).isEqualTo("hello");
+            assertThat(opened.get()).isEqualTo(2);
+
+            channel.position(42L);
+            assertThat(channel.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    public void streamChannelIsNotWritable()
+        throws IOException
+    {
+        try (
+            final SeekableByteChannel channel
+                = new StreamBackedSeekableByteChannel(driver, path, READ);
+        ) {
+            channel.write(ByteBuffer.allocate(1));
+            fail("No exception thrown!");
+        } catch (NonWritableChannelException ignored) {
+        }
+    }
+
+    @Test
+    public void spillingChannelWritesBackOnClose()
+        throws IOException
+    {
+        try (
+            final SeekableByteChannel channel
+                = SpillingSeekableByteChannel.open(driver, path,
+                    options(StandardOpenOption.READ, StandardOpenOption.WRITE));
+        ) {
+            assertThat(read(channel, 6L, 5)).isEqualTo("world");
+            channel.position(0L);
+            channel.write(ByteBuffer.wrap("HELLO".getBytes(
+                StandardCharsets.UTF_8)));
+            assertThat(new String(contents, StandardCharsets.UTF_8))
+                .isEqualTo("hello world");
+        }
+
+        assertThat(new String(contents, StandardCharsets.UTF_8))
+            .isEqualTo("HELLO world");
+    }
+
+    @Test
+    public void spillingChannelTruncatesAndCreates()
+        throws IOException
+    {
+        SpillingSeekableByteChannel.open(driver, path,
+            options(StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)).close();
+
+        assertThat(contents).isEmpty();
+
+        contents = null;
+
+        SpillingSeekableByteChannel.open(driver, path,
+            options(StandardOpenOption.WRITE, StandardOpenOption.CREATE))
+            .close();
+
+        assertThat(contents).isEmpty();
+    }
+
+    @Test
+    public void unmodifiedSpillingChannelIsNotWrittenBack()
+        throws IOException
+    {
+        final byte[] before = contents;
+
+        SpillingSeekableByteChannel.open(driver, path,
+            options(StandardOpenOption.WRITE)).close();
+
+        assertThat(contents).isSameAs(before);
+    }
+
+    @Test
+    public void spillingChannelChecksTargetOnOpen()
+        throws IOException
+    {
+        try {
+            SpillingSeekableByteChannel.open(driver, path,
+                options(StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE_NEW));
+            fail("No exception thrown!");
+        } catch (FileAlreadyExistsException ignored) {
+        }
+
+        contents = null;
+
+        try {
+            SpillingSeekableByteChannel.open(driver, path,
+                options(StandardOpenOption.WRITE));
+            fail("No exception thrown!");
+        } catch (NoSuchFileException ignored) {
+        }
+
+        assertThat(contents).isNull();
+    }
+
+    @Test
+    public void spillingChannelCreatesTargetOnOpen()
+        throws IOException
+    {
+        contents = null;
+
+        try (
+            final SeekableByteChannel channel
+                = SpillingSeekableByteChannel.open(driver, path,
+                    options(StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE_NEW));
+        ) {
+            assertThat(contents).isEmpty();
+            channel.write(ByteBuffer.wrap("foo".getBytes(
+                StandardCharsets.UTF_8)));
+        }
+
+        assertThat(new String(contents, StandardCharsets.UTF_8))
+            .isEqualTo("foo");
+    }
+
+    @Test
+    public void spillingChannelOnlySpillsAboveThreshold()
+        throws IOException
+    {
+        final SpillingSeekableByteChannel channel
+            = (SpillingSeekableByteChannel) SpillingSeekableByteChannel.open(
+                driver, path, options(StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND), 16);
+
+        try {
+            assertThat(channel.isSpilled()).isFalse();
+            channel.write(ByteBuffer.wrap("!!!!!".getBytes(
+                StandardCharsets.UTF_8)));
+            assertThat(channel.isSpilled()).isFalse();
+            channel.write(ByteBuffer.wrap("!".getBytes(
+                StandardCharsets.UTF_8)));
+            assertThat(channel.isSpilled()).isTrue();
+            assertThat(read(channel, 6L, 11)).isEqualTo("world!!!!!!");
+        } finally {
+            channel.close();
+        }
+
+        assertThat(channel.isOpen()).isFalse();
+        assertThat(new String(contents, StandardCharsets.UTF_8))
+            .isEqualTo("hello world!!!!!!");
+    }
+
+    @Test
+    public void closedSpillingChannelFailsOperations()
+        throws IOException
+    {
+        final SeekableByteChannel channel = SpillingSeekableByteChannel.open(
+            driver, path, options(StandardOpenOption.WRITE));
+
+        channel.close();
+        channel.close();
+
+        try {
+            channel.size();
+            fail("No exception thrown!");
+        } catch (ClosedChannelException ignored) {
+        }
+    }
+
+    private static Set<OpenOption> options(final OpenOption... options)
+    {
+        return new HashSet<>(Arrays.asList(options));
+    }
+
+    private static String read(final SeekableByteChannel channel,
+        final long position, final int length)
+        throws IOException
+    {
+        final ByteBuffer buf = ByteBuffer.allocate(length);
+
+        channel.position(position);
+        while (buf.hasRemaining() && channel.read(buf) != -1)
+            ;
+
+        return new String(buf.array(), 0, buf.position(),
+            StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.io;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public final class WriteBehindOutputStreamTest
+{
+    private static final int PART_SIZE = 100;
+
+    private ExecutorService executor;
+    private RecordingUploader uploader;
+
+    @BeforeMethod
+    public void init()
+    {
+        executor = Executors.newFixedThreadPool(4);
+        uploader = new RecordingUploader();
+    }
+
+    @Test
+    public void contentsAreUploadedInParts()
+        throws IOException
+    {
+        final byte[] contents = new byte[1050];
+        new Random(42L).nextBytes(contents);
+
+        try (
+            final OutputStream out = new WriteBehindOutputStream(uploader,
+                PART_SIZE, 3, executor);
+        ) {
+            out.write(contents, 0, 7);
+            out.write(contents[7]);
+            out.write(contents, 8, PART_SIZE - 9);
+            // This byte completes the first part
+            out.write(contents[PART_SIZE - 1]);
+            out.write(contents, PART_SIZE, contents.length - PART_SIZE);
+        }
+
+        assertThat(uploader.completed).isEqualTo(11);
+        assertThat(uploader.parts).hasSize(11);
+        assertThat(uploader.parts.get(11).length).isEqualTo(50);
+        assertThat(uploader.contents()).isEqualTo(contents);
+        executor.shutdown();
+    }
+
+    @Test
+    public void emptyStreamCompletesWithoutParts()
+        throws IOException
+    {
+        new WriteBehindOutputStream(uploader, PART_SIZE, 1, executor).close();
+
+        assertThat(uploader.completed).isEqualTo(0);
+        assertThat(uploader.parts).isEmpty();
+        executor.shutdown();
+    }
+
+    @Test
+    public void writesBlockWhenTooManyPartsArePending()
+        throws IOException, InterruptedException
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        uploader.gate = release;
+
+        final OutputStream out = new WriteBehindOutputStream(uploader,
+            PART_SIZE, 1, executor);
+
+        out.write(new byte[PART_SIZE]);
+
+        final Thread writer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    out.write(new byte[PART_SIZE]);
+                    done.countDown();
+                } catch (IOException ignored) {
+                }
+            }
+        };
+        writer.start();
+
+        assertThat(done.await(50L, TimeUnit.MILLISECONDS)).isFalse();
+        release.countDown();
+        assertThat(done.await(5L, TimeUnit.SECONDS)).isTrue();
+
+        out.close();
+        assertThat(uploader.completed).isEqualTo(2);
+        executor.shutdown();
+    }
+
+    @Test
+    public void failuresAreReportedOnClose()
+        throws IOException
+    {
+        uploader.failingPart = 2;
+
+        final OutputStream out = new WriteBehindOutputStream(uploader,
+            PART_SIZE, 4, executor);
+
+        out.write(new byte[2 * PART_SIZE + 1]);
+
+        try {
+            out.close();
+            fail("No exception thrown!");
+        } catch (IOException e) {
+            assertThat(e).hasMessage("part 2");
+        }
+
+        assertThat(uploader.aborted.get()).isTrue();
+        assertThat(uploader.completed).isEqualTo(-1);
+        executor.shutdown();
+    }
+
+    @Test
+    public void failuresAreReportedOnWrite()
+        throws IOException, InterruptedException
+    {
+        uploader.failingPart = 1;
+
+        final OutputStream out = new WriteBehindOutputStream(uploader,
+            PART_SIZE, 1, executor);
+
+        out.write(new byte[PART_SIZE]);
+        executor.shutdown();
+        executor.awaitTermination(5L, TimeUnit.SECONDS);
+
+        try {
+            out.write(1);
+            fail("No exception thrown!");
+        } catch (IOException e) {
+            assertThat(e.getCause()).hasMessage("part 1");
+        }
+    }
+
+    @Test
+    public void interruptedWriteAbortsUploadOnClose()
+        throws IOException
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        uploader.gate = release;
+
+        final OutputStream out = new WriteBehindOutputStream(uploader,
+            PART_SIZE, 1, executor);
+
+        out.write(new byte[PART_SIZE]);
+
+        Thread.currentThread().interrupt();
+        try {
+            out.write(new byte[PART_SIZE]);
+            fail("No exception thrown!");
+        } catch (InterruptedIOException ignored) {
+        } finally {
+            Thread.interrupted();
+        }
+
+        release.countDown();
+
+        try {
+            out.close();
+            fail("No exception thrown!");
+        } catch (InterruptedIOException ignored) {
+        }
+
+        assertThat(uploader.aborted.get()).isTrue();
+        assertThat(uploader.completed).isEqualTo(-1);
+        executor.shutdown();
+    }
+
+    @Test
+    public void rejectedPartAbortsUploadOnClose()
+        throws IOException
+    {
+        final OutputStream out = new WriteBehindOutputStream(uploader,
+            PART_SIZE, 1, executor);
+
+        out.write(new byte[PART_SIZE / 2]);
+        executor.shutdownNow();
+
+        try {
+            out.close();
+            fail("No exception thrown!");
+        } catch (IOException e) {
+            assertThat(e).hasMessage("cannot submit part upload");
+        }
+
+        assertThat(uploader.aborted.get()).isTrue();
+        assertThat(uploader.completed).isEqualTo(-1);
+    }
+
+    private static final class RecordingUploader
+        implements PartUploader
+    {
+        private final Map<Integer, byte[]> parts
+            = new ConcurrentSkipListMap<>();
+        private final AtomicBoolean aborted = new AtomicBoolean();
+        private volatile int completed = -1;
+        private volatile int failingPart = -1;
+        private volatile CountDownLatch gate = null;
+
+        @Override
+        public void uploadPart(final int partNumber, final ByteBuffer data)
+            throws IOException
+        {
+            if (gate != null)
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            if (partNumber == failingPart)
+                throw new IOException("part " + partNumber);
+            final byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            parts.put(partNumber, bytes);
+        }
+
+        @Override
+        public void complete(final int partCount)
+        {
+            completed = partCount;
+        }
+
+        @Override
+        public void abort()
+        {
+            aborted.set(true);
+        }
+
+        private byte[] contents()
+            throws IOException
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (final byte[] part: parts.values())
+                out.write(part);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,804 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import com.github.fge.filesystem.exceptions.BatchOperationException;
+import com.github.fge.filesystem.provider.FileSystemProviderBase;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.fge.filesystem.CustomAssertions.shouldHaveThrown;
+import static com.github.fge.filesystem.TestUtils.bytes;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class MemoryFileSystemDriverTest
+{
+    private static final int CHUNK_SIZE = 16;
+    private static final long CAPACITY = 64L * CHUNK_SIZE;
+
+    private FileSystem fs;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        final Map<String, Object> env = new HashMap<>();
+        env.put(MemoryFileSystemRepository.CHUNK_SIZE, CHUNK_SIZE);
+        env.put(MemoryFileSystemRepository.CAPACITY, CAPACITY);
+        fs = new MemoryFileSystemProvider()
+            .newFileSystem(URI.create("memory://test/"), env);
+    }
+
+    @AfterMethod
+    public void close()
+        throws IOException
+    {
+        fs.close();
+    }
+
+    @Test
+    public void contentSpanningChunksIsReadBack()
+        throws IOException
+    {
+        final Path path = fs.getPath("/foo");
+        final byte[] content = bytes(5 * CHUNK_SIZE + 3);
+
+        Files.write(path, content);
+
+        assertThat(Files.readAllBytes(path)).isEqualTo(content);
+        assertThat(Files.size(path)).isEqualTo(content.length);
+        assertThat(Files.isRegularFile(path)).isTrue();
+    }
+
+    @Test
+    public void writesBeyondTheEndLeaveAZeroFilledGap()
+        throws IOException
+    {
+        final Path path = fs.getPath("/foo");
+
+        try (
+            final SeekableByteChannel channel = Files.newByteChannel(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ);
+        ) {
+            channel.write(ByteBuffer.wrap(bytes(2 * CHUNK_SIZE)));
+            channel.truncate(3L);
+            channel.position(CHUNK_SIZE + 2L);
+            channel.write(ByteBuffer.wrap(new byte[] { 42 }));
+
+            assertThat(channel.size()).isEqualTo(CHUNK_SIZE + 3L);
+
+            final ByteBuffer buf = ByteBuffer.allocate(CHUNK_SIZE + 3);
+            channel.position(0L);
+            assertThat(channel.read(buf)).isEqualTo(CHUNK_SIZE + 3);
+            assertThat(channel.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+
+            final byte[] expected = new byte[CHUNK_SIZE + 3];
+            System.arraycopy(bytes(3), 0, expected, 0, 3);
+            expected[CHUNK_SIZE + 2] = 42;
+            assertThat(buf.array()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void appendWritesAtTheEnd()
+        throws IOException
+    {
+        final Path path = fs.getPath("/foo");
+
+        Files.write(path, "hello".getBytes(StandardCharsets.UTF_8));
+        Files.write(path, " world".getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.APPEND);
+
+        assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8))
+            .isEqualTo("hello world");
+    }
+
+    @Test
+    public void createNewFailsOnExistingFile()
+        throws IOException
+    {
+        final Path path = fs.getPath("/foo");
+
+        Files.createFile(path);
+
+        try {
+            Files.createFile(path);
+            shouldHaveThrown(FileAlreadyExistsException.class);
+        } catch (FileAlreadyExistsException e) {
+            assertThat(e.getFile()).isEqualTo("/foo");
+        }
+    }
+
+    @Test
+    public void missingParentIsReported()
+        throws IOException
+    {
+        try {
+            Files.createFile(fs.getPath("/a/b"));
+            shouldHaveThrown(NoSuchFileException.class);
+        } catch (NoSuchFileException e) {
+            assertThat(e.getFile()).isEqualTo("/a");
+        }
+    }
+
+    @Test
+    public void directoriesAreListedInOrder()
+        throws IOException
+    {
+        final Path dir = Files.createDirectory(fs.getPath("/dir"));
+
+        Files.createFile(dir.resolve("b"));
+        Files.createDirectory(dir.resolve("c"));
+        Files.createFile(dir.resolve("a"));
+
+        final List<String> names = new ArrayList<>();
+
+        try (
+            final DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+        ) {
+            for (final Path path: stream)
+                names.add(path.toString());
+        }
+
+        assertThat(names).containsExactly("/dir/a", "/dir/b", "/dir/c");
+        assertThat(Files.isDirectory(dir.resolve("c"))).isTrue();
+    }
+
+    @Test
+    public void nonEmptyDirectoriesCannotBeDeleted()
+        throws IOException
+    {
+        final Path dir = Files.createDirectory(fs.getPath("/dir"));
+        final Path file = Files.createFile(dir.resolve("file"));
+
+        try {
+            Files.delete(dir);
+            shouldHaveThrown(DirectoryNotEmptyException.class);
+        } catch (DirectoryNotEmptyException ignored) {
+        }
+
+        Files.delete(file);
+        Files.delete(dir);
+
+        assertThat(Files.exists(dir)).isFalse();
+    }
+
+    @Test
+    public void copiesAreIndependent()
+        throws IOException
+    {
+        final Path source = fs.getPath("/source");
+        final Path target = fs.getPath("/target");
+
+        Files.write(source, bytes(CHUNK_SIZE + 1));
+        Files.copy(source, target);
+        Files.write(source, bytes(1));
+
+        assertThat(Files.readAllBytes(target))
+            .isEqualTo(bytes(CHUNK_SIZE + 1));
+        assertThat(Files.isSameFile(source, target)).isFalse();
+    }
+
+    @Test
+    public void copyReplacesOnlyWhenAsked()
+        throws IOException
+    {
+        final Path source = fs.getPath("/source");
+        final Path target = fs.getPath("/target");
+
+        Files.write(source, bytes(3));
+        Files.write(target, bytes(5));
+
+        try {
+            Files.copy(source, target);
+            shouldHaveThrown(FileAlreadyExistsException.class);
+        } catch (FileAlreadyExistsException ignored) {
+        }
+
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+
+        assertThat(Files.readAllBytes(target)).isEqualTo(bytes(3));
+    }
+
+    @Test
+    public void copyAttributesIsHonored()
+        throws IOException
+    {
+        final Path source = fs.getPath("/source");
+        final FileTime time = FileTime.fromMillis(1000L);
+
+        Files.createFile(source);
+        Files.setLastModifiedTime(source, time);
+        Files.setPosixFilePermissions(source,
+            PosixFilePermissions.fromString("rwx------"));
+
+        final Path plain = Files.copy(source, fs.getPath("/plain"));
+        final Path copy = Files.copy(source, fs.getPath("/copy"),
+            StandardCopyOption.COPY_ATTRIBUTES);
+
+        assertThat(Files.getLastModifiedTime(plain)).isNotEqualTo(time);
+        assertThat(Files.getLastModifiedTime(copy)).isEqualTo(time);
+        assertThat(Files.getPosixFilePermissions(copy))
+            .isEqualTo(PosixFilePermissions.fromString("rwx------"));
+    }
+
+    @Test
+    public void moveRelinksTheSameNode()
+        throws IOException
+    {
+        final Path dir = Files.createDirectory(fs.getPath("/dir"));
+        final Path file = Files.createFile(dir.resolve("file"));
+        final Object key = Files.readAttributes(file, PosixFileAttributes.class)
+            .fileKey();
+
+        final Path target = fs.getPath("/moved");
+        Files.move(dir, target, StandardCopyOption.ATOMIC_MOVE);
+
+        assertThat(Files.exists(dir)).isFalse();
+        assertThat(Files.readAttributes(target.resolve("file"),
+            PosixFileAttributes.class).fileKey()).isSameAs(key);
+    }
+
+    @Test
+    public void copyAcrossFileSystemsCopiesAttributes()
+        throws IOException
+    {
+        final Path source = fs.getPath("/source");
+        final FileTime time = FileTime.fromMillis(1000L);
+
+        Files.write(source, bytes(3 * CHUNK_SIZE));
+        Files.setLastModifiedTime(source, time);
+        Files.setPosixFilePermissions(source,
+            PosixFilePermissions.fromString("rwx------"));
+
+        try (
+            final FileSystem other = newOtherFileSystem();
+        ) {
+            final Path target = Files.copy(source, other.getPath("/target"),
+                StandardCopyOption.COPY_ATTRIBUTES);
+
+            assertThat(Files.readAllBytes(target))
+                .isEqualTo(bytes(3 * CHUNK_SIZE));
+            assertThat(Files.getLastModifiedTime(target)).isEqualTo(time);
+            assertThat(Files.getPosixFilePermissions(target))
+                .isEqualTo(PosixFilePermissions.fromString("rwx------"));
+            assertThat(Files.exists(source)).isTrue();
+        }
+    }
+
+    @Test
+    public void moveAcrossFileSystemsDeletesSource()
+        throws IOException
+    {
+        final Path source = fs.getPath("/source");
+        final FileTime time = FileTime.fromMillis(1000L);
+
+        Files.write(source, bytes(3));
+        Files.setLastModifiedTime(source, time);
+
+        try (
+            final FileSystem other = newOtherFileSystem();
+        ) {
+            final Path target = other.getPath("/target");
+
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                shouldHaveThrown(AtomicMoveNotSupportedException.class);
+            } catch (AtomicMoveNotSupportedException ignored) {
+            }
+
+            Files.move(source, target);
+
+            assertThat(Files.exists(source)).isFalse();
+            assertThat(Files.readAllBytes(target)).isEqualTo(bytes(3));
+            assertThat(Files.getLastModifiedTime(target)).isEqualTo(time);
+        }
+    }
+
+    @Test
+    public void nonEmptyDirectoryCannotBeMovedAcrossFileSystems()
+        throws IOException
+    {
+        final Path dir = Files.createDirectory(fs.getPath("/dir"));
+        Files.createFile(dir.resolve("file"));
+
+        try (
+            final FileSystem other = newOtherFileSystem();
+        ) {
+            try {
+                Files.move(dir, other.getPath("/dir"));
+                shouldHaveThrown(DirectoryNotEmptyException.class);
+            } catch (DirectoryNotEmptyException ignored) {
+            }
+
+            assertThat(Files.exists(other.getPath("/dir"))).isFalse();
+            assertThat(Files.exists(dir.resolve("file"))).isTrue();
+        }
+    }
+
+    @Test
+    public void directoryCannotBeMovedIntoItself()
+        throws IOException
+    {
+        final Path dir = Files.createDirectory(fs.getPath("/dir"));
+
+        try {
+            Files.move(dir, dir.resolve("sub"));
+            shouldHaveThrown(FileSystemException.class);
+        } catch (FileSystemException e) {
+            assertThat(e.getReason())
+                .isEqualTo("cannot move a directory into itself");
+        }
+
+        assertThat(Files.isDirectory(dir)).isTrue();
+    }
+
+    @Test
+    public void deleteTreeRemovesWholeSubtree()
+        throws IOException
+    {
+        final Path dir = createTree(fs.getPath("/dir"));
+
+        provider().deleteTree(dir);
+
+        assertThat(Files.exists(dir)).isFalse();
+        assertThat(Files.isDirectory(fs.getPath("/"))).isTrue();
+
+        try {
+            provider().deleteTree(dir);
+            shouldHaveThrown(NoSuchFileException.class);
+        } catch (NoSuchFileException ignored) {
+        }
+    }
+
+    @Test
+    public void copyTreeCopiesWholeSubtree()
+        throws IOException
+    {
+        final Path dir = createTree(fs.getPath("/dir"));
+        final Path target = fs.getPath("/copy");
+
+        provider().copyTree(dir, target);
+
+        assertTree(target);
+        Files.write(target.resolve("sub/file"), bytes(1));
+        assertTree(dir);
+
+        try {
+            provider().copyTree(dir, target);
+            shouldHaveThrown(FileAlreadyExistsException.class);
+        } catch (FileAlreadyExistsException ignored) {
+        }
+    }
+
+    @Test
+    public void copyTreeAcrossFileSystems()
+        throws IOException
+    {
+        final Path dir = createTree(fs.getPath("/dir"));
+
+        try (
+            final FileSystem other = newOtherFileSystem();
+        ) {
+            final Path target = other.getPath("/copy");
+
+            provider().copyTree(dir, target);
+
+            assertTree(target);
+            provider().deleteTree(target);
+            assertThat(Files.exists(target)).isFalse();
+
+            provider().copyTree(dir.resolve("file"), target);
+            assertThat(Files.readAllBytes(target))
+                .isEqualTo(bytes(2 * CHUNK_SIZE));
+        }
+    }
+
+    @Test
+    public void directoryCannotBeCopiedIntoItself()
+        throws IOException
+    {
+        final Path dir = createTree(fs.getPath("/dir"));
+
+        try {
+            provider().copyTree(dir, dir.resolve("sub/copy"));
+            shouldHaveThrown(FileSystemException.class);
+        } catch (FileSystemException e) {
+            assertThat(e.getReason())
+                .isEqualTo("cannot copy a directory into itself");
+        }
+
+        assertTree(dir);
+    }
+
+    @Test
+    public void moveAcrossFileSystemsWithReadOnlyTimes()
+        throws IOException
+    {
+        final FileSystemProvider provider
+            = new MemoryFileSystemProvider(new ReadOnlyTimesFactoryProvider());
+        final Map<String, Object> env = Collections.emptyMap();
+
+        try (
+            final FileSystem fs1
+                = provider.newFileSystem(URI.create("memory://one/"), env);
+            final FileSystem fs2
+                = provider.newFileSystem(URI.create("memory://two/"), env);
+        ) {
+            final Path file = fs1.getPath("/file");
+            final Path dir = fs1.getPath("/dir");
+
+            Files.write(file, bytes(3));
+            Files.createDirectory(dir);
+
+            Files.move(file, fs2.getPath("/file"));
+            Files.move(dir, fs2.getPath("/dir"));
+
+            assertThat(Files.exists(file)).isFalse();
+            assertThat(Files.exists(dir)).isFalse();
+            assertThat(Files.readAllBytes(fs2.getPath("/file")))
+                .isEqualTo(bytes(3));
+            assertThat(Files.isDirectory(fs2.getPath("/dir"))).isTrue();
+        }
+    }
+
+    @Test
+    public void batchDeleteReportsPartialFailures()
+        throws IOException
+    {
+        final Path dir = createTree(fs.getPath("/dir"));
+        final Path missing = fs.getPath("/missing");
+        final Path sub = dir.resolve("sub");
+        final List<Path> paths = Arrays.asList(dir.resolve("file"), missing,
+            sub.resolve("file"), sub.resolve("empty"), sub);
+
+        try {
+            provider().batchDelete(paths);
+            shouldHaveThrown(BatchOperationException.class);
+        } catch (BatchOperationException e) {
+            assertThat(e.getTotal()).isEqualTo(paths.size());
+            assertThat(e.getFailures().keySet())
+                .containsExactly(missing);
+            assertThat(e.getFailures().get(missing))
+                .isInstanceOf(NoSuchFileException.class);
+        }
+
+        try (
+            final DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+        ) {
+            assertThat(stream).isEmpty();
+        }
+    }
+
+    @Test
+    public void batchCreateDirectoryCreatesInOrder()
+        throws IOException
+    {
+        final Path dir = fs.getPath("/dir");
+        final Path sub = dir.resolve("sub");
+
+        provider().batchCreateDirectory(Arrays.asList(dir, sub));
+
+        assertThat(Files.isDirectory(sub)).isTrue();
+
+        try {
+            provider().batchCreateDirectory(
+                Arrays.asList(dir, dir.resolve("other")));
+            shouldHaveThrown(BatchOperationException.class);
+        } catch (BatchOperationException e) {
+            assertThat(e.getFailures().keySet()).containsExactly(dir);
+            assertThat(e.getFailures().get(dir))
+                .isInstanceOf(FileAlreadyExistsException.class);
+        }
+
+        assertThat(Files.isDirectory(dir.resolve("other"))).isTrue();
+    }
+
+    @Test
+    public void batchCreateDirectoryHonoursPermissions()
+        throws IOException
+    {
+        final Path dir = fs.getPath("/dir");
+        final Path sub = dir.resolve("sub");
+
+        provider().batchCreateDirectory(Arrays.asList(dir, sub),
+            PosixFilePermissions.asFileAttribute(
+                PosixFilePermissions.fromString("rwx------")));
+
+        assertThat(Files.getPosixFilePermissions(sub))
+            .isEqualTo(PosixFilePermissions.fromString("rwx------"));
+    }
+
+    @Test
+    public void createDirectoryHonoursPermissions()
+        throws IOException
+    {
+        final Path dir = Files.createDirectory(fs.getPath("/dir"),
+            PosixFilePermissions.asFileAttribute(
+                PosixFilePermissions.fromString("rwx------")));
+
+        assertThat(Files.getPosixFilePermissions(dir))
+            .isEqualTo(PosixFilePermissions.fromString("rwx------"));
+    }
+
+    @Test
+    public void batchSetAttributeSetsAllPaths()
+        throws IOException
+    {
+        final Path dir = createTree(fs.getPath("/dir"));
+        final List<Path> paths
+            = Arrays.asList(dir.resolve("file"), dir.resolve("sub/file"));
+        final FileTime time = FileTime.fromMillis(1000L);
+
+        provider().batchSetAttribute(paths, "basic:lastModifiedTime", time);
+
+        for (final Path path: paths)
+            assertThat(Files.getLastModifiedTime(path)).isEqualTo(time);
+    }
+
+    @Test
+    public void posixAttributesCanBeSetAndRead()
+        throws IOException
+    {
+        final Path path = fs.getPath("/foo");
+
+        Files.createFile(path, PosixFilePermissions.asFileAttribute(
+            PosixFilePermissions.fromString("rw-------")));
+
+        final UserPrincipalLookupService lookup
+            = fs.getUserPrincipalLookupService();
+        final UserPrincipal owner = lookup.lookupPrincipalByName("alice");
+        final GroupPrincipal group = lookup.lookupPrincipalByGroupName("staff");
+        final PosixFileAttributeView view = Files.getFileAttributeView(path,
+            PosixFileAttributeView.class);
+
+        assertThat(view.readAttributes().permissions())
+            .isEqualTo(PosixFilePermissions.fromString("rw-------"));
+
+        view.setOwner(owner);
+        view.setGroup(group);
+
+        final PosixFileAttributes attrs
+            = Files.readAttributes(path, PosixFileAttributes.class);
+        assertThat(attrs.owner()).isEqualTo(owner);
+        assertThat(attrs.group()).isEqualTo(group);
+        assertThat(Files.getAttribute(path, "posix:group")).isEqualTo(group);
+        assertThat(Files.getOwner(path)).isEqualTo(owner);
+    }
+
+    @Test
+    public void initialPermissionsAreChecked()
+        throws IOException
+    {
+        final Path path = fs.getPath("/foo");
+        final Set<PosixFilePermission> permissions
+            = PosixFilePermissions.fromString("rw-------");
+
+        Files.createFile(path, PosixFilePermissions.asFileAttribute(
+            permissions));
+        permissions.add(PosixFilePermission.OTHERS_WRITE);
+
+        assertThat(Files.getPosixFilePermissions(path))
+            .isEqualTo(PosixFilePermissions.fromString("rw-------"));
+
+        final FileAttribute<Set<String>> attr
+            = new FileAttribute<Set<String>>()
+        {
+            @Override
+            public String name()
+            {
+                return "posix:permissions";
+            }
+
+            @Override
+            public Set<String> value()
+            {
+                return Collections.singleton("rw-------");
+            }
+        };
+
+        try {
+            Files.createFile(fs.getPath("/bar"), attr);
+            shouldHaveThrown(IllegalArgumentException.class);
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        assertThat(Files.exists(fs.getPath("/bar"))).isFalse();
+    }
+
+    @Test
+    public void sameFileIsDetectedThroughDifferentPaths()
+        throws IOException
+    {
+        Files.createDirectory(fs.getPath("/dir"));
+        Files.createFile(fs.getPath("/foo"));
+
+        assertThat(Files.isSameFile(fs.getPath("/foo"),
+            fs.getPath("/dir/../foo"))).isTrue();
+    }
+
+    @Test
+    public void fullFileSystemRejectsWholeWrites()
+        throws IOException
+    {
+        final Path path = fs.getPath("/foo");
+        final FileStore store = Files.getFileStore(path.getParent());
+
+        Files.write(path, bytes(CHUNK_SIZE));
+
+        assertThat(store.getTotalSpace()).isEqualTo(CAPACITY);
+        assertThat(store.getUsableSpace()).isEqualTo(CAPACITY - CHUNK_SIZE);
+
+        try {
+            Files.write(path, bytes((int) CAPACITY),
+                StandardOpenOption.APPEND);
+            shouldHaveThrown(FileSystemException.class);
+        } catch (FileSystemException e) {
+            assertThat(e.getReason()).isEqualTo("filesystem is full");
+        }
+
+        assertThat(Files.size(path)).isEqualTo(CHUNK_SIZE);
+        assertThat(store.getUsableSpace()).isEqualTo(CAPACITY - CHUNK_SIZE);
+
+        Files.delete(path);
+
+        assertThat(store.getUsableSpace()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    public void deletedFileRemainsReadableThroughOpenChannels()
+        throws IOException
+    {
+        final Path path = fs.getPath("/foo");
+        final FileStore store = Files.getFileStore(path.getParent());
+
+        Files.write(path, bytes(3));
+
+        try (
+            final SeekableByteChannel channel = Files.newByteChannel(path);
+        ) {
+            Files.delete(path);
+
+            final ByteBuffer buf = ByteBuffer.allocate(3);
+            assertThat(channel.read(buf)).isEqualTo(3);
+            assertThat(buf.array()).isEqualTo(bytes(3));
+            assertThat(store.getUsableSpace())
+                .isEqualTo(CAPACITY - CHUNK_SIZE);
+        }
+
+        assertThat(Files.exists(path)).isFalse();
+        assertThat(store.getUsableSpace()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    public void concurrentCreationsAreAllVisible()
+        throws Exception
+    {
+        final Path dir = Files.createDirectory(fs.getPath("/dir"));
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<Void>> futures = new ArrayList<>();
+        final int count = 32;
+
+        try {
+            for (int i = 0; i < count; i++) {
+                final Path path = dir.resolve("file" + i);
+                futures.add(executor.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                        throws IOException
+                    {
+                        Files.createFile(path);
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future: futures)
+                future.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int found = 0;
+
+        try (
+            final DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+        ) {
+            for (final Path ignored: stream)
+                found++;
+        }
+
+        assertThat(found).isEqualTo(count);
+    }
+
+    private FileSystemProviderBase provider()
+    {
+        return (FileSystemProviderBase) fs.provider();
+    }
+
+    /*
+     * Creates dir/file, dir/sub/file and dir/sub/empty/
+     */
+    private static Path createTree(final Path dir)
+        throws IOException
+    {
+        Files.createDirectories(dir.resolve("sub/empty"));
+        Files.write(dir.resolve("file"), bytes(2 * CHUNK_SIZE));
+        Files.write(dir.resolve("sub/file"), bytes(3));
+        return dir;
+    }
+
+    private static void assertTree(final Path dir)
+        throws IOException
+    {
+        assertThat(Files.readAllBytes(dir.resolve("file")))
+            .isEqualTo(bytes(2 * CHUNK_SIZE));
+        assertThat(Files.readAllBytes(dir.resolve("sub/file")))
+            .isEqualTo(bytes(3));
+        assertThat(Files.isDirectory(dir.resolve("sub/empty"))).isTrue();
+    }
+
+    private FileSystem newOtherFileSystem()
+        throws IOException
+    {
+        return fs.provider().newFileSystem(URI.create("memory://other/"),
+            Collections.<String, Object>emptyMap());
+    }
+}
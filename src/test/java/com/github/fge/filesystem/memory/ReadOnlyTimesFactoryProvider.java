@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.memory;
+
+import com.github.fge.filesystem.attributes.FileAttributesFactory;
+import com.github.fge.filesystem.attributes.provider.BasicFileAttributesProvider;
+
+import java.io.IOException;
+
+/**
+ * Memory filesystems whose basic view cannot set times
+ *
+ * <p>This mimics the many backends whose basic view is built on {@link
+ * BasicFileAttributesProvider} without overriding {@link
+ * BasicFileAttributesProvider#setTimes setTimes()}. No other view is
+ * supported.</p>
+ */
+public final class ReadOnlyTimesFactoryProvider
+    extends MemoryFileSystemFactoryProvider
+{
+    public ReadOnlyTimesFactoryProvider()
+    {
+        setAttributesFactory(new FileAttributesFactory()
+        {
+            {
+                setMetadataClass(MemoryNode.class);
+                addImplementation("basic",
+                    ReadOnlyTimesAttributesProvider.class);
+            }
+        });
+    }
+
+    public static final class ReadOnlyTimesAttributesProvider
+        extends BasicFileAttributesProvider
+    {
+        private final MemoryNode node;
+
+        public ReadOnlyTimesAttributesProvider(final MemoryNode node)
+            throws IOException
+        {
+            this.node = node;
+        }
+
+        @Override
+        public boolean isRegularFile()
+        {
+            return !node.isDirectory();
+        }
+
+        @Override
+        public boolean isDirectory()
+        {
+            return node.isDirectory();
+        }
+
+        @Override
+        public long size()
+        {
+            return node.getSize();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.metrics;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public final class InstrumentedFileSystemDriverTest
+{
+    private static final Set<OpenOption> NO_OPTIONS = Collections.emptySet();
+
+    private FileSystemDriver delegate;
+    private Path path;
+    private InstrumentedFileSystemDriver driver;
+
+    @BeforeMethod
+    public void init()
+    {
+        delegate = mock(FileSystemDriver.class);
+        path = mock(Path.class);
+        driver = InstrumentedFileSystemDriver.wrap(delegate);
+    }
+
+    @Test
+    public void wrappingTwiceReturnsSameDriver()
+    {
+        assertThat(InstrumentedFileSystemDriver.wrap(driver)).isSameAs(driver);
+    }
+
+    @Test
+    public void callsAndErrorsAreCounted()
+        throws IOException
+    {
+        doThrow(new NoSuchFileException("foo")).when(delegate).delete(path);
+
+        driver.checkAccess(path);
+        driver.checkAccess(path);
+
+        try {
+            driver.delete(path);
+            fail("No exception thrown!");
+        } catch (NoSuchFileException ignored) {
+        }
+
+        final DriverMetrics metrics = driver.getMetrics();
+
+        assertThat(metrics.getCallCount(DriverOperation.CHECK_ACCESS))
+            .isEqualTo(2L);
+        assertThat(metrics.getErrorCount(DriverOperation.CHECK_ACCESS))
+            .isEqualTo(0L);
+        assertThat(metrics.getLatencies(DriverOperation.CHECK_ACCESS)
+            .getCount()).isEqualTo(2L);
+        assertThat(metrics.getCallCount(DriverOperation.DELETE))
+            .isEqualTo(1L);
+        assertThat(metrics.getErrorCount(DriverOperation.DELETE))
+            .isEqualTo(1L);
+    }
+
+    @Test
+    public void bytesAreCountedAndListenersNotified()
+        throws IOException
+    {
+        final DriverMetricsListener listener
+            = mock(DriverMetricsListener.class);
+
+        when(delegate.newInputStream(path, NO_OPTIONS))
+            .thenReturn(new ByteArrayInputStream(new byte[10]));
+        when(delegate.newOutputStream(path, NO_OPTIONS))
+            .thenReturn(new ByteArrayOutputStream());
+        driver.addListener(listener);
+
+        try (
+            final InputStream in = driver.newInputStream(path, NO_OPTIONS);
+        ) {
+            assertThat(in.read(new byte[8])).isEqualTo(8);
+            in.read();
+            in.read(new byte[8]);
+            assertThat(in.read()).isEqualTo(-1);
+        }
+
+        try (
+            final OutputStream out = driver.newOutputStream(path, NO_OPTIONS);
+        ) {
+            out.write(new byte[5]);
+            out.write(1);
+        }
+
+        assertThat(driver.getMetrics().getBytesRead()).isEqualTo(10L);
+        assertThat(driver.getMetrics().getBytesWritten()).isEqualTo(6L);
+        verify(listener).bytesRead(8L);
+        verify(listener).bytesWritten(5L);
+
+        driver.removeListener(listener);
+        driver.newInputStream(path, NO_OPTIONS);
+        verify(listener).operationCompleted(
+            eq(DriverOperation.NEW_INPUT_STREAM), anyLong(), eq(true));
+    }
+
+    @Test
+    public void metricsAreExposedThroughJmx()
+        throws IOException, JMException
+    {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = driver.registerMBean("test://");
+
+        driver.isHidden(path);
+
+        assertThat(server.isRegistered(name)).isTrue();
+        assertThat(server.getAttribute(name, "BytesRead")).isEqualTo(0L);
+
+        try {
+            driver.registerMBean("test://");
+            fail("No exception thrown!");
+        } catch (IllegalStateException ignored) {
+        }
+
+        driver.close();
+        assertThat(server.isRegistered(name)).isFalse();
+        verify(delegate).close();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.metrics;
+
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class LatencyHistogramTest
+{
+    @Test
+    public void bucketsHaveBoundedRelativeError()
+    {
+        final Random random = new Random(42L);
+        long value;
+        long upper;
+
+        for (int i = 0; i < 10000; i++) {
+            value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+            upper = LatencyHistogram.upperBound(
+                LatencyHistogram.bucketOf(value));
+            assertThat(upper).isGreaterThanOrEqualTo(value);
+            assertThat((double) (upper - value))
+                .isLessThanOrEqualTo(value / 16.0);
+        }
+
+        assertThat(LatencyHistogram.upperBound(
+            LatencyHistogram.bucketOf(Long.MAX_VALUE)))
+            .isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void percentilesAreComputed()
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        for (long i = 1L; i <= 1000L; i++)
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+
+        assertThat(histogram.getCount()).isEqualTo(1000L);
+        assertThat(histogram.getMax(TimeUnit.MICROSECONDS)).isEqualTo(1000L);
+        assertThat(histogram.getMean(TimeUnit.NANOSECONDS))
+            .isEqualTo(500500L);
+        assertThat(histogram.getValueAtPercentile(50.0, TimeUnit.MICROSECONDS))
+            .isBetween(500L, 531L);
+        assertThat(histogram.getValueAtPercentile(99.0, TimeUnit.MICROSECONDS))
+            .isBetween(990L, 1000L);
+        assertThat(histogram.getValueAtPercentile(100.0,
+            TimeUnit.MICROSECONDS)).isEqualTo(1000L);
+
+        histogram.reset();
+        assertThat(histogram.getCount()).isEqualTo(0L);
+        assertThat(histogram.getValueAtPercentile(50.0, TimeUnit.NANOSECONDS))
+            .isEqualTo(0L);
+    }
+}
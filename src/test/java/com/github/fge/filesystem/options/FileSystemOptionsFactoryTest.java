@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.options;
+
+import com.github.fge.filesystem.exceptions.IllegalOptionSetException;
+import com.github.fge.filesystem.exceptions.UnsupportedOptionException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.file.CopyOption;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.github.fge.filesystem.CustomAssertions.shouldHaveThrown;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class FileSystemOptionsFactoryTest
+{
+    private MyOptionsFactory factory;
+
+    @BeforeMethod
+    public void init()
+    {
+        factory = new MyOptionsFactory();
+    }
+
+    @Test
+    public void readOptionsAlwaysIncludeRead()
+    {
+        assertThat(factory.compileReadOptions())
+            .containsOnly(StandardOpenOption.READ);
+    }
+
+    @Test
+    public void optionsSupportedForBothReadAndWriteAreAccepted()
+    {
+        assertThat(factory.compileReadOptions(StandardOpenOption.SPARSE))
+            .containsOnly(StandardOpenOption.READ, StandardOpenOption.SPARSE);
+        assertThat(factory.compileWriteOptions(StandardOpenOption.SPARSE))
+            .containsOnly(StandardOpenOption.WRITE, StandardOpenOption.SPARSE);
+    }
+
+    @Test
+    public void writeOptionsAreIllegalForRead()
+    {
+        try {
+            factory.compileReadOptions(StandardOpenOption.CREATE);
+            shouldHaveThrown(IllegalOptionSetException.class);
+        } catch (IllegalOptionSetException ignored) {
+        }
+    }
+
+    @Test
+    public void unregisteredCopyOptionIsRejected()
+    {
+        try {
+            factory.compileCopyOptions(LinkOption.NOFOLLOW_LINKS);
+            shouldHaveThrown(UnsupportedOptionException.class);
+        } catch (UnsupportedOptionException e) {
+            assertThat(e).hasMessage(LinkOption.NOFOLLOW_LINKS.toString());
+        }
+    }
+
+    @Test
+    public void atomicMoveAndCopyAttributesAreSupportedByDefault()
+    {
+        assertThat(factory.compileCopyOptions(StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.COPY_ATTRIBUTES))
+            .containsOnly(StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.COPY_ATTRIBUTES);
+    }
+
+    @Test
+    public void copyOptionsAreTranslated()
+    {
+        assertThat(factory.toWriteOptions(Collections.<CopyOption>singleton(
+            StandardCopyOption.REPLACE_EXISTING)))
+            .containsOnly(StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        assertThat(factory.toReadOptions(Collections.<CopyOption>singleton(
+            StandardCopyOption.REPLACE_EXISTING)))
+            .containsOnly(StandardOpenOption.READ);
+    }
+
+    @Test
+    public void registrationIsVisibleBeforeFreeze()
+    {
+        factory.register(LinkOption.NOFOLLOW_LINKS);
+
+        assertThat(factory.compileCopyOptions(LinkOption.NOFOLLOW_LINKS))
+            .containsOnly(LinkOption.NOFOLLOW_LINKS);
+    }
+
+    @Test
+    public void registrationFailsAfterFreeze()
+    {
+        factory.freeze();
+        assertThat(factory.isFrozen()).isTrue();
+
+        try {
+            factory.register(LinkOption.NOFOLLOW_LINKS);
+            shouldHaveThrown(IllegalStateException.class);
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessage("options factory is frozen");
+        }
+
+        // Lookups still work
+        assertThat(factory.compileWriteOptions(new OpenOption[0]))
+            .containsOnly(StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    @Test
+    public void readChannelOptionsIgnoreWriteOnlyOptions()
+    {
+        assertThat(factory.compileChannelOptions(
+            Collections.singleton(StandardOpenOption.CREATE)))
+            .containsOnly(StandardOpenOption.READ);
+    }
+
+    @Test
+    public void writeChannelOptionsAreKept()
+    {
+        final Set<OpenOption> options = new HashSet<OpenOption>(Arrays.asList(
+            StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE));
+
+        assertThat(factory.compileChannelOptions(options))
+            .isEqualTo(options);
+    }
+
+    @Test
+    public void appendChannelOptionsImplyWrite()
+    {
+        factory.registerWrite(StandardOpenOption.APPEND);
+
+        assertThat(factory.compileChannelOptions(
+            Collections.singleton(StandardOpenOption.APPEND)))
+            .containsOnly(StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+
+        try {
+            factory.compileChannelOptions(EnumSet.of(StandardOpenOption.APPEND,
+                StandardOpenOption.READ));
+            shouldHaveThrown(IllegalOptionSetException.class);
+        } catch (IllegalOptionSetException ignored) {
+        }
+    }
+
+    @Test
+    public void unsupportedChannelOptionsAreRejected()
+    {
+        try {
+            factory.compileChannelOptions(
+                Collections.singleton(StandardOpenOption.DSYNC));
+            shouldHaveThrown(UnsupportedOptionException.class);
+        } catch (UnsupportedOptionException e) {
+            assertThat(e.getMessage()).isEqualTo("DSYNC");
+        }
+    }
+
+    private static final class MyOptionsFactory
+        extends FileSystemOptionsFactory
+    {
+        void register(final CopyOption option)
+        {
+            addCopyOption(option);
+        }
+
+        void registerWrite(final OpenOption option)
+        {
+            addWriteOpenOption(option);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.provider;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import com.github.fge.filesystem.memory.MemoryFileSystemFactoryProvider;
+import com.github.fge.filesystem.memory.MemoryFileSystemProvider;
+import com.github.fge.filesystem.memory.ReadOnlyTimesFactoryProvider;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.fge.filesystem.CustomAssertions.shouldHaveThrown;
+import static com.github.fge.filesystem.TestUtils.bytes;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public final class BulkCopyTest
+{
+    private static final FileTime TIME = FileTime.fromMillis(1000L);
+
+    private FileSystem fs;
+    private FileSystem other;
+    private Path source;
+    private Path target;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        final FileSystemProvider provider = new MemoryFileSystemProvider();
+
+        fs = provider.newFileSystem(URI.create("memory://source/"),
+            Collections.<String, Object>emptyMap());
+        other = provider.newFileSystem(URI.create("memory://target/"),
+            Collections.<String, Object>emptyMap());
+
+        source = Files.createDirectories(fs.getPath("/dir/sub/empty"))
+            .getParent().getParent();
+        Files.write(source.resolve("file"), bytes(100));
+        Files.write(source.resolve("sub/file"), bytes(10));
+        Files.setLastModifiedTime(source.resolve("file"), TIME);
+        Files.setPosixFilePermissions(source.resolve("sub/file"),
+            PosixFilePermissions.fromString("rwx------"));
+
+        target = other.getPath("/copy");
+    }
+
+    @AfterMethod
+    public void close()
+        throws IOException
+    {
+        fs.close();
+        other.close();
+    }
+
+    @Test
+    public void subtreeIsCopiedWithAttributes()
+        throws IOException
+    {
+        final BulkCopy copy = new BulkCopy(source, target, 2);
+
+        copy.run();
+
+        assertThat(Files.readAllBytes(target.resolve("file")))
+            .isEqualTo(bytes(100));
+        assertThat(Files.readAllBytes(target.resolve("sub/file")))
+            .isEqualTo(bytes(10));
+        assertThat(Files.isDirectory(target.resolve("sub/empty"))).isTrue();
+        assertThat(Files.getLastModifiedTime(target.resolve("file")))
+            .isEqualTo(TIME);
+        assertThat(Files.getPosixFilePermissions(target.resolve("sub/file")))
+            .isEqualTo(PosixFilePermissions.fromString("rwx------"));
+
+        final BulkCopyProgress progress = copy.getProgress();
+        assertThat(progress.getDirectories()).isEqualTo(3L);
+        assertThat(progress.getFilesCopied()).isEqualTo(2L);
+        assertThat(progress.getFilesSkipped()).isEqualTo(0L);
+        assertThat(progress.getBytesCopied()).isEqualTo(110L);
+    }
+
+    @Test
+    public void unchangedFilesAreSkipped()
+        throws IOException
+    {
+        new BulkCopy(source, target, 2).run();
+
+        Files.write(source.resolve("sub/file"), bytes(20));
+
+        final BulkCopy copy = new BulkCopy(source, target, 2);
+        copy.run();
+
+        assertThat(Files.readAllBytes(target.resolve("sub/file")))
+            .isEqualTo(bytes(20));
+
+        final BulkCopyProgress progress = copy.getProgress();
+        assertThat(progress.getDirectories()).isEqualTo(3L);
+        assertThat(progress.getFilesCopied()).isEqualTo(1L);
+        assertThat(progress.getFilesSkipped()).isEqualTo(1L);
+        assertThat(progress.getBytesCopied()).isEqualTo(20L);
+    }
+
+    @Test
+    public void filesAreCopiedIfTargetCannotSetTimes()
+        throws IOException
+    {
+        try (
+            final FileSystem readOnlyTimes = new MemoryFileSystemProvider(
+                new ReadOnlyTimesFactoryProvider()).newFileSystem(
+                URI.create("memory://readonlytimes/"),
+                Collections.<String, Object>emptyMap());
+        ) {
+            final Path copyTarget = readOnlyTimes.getPath("/copy");
+
+            new BulkCopy(source, copyTarget, 2).run();
+
+            assertThat(Files.readAllBytes(copyTarget.resolve("file")))
+                .isEqualTo(bytes(100));
+            assertThat(Files.readAllBytes(copyTarget.resolve("sub/file")))
+                .isEqualTo(bytes(10));
+
+            // Same size, different contents
+            final byte[] changed = bytes(10);
+            changed[0] = 42;
+            Files.write(source.resolve("sub/file"), changed);
+
+            final BulkCopy copy = new BulkCopy(source, copyTarget, 2);
+            copy.run();
+
+            assertThat(Files.readAllBytes(copyTarget.resolve("sub/file")))
+                .isEqualTo(changed);
+
+            final BulkCopyProgress progress = copy.getProgress();
+            assertThat(progress.getFilesCopied()).isEqualTo(2L);
+            assertThat(progress.getFilesSkipped()).isEqualTo(0L);
+        }
+    }
+
+    @Test
+    public void workersRunOnTreeExecutorOfSource()
+        throws IOException
+    {
+        final AtomicInteger executed = new AtomicInteger();
+        final Executor executor = new Executor()
+        {
+            @Override
+            public void execute(final Runnable command)
+            {
+                executed.incrementAndGet();
+                command.run();
+            }
+        };
+
+        try (
+            final FileSystem withExecutor = new MemoryFileSystemProvider(
+                new MemoryFileSystemFactoryProvider()
+                {
+                    {
+                        setTreeExecutor(executor);
+                    }
+                }).newFileSystem(URI.create("memory://executor/"),
+                Collections.<String, Object>emptyMap());
+        ) {
+            final Path copySource = withExecutor.getPath("/dir");
+
+            Files.createDirectory(copySource);
+            Files.write(copySource.resolve("file"), bytes(10));
+
+            new BulkCopy(copySource, target, 2).run();
+
+            assertThat(Files.readAllBytes(target.resolve("file")))
+                .isEqualTo(bytes(10));
+            assertThat(executed.get()).isGreaterThan(0);
+        }
+    }
+
+    @Test
+    public void copyCanOnlyRunOnce()
+        throws IOException
+    {
+        final BulkCopy copy = new BulkCopy(source, target, 1);
+
+        copy.run();
+
+        try {
+            copy.run();
+            shouldHaveThrown(IllegalStateException.class);
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessage("bulk copy already run");
+        }
+    }
+
+    @Test
+    public void directoryCannotBeCopiedIntoItself()
+        throws IOException
+    {
+        try {
+            new BulkCopy(source, source.resolve("sub/copy"), 1).run();
+            shouldHaveThrown(FileSystemException.class);
+        } catch (FileSystemException e) {
+            assertThat(e.getReason())
+                .isEqualTo("cannot copy a directory into itself");
+        }
+    }
+
+    @Test
+    public void linkLoopsAreDetected()
+        throws IOException
+    {
+        final FileSystemRepository repository
+            = mock(FileSystemRepository.class);
+        final FileSystemDriver src = mock(FileSystemDriver.class);
+        final FileSystemDriver dst = mock(FileSystemDriver.class);
+        final FileSystem mockFs = mock(FileSystem.class);
+        final Path from = mock(Path.class);
+        final Path to = mock(Path.class);
+        final Path link = mock(Path.class);
+        final BasicFileAttributes attrs = mock(BasicFileAttributes.class);
+        @SuppressWarnings("unchecked")
+        final DirectoryStream<Path> stream = mock(DirectoryStream.class);
+
+        when(repository.getFactoryProvider())
+            .thenReturn(new FileSystemFactoryProvider());
+        when(repository.getDriver(from)).thenReturn(src);
+        when(repository.getDriver(to)).thenReturn(dst);
+
+        final FileSystemProvider provider = new FileSystemProviderBase(
+            repository)
+        {
+        };
+
+        when(mockFs.provider()).thenReturn(provider);
+        when(from.getFileSystem()).thenReturn(mockFs);
+        when(to.getFileSystem()).thenReturn(mockFs);
+        when(to.resolve(anyString())).thenReturn(to);
+        when(link.getFileName()).thenReturn(link);
+        when(link.toString()).thenReturn("link");
+        when(attrs.isDirectory()).thenReturn(true);
+        when(src.readAttributes(any(Path.class),
+            eq(BasicFileAttributes.class))).thenReturn(attrs);
+        when(dst.readAttributes(any(Path.class),
+            eq(BasicFileAttributes.class))).thenReturn(attrs);
+        // The link points to the root of the subtree
+        when(src.toRealPath(from)).thenReturn(from);
+        when(src.toRealPath(link)).thenReturn(from);
+        when(stream.iterator())
+            .thenReturn(Collections.singletonList(link).iterator());
+        when(src.newDirectoryStream(eq(from), anyFilter())).thenReturn(stream);
+
+        try {
+            new BulkCopy(from, to, 1).run();
+            shouldHaveThrown(FileSystemLoopException.class);
+        } catch (FileSystemLoopException e) {
+            assertThat(e.getFile()).isEqualTo("link");
+        }
+
+        verify(src, never()).newDirectoryStream(eq(link), anyFilter());
+    }
+
+    @Test
+    public void invalidArgumentsAreRejected()
+    {
+        try {
+            new BulkCopy(source, target, 0);
+            shouldHaveThrown(IllegalArgumentException.class);
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("parallelism must be strictly positive");
+        }
+
+        try {
+            new BulkCopy(source, target, 1, StandardCopyOption.ATOMIC_MOVE);
+            shouldHaveThrown(UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+
+    private static DirectoryStream.Filter<Path> anyFilter()
+    {
+        return any();
+    }
+}
@@ -19,30 +19,55 @@
 package com.github.fge.filesystem.provider;
 
 import com.github.fge.filesystem.driver.FileSystemDriver;
+import com.github.fge.filesystem.exceptions.BatchOperationException;
 import com.github.fge.filesystem.exceptions.IllegalOptionSetException;
 import com.github.fge.filesystem.exceptions.UnsupportedOptionException;
 import com.github.fge.filesystem.options.FileSystemOptionsFactory;
+import org.mockito.InOrder;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AccessMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.github.fge.filesystem.CustomAssertions.shouldHaveThrown;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.anySet;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public final class FileSystemProviderBaseTest
 {
+    private FileSystemRepository repository;
     private FileSystemFactoryProvider factoryProvider;
     private FileSystemOptionsFactory optionsFactory;
     private FileSystemDriver driver;
@@ -52,8 +77,7 @@ public final class FileSystemProviderBaseTest
     @BeforeMethod
     public void initMocks()
     {
-        final FileSystemRepository repository
-            = mock(FileSystemRepository.class);
+        repository = mock(FileSystemRepository.class);
 
         driver = mock(FileSystemDriver.class);
         when(repository.getDriver(any(Path.class))).thenReturn(driver);
@@ -86,9 +110,8 @@ public final class FileSystemProviderBaseTest
         } catch (IllegalOptionSetException ignored) {
         }
 
-        //noinspection unchecked
         verify(driver, never())
-            .newInputStream(any(Path.class), anySet());
+            .newInputStream(any(Path.class), anySetOf(OpenOption.class));
     }
 
     @Test
@@ -105,9 +128,8 @@ public final class FileSystemProviderBaseTest
             assertThat(e).hasMessage("foo");
         }
 
-        //noinspection unchecked
         verify(driver, never())
-            .newInputStream(any(Path.class), anySet());
+            .newInputStream(any(Path.class), anySetOf(OpenOption.class));
     }
 
     @Test
@@ -120,9 +142,8 @@ public final class FileSystemProviderBaseTest
         } catch (IllegalOptionSetException ignored) {
         }
 
-        //noinspection unchecked
         verify(driver, never())
-            .newOutputStream(any(Path.class), anySet());
+            .newOutputStream(any(Path.class), anySetOf(OpenOption.class));
     }
 
     @Test
@@ -139,8 +160,431 @@ public final class FileSystemProviderBaseTest
             assertThat(e).hasMessage("foo");
         }
 
-        //noinspection unchecked
         verify(driver, never())
-            .newOutputStream(any(Path.class), anySet());
+            .newOutputStream(any(Path.class), anySetOf(OpenOption.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void moveTriesRenameFirst()
+        throws IOException
+    {
+        final Path target = mock(Path.class);
+        when(driver.rename(any(Path.class), any(Path.class),
+            anySetOf(CopyOption.class)))
+            .thenReturn(true);
+
+        provider.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+
+        verify(driver).rename(any(Path.class), any(Path.class),
+            anySetOf(CopyOption.class));
+        verify(driver, never()).move(any(Path.class), any(Path.class),
+            anySetOf(CopyOption.class));
+    }
+
+    @Test
+    public void moveFallsBackToDriverMove()
+        throws IOException
+    {
+        final Path target = mock(Path.class);
+
+        provider.move(path, target);
+
+        verify(driver).move(any(Path.class), any(Path.class),
+            anySetOf(CopyOption.class));
+    }
+
+    @Test
+    public void atomicMoveFailsIfDriverCannotRename()
+        throws IOException
+    {
+        final Path target = mock(Path.class);
+
+        try {
+            provider.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+            shouldHaveThrown(AtomicMoveNotSupportedException.class);
+        } catch (AtomicMoveNotSupportedException ignored) {
+        }
+
+        verify(driver, never()).move(any(Path.class), any(Path.class),
+            anySetOf(CopyOption.class));
+    }
+
+    @Test
+    public void atomicMoveIsRejectedOnCopy()
+        throws IOException
+    {
+        try {
+            provider.copy(path, mock(Path.class),
+                StandardCopyOption.ATOMIC_MOVE);
+            shouldHaveThrown(UnsupportedOptionException.class);
+        } catch (UnsupportedOptionException ignored) {
+        }
+
+        verify(driver, never()).copy(any(Path.class), any(Path.class),
+            anySetOf(CopyOption.class));
+    }
+
+    @Test
+    public void deleteTreeTriesBulkDeleteFirst()
+        throws IOException
+    {
+        when(driver.deleteTree(path)).thenReturn(true);
+
+        ((FileSystemProviderBase) provider).deleteTree(path);
+
+        verify(driver, never()).delete(any(Path.class));
+        verify(driver).invalidate(path);
+    }
+
+    @Test
+    public void deleteTreeEmptiesDirectoriesFirst()
+        throws IOException
+    {
+        final Path child1 = mock(Path.class);
+        final Path child2 = mock(Path.class);
+        @SuppressWarnings("unchecked")
+        final DirectoryStream<Path> stream = mock(DirectoryStream.class);
+
+        when(stream.iterator())
+            .thenReturn(Arrays.asList(child1, child2).iterator());
+        when(driver.newDirectoryStream(any(Path.class),
+            anyFilter())).thenReturn(stream);
+        doThrow(new DirectoryNotEmptyException("foo")).doNothing()
+            .when(driver).delete(path);
+
+        ((FileSystemProviderBase) provider).deleteTree(path);
+
+        verify(driver, times(2)).delete(path);
+
+        for (final Path child: Arrays.asList(child1, child2)) {
+            final InOrder inOrder = inOrder(driver);
+            inOrder.verify(driver).delete(child);
+            inOrder.verify(driver).delete(path);
+        }
+    }
+
+    @Test
+    public void treeOperationsRunOnTreeExecutor()
+        throws IOException
+    {
+        final AtomicInteger executed = new AtomicInteger();
+        final Path child = mock(Path.class);
+        @SuppressWarnings("unchecked")
+        final DirectoryStream<Path> stream = mock(DirectoryStream.class);
+
+        factoryProvider = new FileSystemFactoryProvider()
+        {
+            {
+                setTreeExecutor(new Executor()
+                {
+                    @Override
+                    public void execute(final Runnable command)
+                    {
+                        executed.incrementAndGet();
+                        command.run();
+                    }
+                });
+            }
+        };
+        when(repository.getFactoryProvider()).thenReturn(factoryProvider);
+        provider = new FileSystemProviderBase(repository)
+        {
+        };
+
+        when(stream.iterator())
+            .thenReturn(Collections.singletonList(child).iterator());
+        when(driver.newDirectoryStream(any(Path.class),
+            anyFilter())).thenReturn(stream);
+        doThrow(new DirectoryNotEmptyException("foo")).doNothing()
+            .when(driver).delete(path);
+
+        ((FileSystemProviderBase) provider).deleteTree(path);
+
+        verify(driver).delete(child);
+        assertThat(executed.get()).isGreaterThan(0);
+    }
+
+    @Test
+    public void copyTreeTriesBulkCopyFirst()
+        throws IOException
+    {
+        final Path target = mock(Path.class);
+
+        when(path.toAbsolutePath()).thenReturn(path);
+        when(path.normalize()).thenReturn(path);
+        when(target.toAbsolutePath()).thenReturn(target);
+        when(target.normalize()).thenReturn(target);
+        doThrow(new NoSuchFileException("foo")).when(driver)
+            .checkAccess(target);
+        when(driver.copyTree(any(Path.class), any(Path.class),
+            anySetOf(CopyOption.class)))
+            .thenReturn(true);
+
+        ((FileSystemProviderBase) provider).copyTree(path, target);
+
+        verify(driver).copyTree(any(Path.class), any(Path.class),
+            anySetOf(CopyOption.class));
+        verify(driver, never()).copy(any(Path.class), any(Path.class),
+            anySetOf(CopyOption.class));
+        verify(driver).invalidate(target);
+    }
+
+    @Test
+    public void copyTreeDetectsLinkLoops()
+        throws IOException
+    {
+        final Path target = mock(Path.class);
+        final Path link = mock(Path.class);
+        final BasicFileAttributes attrs = mock(BasicFileAttributes.class);
+        @SuppressWarnings("unchecked")
+        final DirectoryStream<Path> stream = mock(DirectoryStream.class);
+
+        when(path.toAbsolutePath()).thenReturn(path);
+        when(path.normalize()).thenReturn(path);
+        when(target.toAbsolutePath()).thenReturn(target);
+        when(target.normalize()).thenReturn(target);
+        when(link.getFileName()).thenReturn(link);
+        when(link.toString()).thenReturn("link");
+        doThrow(new NoSuchFileException("foo")).when(driver)
+            .checkAccess(target);
+        when(attrs.isDirectory()).thenReturn(true);
+        when(driver.readAttributes(any(Path.class),
+            eq(BasicFileAttributes.class))).thenReturn(attrs);
+        // The link points to the root of the subtree
+        when(driver.toRealPath(path)).thenReturn(path);
+        when(driver.toRealPath(link)).thenReturn(path);
+        when(stream.iterator())
+            .thenReturn(Collections.singletonList(link).iterator());
+        when(driver.newDirectoryStream(eq(path),
+            anyFilter())).thenReturn(stream);
+
+        try {
+            ((FileSystemProviderBase) provider).copyTree(path, target);
+            shouldHaveThrown(FileSystemLoopException.class);
+        } catch (FileSystemLoopException e) {
+            assertThat(e.getFile()).isEqualTo("link");
+        }
+
+        verify(driver).copy(eq(path), eq(target), anySetOf(CopyOption.class));
+        verify(driver, never()).copy(eq(link), any(Path.class),
+            anySetOf(CopyOption.class));
+    }
+
+    @Test
+    public void batchFailuresOfAllFileSystemsAreMerged()
+        throws IOException
+    {
+        final FileSystemDriver driver2 = mock(FileSystemDriver.class);
+        final Path path2 = mock(Path.class);
+        final Path path3 = mock(Path.class);
+        final IOException failure = new IOException();
+
+        when(repository.getDriver(path2)).thenReturn(driver2);
+        when(repository.getDriver(path3)).thenReturn(driver2);
+        doThrow(new BatchOperationException(
+            Collections.singletonMap(path, failure), 1))
+            .when(driver).batchDelete(Collections.singletonList(path));
+        doThrow(failure).when(driver2)
+            .batchDelete(Arrays.asList(path2, path3));
+
+        try {
+            ((FileSystemProviderBase) provider)
+                .batchDelete(Arrays.asList(path, path2, path3));
+            shouldHaveThrown(BatchOperationException.class);
+        } catch (BatchOperationException e) {
+            assertThat(e.getTotal()).isEqualTo(3);
+            assertThat(e.getFailures().keySet())
+                .containsExactly(path, path2, path3);
+            assertThat(e.getSuppressed()).hasSize(3);
+        }
+
+        verify(driver).invalidate(path);
+        verify(driver2).invalidate(path2);
+        verify(driver2).invalidate(path3);
+    }
+
+    @Test
+    public void listenerIsNotifiedOfOperations()
+        throws IOException
+    {
+        final RecordingListener listener = new RecordingListener();
+        final Path target = mock(Path.class);
+
+        when(driver.newInputStream(any(Path.class), anySetOf(OpenOption.class)))
+            .thenReturn(mock(InputStream.class));
+
+        provider = tracedProvider(listener, 1);
+        provider.newInputStream(path, StandardOpenOption.READ);
+        provider.isSameFile(path, target);
+
+        assertThat(listener.started).hasSize(2);
+        assertThat(listener.ended).isEqualTo(listener.started);
+        assertThat(listener.failures).containsExactly(null, null);
+
+        ProviderEvent event = listener.started.get(0);
+        assertThat(event.getOperation())
+            .isEqualTo(ProviderOperation.NEW_INPUT_STREAM);
+        assertThat(event.getPaths()).containsExactly(path);
+        assertThat(event.getOptions())
+            .containsExactly(StandardOpenOption.READ);
+
+        event = listener.started.get(1);
+        assertThat(event.getOperation())
+            .isEqualTo(ProviderOperation.IS_SAME_FILE);
+        assertThat(event.getPaths()).containsExactly(path, target);
+        assertThat(event.getOptions()).isEmpty();
+    }
+
+    @Test
+    public void listenerIsNotifiedOfFailures()
+        throws IOException
+    {
+        final RecordingListener listener = new RecordingListener();
+        final IOException exception = new IOException();
+
+        doThrow(exception).when(driver).checkAccess(path, AccessMode.READ);
+
+        provider = tracedProvider(listener, 1);
+
+        try {
+            provider.checkAccess(path, AccessMode.READ);
+            shouldHaveThrown(IOException.class);
+        } catch (IOException e) {
+            assertThat(e).isSameAs(exception);
+        }
+
+        assertThat(listener.ended).hasSize(1);
+        assertThat(listener.ended.get(0).getOperation())
+            .isEqualTo(ProviderOperation.CHECK_ACCESS);
+        assertThat(listener.failures).containsExactly(exception);
+    }
+
+    @Test
+    public void operationsAreReportedOnce()
+        throws IOException
+    {
+        final RecordingListener listener = new RecordingListener();
+        final BasicFileAttributeView view = mock(BasicFileAttributeView.class);
+
+        doThrow(new NoSuchFileException("")).when(driver).checkAccess(path);
+        when(driver.getFileAttributeView(path, BasicFileAttributeView.class))
+            .thenReturn(view);
+
+        provider = tracedProvider(listener, 1);
+        provider.createDirectory(path);
+
+        assertThat(provider.getFileAttributeView(path,
+            BasicFileAttributeView.class)).isSameAs(view);
+
+        assertThat(listener.started).hasSize(2);
+        assertThat(listener.ended).isEqualTo(listener.started);
+        assertThat(listener.started.get(0).getOperation())
+            .isEqualTo(ProviderOperation.CREATE_DIRECTORY);
+        assertThat(listener.started.get(1).getOperation())
+            .isEqualTo(ProviderOperation.GET_FILE_ATTRIBUTE_VIEW);
+    }
+
+    @Test
+    public void failingListenerDoesNotBreakOperations()
+        throws IOException
+    {
+        final ProviderListener listener = new ProviderListener()
+        {
+            @Override
+            public void operationStarted(final ProviderEvent event)
+            {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void operationEnded(final ProviderEvent event,
+                final long nanos, @Nullable final Throwable failure)
+            {
+                throw new IllegalStateException();
+            }
+        };
+
+        provider = tracedProvider(listener, 1);
+        provider.delete(path);
+
+        verify(driver).delete(path);
+    }
+
+    @Test
+    public void operationsAreSampled()
+        throws IOException
+    {
+        final RecordingListener listener = new RecordingListener();
+
+        provider = tracedProvider(listener, 1000);
+
+        for (int i = 0; i < 1000; i++)
+            provider.isHidden(path);
+
+        assertThat(listener.started.size()).isLessThan(50);
+        assertThat(listener.ended).isEqualTo(listener.started);
+    }
+
+    @Test
+    public void sampleRateMustBePositive()
+    {
+        try {
+            new FileSystemFactoryProvider()
+            {
+                {
+                    setProviderListener(new RecordingListener(), 0);
+                }
+            };
+            shouldHaveThrown(IllegalArgumentException.class);
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("sample rate must be strictly positive");
+        }
+    }
+
+    private static DirectoryStream.Filter<Path> anyFilter()
+    {
+        return any();
+    }
+
+    private FileSystemProvider tracedProvider(final ProviderListener listener,
+        final int sampleRate)
+    {
+        factoryProvider = new FileSystemFactoryProvider()
+        {
+            {
+                setOptionsFactory(optionsFactory);
+                setProviderListener(listener, sampleRate);
+            }
+        };
+        when(repository.getFactoryProvider()).thenReturn(factoryProvider);
+
+        return new FileSystemProviderBase(repository)
+        {
+        };
+    }
+
+    private static final class RecordingListener
+        implements ProviderListener
+    {
+        private final List<ProviderEvent> started
+            = new ArrayList<ProviderEvent>();
+        private final List<ProviderEvent> ended
+            = new ArrayList<ProviderEvent>();
+        private final List<Throwable> failures = new ArrayList<Throwable>();
+
+        @Override
+        public void operationStarted(final ProviderEvent event)
+        {
+            started.add(event);
+        }
+
+        @Override
+        public void operationEnded(final ProviderEvent event, final long nanos,
+            @Nullable final Throwable failure)
+        {
+            assertThat(nanos).isGreaterThanOrEqualTo(0L);
+            ended.add(event);
+            failures.add(failure);
+        }
+    }
+}
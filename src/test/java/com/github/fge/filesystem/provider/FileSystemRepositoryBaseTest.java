@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.provider;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import com.github.fge.filesystem.driver.ForwardingFileSystemDriver;
+import com.github.fge.filesystem.io.ReadAheadFactory;
+import com.github.fge.filesystem.memory.MemoryFileSystemDriver;
+import com.github.fge.filesystem.memory.MemoryFileSystemFactoryProvider;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.annotation.Nonnull;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.github.fge.filesystem.CustomAssertions.shouldHaveThrown;
+import static com.github.fge.filesystem.TestUtils.readFully;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class FileSystemRepositoryBaseTest
+{
+    private static final int THREADS = 64;
+    private static final byte[] CONTENT = { 1, 2, 3 };
+
+    private static final ThreadMXBean THREAD_MX_BEAN
+        = ManagementFactory.getThreadMXBean();
+
+    private TestRepository repository;
+    private FileSystemProvider provider;
+
+    @BeforeMethod
+    public void init()
+    {
+        repository = new TestRepository();
+        provider = new FileSystemProviderBase(repository)
+        {
+        };
+    }
+
+    @Test
+    public void slowDriverCreationDoesNotBlockOtherFileSystems()
+        throws Exception
+    {
+        final URI slow = URI.create("memory://slow/");
+        final URI fast = URI.create("memory://fast/");
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        repository.block(slow);
+
+        try {
+            final Future<FileSystem> future = executor.submit(
+                new Callable<FileSystem>()
+                {
+                    @Override
+                    public FileSystem call()
+                        throws IOException
+                    {
+                        return newFileSystem(slow);
+                    }
+                });
+
+            assertThat(repository.entered.await(10L, TimeUnit.SECONDS))
+                .isTrue();
+
+            final FileSystem fs = newFileSystem(fast);
+            assertThat(provider.getFileSystem(fast)).isSameAs(fs);
+            Files.write(fs.getPath("/file"), CONTENT);
+
+            try {
+                newFileSystem(slow);
+                shouldHaveThrown(FileSystemAlreadyExistsException.class);
+            } catch (FileSystemAlreadyExistsException ignored) {
+            }
+
+            try {
+                provider.getFileSystem(slow);
+                shouldHaveThrown(FileSystemNotFoundException.class);
+            } catch (FileSystemNotFoundException ignored) {
+            }
+
+            repository.release.countDown();
+            assertThat(future.get(10L, TimeUnit.SECONDS))
+                .isSameAs(provider.getFileSystem(slow));
+        } finally {
+            repository.release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void validationDoesNotFreezeFactoriesOfOtherProviders()
+    {
+        final FileSystemFactoryProvider validated
+            = new MemoryFileSystemFactoryProvider();
+        final FileSystemFactoryProvider other
+            = new MemoryFileSystemFactoryProvider();
+
+        validated.validate();
+
+        assertThat(validated.getOptionsFactory().isFrozen()).isTrue();
+        assertThat(other.getOptionsFactory().isFrozen()).isFalse();
+        assertThat(other.getPathMatcherFactory().isFrozen()).isFalse();
+    }
+
+    @Test
+    public void driversAreNeverCalledWithMonitorsHeld()
+        throws Exception
+    {
+        final FileSystem shared = newFileSystem(URI.create("memory://shared/"));
+        final Path file = Files.write(shared.getPath("/file"), CONTENT);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Thread> threads = new ArrayList<>(THREADS);
+
+        Thread thread;
+
+        for (int i = 0; i < THREADS; i++) {
+            final URI uri = URI.create("memory://fs" + i + '/');
+            thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        start.await();
+                        try (
+                            final FileSystem fs = newFileSystem(uri);
+                        ) {
+                            final Path path = fs.getPath("/file");
+                            Files.write(path, CONTENT);
+                            assertThat(Files.readAllBytes(path))
+                                .isEqualTo(CONTENT);
+                        }
+                        assertThat(readFully(Files.newInputStream(file)))
+                            .isEqualTo(CONTENT);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+
+        for (final Thread t: threads)
+            t.join();
+
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+
+        assertThat(repository.created.get()).isEqualTo(THREADS + 1);
+    }
+
+    private FileSystem newFileSystem(final URI uri)
+        throws IOException
+    {
+        return provider.newFileSystem(uri,
+            Collections.<String, Object>emptyMap());
+    }
+
+    private static void checkNoMonitorHeld()
+    {
+        final MonitorInfo[] monitors = THREAD_MX_BEAN.getThreadInfo(
+            new long[] { Thread.currentThread().getId() }, true, false)[0]
+            .getLockedMonitors();
+
+        if (monitors.length != 0)
+            throw new IllegalStateException("driver called with monitors held: "
+                + Arrays.toString(monitors));
+    }
+
+    private static final class TestRepository
+        extends FileSystemRepositoryBase
+    {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger created = new AtomicInteger();
+        private volatile URI blocked = null;
+
+        private TestRepository()
+        {
+            super("memory", new MemoryFileSystemFactoryProvider()
+            {
+                {
+                    /*
+                     * Fetch blocks on the calling thread, so that a fetch
+                     * scheduled with a monitor held is detected
+                     */
+                    setReadAheadFactory(new ReadAheadFactory(2, 2, 1024L,
+                        new Executor()
+                        {
+                            @Override
+                            public void execute(final Runnable command)
+                            {
+                                command.run();
+                            }
+                        }));
+                }
+            });
+        }
+
+        private void block(final URI uri)
+        {
+            blocked = uri;
+        }
+
+        @Nonnull
+        @Override
+        protected FileSystemDriver createDriver(final URI uri,
+            final Map<String, ?> env)
+            throws IOException
+        {
+            checkNoMonitorHeld();
+            created.incrementAndGet();
+
+            if (uri.equals(blocked)) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                    throw new InterruptedIOException();
+                }
+            }
+
+            return new MonitorCheckingDriver(
+                new MemoryFileSystemDriver(factoryProvider, 16, 1024L));
+        }
+    }
+
+    private static final class MonitorCheckingDriver
+        extends ForwardingFileSystemDriver
+    {
+        private MonitorCheckingDriver(final FileSystemDriver delegate)
+        {
+            super(delegate);
+        }
+
+        @Nonnull
+        @Override
+        public InputStream newInputStream(final Path path,
+            final Set<OpenOption> options)
+            throws IOException
+        {
+            checkNoMonitorHeld();
+            return new MonitorCheckingInputStream(
+                super.newInputStream(path, options));
+        }
+
+        @Nonnull
+        @Override
+        public OutputStream newOutputStream(final Path path,
+            final Set<OpenOption> options)
+            throws IOException
+        {
+            checkNoMonitorHeld();
+            return new MonitorCheckingOutputStream(
+                super.newOutputStream(path, options));
+        }
+
+        @Nonnull
+        @Override
+        public SeekableByteChannel newByteChannel(final Path path,
+            final Set<? extends OpenOption> options,
+            final FileAttribute<?>... attrs)
+            throws IOException
+        {
+            checkNoMonitorHeld();
+            return super.newByteChannel(path, options, attrs);
+        }
+
+        @Override
+        public void checkAccess(final Path path, final AccessMode... modes)
+            throws IOException
+        {
+            checkNoMonitorHeld();
+            super.checkAccess(path, modes);
+        }
+    }
+
+    private static final class MonitorCheckingInputStream
+        extends FilterInputStream
+    {
+        private MonitorCheckingInputStream(final InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            checkNoMonitorHeld();
+            return super.read();
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+            throws IOException
+        {
+            checkNoMonitorHeld();
+            return super.read(b, off, len);
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            checkNoMonitorHeld();
+            super.close();
+        }
+    }
+
+    private static final class MonitorCheckingOutputStream
+        extends FilterOutputStream
+    {
+        private MonitorCheckingOutputStream(final OutputStream out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b)
+            throws IOException
+        {
+            checkNoMonitorHeld();
+            out.write(b);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+            throws IOException
+        {
+            checkNoMonitorHeld();
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush()
+            throws IOException
+        {
+            checkNoMonitorHeld();
+            out.flush();
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            checkNoMonitorHeld();
+            super.close();
+        }
+    }
+}
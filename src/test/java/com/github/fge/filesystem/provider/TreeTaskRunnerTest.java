@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.provider;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.fge.filesystem.CustomAssertions.shouldHaveThrown;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class TreeTaskRunnerTest
+{
+    @Test(timeOut = 10000L)
+    public void rejectedWorkersFailTheOperation()
+        throws IOException
+    {
+        final AtomicInteger ran = new AtomicInteger();
+        final Executor executor = new Executor()
+        {
+            @Override
+            public void execute(final Runnable command)
+            {
+                throw new RejectedExecutionException("shut down");
+            }
+        };
+        final TreeTaskRunner runner = new TreeTaskRunner(executor, 2);
+        final TreeTaskRunner.Task task = new TreeTaskRunner.Task()
+        {
+            @Override
+            public void run()
+            {
+                ran.incrementAndGet();
+            }
+        };
+
+        runner.submit(task);
+        runner.submit(task);
+
+        try {
+            runner.await();
+            shouldHaveThrown(RejectedExecutionException.class);
+        } catch (RejectedExecutionException e) {
+            assertThat(e).hasMessage("shut down");
+        }
+
+        assertThat(ran.get()).isEqualTo(0);
+    }
+}
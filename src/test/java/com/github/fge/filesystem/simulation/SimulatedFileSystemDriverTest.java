@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.simulation;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import com.github.fge.filesystem.metrics.DriverOperation;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.fge.filesystem.CustomAssertions.shouldHaveThrown;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public final class SimulatedFileSystemDriverTest
+{
+    private static final Set<OpenOption> NO_OPTIONS = Collections.emptySet();
+
+    private FileSystemDriver delegate;
+    private Path path;
+
+    @BeforeMethod
+    public void init()
+    {
+        delegate = mock(FileSystemDriver.class);
+        path = mock(Path.class);
+    }
+
+    @Test
+    public void operationsAreForwarded()
+        throws IOException
+    {
+        final SimulatedFileSystemDriver driver
+            = new SimulatedFileSystemDriver(delegate, SimulationProfile.NONE);
+
+        driver.checkAccess(path);
+        driver.delete(path);
+
+        verify(delegate).checkAccess(path);
+        verify(delegate).delete(path);
+    }
+
+    @Test
+    public void latencyIsAppliedPerOperation()
+        throws IOException
+    {
+        final SimulationProfile profile = SimulationProfile.NONE
+            .withLatency(DriverOperation.CHECK_ACCESS, 50L,
+                TimeUnit.MILLISECONDS);
+        final SimulatedFileSystemDriver driver
+            = new SimulatedFileSystemDriver(delegate, profile);
+
+        assertThat(profile.getLatency(DriverOperation.DELETE,
+            TimeUnit.MILLISECONDS)).isEqualTo(0L);
+
+        final long start = System.nanoTime();
+        driver.checkAccess(path);
+        final long elapsed = System.nanoTime() - start;
+
+        assertThat(elapsed).isGreaterThanOrEqualTo(
+            TimeUnit.MILLISECONDS.toNanos(50L));
+        verify(delegate).checkAccess(path);
+    }
+
+    @Test
+    public void failedOperationsAreNotForwarded()
+        throws IOException
+    {
+        final SimulationProfile profile = SimulationProfile.NONE
+            .withFailureRate(DriverOperation.DELETE, 1.0);
+        final SimulatedFileSystemDriver driver
+            = new SimulatedFileSystemDriver(delegate, profile);
+
+        try {
+            driver.delete(path);
+            shouldHaveThrown(SimulatedFailureException.class);
+        } catch (SimulatedFailureException e) {
+            assertThat(e.getOperation()).isEqualTo(DriverOperation.DELETE);
+        }
+
+        driver.checkAccess(path);
+
+        verify(delegate, never()).delete(path);
+        verify(delegate).checkAccess(path);
+    }
+
+    @Test
+    public void failuresAreReproducibleForAGivenSeed()
+        throws IOException
+    {
+        final SimulationProfile profile = SimulationProfile.NONE
+            .withFailureRate(0.5).withSeed(42L);
+
+        final List<Boolean> first = failures(profile, 100);
+        final List<Boolean> second = failures(profile, 100);
+
+        assertThat(first).isEqualTo(second);
+        assertThat(first).contains(true, false);
+        assertThat(failures(profile.withSeed(43L), 100)).isNotEqualTo(first);
+    }
+
+    @Test
+    public void readsAreThrottled()
+        throws IOException
+    {
+        final byte[] content = new byte[20000];
+        when(delegate.newInputStream(path, NO_OPTIONS))
+            .thenReturn(new ByteArrayInputStream(content));
+
+        final SimulationProfile profile = SimulationProfile.NONE
+            .withReadBandwidth(100000L);
+        final SimulatedFileSystemDriver driver
+            = new SimulatedFileSystemDriver(delegate, profile);
+
+        final byte[] buf = new byte[4096];
+        long total = 0L;
+        int nr;
+
+        final long start = System.nanoTime();
+        try (
+            final InputStream in = driver.newInputStream(path, NO_OPTIONS);
+        ) {
+            while ((nr = in.read(buf)) != -1)
+                total += nr;
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        assertThat(total).isEqualTo(content.length);
+        // 20000 bytes at 100000 bytes per second
+        assertThat(elapsed).isGreaterThanOrEqualTo(
+            TimeUnit.MILLISECONDS.toNanos(190L));
+    }
+
+    @Test
+    public void illegalProfileValuesAreRejected()
+    {
+        try {
+            SimulationProfile.NONE.withFailureRate(1.5);
+            shouldHaveThrown(IllegalArgumentException.class);
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("failure rate must be between 0 and 1");
+        }
+
+        try {
+            SimulationProfile.NONE.withLatency(-1L, TimeUnit.SECONDS);
+            shouldHaveThrown(IllegalArgumentException.class);
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("latency must not be negative");
+        }
+
+        try {
+            SimulationProfile.NONE.withBandwidth(-1L);
+            shouldHaveThrown(IllegalArgumentException.class);
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("bandwidth must not be negative");
+        }
+    }
+
+    private List<Boolean> failures(final SimulationProfile profile,
+        final int count)
+        throws IOException
+    {
+        final SimulatedFileSystemDriver driver
+            = new SimulatedFileSystemDriver(delegate, profile);
+        final List<Boolean> ret = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++)
+            try {
+                driver.checkAccess(path);
+                ret.add(false);
+            } catch (SimulatedFailureException ignored) {
+                ret.add(true);
+            }
+
+        return ret;
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.watch;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import com.github.fge.filesystem.fs.GenericFileSystem;
+import com.github.fge.filesystem.provider.FileSystemFactoryProvider;
+import com.github.fge.filesystem.provider.FileSystemRepository;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public final class PollingWatchServiceTest
+{
+    private static final String DIR = "/dir";
+
+    private final Map<String, Long> files = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+    private FileSystemRepository repository;
+    private GenericFileSystem fs;
+    private PollingWatchService service;
+    private Path dir;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        files.clear();
+        files.put(DIR, -1L);
+
+        repository = mock(FileSystemRepository.class);
+        when(repository.getFactoryProvider())
+            .thenReturn(new FileSystemFactoryProvider());
+
+        final FileSystemDriver driver = mock(FileSystemDriver.class);
+        fs = new GenericFileSystem(URI.create("foo://bar"), repository, driver,
+            mock(FileSystemProvider.class));
+        dir = fs.getPath(DIR);
+
+        when(driver.readAttributes(any(Path.class),
+            eq(BasicFileAttributes.class))).thenAnswer(new Answer<Object>()
+        {
+            @Override
+            public Object answer(final InvocationOnMock invocation)
+                throws IOException
+            {
+                return attributes(invocation.getArguments()[0].toString());
+            }
+        });
+        when(driver.newDirectoryStream(any(Path.class), anyFilter()))
+            .thenAnswer(new Answer<Object>()
+            {
+                @Override
+                public Object answer(final InvocationOnMock invocation)
+                    throws IOException
+                {
+                    return list(invocation.getArguments()[0].toString());
+                }
+            });
+
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        service = new PollingWatchService(driver, scheduler, 5L, 20L,
+            TimeUnit.MILLISECONDS);
+    }
+
+    @AfterMethod
+    public void cleanup()
+        throws IOException
+    {
+        service.close();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void changesAreReported()
+        throws IOException, InterruptedException
+    {
+        final WatchKey key = dir.register(service,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+
+        assertThat(key.watchable()).isSameAs(dir);
+
+        files.put(DIR + "/foo", 1L);
+        assertEvent(StandardWatchEventKinds.ENTRY_CREATE, "foo");
+
+        files.put(DIR + "/foo", 2L);
+        assertEvent(StandardWatchEventKinds.ENTRY_MODIFY, "foo");
+
+        files.remove(DIR + "/foo");
+        assertEvent(StandardWatchEventKinds.ENTRY_DELETE, "foo");
+    }
+
+    @Test
+    public void fileTreeChangesAreReported()
+        throws IOException, InterruptedException
+    {
+        files.put(DIR + "/sub", -1L);
+        files.put(DIR + "/sub/deeper", -1L);
+
+        dir.register(service, new WatchEvent.Kind<?>[] {
+            StandardWatchEventKinds.ENTRY_CREATE
+        }, ExtendedWatchEventModifier.FILE_TREE);
+
+        // Wait for the baseline to be taken
+        Thread.sleep(50L);
+
+        files.put(DIR + "/sub/deeper/foo", 1L);
+        assertEvent(StandardWatchEventKinds.ENTRY_CREATE, "sub/deeper/foo");
+    }
+
+    @Test
+    public void registeringTwiceYieldsTheSameKey()
+        throws IOException
+    {
+        final WatchKey key
+            = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE);
+
+        assertThat(dir.register(service, StandardWatchEventKinds.ENTRY_DELETE))
+            .isSameAs(key);
+    }
+
+    @Test
+    public void deletedDirectoryInvalidatesKey()
+        throws IOException, InterruptedException
+    {
+        final WatchKey key
+            = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE);
+
+        files.remove(DIR);
+
+        assertThat(service.poll(1L, TimeUnit.SECONDS)).isSameAs(key);
+        assertThat(key.isValid()).isFalse();
+    }
+
+    @Test
+    public void onlyDirectoriesCanBeRegistered()
+        throws IOException
+    {
+        files.put(DIR + "/foo", 1L);
+
+        try {
+            fs.getPath(DIR + "/foo").register(service,
+                StandardWatchEventKinds.ENTRY_CREATE);
+            fail("No exception thrown!");
+        } catch (NotDirectoryException ignored) {
+        }
+    }
+
+    @Test
+    public void foreignWatchServicesAreRejected()
+        throws IOException
+    {
+        try {
+            dir.register(mock(WatchService.class),
+                StandardWatchEventKinds.ENTRY_CREATE);
+            fail("No exception thrown!");
+        } catch (ProviderMismatchException ignored) {
+        }
+    }
+
+    @Test
+    public void watchServicesOfOtherFileSystemsAreRejected()
+        throws IOException
+    {
+        final FileSystemDriver driver = mock(FileSystemDriver.class);
+        final GenericFileSystem other = new GenericFileSystem(
+            URI.create("foo://baz"), repository, driver,
+            mock(FileSystemProvider.class));
+
+        when(driver.newWatchService()).thenReturn(new PollingWatchService(
+            driver, scheduler, 5L, 20L, TimeUnit.MILLISECONDS));
+
+        try (
+            final WatchService watcher = other.newWatchService();
+        ) {
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+            fail("No exception thrown!");
+        } catch (ProviderMismatchException ignored) {
+        }
+    }
+
+    private static DirectoryStream.Filter<Path> anyFilter()
+    {
+        return any();
+    }
+
+    private void assertEvent(final WatchEvent.Kind<?> kind, final String name)
+        throws InterruptedException
+    {
+        final WatchKey key = service.poll(1L, TimeUnit.SECONDS);
+
+        assertThat(key).isNotNull();
+
+        final List<WatchEvent<?>> events = key.pollEvents();
+
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).kind()).isSameAs(kind);
+        assertThat(events.get(0).context().toString()).isEqualTo(name);
+        assertThat(key.reset()).isTrue();
+    }
+
+    private BasicFileAttributes attributes(final String path)
+        throws IOException
+    {
+        final Long size = files.get(path);
+
+        if (size == null)
+            throw new NoSuchFileException(path);
+
+        final BasicFileAttributes attributes = mock(BasicFileAttributes.class);
+        when(attributes.isDirectory()).thenReturn(size == -1L);
+        when(attributes.size()).thenReturn(size);
+        when(attributes.lastModifiedTime())
+            .thenReturn(FileTime.fromMillis(0L));
+        return attributes;
+    }
+
+    private DirectoryStream<Path> list(final String dir)
+        throws IOException
+    {
+        final Long size = files.get(dir);
+
+        if (size == null)
+            throw new NoSuchFileException(dir);
+        if (size != -1L)
+            throw new NotDirectoryException(dir);
+
+        final String prefix = dir + '/';
+        final List<Path> list = new ArrayList<>();
+
+        for (final String name: files.keySet())
+            if (name.startsWith(prefix)
+                && name.indexOf('/', prefix.length()) == -1)
+                list.add(fs.getPath(name));
+
+        return new DirectoryStream<Path>()
+        {
+            @Override
+            public Iterator<Path> iterator()
+            {
+                return list.iterator();
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+    }
+}
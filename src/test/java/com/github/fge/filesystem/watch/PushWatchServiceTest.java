@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.watch;
+
+import com.github.fge.filesystem.driver.FileSystemDriver;
+import com.github.fge.filesystem.fs.GenericFileSystem;
+import com.github.fge.filesystem.provider.FileSystemFactoryProvider;
+import com.github.fge.filesystem.provider.FileSystemRepository;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public final class PushWatchServiceTest
+{
+    private GenericFileSystem fs;
+    private LocalWatchEventSource source;
+    private PushWatchService service;
+
+    @BeforeMethod
+    public void init()
+    {
+        final FileSystemRepository repository
+            = mock(FileSystemRepository.class);
+        when(repository.getFactoryProvider())
+            .thenReturn(new FileSystemFactoryProvider());
+        fs = new GenericFileSystem(URI.create("foo://bar"), repository,
+            mock(FileSystemDriver.class), mock(FileSystemProvider.class));
+        source = new LocalWatchEventSource();
+        service = new PushWatchService(source, 64);
+    }
+
+    @Test
+    public void eventsAreRoutedToTheParentKey()
+        throws IOException
+    {
+        final WatchKey key = fs.getPath("/a").register(service,
+            StandardWatchEventKinds.ENTRY_CREATE);
+
+        source.publish(StandardWatchEventKinds.ENTRY_CREATE,
+            fs.getPath("/a/b"));
+        source.publish(StandardWatchEventKinds.ENTRY_CREATE,
+            fs.getPath("/c/d"));
+        source.publish(StandardWatchEventKinds.ENTRY_DELETE,
+            fs.getPath("/a/b"));
+
+        assertThat(service.poll()).isSameAs(key);
+        assertThat(service.poll()).isNull();
+
+        final List<WatchEvent<?>> events = key.pollEvents();
+
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).kind())
+            .isSameAs(StandardWatchEventKinds.ENTRY_CREATE);
+        assertThat(events.get(0).context().toString()).isEqualTo("b");
+    }
+
+    @Test
+    public void fileTreeKeysReceiveEventsOfWholeSubtree()
+        throws IOException
+    {
+        final WatchEvent.Kind<?>[] kinds = {
+            StandardWatchEventKinds.ENTRY_CREATE
+        };
+        final WatchKey tree = fs.getPath("/a").register(service, kinds,
+            ExtendedWatchEventModifier.FILE_TREE);
+        final WatchKey flat = fs.getPath("/a/b").register(service, kinds);
+
+        source.publish(StandardWatchEventKinds.ENTRY_CREATE,
+            fs.getPath("/a/b/c"));
+        source.publish(StandardWatchEventKinds.ENTRY_CREATE,
+            fs.getPath("/a/b/c/d"));
+
+        final List<WatchEvent<?>> treeEvents = tree.pollEvents();
+        final List<WatchEvent<?>> flatEvents = flat.pollEvents();
+
+        assertThat(treeEvents).hasSize(2);
+        assertThat(treeEvents.get(0).context().toString()).isEqualTo("b/c");
+        assertThat(treeEvents.get(1).context().toString())
+            .isEqualTo("b/c/d");
+        assertThat(flatEvents).hasSize(1);
+        assertThat(flatEvents.get(0).context().toString()).isEqualTo("c");
+    }
+
+    @Test
+    public void unknownModifiersAreRejected()
+        throws IOException
+    {
+        final WatchEvent.Modifier modifier = mock(WatchEvent.Modifier.class);
+        when(modifier.name()).thenReturn("FOO");
+
+        try {
+            fs.getPath("/a").register(service, new WatchEvent.Kind<?>[] {
+                StandardWatchEventKinds.ENTRY_CREATE
+            }, modifier);
+            fail("No exception thrown!");
+        } catch (UnsupportedOperationException e) {
+            assertThat(e.getMessage()).isEqualTo("FOO");
+        }
+    }
+
+    @Test
+    public void overflowIsSignalledToAllKeys()
+        throws IOException
+    {
+        final WatchKey key1 = fs.getPath("/a").register(service,
+            StandardWatchEventKinds.ENTRY_CREATE);
+        final WatchKey key2 = fs.getPath("/b").register(service,
+            StandardWatchEventKinds.ENTRY_CREATE);
+
+        source.overflow();
+
+        assertThat(key1.pollEvents().get(0).kind())
+            .isSameAs(StandardWatchEventKinds.OVERFLOW);
+        assertThat(key2.pollEvents().get(0).kind())
+            .isSameAs(StandardWatchEventKinds.OVERFLOW);
+    }
+
+    @Test
+    public void closingServiceDetachesItFromSource()
+        throws IOException
+    {
+        final WatchKey key = fs.getPath("/a").register(service,
+            StandardWatchEventKinds.ENTRY_CREATE);
+
+        assertThat(source.getSinkCount()).isEqualTo(1);
+
+        service.close();
+
+        assertThat(source.getSinkCount()).isEqualTo(0);
+        assertThat(key.isValid()).isFalse();
+    }
+
+    @Test
+    public void noEventIsLostUnderConcurrentPublishing()
+        throws IOException, InterruptedException
+    {
+        final int threads = 4;
+        final int eventsPerThread = 10000;
+        final Path dir = fs.getPath("/a");
+        final WatchKey key = dir.register(service,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        final CountDownLatch latch = new CountDownLatch(threads);
+
+        for (int i = 0; i < threads; i++) {
+            final Path path = dir.resolve("f" + i);
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < eventsPerThread; j++)
+                        source.publish(StandardWatchEventKinds.ENTRY_MODIFY,
+                            path);
+                    latch.countDown();
+                }
+            }.start();
+        }
+
+        int total = 0;
+
+        while (latch.getCount() > 0) {
+            final WatchKey signalled = service.poll(10L, TimeUnit.MILLISECONDS);
+            if (signalled == null)
+                continue;
+            for (final WatchEvent<?> event: signalled.pollEvents())
+                total += event.count();
+            signalled.reset();
+        }
+
+        latch.await();
+
+        for (final WatchEvent<?> event: key.pollEvents())
+            total += event.count();
+
+        assertThat(total).isEqualTo(threads * eventsPerThread);
+    }
+}
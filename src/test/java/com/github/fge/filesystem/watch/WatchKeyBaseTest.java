@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.filesystem.watch;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+
+public final class WatchKeyBaseTest
+{
+    private static final Set<WatchEvent.Kind<?>> ALL_KINDS
+        = WatchServiceBase.checkEvents(StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_DELETE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+
+    private WatchServiceBase service;
+    private Path dir;
+    private Path foo;
+    private Path bar;
+
+    @BeforeMethod
+    public void init()
+    {
+        service = new WatchServiceBase()
+        {
+            @Override
+            public WatchKey register(final Path path,
+                final WatchEvent.Kind<?>[] events,
+                final WatchEvent.Modifier... modifiers)
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            protected void implClose()
+            {
+            }
+        };
+        dir = mock(Path.class);
+        foo = mock(Path.class);
+        bar = mock(Path.class);
+    }
+
+    @Test
+    public void keyIsQueuedOnceUntilReset()
+    {
+        final WatchKeyBase key = new WatchKeyBase(service, dir, ALL_KINDS, 16);
+
+        key.signalEvent(StandardWatchEventKinds.ENTRY_CREATE, foo);
+        key.signalEvent(StandardWatchEventKinds.ENTRY_CREATE, bar);
+
+        assertThat(service.poll()).isSameAs(key);
+        assertThat(service.poll()).isNull();
+        assertThat(key.pollEvents()).hasSize(2);
+
+        key.signalEvent(StandardWatchEventKinds.ENTRY_DELETE, foo);
+        assertThat(service.poll()).isNull();
+
+        assertThat(key.reset()).isTrue();
+        assertThat(service.poll()).isSameAs(key);
+    }
+
+    @Test
+    public void repeatedEventsAreCoalesced()
+    {
+        final WatchKeyBase key = new WatchKeyBase(service, dir, ALL_KINDS, 16);
+
+        key.signalEvent(StandardWatchEventKinds.ENTRY_MODIFY, foo);
+        key.signalEvent(StandardWatchEventKinds.ENTRY_MODIFY, foo);
+        key.signalEvent(StandardWatchEventKinds.ENTRY_MODIFY, bar);
+        key.signalEvent(StandardWatchEventKinds.ENTRY_MODIFY, foo);
+
+        final List<WatchEvent<?>> events = key.pollEvents();
+
+        assertThat(events).hasSize(3);
+        assertThat(events.get(0).context()).isSameAs(foo);
+        assertThat(events.get(0).count()).isEqualTo(2);
+        assertThat(events.get(1).context()).isSameAs(bar);
+        assertThat(events.get(2).count()).isEqualTo(1);
+    }
+
+    @Test
+    public void excessEventsAreReportedAsOverflow()
+    {
+        final WatchKeyBase key = new WatchKeyBase(service, dir, ALL_KINDS, 2);
+
+        for (int i = 0; i < 5; i++)
+            key.signalEvent(StandardWatchEventKinds.ENTRY_CREATE,
+                mock(Path.class));
+
+        List<WatchEvent<?>> events = key.pollEvents();
+
+        assertThat(events).hasSize(3);
+        assertThat(events.get(2).kind())
+            .isSameAs(StandardWatchEventKinds.OVERFLOW);
+        assertThat(events.get(2).count()).isEqualTo(3);
+        assertThat(events.get(2).context()).isNull();
+
+        key.signalEvent(StandardWatchEventKinds.ENTRY_CREATE, foo);
+        events = key.pollEvents();
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).context()).isSameAs(foo);
+    }
+
+    @Test
+    public void unregisteredKindsAreIgnored()
+    {
+        final WatchKeyBase key = new WatchKeyBase(service, dir,
+            WatchServiceBase.checkEvents(StandardWatchEventKinds.ENTRY_CREATE),
+            16);
+
+        key.signalEvent(StandardWatchEventKinds.ENTRY_DELETE, foo);
+
+        assertThat(service.poll()).isNull();
+        assertThat(key.pollEvents()).isEmpty();
+    }
+
+    @Test
+    public void cancelledKeyIsInvalid()
+    {
+        final WatchKeyBase key = new WatchKeyBase(service, dir, ALL_KINDS, 16);
+
+        key.cancel();
+        key.signalEvent(StandardWatchEventKinds.ENTRY_CREATE, foo);
+
+        assertThat(key.isValid()).isFalse();
+        assertThat(key.reset()).isFalse();
+        assertThat(service.poll()).isNull();
+    }
+
+    @Test
+    public void closingServiceWakesUpWaiters()
+        throws IOException, InterruptedException
+    {
+        final Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    Thread.sleep(50L);
+                    service.close();
+                } catch (InterruptedException | IOException ignored) {
+                }
+            }
+        };
+
+        thread.start();
+
+        try {
+            service.take();
+            fail("No exception thrown!");
+        } catch (ClosedWatchServiceException ignored) {
+        }
+
+        thread.join();
+    }
+}